@@ -0,0 +1,86 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.benchmark;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.ConcreteCall;
+import cascading.operation.Function;
+import cascading.tuple.TupleEntry;
+import cascading.tuple.TupleEntryCollector;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Class FunctionInvoker drives a {@link Function} outside of a Flow, one argument {@link TupleEntry} per call,
+ * cycling through the given arguments.
+ * <p/>
+ * Every result is handed to a JMH {@link Blackhole} so the scoring work cannot be eliminated.
+ */
+public class FunctionInvoker
+  {
+  private final Function function;
+  private final TupleEntry[] arguments;
+  private final ConcreteCall call;
+  private final BlackholeCollector collector = new BlackholeCollector();
+
+  private int next;
+
+  private static class BlackholeCollector extends TupleEntryCollector
+    {
+    Blackhole blackhole;
+
+    @Override
+    protected void collect( TupleEntry tupleEntry )
+      {
+      blackhole.consume( tupleEntry.getTuple() );
+      }
+    }
+
+  public FunctionInvoker( Function function, TupleEntry[] arguments )
+    {
+    if( arguments.length == 0 )
+      throw new IllegalArgumentException( "at least one argument is required" );
+
+    this.function = function;
+    this.arguments = arguments;
+    this.call = new ConcreteCall( arguments[ 0 ].getFields(), function.getFieldDeclaration() );
+
+    call.setOutputCollector( collector );
+
+    function.prepare( FlowProcess.NULL, call );
+    }
+
+  public void invoke( Blackhole blackhole )
+    {
+    collector.blackhole = blackhole;
+
+    call.setArguments( arguments[ next ] );
+
+    function.operate( FlowProcess.NULL, call );
+
+    if( ++next == arguments.length )
+      next = 0;
+    }
+
+  public void cleanup()
+    {
+    function.cleanup( FlowProcess.NULL, call );
+    }
+  }
@@ -0,0 +1,77 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.benchmark;
+
+import java.io.File;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+
+import cascading.flow.FlowDef;
+import cascading.flow.local.LocalFlowConnector;
+import cascading.tuple.Fields;
+import cascading.tuple.TupleEntry;
+
+/** Class LocalFlows holds utilities for benchmarking complete Cascading local mode flows. */
+public class LocalFlows
+  {
+  public static File createTempDirectory( String prefix ) throws IOException
+    {
+    File directory = File.createTempFile( prefix, "" );
+
+    if( !directory.delete() || !directory.mkdirs() )
+      throw new IOException( "unable to create temp directory: " + directory );
+
+    directory.deleteOnExit();
+
+    return directory;
+    }
+
+  /** Writes the given arguments as a tab delimited file with a header line. */
+  public static void writeDelimited( File file, Fields fields, TupleEntry[] arguments ) throws IOException
+    {
+    PrintWriter writer = new PrintWriter( new FileWriter( file ) );
+
+    try
+      {
+      StringBuilder header = new StringBuilder();
+
+      for( int i = 0; i < fields.size(); i++ )
+        header.append( i == 0 ? "" : "\t" ).append( fields.get( i ) );
+
+      writer.println( header );
+
+      for( TupleEntry argument : arguments )
+        writer.println( argument.getTuple().toString( "\t", false ) );
+      }
+    finally
+      {
+      writer.close();
+      }
+
+    file.deleteOnExit();
+    }
+
+  public static void complete( FlowDef flowDef )
+    {
+    new LocalFlowConnector().connect( flowDef ).complete();
+    }
+  }
@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.benchmark;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileReader;
+import java.io.FileWriter;
+import java.io.IOException;
+import java.io.PrintWriter;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import cascading.flow.FlowDef;
+import cascading.pattern.pmml.PMMLPlanner;
+import cascading.scheme.local.TextDelimited;
+import cascading.tap.SinkMode;
+import cascading.tap.local.FileTap;
+import cascading.tuple.Fields;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures complete local mode flows planned by the {@link PMMLPlanner} from the PMML files found in
+ * {@code pattern-examples/data}.
+ * <p/>
+ * The data rows of the matching {@code .tsv} file are repeated {@code repeat} times so that scoring, not flow
+ * planning, dominates each operation. The data directory is set via the {@code pattern.data.path} system property.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class PMMLFlowBenchmark
+  {
+  public static final String DATA_PATH = System.getProperty( "pattern.data.path", "pattern-examples/data/" );
+
+  @Param({"iris.rf", "iris.rpart", "iris.multinom", "iris.glm", "iris.lm_p", "iris.kmeans", "sample.rf"})
+  public String model;
+
+  @Param({"100"})
+  public int repeat;
+
+  @Param({"false", "true"})
+  public boolean encodeCategoricalFields;
+
+  private File pmmlFile;
+  private String inputPath;
+  private String outputPath;
+
+  @Setup
+  public void setup() throws IOException
+    {
+    pmmlFile = new File( DATA_PATH, model + ".xml" );
+
+    if( !pmmlFile.exists() )
+      throw new IllegalStateException( "pmml file does not exist: " + pmmlFile );
+
+    File directory = LocalFlows.createTempDirectory( model );
+    File input = new File( directory, "input.tsv" );
+
+    String tsvName = model.startsWith( "sample" ) ? "sample.tsv" : model + ".tsv";
+
+    repeatRows( new File( DATA_PATH, tsvName ), input, repeat );
+
+    inputPath = input.getPath();
+    outputPath = new File( directory, "output.tsv" ).getPath();
+
+    new File( outputPath ).deleteOnExit();
+    }
+
+  private static void repeatRows( File source, File sink, int repeat ) throws IOException
+    {
+    BufferedReader reader = new BufferedReader( new FileReader( source ) );
+    List<String> lines = new ArrayList<String>();
+
+    try
+      {
+      String line;
+
+      while( ( line = reader.readLine() ) != null )
+        lines.add( line );
+      }
+    finally
+      {
+      reader.close();
+      }
+
+    PrintWriter writer = new PrintWriter( new FileWriter( sink ) );
+
+    try
+      {
+      writer.println( lines.get( 0 ) );
+
+      for( int i = 0; i < repeat; i++ )
+        {
+        for( String line : lines.subList( 1, lines.size() ) )
+          writer.println( line );
+        }
+      }
+    finally
+      {
+      writer.close();
+      }
+
+    sink.deleteOnExit();
+    }
+
+  @Benchmark
+  public void score()
+    {
+    PMMLPlanner pmmlPlanner = new PMMLPlanner()
+      .setPMMLInput( pmmlFile )
+      .retainOnlyActiveIncomingFields()
+      .setEncodeCategoricalFields( encodeCategoricalFields )
+      .setDefaultPredictedField( new Fields( "predict", Double.class ) );
+
+    FlowDef flowDef = FlowDef.flowDef()
+      .setName( model )
+      .addSource( "input", new FileTap( new TextDelimited( true, "\t" ), inputPath ) )
+      .addSink( "classify", new FileTap( new TextDelimited( true, "\t" ), outputPath, SinkMode.REPLACE ) )
+      .addAssemblyPlanner( pmmlPlanner );
+
+    LocalFlows.complete( flowDef );
+    }
+  }
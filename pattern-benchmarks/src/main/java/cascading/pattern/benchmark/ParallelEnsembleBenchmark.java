@@ -0,0 +1,112 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.benchmark;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import cascading.flow.FlowDef;
+import cascading.pattern.ensemble.EnsembleFunction;
+import cascading.pattern.ensemble.EnsembleSpec;
+import cascading.pattern.ensemble.ParallelEnsembleAssembly;
+import cascading.pattern.model.tree.TreeSpec;
+import cascading.pipe.Each;
+import cascading.pipe.Pipe;
+import cascading.scheme.local.TextDelimited;
+import cascading.tap.SinkMode;
+import cascading.tap.local.FileTap;
+import cascading.tuple.Fields;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+/**
+ * Measures complete local mode flows scoring a forest with the {@link ParallelEnsembleAssembly}, compared
+ * with scoring the same forest in a single {@link EnsembleFunction}.
+ * <p/>
+ * Every operation runs a flow over {@code numRows} tuples.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class ParallelEnsembleBenchmark
+  {
+  @Param({"10", "100"})
+  public int numTrees;
+
+  @Param({"8"})
+  public int depth;
+
+  @Param({"20"})
+  public int numFields;
+
+  @Param({"10000"})
+  public int numRows;
+
+  @Param({"assembly", "function"})
+  public String scoring;
+
+  private EnsembleSpec<TreeSpec> ensembleSpec;
+  private String inputPath;
+  private String outputPath;
+
+  @Setup
+  public void setup() throws IOException
+    {
+    ensembleSpec = SyntheticModels.createEnsembleSpec( numFields, numTrees, depth, SyntheticModels.createCategories( 3 ) );
+
+    File directory = LocalFlows.createTempDirectory( "ensemble" );
+    File input = new File( directory, "input.tsv" );
+    Fields inputFields = ensembleSpec.getModelSchema().getInputFields();
+
+    LocalFlows.writeDelimited( input, inputFields, SyntheticModels.createArguments( inputFields, numRows ) );
+
+    inputPath = input.getPath();
+    outputPath = new File( directory, "output.tsv" ).getPath();
+
+    new File( outputPath ).deleteOnExit();
+    }
+
+  @Benchmark
+  public void score()
+    {
+    Fields inputFields = ensembleSpec.getModelSchema().getInputFields();
+    Pipe pipe = new Pipe( "head" );
+
+    if( scoring.equals( "assembly" ) )
+      pipe = new ParallelEnsembleAssembly( pipe, ensembleSpec );
+    else
+      pipe = new Each( pipe, inputFields, new EnsembleFunction( ensembleSpec ), Fields.ALL );
+
+    FlowDef flowDef = FlowDef.flowDef()
+      .setName( "ensemble" )
+      .addSource( pipe, new FileTap( new TextDelimited( inputFields, true, "\t" ), inputPath ) )
+      .addTailSink( pipe, new FileTap( new TextDelimited( true, "\t" ), outputPath, SinkMode.REPLACE ) );
+
+    LocalFlows.complete( flowDef );
+    }
+  }
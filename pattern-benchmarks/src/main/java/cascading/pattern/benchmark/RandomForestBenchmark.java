@@ -0,0 +1,87 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import cascading.operation.Function;
+import cascading.pattern.ensemble.EnsembleFunction;
+import cascading.pattern.function.RandomForestFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures single pass forest scoring, comparing the sample {@link RandomForestFunction} with the
+ * {@link EnsembleFunction} used by the PMML planner.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RandomForestBenchmark
+  {
+  @Param({"10", "100", "1000"})
+  public int numTrees;
+
+  @Param({"8"})
+  public int depth;
+
+  @Param({"20"})
+  public int numFields;
+
+  @Param({"forest", "ensemble"})
+  public String function;
+
+  private FunctionInvoker invoker;
+
+  @Setup
+  public void setup()
+    {
+    String[] categories = SyntheticModels.createCategories( 3 );
+    Function scoringFunction;
+
+    if( function.equals( "forest" ) )
+      scoringFunction = new RandomForestFunction( SyntheticModels.createRandomForestSpec( numFields, numTrees, depth, categories ) );
+    else
+      scoringFunction = new EnsembleFunction( SyntheticModels.createEnsembleSpec( numFields, numTrees, depth, categories ) );
+
+    invoker = new FunctionInvoker( scoringFunction, SyntheticModels.createArguments( SyntheticModels.createInputFields( numFields ), 1024 ) );
+    }
+
+  @TearDown
+  public void tearDown()
+    {
+    invoker.cleanup();
+    }
+
+  @Benchmark
+  public void score( Blackhole blackhole )
+    {
+    invoker.invoke( blackhole );
+    }
+  }
@@ -0,0 +1,83 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.benchmark;
+
+import java.util.concurrent.TimeUnit;
+
+import cascading.operation.Function;
+import cascading.pattern.model.generalregression.CategoricalRegressionFunction;
+import cascading.pattern.model.generalregression.PredictionRegressionFunction;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.infra.Blackhole;
+
+/**
+ * Measures {@link CategoricalRegressionFunction} (multinomial, one table per category) and
+ * {@link PredictionRegressionFunction} throughput.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+public class RegressionBenchmark
+  {
+  @Param({"4", "100"})
+  public int numFields;
+
+  @Param({"3", "50"})
+  public int numCategories;
+
+  @Param({"categorical", "prediction"})
+  public String function;
+
+  private FunctionInvoker invoker;
+
+  @Setup
+  public void setup()
+    {
+    Function scoringFunction;
+
+    if( function.equals( "categorical" ) )
+      scoringFunction = new CategoricalRegressionFunction( SyntheticModels.createCategoricalRegressionSpec( numFields, SyntheticModels.createCategories( numCategories ) ) );
+    else
+      scoringFunction = new PredictionRegressionFunction( SyntheticModels.createPredictionRegressionSpec( numFields ) );
+
+    invoker = new FunctionInvoker( scoringFunction, SyntheticModels.createArguments( SyntheticModels.createInputFields( numFields ), 1024 ) );
+    }
+
+  @TearDown
+  public void tearDown()
+    {
+    invoker.cleanup();
+    }
+
+  @Benchmark
+  public void score( Blackhole blackhole )
+    {
+    invoker.invoke( blackhole );
+    }
+  }
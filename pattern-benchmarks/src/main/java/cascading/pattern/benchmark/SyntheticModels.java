@@ -0,0 +1,226 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.benchmark;
+
+import java.util.Random;
+
+import cascading.pattern.ensemble.EnsembleSpec;
+import cascading.pattern.ensemble.selection.MajorityVote;
+import cascading.pattern.function.RandomForestSpec;
+import cascading.pattern.model.ModelSchema;
+import cascading.pattern.model.clustering.Cluster;
+import cascading.pattern.model.clustering.ClusteringSpec;
+import cascading.pattern.model.clustering.compare.AbsoluteDifferenceCompareFunction;
+import cascading.pattern.model.clustering.measure.SquaredEuclideanMeasure;
+import cascading.pattern.model.generalregression.GeneralRegressionSpec;
+import cascading.pattern.model.generalregression.LinkFunction;
+import cascading.pattern.model.generalregression.Parameter;
+import cascading.pattern.model.generalregression.RegressionTable;
+import cascading.pattern.model.generalregression.normalization.SoftMaxNormalization;
+import cascading.pattern.model.generalregression.predictor.CovariantPredictor;
+import cascading.pattern.model.tree.Tree;
+import cascading.pattern.model.tree.TreeSpec;
+import cascading.pattern.model.tree.predicate.GreaterThanPredicate;
+import cascading.pattern.model.tree.predicate.LessOrEqualThanPredicate;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+
+/**
+ * Class SyntheticModels creates randomly generated, but repeatable, models and input data of arbitrary size.
+ * <p/>
+ * All models read the continuous fields {@code var0} through {@code varN}, with values uniformly distributed
+ * between zero and one.
+ */
+public class SyntheticModels
+  {
+  public static final long SEED = 0xCAFEBABEL;
+
+  public static Fields createInputFields( int numFields )
+    {
+    Fields fields = Fields.NONE;
+
+    for( int i = 0; i < numFields; i++ )
+      fields = fields.append( new Fields( "var" + i, double.class ) );
+
+    return fields;
+    }
+
+  public static String[] createCategories( int numCategories )
+    {
+    String[] categories = new String[ numCategories ];
+
+    for( int i = 0; i < numCategories; i++ )
+      categories[ i ] = "category" + i;
+
+    return categories;
+    }
+
+  public static ModelSchema createCategoricalSchema( int numFields, String[] categories )
+    {
+    ModelSchema modelSchema = new ModelSchema( createInputFields( numFields ), new Fields( "label", String.class ) );
+
+    modelSchema.setPredictedCategories( "label", categories );
+
+    return modelSchema;
+    }
+
+  public static ModelSchema createPredictionSchema( int numFields )
+    {
+    return new ModelSchema( createInputFields( numFields ), new Fields( "predicted", double.class ) );
+    }
+
+  public static TupleEntry[] createArguments( Fields inputFields, int count )
+    {
+    Random random = new Random( SEED );
+    TupleEntry[] arguments = new TupleEntry[ count ];
+
+    for( int i = 0; i < count; i++ )
+      {
+      Tuple tuple = Tuple.size( inputFields.size() );
+
+      for( int j = 0; j < inputFields.size(); j++ )
+        tuple.set( j, random.nextDouble() );
+
+      arguments[ i ] = new TupleEntry( inputFields, tuple );
+      }
+
+    return arguments;
+    }
+
+  /** Creates a complete binary tree of the given depth, splitting on a random field at every node. */
+  public static Tree createTree( Random random, int numFields, int depth, String[] categories )
+    {
+    Tree tree = new Tree( "0" );
+
+    addChildren( random, tree, new int[]{1}, "0", numFields, 1, depth, categories );
+
+    return tree;
+    }
+
+  private static void addChildren( Random random, Tree tree, int[] nextID, String parentID, int numFields, int level, int depth, String[] categories )
+    {
+    String field = "var" + random.nextInt( numFields );
+    double threshold = random.nextDouble();
+
+    String leftID = Integer.toString( nextID[ 0 ]++ );
+    String rightID = Integer.toString( nextID[ 0 ]++ );
+
+    if( level == depth )
+      {
+      tree.addPredicate( parentID, leftID, new LessOrEqualThanPredicate( field, threshold ), categories[ random.nextInt( categories.length ) ] );
+      tree.addPredicate( parentID, rightID, new GreaterThanPredicate( field, threshold ), categories[ random.nextInt( categories.length ) ] );
+      return;
+      }
+
+    tree.addPredicate( parentID, leftID, new LessOrEqualThanPredicate( field, threshold ) );
+    addChildren( random, tree, nextID, leftID, numFields, level + 1, depth, categories );
+
+    tree.addPredicate( parentID, rightID, new GreaterThanPredicate( field, threshold ) );
+    addChildren( random, tree, nextID, rightID, numFields, level + 1, depth, categories );
+    }
+
+  public static TreeSpec createTreeSpec( int numFields, int depth, String[] categories )
+    {
+    ModelSchema modelSchema = createCategoricalSchema( numFields, categories );
+
+    return new TreeSpec( modelSchema, createTree( new Random( SEED ), numFields, depth, categories ) );
+    }
+
+  public static EnsembleSpec<TreeSpec> createEnsembleSpec( int numFields, int numTrees, int depth, String[] categories )
+    {
+    ModelSchema modelSchema = createCategoricalSchema( numFields, categories );
+    EnsembleSpec<TreeSpec> ensembleSpec = new EnsembleSpec<TreeSpec>( modelSchema );
+
+    ensembleSpec.setSelectionStrategy( new MajorityVote() );
+
+    Random random = new Random( SEED );
+
+    for( int i = 0; i < numTrees; i++ )
+      ensembleSpec.addModelSpec( new TreeSpec( modelSchema, createTree( random, numFields, depth, categories ) ) );
+
+    return ensembleSpec;
+    }
+
+  public static RandomForestSpec createRandomForestSpec( int numFields, int numTrees, int depth, String[] categories )
+    {
+    EnsembleSpec<TreeSpec> ensembleSpec = createEnsembleSpec( numFields, numTrees, depth, categories );
+    RandomForestSpec randomForestSpec = new RandomForestSpec( ensembleSpec.getModelSchema(), ensembleSpec.getModelSpecs() );
+
+    randomForestSpec.setSelectionStrategy( ensembleSpec.getSelectionStrategy() );
+
+    return randomForestSpec;
+    }
+
+  public static ClusteringSpec createClusteringSpec( int numFields, int numClusters )
+    {
+    ModelSchema modelSchema = new ModelSchema( createInputFields( numFields ), new Fields( "cluster", String.class ) );
+    ClusteringSpec clusteringSpec = new ClusteringSpec( modelSchema );
+
+    clusteringSpec.setDefaultCompareFunction( new AbsoluteDifferenceCompareFunction() );
+    clusteringSpec.setComparisonMeasure( new SquaredEuclideanMeasure() );
+
+    Random random = new Random( SEED );
+
+    for( int i = 0; i < numClusters; i++ )
+      {
+      double[] points = new double[ numFields ];
+
+      for( int j = 0; j < numFields; j++ )
+        points[ j ] = random.nextDouble();
+
+      clusteringSpec.addCluster( new Cluster( "cluster" + i, points ) );
+      }
+
+    return clusteringSpec;
+    }
+
+  private static RegressionTable createRegressionTable( Random random, RegressionTable regressionTable, int numFields )
+    {
+    regressionTable.addParameter( new Parameter( "intercept", random.nextGaussian() ) );
+
+    for( int i = 0; i < numFields; i++ )
+      regressionTable.addParameter( new Parameter( "p" + i, random.nextGaussian(), new CovariantPredictor( "var" + i ) ) );
+
+    return regressionTable;
+    }
+
+  public static GeneralRegressionSpec createCategoricalRegressionSpec( int numFields, String[] categories )
+    {
+    GeneralRegressionSpec regressionSpec = new GeneralRegressionSpec( createCategoricalSchema( numFields, categories ) );
+
+    regressionSpec.setNormalization( new SoftMaxNormalization() );
+
+    Random random = new Random( SEED );
+
+    for( String category : categories )
+      regressionSpec.addRegressionTable( createRegressionTable( random, new RegressionTable( category ), numFields ) );
+
+    return regressionSpec;
+    }
+
+  public static GeneralRegressionSpec createPredictionRegressionSpec( int numFields )
+    {
+    RegressionTable regressionTable = createRegressionTable( new Random( SEED ), new RegressionTable(), numFields );
+
+    return new GeneralRegressionSpec( createPredictionSchema( numFields ), regressionTable, LinkFunction.NONE );
+    }
+  }
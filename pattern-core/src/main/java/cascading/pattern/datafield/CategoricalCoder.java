@@ -0,0 +1,74 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.datafield;
+
+import java.util.List;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.BaseOperation;
+import cascading.operation.Function;
+import cascading.operation.OperationCall;
+import cascading.pattern.util.StringIndex;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+
+/**
+ * Class CategoricalCoder is the base class for functions translating the values of {@link CategoricalDataField}
+ * instances to and from the ordinal position of the value in the list of categories.
+ */
+public abstract class CategoricalCoder extends BaseOperation<Tuple> implements Function<Tuple>
+  {
+  protected final StringIndex[] indexes;
+
+  protected CategoricalCoder( List<CategoricalDataField> dataFields, Fields fieldDeclaration )
+    {
+    super( dataFields.size(), fieldDeclaration );
+
+    if( dataFields.isEmpty() )
+      throw new IllegalArgumentException( "data fields may not be empty" );
+
+    this.indexes = new StringIndex[ dataFields.size() ];
+
+    for( int i = 0; i < dataFields.size(); i++ )
+      indexes[ i ] = dataFields.get( i ).getCategoryIndex();
+    }
+
+  protected static Fields createFields( List<CategoricalDataField> dataFields, boolean typed )
+    {
+    Fields fields = Fields.NONE;
+
+    for( CategoricalDataField dataField : dataFields )
+      {
+      if( typed )
+        fields = fields.append( new Fields( dataField.getName(), dataField.getType() ) );
+      else
+        fields = fields.append( new Fields( dataField.getName() ) );
+      }
+
+    return fields;
+    }
+
+  @Override
+  public void prepare( FlowProcess flowProcess, OperationCall<Tuple> operationCall )
+    {
+    operationCall.setContext( Tuple.size( indexes.length ) );
+    }
+  }
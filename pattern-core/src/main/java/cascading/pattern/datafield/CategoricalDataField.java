@@ -26,6 +26,7 @@ import java.util.Arrays;
 import java.util.Collections;
 import java.util.List;
 
+import cascading.pattern.util.StringIndex;
 import cascading.tuple.Fields;
 
 
@@ -41,6 +42,7 @@ import cascading.tuple.Fields;
 public class CategoricalDataField extends DataField
   {
   protected List<String> categories = new ArrayList<String>();
+  private StringIndex categoryIndex;
 
   public CategoricalDataField( CategoricalDataField dataField, String... categories )
     {
@@ -77,4 +79,18 @@ public class CategoricalDataField extends DataField
     {
     return Collections.unmodifiableList( categories );
     }
+
+  /**
+   * Gets an index of the current categories to their ordinal positions. The index is built on first use and
+   * shared by all callers.
+   *
+   * @return the category index
+   */
+  public synchronized StringIndex getCategoryIndex()
+    {
+    if( categoryIndex == null )
+      categoryIndex = new StringIndex( categories );
+
+    return categoryIndex;
+    }
   }
@@ -0,0 +1,61 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.datafield;
+
+import java.util.List;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.FunctionCall;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+
+/**
+ * Class CategoricalDecoder replaces each {@link Integer} ordinal created by a {@link CategoricalEncoder} with the
+ * original category value. All other values are passed through unchanged.
+ * <p/>
+ * Use with {@link cascading.tuple.Fields#REPLACE}.
+ */
+public class CategoricalDecoder extends CategoricalCoder
+  {
+  public CategoricalDecoder( List<CategoricalDataField> dataFields )
+    {
+    super( dataFields, createFields( dataFields, true ) );
+    }
+
+  @Override
+  public void operate( FlowProcess flowProcess, FunctionCall<Tuple> functionCall )
+    {
+    TupleEntry arguments = functionCall.getArguments();
+    Tuple result = functionCall.getContext();
+
+    for( int i = 0; i < indexes.length; i++ )
+      {
+      Object value = arguments.getObject( i );
+
+      if( value instanceof Integer )
+        result.set( i, indexes[ i ].get( (Integer) value ) );
+      else
+        result.set( i, value );
+      }
+
+    functionCall.getOutputCollector().add( result );
+    }
+  }
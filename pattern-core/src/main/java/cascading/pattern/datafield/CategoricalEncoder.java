@@ -0,0 +1,66 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.datafield;
+
+import java.util.List;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.FunctionCall;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+
+/**
+ * Class CategoricalEncoder replaces the value of each argument {@link CategoricalDataField} with the
+ * {@link Integer} ordinal of the value within the field categories.
+ * <p/>
+ * Values that are not a known category are passed through unchanged. Predicates and predictors created with
+ * the category index of a field accept either the encoded ordinal or the original value.
+ * <p/>
+ * Use with {@link cascading.tuple.Fields#REPLACE}, and apply a {@link CategoricalDecoder} downstream to restore
+ * the original values.
+ */
+public class CategoricalEncoder extends CategoricalCoder
+  {
+  public CategoricalEncoder( List<CategoricalDataField> dataFields )
+    {
+    super( dataFields, createFields( dataFields, false ) );
+    }
+
+  @Override
+  public void operate( FlowProcess flowProcess, FunctionCall<Tuple> functionCall )
+    {
+    TupleEntry arguments = functionCall.getArguments();
+    Tuple result = functionCall.getContext();
+
+    for( int i = 0; i < indexes.length; i++ )
+      {
+      Object value = arguments.getObject( i );
+      int ordinal = value instanceof String ? indexes[ i ].indexOf( (String) value ) : -1;
+
+      if( ordinal == -1 )
+        result.set( i, value );
+      else
+        result.set( i, ordinal );
+      }
+
+    functionCall.getOutputCollector().add( result );
+    }
+  }
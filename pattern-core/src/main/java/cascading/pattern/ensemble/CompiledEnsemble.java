@@ -0,0 +1,188 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.ensemble;
+
+import java.util.Arrays;
+import java.util.List;
+
+import cascading.pattern.ensemble.selection.CategoricalSelector;
+import cascading.pattern.ensemble.selection.PredictionSelector;
+import cascading.pattern.ensemble.selection.SelectionStrategy;
+import cascading.pattern.model.Spec;
+import cascading.pattern.model.tree.TreeSpec;
+import cascading.pattern.model.tree.decision.CompiledDecisionTree;
+import cascading.pattern.model.tree.decision.FinalDecision;
+import cascading.tuple.Fields;
+import cascading.tuple.TupleEntry;
+
+/**
+ * Class CompiledEnsemble is the compiled form of an {@link EnsembleSpec} of {@link TreeSpec} models bound to the
+ * positions of a set of argument fields.
+ * <p/>
+ * A CompiledEnsemble is immutable, so a single instance may be shared by any number of threads, each passing its
+ * own scratch arrays to {@link #select(cascading.tuple.TupleEntry, int[])} or
+ * {@link #predict(cascading.tuple.TupleEntry, double[])}.
+ */
+public class CompiledEnsemble
+  {
+  private final String[] categories;
+  private final CompiledDecisionTree[] trees;
+  private final SelectionStrategy selectionStrategy;
+
+  public CompiledEnsemble( EnsembleSpec<?> ensembleSpec, Fields argumentFields )
+    {
+    List<? extends Spec> modelSpecs = ensembleSpec.getModelSpecs();
+
+    this.categories = ensembleSpec.getCategoriesArray();
+    this.trees = new CompiledDecisionTree[ modelSpecs.size() ];
+    this.selectionStrategy = ensembleSpec.getSelectionStrategy();
+
+    // the ensemble is cached as a whole, so member trees are kept out of the cache
+    for( int i = 0; i < modelSpecs.size(); i++ )
+      trees[ i ] = ( (TreeSpec) modelSpecs.get( i ) ).compileDecisionTree( categories, argumentFields );
+    }
+
+  /**
+   * Returns the number of categories, the size of the scratch array required by
+   * {@link #select(cascading.tuple.TupleEntry, int[])}.
+   *
+   * @return the category count
+   */
+  public int getCategoryCount()
+    {
+    return categories.length;
+    }
+
+  /**
+   * Returns the number of models, the size of the scratch array required by
+   * {@link #predict(cascading.tuple.TupleEntry, double[])}.
+   *
+   * @return the model count
+   */
+  public int getModelCount()
+    {
+    return trees.length;
+    }
+
+  /**
+   * Returns the category at the given index, or null if the index is -1, no category was selected.
+   *
+   * @param index the category index
+   * @return the category or null
+   */
+  public String getCategory( int index )
+    {
+    return index == -1 ? null : categories[ index ];
+    }
+
+  /**
+   * Method select writes the votes of every model into the given scratch array and returns the index of the
+   * category chosen by the {@link CategoricalSelector}.
+   * <p/>
+   * Models making no decision do not vote. If no model votes, -1 is returned.
+   *
+   * @param arguments the arguments
+   * @param votes     the scratch array, of at least {@link #getCategoryCount()} elements
+   * @return the index of the selected category, or -1
+   */
+  public int select( TupleEntry arguments, int[] votes )
+    {
+    Arrays.fill( votes, 0 ); // clear before use
+
+    for( CompiledDecisionTree tree : trees )
+      {
+      FinalDecision decision = tree.decide( arguments );
+
+      if( decision != null && decision.getIndex() != -1 )
+        votes[ decision.getIndex() ]++;
+      }
+
+    return select( (CategoricalSelector) selectionStrategy, votes );
+    }
+
+  /**
+   * Method predict writes the prediction of every model into the given scratch array and returns the value
+   * chosen by the {@link PredictionSelector}.
+   * <p/>
+   * Models making no decision are excluded from the selection. If no model makes a decision, {@link Double#NaN}
+   * is returned.
+   *
+   * @param arguments   the arguments
+   * @param predictions the scratch array, of at least {@link #getModelCount()} elements
+   * @return the selected prediction, or NaN
+   */
+  public double predict( TupleEntry arguments, double[] predictions )
+    {
+    for( int i = 0; i < trees.length; i++ )
+      {
+      FinalDecision decision = trees[ i ].decide( arguments );
+
+      predictions[ i ] = decision == null ? Double.NaN : decision.getNumericScore();
+      }
+
+    return predict( (PredictionSelector) selectionStrategy, predictions );
+    }
+
+  /**
+   * Method select returns the index selected from the given votes, or -1 if there are no votes.
+   *
+   * @param selector the selector
+   * @param votes    the votes per category
+   * @return the selected index, or -1
+   */
+  static int select( CategoricalSelector selector, int[] votes )
+    {
+    for( int vote : votes )
+      {
+      if( vote != 0 )
+        return selector.select( votes );
+      }
+
+    return -1;
+    }
+
+  /**
+   * Method predict returns the value selected from the given predictions, skipping NaN, the value of a model
+   * making no decision. The predictions are compacted in place.
+   *
+   * @param selector    the selector
+   * @param predictions the prediction per model
+   * @return the selected prediction, or NaN if every prediction is NaN
+   */
+  static double predict( PredictionSelector selector, double[] predictions )
+    {
+    int count = 0;
+
+    for( double prediction : predictions )
+      {
+      if( prediction == prediction )
+        predictions[ count++ ] = prediction;
+      }
+
+    if( count == 0 )
+      return Double.NaN;
+
+    if( count == predictions.length )
+      return selector.predict( predictions );
+
+    return selector.predict( Arrays.copyOf( predictions, count ) );
+    }
+  }
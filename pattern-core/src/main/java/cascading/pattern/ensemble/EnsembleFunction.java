@@ -0,0 +1,170 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.ensemble;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.FunctionCall;
+import cascading.operation.OperationCall;
+import cascading.pattern.ensemble.selection.CategoricalSelector;
+import cascading.pattern.ensemble.selection.PredictionSelector;
+import cascading.pattern.model.ModelCache;
+import cascading.pattern.model.ModelScoringFunction;
+import cascading.pattern.model.Spec;
+import cascading.pattern.model.metrics.ScoringMetrics;
+import cascading.pattern.model.tree.TreeSpec;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Class EnsembleFunction evaluates every model of an {@link EnsembleSpec} against each argument tuple and applies
+ * the {@link cascading.pattern.ensemble.selection.SelectionStrategy} inline, returning the same result as
+ * {@link ParallelEnsembleAssembly} without branching the pipe, generating a key, or grouping the results.
+ * <p/>
+ * If {@link EnsembleSpec#isPredictedCategorical()} returns {@code true}, the selection strategy must be a
+ * {@link CategoricalSelector}, otherwise it must be a {@link PredictionSelector}.
+ * <p/>
+ * Currently only {@link TreeSpec} models are supported.
+ */
+public class EnsembleFunction extends ModelScoringFunction<EnsembleSpec<?>, EnsembleFunction.DecisionContext>
+  {
+  private static final Logger LOG = LoggerFactory.getLogger( EnsembleFunction.class );
+
+  private final boolean isCategorical;
+
+  protected static class DecisionContext
+    {
+    public CompiledEnsemble ensemble;
+    public int[] votes;
+    public double[] predictions;
+    }
+
+  public EnsembleFunction( EnsembleSpec<?> ensembleSpec )
+    {
+    super( ensembleSpec );
+
+    if( ensembleSpec.getModelSpecs().isEmpty() )
+      throw new IllegalArgumentException( "ensembles must have at least 1 model" );
+
+    for( Spec spec : ensembleSpec.getModelSpecs() )
+      {
+      if( !( spec instanceof TreeSpec ) )
+        throw new IllegalArgumentException( "only tree models are currently supported, got: " + spec );
+      }
+
+    this.isCategorical = ensembleSpec.isPredictedCategorical();
+
+    if( isCategorical && !( ensembleSpec.getSelectionStrategy() instanceof CategoricalSelector ) )
+      throw new IllegalArgumentException( "selection strategy must be Categorical, got: " + ensembleSpec.getSelectionStrategy() );
+
+    if( !isCategorical && !( ensembleSpec.getSelectionStrategy() instanceof PredictionSelector ) )
+      throw new IllegalArgumentException( "selection strategy must be Prediction, got: " + ensembleSpec.getSelectionStrategy() );
+    }
+
+  @Override
+  public void prepare( FlowProcess flowProcess, OperationCall<Context<DecisionContext>> operationCall )
+    {
+    super.prepare( flowProcess, operationCall );
+
+    final Fields argumentFields = operationCall.getArgumentFields();
+    String key = ModelCache.createKey( "ensemble", getSpec(), argumentFields );
+
+    DecisionContext context = new DecisionContext();
+
+    context.ensemble = ModelCache.get( key, new ModelCache.Loader<CompiledEnsemble>()
+    {
+    @Override
+    public CompiledEnsemble load()
+      {
+      return new CompiledEnsemble( getSpec(), argumentFields );
+      }
+    } );
+
+    // the compiled ensemble is shared, the scratch arrays are per context
+    context.votes = new int[ context.ensemble.getCategoryCount() ];
+    context.predictions = new double[ context.ensemble.getModelCount() ];
+
+    operationCall.getContext().payload = context;
+    }
+
+  @Override
+  public void operate( FlowProcess flowProcess, FunctionCall<Context<DecisionContext>> functionCall )
+    {
+    if( isCategorical )
+      selectCategory( functionCall );
+    else
+      selectPrediction( functionCall );
+    }
+
+  private void selectCategory( FunctionCall<Context<DecisionContext>> functionCall )
+    {
+    TupleEntry arguments = functionCall.getArguments();
+    DecisionContext context = functionCall.getContext().payload;
+    int[] votes = context.votes;
+    ScoringMetrics metrics = functionCall.getContext().metrics;
+    long start = metrics == null ? 0 : metrics.start();
+
+    String category = context.ensemble.getCategory( context.ensemble.select( arguments, votes ) );
+
+    if( metrics != null )
+      metrics.scored( arguments, start, category );
+
+    LOG.debug( "category: {}", category );
+
+    if( !getSpec().getModelSchema().isIncludePredictedCategories() )
+      {
+      functionCall.getOutputCollector().add( functionCall.getContext().result( category ) );
+      return;
+      }
+
+    Tuple result = functionCall.getContext().tuple;
+
+    result.set( 0, category );
+
+    for( int i = 0; i < votes.length; i++ )
+      result.set( i + 1, votes[ i ] );
+
+    functionCall.getOutputCollector().add( result );
+    }
+
+  private void selectPrediction( FunctionCall<Context<DecisionContext>> functionCall )
+    {
+    TupleEntry arguments = functionCall.getArguments();
+    DecisionContext context = functionCall.getContext().payload;
+    ScoringMetrics metrics = functionCall.getContext().metrics;
+    long start = metrics == null ? 0 : metrics.start();
+
+    double prediction = context.ensemble.predict( arguments, context.predictions );
+
+    if( metrics != null )
+      metrics.scored( arguments, start );
+
+    LOG.debug( "prediction: {}", prediction );
+
+    // no model made a decision
+    if( prediction != prediction )
+      functionCall.getOutputCollector().add( functionCall.getContext().result( null ) );
+    else
+      functionCall.getOutputCollector().add( functionCall.getContext().result( prediction ) );
+    }
+  }
@@ -21,6 +21,7 @@
 package cascading.pattern.ensemble;
 
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.LinkedHashSet;
@@ -31,6 +32,8 @@ import cascading.pattern.ensemble.selection.MajorityVote;
 import cascading.pattern.ensemble.selection.SelectionStrategy;
 import cascading.pattern.model.ModelSchema;
 import cascading.pattern.model.Spec;
+import cascading.pattern.model.SpecInput;
+import cascading.pattern.model.SpecOutput;
 
 
 /**
@@ -43,6 +46,10 @@ public class EnsembleSpec<S extends Spec> extends Spec implements Serializable
   protected List<S> modelSpecs = new ArrayList<S>();
   protected SelectionStrategy selectionStrategy = new MajorityVote();
 
+  protected EnsembleSpec()
+    {
+    }
+
   public EnsembleSpec( ModelSchema modelSchema )
     {
     super( modelSchema );
@@ -62,11 +69,13 @@ public class EnsembleSpec<S extends Spec> extends Spec implements Serializable
   public void addModelSpecs( List<S> modelSpec )
     {
     this.modelSpecs.addAll( modelSpec );
+    invalidateDigest();
     }
 
   public void addModelSpec( S modelSpec )
     {
     this.modelSpecs.add( modelSpec );
+    invalidateDigest();
     }
 
   public List<S> getModelSpecs()
@@ -82,6 +91,7 @@ public class EnsembleSpec<S extends Spec> extends Spec implements Serializable
   public void setSelectionStrategy( SelectionStrategy selectionStrategy )
     {
     this.selectionStrategy = selectionStrategy;
+    invalidateDigest();
     }
 
   /**
@@ -103,6 +113,27 @@ public class EnsembleSpec<S extends Spec> extends Spec implements Serializable
     return categories;
     }
 
+  @Override
+  protected void writeFields( SpecOutput output ) throws IOException
+    {
+    output.writeObject( selectionStrategy );
+    output.writeVarInt( modelSpecs.size() );
+
+    for( S modelSpec : modelSpecs )
+      output.writeSpec( modelSpec );
+    }
+
+  @Override
+  protected void readFields( SpecInput input ) throws IOException
+    {
+    selectionStrategy = (SelectionStrategy) input.readObject();
+
+    int size = input.readVarInt();
+
+    for( int i = 0; i < size; i++ )
+      modelSpecs.add( (S) input.readSpec() );
+    }
+
   @Override
   public String toString()
     {
@@ -0,0 +1,125 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.ensemble;
+
+import java.util.Arrays;
+
+import cascading.pattern.ensemble.selection.CategoricalSelector;
+import cascading.pattern.ensemble.selection.PredictionSelector;
+import cascading.pattern.ensemble.selection.SelectionStrategy;
+import cascading.pattern.model.batch.BatchScorer;
+import cascading.pattern.model.batch.ColumnBatch;
+import cascading.pattern.model.tree.decision.MappedTreeImage;
+
+/**
+ * Class MappedEnsembleBatchScorer scores a {@link ColumnBatch} against the trees of a {@link MappedEnsembleSpec}.
+ */
+public class MappedEnsembleBatchScorer implements BatchScorer
+  {
+  private final String[] categories;
+  private final MappedTreeImage image;
+  private final SelectionStrategy selectionStrategy;
+  private final int[] votes;
+  private final double[] predictions;
+
+  public MappedEnsembleBatchScorer( MappedEnsembleSpec spec )
+    {
+    this.categories = spec.getCategoriesArray();
+    this.image = spec.openImage();
+    this.selectionStrategy = spec.getSelectionStrategy();
+    this.votes = new int[ categories.length ];
+    this.predictions = new double[ image.getTreeCount() ];
+    }
+
+  @Override
+  public String[] getCategories()
+    {
+    return categories;
+    }
+
+  @Override
+  public void score( ColumnBatch batch, int[] results )
+    {
+    if( !( selectionStrategy instanceof CategoricalSelector ) )
+      throw new UnsupportedOperationException( "selection strategy must be Categorical, got: " + selectionStrategy );
+
+    CategoricalSelector selector = (CategoricalSelector) selectionStrategy;
+    int size = batch.size();
+
+    for( int row = 0; row < size; row++ )
+      results[ row ] = CompiledEnsemble.select( selector, vote( batch, row ) );
+    }
+
+  @Override
+  public void score( ColumnBatch batch, double[] results )
+    {
+    if( !( selectionStrategy instanceof PredictionSelector ) )
+      throw new UnsupportedOperationException( "selection strategy must be Prediction, got: " + selectionStrategy );
+
+    PredictionSelector selector = (PredictionSelector) selectionStrategy;
+    int size = batch.size();
+
+    for( int row = 0; row < size; row++ )
+      results[ row ] = CompiledEnsemble.predict( selector, predict( batch, row ) );
+    }
+
+  /**
+   * Returns the number of trees voting for each category for the given row, the returned array is reused.
+   *
+   * @param batch the batch
+   * @param row   the row within the batch
+   * @return the votes
+   */
+  int[] vote( ColumnBatch batch, int row )
+    {
+    Arrays.fill( votes, 0 ); // clear before use
+
+    for( int tree = 0; tree < predictions.length; tree++ )
+      {
+      int node = image.decide( tree, batch, row );
+      int index = node == -1 ? -1 : image.getCategoryIndex( tree, node );
+
+      if( index != -1 )
+        votes[ index ]++;
+      }
+
+    return votes;
+    }
+
+  /**
+   * Returns the prediction of each tree for the given row, the returned array is reused.
+   *
+   * @param batch the batch
+   * @param row   the row within the batch
+   * @return the predictions
+   */
+  double[] predict( ColumnBatch batch, int row )
+    {
+    for( int tree = 0; tree < predictions.length; tree++ )
+      {
+      int node = image.decide( tree, batch, row );
+
+      predictions[ tree ] = node == -1 ? Double.NaN : image.getNumericScore( tree, node );
+      }
+
+    return predictions;
+    }
+  }
@@ -0,0 +1,123 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.ensemble;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.FunctionCall;
+import cascading.operation.OperationCall;
+import cascading.pattern.ensemble.selection.CategoricalSelector;
+import cascading.pattern.ensemble.selection.PredictionSelector;
+import cascading.pattern.model.ModelScoringFunction;
+import cascading.pattern.model.batch.ColumnBatch;
+import cascading.pattern.model.metrics.ScoringMetrics;
+import cascading.tuple.Tuple;
+
+/**
+ * Class MappedEnsembleFunction scores each argument tuple against the trees of a {@link MappedEnsembleSpec},
+ * returning the same result as {@link EnsembleFunction}.
+ * <p/>
+ * The image is mapped when the function is prepared, and shared with every other function in the JVM reading
+ * the same file. Arguments must be in the order of the expected fields of the {@link cascading.pattern.model.ModelSchema}.
+ */
+public class MappedEnsembleFunction extends ModelScoringFunction<MappedEnsembleSpec, MappedEnsembleFunction.ImageContext>
+  {
+  private final boolean isCategorical;
+
+  protected static class ImageContext
+    {
+    public String[] categories;
+    public MappedEnsembleBatchScorer scorer;
+    public ColumnBatch batch;
+    }
+
+  public MappedEnsembleFunction( MappedEnsembleSpec spec )
+    {
+    super( spec );
+
+    this.isCategorical = spec.isPredictedCategorical();
+
+    if( isCategorical && !( spec.getSelectionStrategy() instanceof CategoricalSelector ) )
+      throw new IllegalArgumentException( "selection strategy must be Categorical, got: " + spec.getSelectionStrategy() );
+
+    if( !isCategorical && !( spec.getSelectionStrategy() instanceof PredictionSelector ) )
+      throw new IllegalArgumentException( "selection strategy must be Prediction, got: " + spec.getSelectionStrategy() );
+    }
+
+  @Override
+  public void prepare( FlowProcess flowProcess, OperationCall<Context<ImageContext>> operationCall )
+    {
+    super.prepare( flowProcess, operationCall );
+
+    ImageContext context = new ImageContext();
+
+    context.categories = getSpec().getCategoriesArray();
+    context.scorer = new MappedEnsembleBatchScorer( getSpec() );
+    context.batch = new ColumnBatch( getSpec().getModelSchema(), 1 );
+
+    operationCall.getContext().payload = context;
+    }
+
+  @Override
+  public void operate( FlowProcess flowProcess, FunctionCall<Context<ImageContext>> functionCall )
+    {
+    ImageContext context = functionCall.getContext().payload;
+    ColumnBatch batch = context.batch;
+    ScoringMetrics metrics = functionCall.getContext().metrics;
+    long start = metrics == null ? 0 : metrics.start();
+
+    batch.clear();
+    batch.add( functionCall.getArguments() );
+
+    if( !isCategorical )
+      {
+      double prediction = CompiledEnsemble.predict( (PredictionSelector) getSpec().getSelectionStrategy(), context.scorer.predict( batch, 0 ) );
+
+      if( metrics != null )
+        metrics.scored( functionCall.getArguments(), start );
+
+      // no model made a decision
+      functionCall.getOutputCollector().add( functionCall.getContext().result( prediction != prediction ? null : prediction ) );
+      return;
+      }
+
+    int[] votes = context.scorer.vote( batch, 0 );
+    int index = CompiledEnsemble.select( (CategoricalSelector) getSpec().getSelectionStrategy(), votes );
+    String category = index == -1 ? null : context.categories[ index ];
+
+    if( metrics != null )
+      metrics.scored( functionCall.getArguments(), start, category );
+
+    if( !getSpec().getModelSchema().isIncludePredictedCategories() )
+      {
+      functionCall.getOutputCollector().add( functionCall.getContext().result( category ) );
+      return;
+      }
+
+    Tuple result = functionCall.getContext().tuple;
+
+    result.set( 0, category );
+
+    for( int i = 0; i < votes.length; i++ )
+      result.set( i + 1, votes[ i ] );
+
+    functionCall.getOutputCollector().add( result );
+    }
+  }
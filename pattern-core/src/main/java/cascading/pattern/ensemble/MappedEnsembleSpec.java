@@ -0,0 +1,197 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.ensemble;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import cascading.pattern.PatternException;
+import cascading.pattern.ensemble.selection.Average;
+import cascading.pattern.ensemble.selection.MajorityVote;
+import cascading.pattern.ensemble.selection.SelectionStrategy;
+import cascading.pattern.model.ModelSchema;
+import cascading.pattern.model.Spec;
+import cascading.pattern.model.SpecInput;
+import cascading.pattern.model.SpecOutput;
+import cascading.pattern.model.batch.BatchScorer;
+import cascading.pattern.model.tree.Tree;
+import cascading.pattern.model.tree.TreeSpec;
+import cascading.pattern.model.tree.decision.MappedTreeImage;
+
+/**
+ * Class MappedEnsembleSpec defines a tree model, or an ensemble of tree models, held by a {@link MappedTreeImage}
+ * file instead of on the heap.
+ * <p/>
+ * Only the {@link ModelSchema}, the {@link SelectionStrategy} and the path of the image are serialized with this
+ * spec, so the image file must be readable by every task, typically by shipping it through a distributed cache,
+ * where the path names the file as linked into the task working directory.
+ * <p/>
+ * Use {@link #write(cascading.pattern.model.Spec, java.io.File)} to create the image of a {@link TreeSpec} or an
+ * {@link EnsembleSpec} of TreeSpec models, and score it with {@link MappedEnsembleFunction}.
+ */
+public class MappedEnsembleSpec extends Spec
+  {
+  private String path;
+  private SelectionStrategy selectionStrategy;
+
+  protected MappedEnsembleSpec()
+    {
+    }
+
+  public MappedEnsembleSpec( ModelSchema modelSchema, SelectionStrategy selectionStrategy, String path )
+    {
+    super( modelSchema );
+    this.selectionStrategy = selectionStrategy;
+    this.path = path;
+    }
+
+  /**
+   * Method write writes the trees of the given spec as a new image file and returns a spec referencing it.
+   * A single tree is given a {@link MajorityVote} or {@link Average} selection strategy.
+   *
+   * @param spec the TreeSpec or EnsembleSpec to write
+   * @param file the image file to write
+   * @return a new MappedEnsembleSpec
+   * @throws IOException
+   */
+  public static MappedEnsembleSpec write( Spec spec, File file ) throws IOException
+    {
+    List<Tree> trees = new ArrayList<Tree>();
+    SelectionStrategy selectionStrategy;
+
+    if( spec instanceof TreeSpec )
+      {
+      trees.add( ( (TreeSpec) spec ).getTree() );
+      selectionStrategy = spec.isPredictedCategorical() ? new MajorityVote() : new Average();
+      }
+    else if( spec instanceof EnsembleSpec )
+      {
+      for( Spec modelSpec : ( (EnsembleSpec<?>) spec ).getModelSpecs() )
+        {
+        if( !( modelSpec instanceof TreeSpec ) )
+          throw new IllegalArgumentException( "only tree models are currently supported, got: " + modelSpec );
+
+        trees.add( ( (TreeSpec) modelSpec ).getTree() );
+        }
+
+      selectionStrategy = ( (EnsembleSpec<?>) spec ).getSelectionStrategy();
+      }
+    else
+      {
+      throw new IllegalArgumentException( "only tree models are currently supported, got: " + spec );
+      }
+
+    MappedTreeImage.write( file, trees, spec.getCategoriesArray(), spec.getModelSchema().getInputFields() );
+
+    return new MappedEnsembleSpec( spec.getModelSchema(), selectionStrategy, file.getPath() );
+    }
+
+  public String getPath()
+    {
+    return path;
+    }
+
+  public void setPath( String path )
+    {
+    this.path = path;
+    invalidateDigest();
+    }
+
+  public SelectionStrategy getSelectionStrategy()
+    {
+    return selectionStrategy;
+    }
+
+  public void setSelectionStrategy( SelectionStrategy selectionStrategy )
+    {
+    this.selectionStrategy = selectionStrategy;
+    invalidateDigest();
+    }
+
+  /**
+   * Method openImage maps the image file, if not already mapped, and verifies it was written for the fields and
+   * categories of this spec.
+   *
+   * @return the image
+   */
+  public MappedTreeImage openImage()
+    {
+    MappedTreeImage image;
+
+    try
+      {
+      image = MappedTreeImage.open( new File( path ) );
+      }
+    catch( IOException exception )
+      {
+      throw new PatternException( "unable to open mapped tree image: " + path, exception );
+      }
+
+    List<String> fieldNames = getModelSchema().getExpectedFieldNames();
+
+    if( !Arrays.asList( image.getFieldNames() ).equals( fieldNames ) )
+      throw new PatternException( "mapped tree image fields: " + Arrays.toString( image.getFieldNames() ) + ", do not match: " + fieldNames );
+
+    if( !Arrays.asList( image.getCategories() ).equals( getCategories() ) )
+      throw new PatternException( "mapped tree image categories: " + Arrays.toString( image.getCategories() ) + ", do not match: " + getCategories() );
+
+    return image;
+    }
+
+  @Override
+  public boolean isBatchSupported()
+    {
+    return true;
+    }
+
+  @Override
+  public BatchScorer createBatchScorer()
+    {
+    return new MappedEnsembleBatchScorer( this );
+    }
+
+  @Override
+  protected void writeFields( SpecOutput output ) throws IOException
+    {
+    output.writeString( path );
+    output.writeObject( selectionStrategy );
+    }
+
+  @Override
+  protected void readFields( SpecInput input ) throws IOException
+    {
+    path = input.readString();
+    selectionStrategy = (SelectionStrategy) input.readObject();
+    }
+
+  @Override
+  public String toString()
+    {
+    final StringBuilder sb = new StringBuilder( "MappedEnsembleSpec{" );
+    sb.append( "path='" ).append( path ).append( '\'' );
+    sb.append( ", selectionStrategy=" ).append( selectionStrategy );
+    sb.append( '}' );
+    return sb.toString();
+    }
+  }
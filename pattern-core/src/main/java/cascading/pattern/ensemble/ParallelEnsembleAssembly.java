@@ -23,7 +23,7 @@ package cascading.pattern.ensemble;
 import java.util.ArrayList;
 import java.util.List;
 
-import cascading.pattern.ensemble.function.InsertGUID;
+import cascading.pattern.ensemble.function.InsertKey;
 import cascading.pattern.ensemble.selection.CategoricalSelectionBuffer;
 import cascading.pattern.ensemble.selection.PredictionSelectionBuffer;
 import cascading.pattern.ensemble.selection.SelectionBuffer;
@@ -58,9 +58,9 @@ import org.slf4j.LoggerFactory;
  * throw an IllegalArgumentException. The chosen {@link cascading.pattern.ensemble.selection.SelectionStrategy} must
  * support parallel execution.
  * <p/>
- * If {@link cascading.pattern.model.ModelSchema#getKeyFields()} is {@link Fields#NONE}, a globally unique ID will
- * be created to that the results of each independent model can be grouped together so the SelectionStrategy can
- * be applied. This field will be discarded downstream.
+ * If {@link cascading.pattern.model.ModelSchema#getKeyFields()} is {@link Fields#NONE}, a {@code long} key unique
+ * within the flow step will be created so that the results of each independent model can be grouped together so
+ * the SelectionStrategy can be applied. This field will be discarded downstream.
  * <p/>
  * Currently ParallelEnsembleAssembly does not support associating models with predicates.
  */
@@ -85,8 +85,8 @@ public class ParallelEnsembleAssembly extends SubAssembly
 
     if( keyFields.isNone() )
       {
-      keyFields = new Fields( "ensemble-primary-key", String.class );
-      pipe = new InsertGUID( pipe, keyFields );
+      keyFields = new Fields( "ensemble-primary-key", long.class );
+      pipe = new InsertKey( pipe, keyFields );
       }
 
     boolean isCategorical = ensembleSpec.isPredictedCategorical();
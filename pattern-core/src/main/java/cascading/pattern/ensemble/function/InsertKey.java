@@ -0,0 +1,43 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.ensemble.function;
+
+import cascading.pipe.Each;
+import cascading.pipe.Pipe;
+import cascading.pipe.SubAssembly;
+import cascading.tuple.Fields;
+
+/**
+ * Class InsertKey creates a {@code long} key unique within the current flow step via a {@link KeyFunction}.
+ * <p/>
+ * Unlike {@link InsertGUID}, the key is not random, it is cheap to create, serialize, and sort.
+ */
+public class InsertKey extends SubAssembly
+  {
+  public InsertKey( Pipe previous, Fields declaredFields )
+    {
+    super( previous );
+
+    previous = new Each( previous, Fields.NONE, new KeyFunction( declaredFields ), Fields.ALL );
+
+    setTails( previous );
+    }
+  }
@@ -0,0 +1,88 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.ensemble.function;
+
+import cascading.flow.FlowProcess;
+import cascading.operation.BaseOperation;
+import cascading.operation.Function;
+import cascading.operation.FunctionCall;
+import cascading.operation.OperationCall;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+
+/**
+ * Class KeyFunction creates a {@code long} key unique within the current flow step, combining the current slice
+ * number from {@link FlowProcess#getCurrentSliceNum()} with a counter local to the slice.
+ * <p/>
+ * The slice number is held in the upper {@value #SLICE_SHIFT} bits, and the counter in the lower bits.
+ * <p/>
+ * This Function returns {@code false} for {@link cascading.operation.Operation#isSafe()}, preventing
+ * duplicate keys from being generated for the same record.
+ */
+public class KeyFunction extends BaseOperation<KeyFunction.Context> implements Function<KeyFunction.Context>
+  {
+  static final int SLICE_SHIFT = 40;
+  static final long MAX_COUNT = ( 1L << SLICE_SHIFT ) - 1;
+
+  protected static class Context
+    {
+    public final Tuple tuple = Tuple.size( 1 );
+    public long slice;
+    public long count = 0;
+    }
+
+  public KeyFunction( Fields fieldDeclaration )
+    {
+    super( 0, fieldDeclaration );
+
+    if( fieldDeclaration.size() != 1 )
+      throw new IllegalArgumentException( "field declaration may only declare one field, got: " + fieldDeclaration );
+    }
+
+  @Override
+  public boolean isSafe()
+    {
+    return false;
+    }
+
+  @Override
+  public void prepare( FlowProcess flowProcess, OperationCall<Context> operationCall )
+    {
+    Context context = new Context();
+
+    context.slice = (long) flowProcess.getCurrentSliceNum() << SLICE_SHIFT;
+
+    operationCall.setContext( context );
+    }
+
+  @Override
+  public void operate( FlowProcess flowProcess, FunctionCall<Context> functionCall )
+    {
+    Context context = functionCall.getContext();
+
+    if( context.count > MAX_COUNT )
+      throw new IllegalStateException( "exceeded maximum number of keys per slice: " + MAX_COUNT );
+
+    context.tuple.set( 0, context.slice | context.count++ );
+
+    functionCall.getOutputCollector().add( context.tuple );
+    }
+  }
@@ -37,7 +37,7 @@ public class Average extends PredictionSelector
     }
 
   @Override
-  double predict( double[] results )
+  public double predict( double[] results )
     {
     double sum = 0;
 
@@ -88,18 +88,23 @@ public class CategoricalSelectionBuffer extends SelectionBuffer<CategoricalSelec
     Arrays.fill( results, 0 ); // clear before use
 
     Iterator<TupleEntry> iterator = bufferCall.getArgumentsIterator();
+    boolean hasVotes = false;
 
     while( iterator.hasNext() )
       {
       TupleEntry next = iterator.next();
       Integer category = (Integer) next.getObject( 0 );
 
+      // models making no decision do not vote
+      if( category == null || category == -1 )
+        continue;
+
       results[ category ] += 1;
+      hasVotes = true;
       }
 
-    int index = selection.select( results );
-
-    String category = categories[ index ];
+    // no category is selected if no model voted
+    String category = hasVotes ? categories[ selection.select( results ) ] : null;
 
     LOG.debug( "category: {}", category );
 
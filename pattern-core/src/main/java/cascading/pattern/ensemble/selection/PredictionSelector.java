@@ -25,5 +25,5 @@ package cascading.pattern.ensemble.selection;
  */
 public abstract class PredictionSelector extends SelectionStrategy
   {
-  abstract double predict( double[] results );
+  public abstract double predict( double[] results );
   }
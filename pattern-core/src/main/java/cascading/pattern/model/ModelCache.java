@@ -0,0 +1,210 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.model;
+
+import java.lang.ref.SoftReference;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+
+import cascading.pattern.PatternException;
+import cascading.tuple.Fields;
+
+/**
+ * Class ModelCache is a JVM-wide cache of compiled model state, such as a
+ * {@link cascading.pattern.model.tree.decision.CompiledDecisionTree}, so it is built once and shared by every
+ * function, pipe and task within the JVM scoring the same model, including tasks run by a reused JVM.
+ * <p/>
+ * Entries are keyed by a digest of the {@link Spec} and the layout of the argument {@link Fields}, see
+ * {@link #createKey(String, Spec, cascading.tuple.Fields)}, so cached values must be immutable.
+ * <p/>
+ * The cache holds at most {@link #CACHE_SIZE} entries, set by the system property of the same name, evicting the least
+ * recently used. Values are softly referenced so they may also be reclaimed by the garbage collector under memory
+ * pressure. A size of zero disables the cache.
+ * <p/>
+ * Values are loaded outside the cache lock, so a slow load does not block callers of other keys. Concurrent callers
+ * of the same missing key wait on a single load, see {@link #get(String, Loader)}.
+ */
+public final class ModelCache
+  {
+  public static final String CACHE_SIZE = "pattern.model.cache.size";
+
+  private static final int maxSize = Integer.getInteger( CACHE_SIZE, 64 );
+
+  private static final Map<String, SoftReference<Object>> cache = new LinkedHashMap<String, SoftReference<Object>>( 16, 0.75f, true )
+  {
+  @Override
+  protected boolean removeEldestEntry( Map.Entry<String, SoftReference<Object>> eldest )
+    {
+    return size() > maxSize;
+    }
+  };
+
+  /** Loads in progress, by key, guarded by the cache lock. */
+  private static final Map<String, FutureTask<Object>> loading = new HashMap<String, FutureTask<Object>>();
+
+  /**
+   * Interface Loader creates the value of a missing cache entry.
+   *
+   * @param <V> the value type
+   */
+  public interface Loader<V>
+    {
+    V load();
+    }
+
+  private ModelCache()
+    {
+    }
+
+  /**
+   * Method get returns the value cached for the given key, loading and caching it if missing or reclaimed.
+   * <p/>
+   * The first caller of a missing key loads the value in its own thread, without holding the cache lock. Concurrent
+   * callers of the same key wait for that load rather than building the value again. If the load fails, every
+   * waiting caller fails with the same exception and nothing is cached, so the next caller loads again.
+   *
+   * @param key    the key
+   * @param loader the loader of a missing value
+   * @param <V>    the value type
+   * @return the value
+   */
+  public static <V> V get( String key, final Loader<V> loader )
+    {
+    if( maxSize <= 0 )
+      return loader.load();
+
+    FutureTask<Object> task;
+    boolean isLoader = false;
+
+    synchronized( cache )
+      {
+      SoftReference<Object> reference = cache.get( key );
+      Object value = reference == null ? null : reference.get();
+
+      if( value != null )
+        return (V) value;
+
+      task = loading.get( key );
+
+      if( task == null )
+        {
+        task = new FutureTask<Object>( new Callable<Object>()
+        {
+        @Override
+        public Object call() throws Exception
+          {
+          return loader.load();
+          }
+        } );
+
+        loading.put( key, task );
+        isLoader = true;
+        }
+      }
+
+    if( isLoader )
+      {
+      task.run();
+
+      synchronized( cache )
+        {
+        loading.remove( key );
+
+        Object value = getValue( task );
+
+        cache.put( key, new SoftReference<Object>( value ) );
+
+        return (V) value;
+        }
+      }
+
+    return (V) getValue( task );
+    }
+
+  private static Object getValue( FutureTask<Object> task )
+    {
+    try
+      {
+      return task.get();
+      }
+    catch( ExecutionException exception )
+      {
+      Throwable cause = exception.getCause();
+
+      if( cause instanceof RuntimeException )
+        throw (RuntimeException) cause;
+
+      if( cause instanceof Error )
+        throw (Error) cause;
+
+      throw new PatternException( "failed loading cached value", cause );
+      }
+    catch( InterruptedException exception )
+      {
+      Thread.currentThread().interrupt();
+      throw new PatternException( "interrupted while waiting for cached value", exception );
+      }
+    }
+
+  /**
+   * Method createKey returns a key for the given kind of value compiled from the given spec against the given
+   * argument fields.
+   *
+   * @param kind           the kind of value
+   * @param spec           the model spec
+   * @param argumentFields the argument fields
+   * @return the key
+   */
+  public static String createKey( String kind, Spec spec, Fields argumentFields )
+    {
+    return createKey( kind, spec.getDigest(), argumentFields );
+    }
+
+  public static String createKey( String kind, String digest, Fields argumentFields )
+    {
+    StringBuilder key = new StringBuilder( kind ).append( ':' ).append( digest );
+
+    for( int i = 0; i < argumentFields.size(); i++ )
+      key.append( ',' ).append( argumentFields.get( i ) ).append( ':' ).append( argumentFields.getType( i ) );
+
+    return key.toString();
+    }
+
+  public static int size()
+    {
+    synchronized( cache )
+      {
+      return cache.size();
+      }
+    }
+
+  public static void clear()
+    {
+    synchronized( cache )
+      {
+      cache.clear();
+      }
+    }
+  }
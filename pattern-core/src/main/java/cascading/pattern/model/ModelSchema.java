@@ -33,6 +33,7 @@ import java.util.Map;
 import cascading.pattern.datafield.CategoricalDataField;
 import cascading.pattern.datafield.ContinuousDataField;
 import cascading.pattern.datafield.DataField;
+import cascading.pattern.util.StringIndex;
 import cascading.tuple.Fields;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -164,6 +165,43 @@ public class ModelSchema implements Serializable
     return null;
     }
 
+  /**
+   * Returns the expected fields that are {@link CategoricalDataField} instances of type {@link String}. The values
+   * of these fields may be encoded as category ordinals by a {@link cascading.pattern.datafield.CategoricalEncoder}.
+   *
+   * @return the encodable fields
+   */
+  public List<CategoricalDataField> getEncodableFields()
+    {
+    List<CategoricalDataField> dataFields = new ArrayList<CategoricalDataField>();
+
+    for( String name : expectedFields )
+      {
+      DataField dataField = dictionary.get( name );
+
+      if( dataField instanceof CategoricalDataField && dataField.getType() == String.class )
+        dataFields.add( (CategoricalDataField) dataField );
+      }
+
+    return dataFields;
+    }
+
+  /**
+   * Returns the category index of the given expected field if it is encodable, otherwise null.
+   *
+   * @param name the field name
+   * @return the category index or null
+   */
+  public StringIndex getCategoryIndex( String name )
+    {
+    DataField dataField = getExpectedField( name );
+
+    if( dataField instanceof CategoricalDataField && dataField.getType() == String.class )
+      return ( (CategoricalDataField) dataField ).getCategoryIndex();
+
+    return null;
+    }
+
   public void addExpectedFields( Fields fields )
     {
     List<DataField> dataFields = toDataFields( fields );
@@ -0,0 +1,404 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.model;
+
+import java.util.Map;
+
+import cascading.pattern.ensemble.CompiledEnsemble;
+import cascading.pattern.ensemble.EnsembleFunction;
+import cascading.pattern.ensemble.EnsembleSpec;
+import cascading.pattern.model.clustering.ClusteringFunction;
+import cascading.pattern.model.clustering.ClusteringSpec;
+import cascading.pattern.model.clustering.CompiledClustering;
+import cascading.pattern.model.generalregression.CategoricalRegressionFunction;
+import cascading.pattern.model.generalregression.CompiledRegression;
+import cascading.pattern.model.generalregression.GeneralRegressionSpec;
+import cascading.pattern.model.generalregression.PredictionRegressionFunction;
+import cascading.pattern.model.tree.TreeFunction;
+import cascading.pattern.model.tree.TreeSpec;
+import cascading.pattern.model.tree.decision.CompiledDecisionTree;
+import cascading.pattern.model.tree.decision.FinalDecision;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+
+/**
+ * Class ModelScorer scores single records against a {@link Spec} outside of a Cascading flow.
+ * <p/>
+ * The values given to the score methods are ordered by {@link ModelSchema#getInputFields()}, and the results are
+ * ordered by {@link ModelSchema#getDeclaredFields()}, exactly as the equivalent {@link ModelScoringFunction} would
+ * emit them. The compiled model is shared through the {@link ModelCache}, so a scorer and a flow in the same JVM
+ * evaluate the same instance.
+ * <p/>
+ * A ModelScorer is thread-safe. Each thread reuses its own argument tuple and scratch arrays, so scoring does not
+ * allocate beyond boxing the results.
+ */
+public class ModelScorer
+  {
+  private final Spec spec;
+  private final Fields inputFields;
+  private final Fields declaredFields;
+  private final String[] inputNames;
+  private final Evaluator evaluator;
+
+  private final ThreadLocal<Scratch> scratch = new ThreadLocal<Scratch>()
+  {
+  @Override
+  protected Scratch initialValue()
+    {
+    return new Scratch( inputFields, evaluator );
+    }
+  };
+
+  static class Scratch
+    {
+    final Tuple tuple;
+    final TupleEntry arguments;
+    final Object[] result;
+    final double[] doubles;
+    final int[] ints;
+
+    Scratch( Fields inputFields, Evaluator evaluator )
+      {
+      this.tuple = Tuple.size( inputFields.size() );
+      this.arguments = new TupleEntry( inputFields, tuple );
+      this.result = new Object[ evaluator.resultSize ];
+      this.doubles = new double[ evaluator.doublesSize ];
+      this.ints = new int[ evaluator.intsSize ];
+      }
+    }
+
+  abstract static class Evaluator
+    {
+    final int resultSize;
+    final int doublesSize;
+    final int intsSize;
+
+    Evaluator( int resultSize, int doublesSize, int intsSize )
+      {
+      this.resultSize = resultSize;
+      this.doublesSize = doublesSize;
+      this.intsSize = intsSize;
+      }
+
+    abstract void score( Scratch scratch, Object[] result );
+    }
+
+  /**
+   * Creates a scorer for the given spec, choosing the same evaluation the matching {@link ModelScoringFunction}
+   * would apply. A {@link GeneralRegressionSpec} with a categorical predicted field is classified, otherwise it
+   * is predicted.
+   *
+   * @param spec the model spec
+   */
+  public ModelScorer( Spec spec )
+    {
+    this( spec, createEvaluator( spec, spec.isPredictedCategorical(), false ) );
+    }
+
+  /**
+   * Creates a scorer returning the same results as the given function.
+   *
+   * @param function the scoring function
+   */
+  public ModelScorer( ModelScoringFunction function )
+    {
+    this( function.getSpec(), createEvaluator( function ) );
+    }
+
+  private ModelScorer( Spec spec, Evaluator evaluator )
+    {
+    this.spec = spec;
+    this.inputFields = spec.getModelSchema().getInputFields();
+    this.declaredFields = spec.getModelSchema().getDeclaredFields();
+    this.inputNames = new String[ inputFields.size() ];
+    this.evaluator = evaluator;
+
+    for( int i = 0; i < inputNames.length; i++ )
+      inputNames[ i ] = inputFields.get( i ).toString();
+    }
+
+  public Spec getSpec()
+    {
+    return spec;
+    }
+
+  public Fields getInputFields()
+    {
+    return inputFields;
+    }
+
+  public Fields getDeclaredFields()
+    {
+    return declaredFields;
+    }
+
+  /**
+   * Method score returns the predicted value, a category or a prediction, for the given input values.
+   *
+   * @param values the input values, ordered by {@link #getInputFields()}
+   * @return the predicted value
+   */
+  public Object score( Object[] values )
+    {
+    Scratch current = scratch.get();
+
+    setValues( current, values );
+
+    evaluator.score( current, current.result );
+
+    return current.result[ 0 ];
+    }
+
+  /**
+   * Method score returns the predicted value for the given named input values. Missing names are scored as null.
+   *
+   * @param values the input values, keyed by field name
+   * @return the predicted value
+   */
+  public Object score( Map<String, Object> values )
+    {
+    Scratch current = scratch.get();
+
+    for( int i = 0; i < inputNames.length; i++ )
+      current.tuple.set( i, values.get( inputNames[ i ] ) );
+
+    evaluator.score( current, current.result );
+
+    return current.result[ 0 ];
+    }
+
+  /**
+   * Method score writes every declared result, the predicted value followed by any predicted category scores,
+   * into the given array.
+   *
+   * @param values the input values, ordered by {@link #getInputFields()}
+   * @param result the result array, of at least {@link #getDeclaredFields()} size
+   */
+  public void score( Object[] values, Object[] result )
+    {
+    if( result.length < evaluator.resultSize )
+      throw new IllegalArgumentException( "result array must have at least " + evaluator.resultSize + " elements, got: " + result.length );
+
+    Scratch current = scratch.get();
+
+    setValues( current, values );
+
+    evaluator.score( current, result );
+    }
+
+  private void setValues( Scratch current, Object[] values )
+    {
+    if( values.length != inputNames.length )
+      throw new IllegalArgumentException( "expected " + inputNames.length + " values, got: " + values.length );
+
+    for( int i = 0; i < values.length; i++ )
+      current.tuple.set( i, values[ i ] );
+    }
+
+  private static Evaluator createEvaluator( ModelScoringFunction function )
+    {
+    Spec spec = function.getSpec();
+
+    if( function instanceof TreeFunction )
+      return createEvaluator( spec, false, ( (TreeFunction) function ).isReturnIndex() );
+
+    if( function instanceof CategoricalRegressionFunction )
+      return createEvaluator( spec, true, false );
+
+    if( function instanceof PredictionRegressionFunction )
+      return createEvaluator( spec, false, false );
+
+    if( function instanceof ClusteringFunction || function instanceof EnsembleFunction )
+      return createEvaluator( spec, spec.isPredictedCategorical(), false );
+
+    throw new IllegalArgumentException( "unsupported function: " + function.getClass().getName() );
+    }
+
+  private static Evaluator createEvaluator( Spec spec, boolean isCategorical, boolean returnIndex )
+    {
+    Fields inputFields = spec.getModelSchema().getInputFields();
+    int resultSize = spec.getModelSchema().getDeclaredFields().size();
+    boolean includeCategories = spec.getModelSchema().isIncludePredictedCategories();
+
+    if( spec instanceof TreeSpec )
+      return createTreeEvaluator( (TreeSpec) spec, inputFields, resultSize, returnIndex );
+
+    if( spec instanceof GeneralRegressionSpec && isCategorical )
+      return createCategoricalEvaluator( (GeneralRegressionSpec) spec, inputFields, resultSize, includeCategories );
+
+    if( spec instanceof GeneralRegressionSpec )
+      return createPredictionEvaluator( (GeneralRegressionSpec) spec, inputFields, resultSize );
+
+    if( spec instanceof ClusteringSpec )
+      return createClusteringEvaluator( (ClusteringSpec) spec, inputFields, resultSize, includeCategories );
+
+    if( spec instanceof EnsembleSpec )
+      return createEnsembleEvaluator( (EnsembleSpec<?>) spec, inputFields, resultSize, includeCategories );
+
+    throw new IllegalArgumentException( "unsupported spec: " + spec.getClass().getName() );
+    }
+
+  private static Evaluator createTreeEvaluator( TreeSpec spec, Fields inputFields, int resultSize, final boolean returnIndex )
+    {
+    final CompiledDecisionTree tree = spec.createCompiledDecisionTree( spec.getCategoriesArray(), inputFields );
+
+    return new Evaluator( resultSize, 0, 0 )
+    {
+    @Override
+    void score( Scratch scratch, Object[] result )
+      {
+      FinalDecision decision = tree.decide( scratch.arguments );
+
+      if( decision == null ) // no predicate matched a missing value
+        result[ 0 ] = null;
+      else
+        result[ 0 ] = returnIndex ? decision.getIndex() : decision.getScore();
+      }
+    };
+    }
+
+  private static Evaluator createCategoricalEvaluator( final GeneralRegressionSpec spec, final Fields inputFields, int resultSize, final boolean includeCategories )
+    {
+    final CompiledRegression regression = ModelCache.get( ModelCache.createKey( "regression", spec, inputFields ), new ModelCache.Loader<CompiledRegression>()
+    {
+    @Override
+    public CompiledRegression load()
+      {
+      return new CompiledRegression( spec, inputFields );
+      }
+    } );
+
+    return new Evaluator( resultSize, regression.getSize(), 0 )
+    {
+    @Override
+    void score( Scratch scratch, Object[] result )
+      {
+      int index = regression.classify( scratch.arguments, scratch.doubles );
+
+      result[ 0 ] = regression.getTargetCategory( index );
+
+      if( includeCategories )
+        {
+        for( int i = 0; i < scratch.doubles.length; i++ )
+          result[ i + 1 ] = scratch.doubles[ i ];
+        }
+      }
+    };
+    }
+
+  private static Evaluator createPredictionEvaluator( final GeneralRegressionSpec spec, final Fields inputFields, int resultSize )
+    {
+    final CompiledRegression regression = ModelCache.get( ModelCache.createKey( "regression", spec, inputFields ), new ModelCache.Loader<CompiledRegression>()
+    {
+    @Override
+    public CompiledRegression load()
+      {
+      return new CompiledRegression( spec, inputFields );
+      }
+    } );
+
+    return new Evaluator( resultSize, 0, 0 )
+    {
+    @Override
+    void score( Scratch scratch, Object[] result )
+      {
+      result[ 0 ] = regression.predict( scratch.arguments );
+      }
+    };
+    }
+
+  private static Evaluator createClusteringEvaluator( final ClusteringSpec spec, final Fields inputFields, int resultSize, final boolean includeCategories )
+    {
+    final CompiledClustering clustering = ModelCache.get( ModelCache.createKey( "clustering", spec, inputFields ), new ModelCache.Loader<CompiledClustering>()
+    {
+    @Override
+    public CompiledClustering load()
+      {
+      return new CompiledClustering( spec, inputFields );
+      }
+    } );
+
+    return new Evaluator( resultSize, clustering.getSize(), 0 )
+    {
+    @Override
+    void score( Scratch scratch, Object[] result )
+      {
+      int index = clustering.select( scratch.arguments, scratch.doubles );
+
+      result[ 0 ] = clustering.getTargetCategory( index );
+
+      if( includeCategories )
+        {
+        for( int i = 0; i < scratch.doubles.length; i++ )
+          result[ i + 1 ] = scratch.doubles[ i ];
+        }
+      }
+    };
+    }
+
+  private static Evaluator createEnsembleEvaluator( final EnsembleSpec<?> spec, final Fields inputFields, int resultSize, final boolean includeCategories )
+    {
+    for( Spec modelSpec : spec.getModelSpecs() )
+      {
+      if( !( modelSpec instanceof TreeSpec ) )
+        throw new IllegalArgumentException( "only tree models are currently supported, got: " + modelSpec );
+      }
+
+    final CompiledEnsemble ensemble = ModelCache.get( ModelCache.createKey( "ensemble", spec, inputFields ), new ModelCache.Loader<CompiledEnsemble>()
+    {
+    @Override
+    public CompiledEnsemble load()
+      {
+      return new CompiledEnsemble( spec, inputFields );
+      }
+    } );
+
+    if( !spec.isPredictedCategorical() )
+      {
+      return new Evaluator( resultSize, ensemble.getModelCount(), 0 )
+      {
+      @Override
+      void score( Scratch scratch, Object[] result )
+        {
+        double prediction = ensemble.predict( scratch.arguments, scratch.doubles );
+
+        result[ 0 ] = prediction != prediction ? null : prediction;
+        }
+      };
+      }
+
+    return new Evaluator( resultSize, 0, ensemble.getCategoryCount() )
+    {
+    @Override
+    void score( Scratch scratch, Object[] result )
+      {
+      result[ 0 ] = ensemble.getCategory( ensemble.select( scratch.arguments, scratch.ints ) );
+
+      if( includeCategories )
+        {
+        for( int i = 0; i < scratch.ints.length; i++ )
+          result[ i + 1 ] = scratch.ints[ i ];
+        }
+      }
+    };
+    }
+  }
@@ -26,6 +26,8 @@ import cascading.flow.FlowProcess;
 import cascading.operation.BaseOperation;
 import cascading.operation.Function;
 import cascading.operation.OperationCall;
+import cascading.pattern.model.metrics.ScoringMetrics;
+import cascading.tuple.Fields;
 import cascading.tuple.Tuple;
 
 
@@ -35,6 +37,10 @@ public abstract class ModelScoringFunction<S extends Spec, P> extends BaseOperat
 
   protected S spec;
   protected boolean isSafe = SAFE_DEFAULT;
+  protected boolean isExplain = false;
+  /** position of the first explanation value in the result tuple */
+  protected int explanationPos;
+  protected String metricsName;
 
   protected static interface Result<In, Out> extends Serializable
     {
@@ -46,6 +52,8 @@ public abstract class ModelScoringFunction<S extends Spec, P> extends BaseOperat
     {
     public final Tuple tuple;
     public Payload payload;
+    /** null unless metrics are enabled, see {@link ScoringMetrics} */
+    public ScoringMetrics metrics;
 
     public Context( int size )
       {
@@ -72,11 +80,68 @@ public abstract class ModelScoringFunction<S extends Spec, P> extends BaseOperat
     this.spec = spec;
     }
 
+  /**
+   * Constructor ModelScoringFunction creates a function that, if explain is true, appends the
+   * {@link Spec#getExplanationFields()} of the spec to every result, see {@link #isExplain()}.
+   *
+   * @param spec    the spec
+   * @param safe    true if the function is safe
+   * @param explain true if results should be explained
+   */
+  protected ModelScoringFunction( S spec, boolean safe, boolean explain )
+    {
+    super( spec.getModelSchema().getInputFields().size(), createDeclaredFields( spec, explain ) );
+    this.spec = spec;
+    this.isSafe = safe;
+    this.isExplain = explain;
+    this.explanationPos = spec.getModelSchema().getDeclaredFields().size();
+    }
+
+  private static Fields createDeclaredFields( Spec spec, boolean explain )
+    {
+    Fields declaredFields = spec.getModelSchema().getDeclaredFields();
+
+    if( explain )
+      declaredFields = declaredFields.append( spec.getExplanationFields() );
+
+    return declaredFields;
+    }
+
   public S getSpec()
     {
     return spec;
     }
 
+  /**
+   * Returns the name the metrics of this function are reported under, by default the simple class name of the spec.
+   *
+   * @return the metrics name
+   */
+  public String getMetricsName()
+    {
+    if( metricsName == null )
+      return spec.getClass().getSimpleName();
+
+    return metricsName;
+    }
+
+  public void setMetricsName( String metricsName )
+    {
+    this.metricsName = metricsName;
+    }
+
+  /**
+   * Returns true if this function appends the values of {@link Spec#getExplanationFields()} to every result,
+   * computed along with the score, for example the decision path of a tree or the term contributions of a
+   * regression. The explanation values follow the {@link ModelSchema#getDeclaredFields()} values in the result.
+   *
+   * @return true if results are explained
+   */
+  public boolean isExplain()
+    {
+    return isExplain;
+    }
+
   @Override
   public boolean isSafe()
     {
@@ -87,5 +152,16 @@ public abstract class ModelScoringFunction<S extends Spec, P> extends BaseOperat
   public void prepare( FlowProcess flowProcess, OperationCall<ModelScoringFunction.Context<P>> operationCall )
     {
     operationCall.setContext( new ModelScoringFunction.Context( getFieldDeclaration().size() ) );
+
+    operationCall.getContext().metrics = ScoringMetrics.create( flowProcess, getMetricsName() );
+    }
+
+  @Override
+  public void cleanup( FlowProcess flowProcess, OperationCall<ModelScoringFunction.Context<P>> operationCall )
+    {
+    ScoringMetrics metrics = operationCall.getContext().metrics;
+
+    if( metrics != null )
+      metrics.flush();
     }
   }
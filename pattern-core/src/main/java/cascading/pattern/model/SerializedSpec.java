@@ -0,0 +1,85 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.model;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectStreamException;
+import java.io.Serializable;
+
+import cascading.pattern.PatternException;
+import com.google.common.hash.Hashing;
+
+/**
+ * Class SerializedSpec is the serialized form of a {@link Spec}, either the spec in its binary format
+ * or the path of a local file holding it.
+ */
+class SerializedSpec implements Serializable
+  {
+  private final byte[] bytes;
+  private final String path;
+
+  SerializedSpec( byte[] bytes )
+    {
+    this.bytes = bytes;
+    this.path = null;
+    }
+
+  SerializedSpec( String path )
+    {
+    this.bytes = null;
+    this.path = path;
+    }
+
+  private Object readResolve() throws ObjectStreamException
+    {
+    try
+      {
+      InputStream inputStream;
+
+      if( path != null )
+        inputStream = new BufferedInputStream( new FileInputStream( path ) );
+      else
+        inputStream = new ByteArrayInputStream( bytes );
+
+      try
+        {
+        Spec spec = Spec.readFrom( inputStream );
+
+        if( bytes != null )
+          spec.digest = Hashing.md5().hashBytes( bytes ).toString();
+
+        return spec;
+        }
+      finally
+        {
+        inputStream.close();
+        }
+      }
+    catch( IOException exception )
+      {
+      throw new PatternException( "unable to read spec" + ( path == null ? "" : " from: " + path ), exception );
+      }
+    }
+  }
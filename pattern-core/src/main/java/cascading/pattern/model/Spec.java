@@ -20,17 +20,39 @@
 
 package cascading.pattern.model;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectStreamException;
+import java.io.OutputStream;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.List;
 
+import cascading.pattern.PatternException;
 import cascading.pattern.datafield.CategoricalDataField;
 import cascading.pattern.datafield.DataField;
+import cascading.pattern.model.batch.BatchScorer;
+import cascading.tuple.Fields;
+import com.google.common.hash.Hashing;
 
 
+/**
+ * Class Spec is the base class for model specifications.
+ * <p/>
+ * When serialized, as when a scoring function is written into a job configuration, a Spec whose type supports it is
+ * written in the compact binary format of {@link #writeTo(java.io.OutputStream)} instead of as a Java object graph.
+ * A type supports the binary format if it declares both {@link #writeFields(SpecOutput)} and
+ * {@link #readFields(SpecInput)} itself and has a no-arg constructor, so a sub-class that adds state but does
+ * not override them is written by Java serialization and does not lose its state.
+ * <p/>
+ * Large models need not be written into the configuration at all, see {@link #setExternalPath(String)}.
+ */
 public abstract class Spec implements Serializable
   {
   protected ModelSchema modelSchema = null;
+  private String externalPath;
+  transient String digest;
 
   protected Spec()
     {
@@ -44,6 +66,7 @@ public abstract class Spec implements Serializable
   public void setModelSchema( ModelSchema modelSchema )
     {
     this.modelSchema = modelSchema;
+    invalidateDigest();
     }
 
   public ModelSchema getModelSchema()
@@ -79,4 +102,200 @@ public abstract class Spec implements Serializable
 
     return categories.toArray( new String[ categories.size() ] );
     }
+
+  public String getExternalPath()
+    {
+    return externalPath;
+    }
+
+  /**
+   * Method setExternalPath sets the path of a local file holding this spec, as written by
+   * {@link #writeTo(java.io.OutputStream)}. When set, only the path is serialized with this spec, and the spec
+   * is read from the file when deserialized.
+   * <p/>
+   * This allows a large model to be shipped through a distributed cache instead of the job configuration, where the
+   * path names the file as linked into the task working directory.
+   *
+   * @param externalPath the local path of the spec file, may be null
+   */
+  public void setExternalPath( String externalPath )
+    {
+    this.externalPath = externalPath;
+    invalidateDigest();
+    }
+
+  /**
+   * Returns a digest of the binary form of this spec, or of its serialized form if the binary format is not
+   * supported. Specs with equal digests define the same model.
+   * <p/>
+   * The digest is calculated on first use and dropped by every setter of a spec. Changes made through the objects a
+   * spec holds, such as its {@link ModelSchema}, are not seen, so these must not be modified once the spec is scored.
+   *
+   * @return the digest as a hex string
+   */
+  public String getDigest()
+    {
+    if( digest != null )
+      return digest;
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    try
+      {
+      writeTo( bytes );
+      }
+    catch( IOException exception )
+      {
+      throw new PatternException( "unable to write spec", exception );
+      }
+
+    digest = Hashing.md5().hashBytes( bytes.toByteArray() ).toString();
+
+    return digest;
+    }
+
+  /** Drops the digest of this spec, to be called by every method that modifies the spec. */
+  protected void invalidateDigest()
+    {
+    digest = null;
+    }
+
+  /**
+   * Method writeTo writes this spec and its {@link ModelSchema} to the given stream in a compact binary format.
+   * A spec whose type does not support the binary format, see {@link #isBinarySupported()}, is written as a
+   * serialized Java object within the stream.
+   *
+   * @param outputStream the stream to write to
+   * @throws IOException
+   */
+  public void writeTo( OutputStream outputStream ) throws IOException
+    {
+    SpecOutput output = new SpecOutput( outputStream );
+
+    output.writeSpec( this );
+    output.flush();
+    }
+
+  /**
+   * Method readFrom reads a spec written by {@link #writeTo(java.io.OutputStream)}.
+   *
+   * @param inputStream the stream to read from
+   * @return the spec
+   * @throws IOException
+   */
+  public static Spec readFrom( InputStream inputStream ) throws IOException
+    {
+    return new SpecInput( inputStream ).readSpec();
+    }
+
+  /**
+   * Returns true if the type of this spec declares {@link #writeFields(SpecOutput)} and
+   * {@link #readFields(SpecInput)} itself, rather than inheriting them, and has a no-arg constructor, which need
+   * not be public, to be created with when read.
+   *
+   * @return true if this spec can be written in the binary format
+   */
+  public boolean isBinarySupported()
+    {
+    try
+      {
+      getClass().getDeclaredMethod( "writeFields", SpecOutput.class );
+      getClass().getDeclaredMethod( "readFields", SpecInput.class );
+      getClass().getDeclaredConstructor();
+
+      return true;
+      }
+    catch( NoSuchMethodException exception )
+      {
+      return false;
+      }
+    }
+
+  /**
+   * Method writeFields writes the state of this spec, other than the {@link ModelSchema}, to the given output.
+   * Spec has no other state, so writes nothing.
+   *
+   * @param output the output
+   * @throws IOException
+   */
+  protected void writeFields( SpecOutput output ) throws IOException
+    {
+    }
+
+  /**
+   * Method readFields reads the state written by {@link #writeFields(SpecOutput)}. It is called on an instance
+   * created by the no-arg constructor after the {@link ModelSchema} is set.
+   *
+   * @param input the input
+   * @throws IOException
+   */
+  protected void readFields( SpecInput input ) throws IOException
+    {
+    }
+
+  protected Object writeReplace() throws ObjectStreamException
+    {
+    if( externalPath != null )
+      return new SerializedSpec( externalPath );
+
+    if( !isBinarySupported() )
+      return this;
+
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    try
+      {
+      writeTo( bytes );
+      }
+    catch( IOException exception )
+      {
+      throw new PatternException( "unable to write spec", exception );
+      }
+
+    return new SerializedSpec( bytes.toByteArray() );
+    }
+
+  /**
+   * Returns true if this model can be scored in batches by {@link #createBatchScorer()}. By default false.
+   *
+   * @return true if batch scoring is supported
+   */
+  public boolean isBatchSupported()
+    {
+    return false;
+    }
+
+  /**
+   * Method createBatchScorer returns a new {@link BatchScorer} for this model, scoring
+   * {@link cascading.pattern.model.batch.ColumnBatch} instances created from the current ModelSchema.
+   *
+   * @return a new BatchScorer, or null if {@link #isBatchSupported()} returns false
+   */
+  public BatchScorer createBatchScorer()
+    {
+    return null;
+    }
+
+  /**
+   * Returns the fields a scoring function appends to {@link ModelSchema#getDeclaredFields()} when created in
+   * explanation mode, see {@link ModelScoringFunction#isExplain()}. Field names are prefixed with the predicted
+   * field name, so they do not collide with the incoming fields.
+   *
+   * @return the explanation fields
+   * @throws UnsupportedOperationException if this model cannot explain its scores
+   */
+  public Fields getExplanationFields()
+    {
+    throw new UnsupportedOperationException( "explanation not supported by: " + getClass().getSimpleName() );
+    }
+
+  protected String getExplanationFieldName( String... names )
+    {
+    StringBuilder builder = new StringBuilder( getModelSchema().getPredictedFields().get( 0 ).toString() );
+
+    for( String name : names )
+      builder.append( '.' ).append( name );
+
+    return builder.toString();
+    }
   }
@@ -0,0 +1,330 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectStreamClass;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Type;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import cascading.pattern.PatternException;
+import cascading.pattern.datafield.CategoricalDataField;
+import cascading.pattern.datafield.ContinuousDataField;
+import cascading.pattern.datafield.DataField;
+
+/**
+ * Class SpecInput reads {@link Spec} instances written by {@link SpecOutput}.
+ */
+public class SpecInput
+  {
+  private static final Map<String, Class> PRIMITIVES = new HashMap<String, Class>();
+
+  static
+    {
+    for( Class type : new Class[]{boolean.class, byte.class, char.class, short.class, int.class, long.class,
+                                  float.class, double.class, void.class} )
+      PRIMITIVES.put( type.getName(), type );
+    }
+
+  private final DataInputStream input;
+  private final List<String> strings = new ArrayList<String>();
+  private final List<ModelSchema> schemas = new ArrayList<ModelSchema>();
+
+  public SpecInput( InputStream inputStream ) throws IOException
+    {
+    this.input = new DataInputStream( inputStream );
+
+    if( input.readInt() != SpecOutput.MAGIC )
+      throw new PatternException( "not a serialized model spec" );
+
+    int version = readVarInt();
+
+    if( version != SpecOutput.VERSION )
+      throw new PatternException( "unsupported model spec version: " + version );
+    }
+
+  public int readVarInt() throws IOException
+    {
+    int value = 0;
+
+    for( int shift = 0; shift < 32; shift += 7 )
+      {
+      int current = input.readUnsignedByte();
+
+      value |= ( current & 0x7F ) << shift;
+
+      if( ( current & 0x80 ) == 0 )
+        return value;
+      }
+
+    throw new PatternException( "malformed varint" );
+    }
+
+  public long readVarLong() throws IOException
+    {
+    long value = 0;
+
+    for( int shift = 0; shift < 64; shift += 7 )
+      {
+      int current = input.readUnsignedByte();
+
+      value |= (long) ( current & 0x7F ) << shift;
+
+      if( ( current & 0x80 ) == 0 )
+        return value;
+      }
+
+    throw new PatternException( "malformed varint" );
+    }
+
+  public double readDouble() throws IOException
+    {
+    return input.readDouble();
+    }
+
+  public boolean readBoolean() throws IOException
+    {
+    return input.readBoolean();
+    }
+
+  public String readString() throws IOException
+    {
+    int index = readVarInt();
+
+    if( index == 0 )
+      return null;
+
+    if( index > 1 )
+      return strings.get( index - 2 );
+
+    byte[] bytes = new byte[ readVarInt() ];
+
+    input.readFully( bytes );
+
+    String value = new String( bytes, SpecOutput.UTF8 );
+
+    strings.add( value );
+
+    return value;
+    }
+
+  public List<String> readStrings() throws IOException
+    {
+    int size = readVarInt();
+    List<String> values = new ArrayList<String>( size );
+
+    for( int i = 0; i < size; i++ )
+      values.add( readString() );
+
+    return values;
+    }
+
+  public double[] readDoubles() throws IOException
+    {
+    double[] values = new double[ readVarInt() ];
+
+    for( int i = 0; i < values.length; i++ )
+      values[ i ] = readDouble();
+
+    return values;
+    }
+
+  public Object readObject() throws IOException
+    {
+    int tag = readVarInt();
+
+    switch( tag )
+      {
+      case SpecOutput.NULL:
+        return null;
+      case SpecOutput.STRING:
+        return readString();
+      case SpecOutput.DOUBLE:
+        return readDouble();
+      case SpecOutput.INTEGER:
+        return input.readInt();
+      case SpecOutput.LONG:
+        return input.readLong();
+      case SpecOutput.BOOLEAN:
+        return readBoolean();
+      case SpecOutput.FLOAT:
+        return input.readFloat();
+      case SpecOutput.SERIALIZED:
+        return readSerialized();
+      default:
+        throw new PatternException( "unknown value tag: " + tag );
+      }
+    }
+
+  private Object readSerialized() throws IOException
+    {
+    byte[] bytes = new byte[ readVarInt() ];
+
+    input.readFully( bytes );
+
+    ObjectInputStream objectInput = new ObjectInputStream( new ByteArrayInputStream( bytes ) )
+    {
+    @Override
+    protected Class<?> resolveClass( ObjectStreamClass streamClass ) throws IOException, ClassNotFoundException
+      {
+      try
+        {
+        return loadClass( streamClass.getName() );
+        }
+      catch( ClassNotFoundException exception )
+        {
+        return super.resolveClass( streamClass );
+        }
+      }
+    };
+
+    try
+      {
+      return objectInput.readObject();
+      }
+    catch( ClassNotFoundException exception )
+      {
+      throw new PatternException( "unable to deserialize value", exception );
+      }
+    finally
+      {
+      objectInput.close();
+      }
+    }
+
+  public Type readType() throws IOException
+    {
+    String name = readString();
+
+    if( name == null )
+      return (Type) readObject();
+
+    Class type = PRIMITIVES.get( name );
+
+    if( type != null )
+      return type;
+
+    try
+      {
+      return loadClass( name );
+      }
+    catch( ClassNotFoundException exception )
+      {
+      throw new PatternException( "unable to load type: " + name, exception );
+      }
+    }
+
+  /**
+   * Reads a spec written by {@link SpecOutput#writeSpec(Spec)}.
+   *
+   * @return the spec
+   * @throws IOException
+   */
+  public Spec readSpec() throws IOException
+    {
+    String className = readString();
+
+    if( className == null )
+      return (Spec) readObject();
+
+    Spec spec;
+
+    try
+      {
+      Constructor<?> constructor = loadClass( className ).getDeclaredConstructor();
+
+      constructor.setAccessible( true );
+
+      spec = (Spec) constructor.newInstance();
+      }
+    catch( Exception exception )
+      {
+      throw new PatternException( "unable to create spec: " + className, exception );
+      }
+
+    spec.setModelSchema( readSchema() );
+    spec.readFields( this );
+
+    return spec;
+    }
+
+  private ModelSchema readSchema() throws IOException
+    {
+    int index = readVarInt();
+
+    if( index != 0 )
+      return schemas.get( index - 1 );
+
+    ModelSchema schema = new ModelSchema();
+
+    schemas.add( schema );
+
+    int size = readVarInt();
+
+    for( int i = 0; i < size; i++ )
+      {
+      DataField dataField = readDataField();
+
+      schema.dictionary.put( dataField.getName(), dataField );
+      }
+
+    schema.keyFields.addAll( readStrings() );
+    schema.expectedFields.addAll( readStrings() );
+    schema.predictedFields.addAll( readStrings() );
+    schema.includePredictedCategories = readBoolean();
+
+    return schema;
+    }
+
+  private DataField readDataField() throws IOException
+    {
+    int kind = readVarInt();
+
+    if( kind == SpecOutput.DATA_FIELD_SERIALIZED )
+      return (DataField) readObject();
+
+    String name = readString();
+    Type type = readType();
+
+    if( kind == SpecOutput.DATA_FIELD_CATEGORICAL )
+      return new CategoricalDataField( name, type, readStrings() );
+
+    return new ContinuousDataField( name, type );
+    }
+
+  private static Class<?> loadClass( String name ) throws ClassNotFoundException
+    {
+    ClassLoader classLoader = Thread.currentThread().getContextClassLoader();
+
+    if( classLoader == null )
+      classLoader = SpecInput.class.getClassLoader();
+
+    return Class.forName( name, false, classLoader );
+    }
+  }
@@ -0,0 +1,308 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.model;
+
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.util.HashMap;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+
+import cascading.pattern.datafield.CategoricalDataField;
+import cascading.pattern.datafield.ContinuousDataField;
+import cascading.pattern.datafield.DataField;
+
+/**
+ * Class SpecOutput writes {@link Spec} instances in the compact binary model format read by {@link SpecInput}.
+ * <p/>
+ * Integers are written as varints, doubles as raw IEEE 754 bits, and every string, typically a field name or
+ * category, is written once as length prefixed UTF-8 and then referred to by its index. A {@link ModelSchema}
+ * shared by several specs, as with the members of an ensemble, is written only once.
+ * <p/>
+ * Values that are not strings, boxed primitives or booleans fall back to Java serialization.
+ */
+public class SpecOutput
+  {
+  static final int MAGIC = 0x50534D46; // PSMF
+  static final int VERSION = 3;
+
+  static final Charset UTF8 = Charset.forName( "UTF-8" );
+
+  static final int NULL = 0;
+  static final int STRING = 1;
+  static final int DOUBLE = 2;
+  static final int INTEGER = 3;
+  static final int LONG = 4;
+  static final int BOOLEAN = 5;
+  static final int FLOAT = 6;
+  static final int SERIALIZED = 7;
+
+  static final int DATA_FIELD_CONTINUOUS = 0;
+  static final int DATA_FIELD_CATEGORICAL = 1;
+  static final int DATA_FIELD_SERIALIZED = 2;
+
+  private final DataOutputStream output;
+  private final Map<String, Integer> strings = new HashMap<String, Integer>();
+  private final Map<ModelSchema, Integer> schemas = new IdentityHashMap<ModelSchema, Integer>();
+
+  public SpecOutput( OutputStream outputStream ) throws IOException
+    {
+    this.output = new DataOutputStream( outputStream );
+
+    output.writeInt( MAGIC );
+    writeVarInt( VERSION );
+    }
+
+  public void writeVarInt( int value ) throws IOException
+    {
+    while( ( value & ~0x7F ) != 0 )
+      {
+      output.writeByte( ( value & 0x7F ) | 0x80 );
+      value >>>= 7;
+      }
+
+    output.writeByte( value );
+    }
+
+  public void writeVarLong( long value ) throws IOException
+    {
+    while( ( value & ~0x7FL ) != 0 )
+      {
+      output.writeByte( (int) ( value & 0x7F ) | 0x80 );
+      value >>>= 7;
+      }
+
+    output.writeByte( (int) value );
+    }
+
+  public void writeDouble( double value ) throws IOException
+    {
+    output.writeDouble( value );
+    }
+
+  public void writeBoolean( boolean value ) throws IOException
+    {
+    output.writeBoolean( value );
+    }
+
+  /**
+   * Writes the given string, or a reference to it if already written. The string may be null.
+   *
+   * @param value the string
+   * @throws IOException
+   */
+  public void writeString( String value ) throws IOException
+    {
+    if( value == null )
+      {
+      writeVarInt( 0 );
+      return;
+      }
+
+    Integer index = strings.get( value );
+
+    if( index != null )
+      {
+      writeVarInt( index + 2 );
+      return;
+      }
+
+    strings.put( value, strings.size() );
+
+    byte[] bytes = value.getBytes( UTF8 );
+
+    writeVarInt( 1 );
+    writeVarInt( bytes.length );
+    output.write( bytes );
+    }
+
+  public void writeStrings( List<String> values ) throws IOException
+    {
+    writeVarInt( values.size() );
+
+    for( String value : values )
+      writeString( value );
+    }
+
+  public void writeDoubles( double[] values ) throws IOException
+    {
+    writeVarInt( values.length );
+
+    for( double value : values )
+      writeDouble( value );
+    }
+
+  /**
+   * Writes the given value, tagged with its type so it is read back as the same boxed type.
+   *
+   * @param value the value, may be null
+   * @throws IOException
+   */
+  public void writeObject( Object value ) throws IOException
+    {
+    if( value == null )
+      {
+      writeVarInt( NULL );
+      }
+    else if( value instanceof String )
+      {
+      writeVarInt( STRING );
+      writeString( (String) value );
+      }
+    else if( value instanceof Double )
+      {
+      writeVarInt( DOUBLE );
+      writeDouble( (Double) value );
+      }
+    else if( value instanceof Integer )
+      {
+      writeVarInt( INTEGER );
+      output.writeInt( (Integer) value );
+      }
+    else if( value instanceof Long )
+      {
+      writeVarInt( LONG );
+      output.writeLong( (Long) value );
+      }
+    else if( value instanceof Boolean )
+      {
+      writeVarInt( BOOLEAN );
+      writeBoolean( (Boolean) value );
+      }
+    else if( value instanceof Float )
+      {
+      writeVarInt( FLOAT );
+      output.writeFloat( (Float) value );
+      }
+    else
+      {
+      writeVarInt( SERIALIZED );
+      writeSerialized( value );
+      }
+    }
+
+  private void writeSerialized( Object value ) throws IOException
+    {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream objectOutput = new ObjectOutputStream( bytes );
+
+    objectOutput.writeObject( value );
+    objectOutput.close();
+
+    writeVarInt( bytes.size() );
+    bytes.writeTo( output );
+    }
+
+  /**
+   * Writes the given field type, a {@link Class} is written by name, any other type is serialized.
+   *
+   * @param type the type, may be null
+   * @throws IOException
+   */
+  public void writeType( Type type ) throws IOException
+    {
+    if( type instanceof Class )
+      writeString( ( (Class) type ).getName() );
+    else
+      {
+      writeString( null );
+      writeObject( type );
+      }
+    }
+
+  /**
+   * Writes the given spec, its class, its {@link ModelSchema}, and the fields written by
+   * {@link Spec#writeFields(SpecOutput)}. A spec that does not support the binary format, see
+   * {@link Spec#isBinarySupported()}, is written by Java serialization instead.
+   *
+   * @param spec the spec
+   * @throws IOException
+   */
+  public void writeSpec( Spec spec ) throws IOException
+    {
+    if( !spec.isBinarySupported() )
+      {
+      writeString( null );
+      writeObject( spec );
+      return;
+      }
+
+    writeString( spec.getClass().getName() );
+    writeSchema( spec.getModelSchema() );
+
+    spec.writeFields( this );
+    }
+
+  private void writeSchema( ModelSchema schema ) throws IOException
+    {
+    Integer index = schemas.get( schema );
+
+    if( index != null )
+      {
+      writeVarInt( index + 1 );
+      return;
+      }
+
+    schemas.put( schema, schemas.size() );
+
+    writeVarInt( 0 );
+    writeVarInt( schema.dictionary.size() );
+
+    for( DataField dataField : schema.dictionary.values() )
+      writeDataField( dataField );
+
+    writeStrings( schema.keyFields );
+    writeStrings( schema.expectedFields );
+    writeStrings( schema.predictedFields );
+    writeBoolean( schema.includePredictedCategories );
+    }
+
+  private void writeDataField( DataField dataField ) throws IOException
+    {
+    if( dataField.getClass() == CategoricalDataField.class )
+      writeVarInt( DATA_FIELD_CATEGORICAL );
+    else if( dataField.getClass() == ContinuousDataField.class )
+      writeVarInt( DATA_FIELD_CONTINUOUS );
+    else
+      {
+      writeVarInt( DATA_FIELD_SERIALIZED );
+      writeObject( dataField );
+      return;
+      }
+
+    writeString( dataField.getName() );
+    writeType( dataField.getType() );
+
+    if( dataField instanceof CategoricalDataField )
+      writeStrings( ( (CategoricalDataField) dataField ).getCategories() );
+    }
+
+  public void flush() throws IOException
+    {
+    output.flush();
+    }
+  }
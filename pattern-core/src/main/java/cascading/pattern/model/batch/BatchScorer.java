@@ -0,0 +1,54 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.model.batch;
+
+/**
+ * Interface BatchScorer scores every row of a {@link ColumnBatch} in a single call.
+ * <p/>
+ * Implementations are created by {@link cascading.pattern.model.Spec#createBatchScorer()} and may hold scratch
+ * space, so a BatchScorer is not thread safe.
+ */
+public interface BatchScorer
+  {
+  /**
+   * Returns the predicted categories, indexed by the results of {@link #score(ColumnBatch, int[])}, or
+   * an empty array if the model is not categorical.
+   *
+   * @return the categories
+   */
+  String[] getCategories();
+
+  /**
+   * Writes the index of the predicted category of each row into results, or -1 if no category could be selected.
+   *
+   * @param batch   the input rows
+   * @param results the category index of each row
+   */
+  void score( ColumnBatch batch, int[] results );
+
+  /**
+   * Writes the predicted value of each row into results.
+   *
+   * @param batch   the input rows
+   * @param results the prediction of each row
+   */
+  void score( ColumnBatch batch, double[] results );
+  }
@@ -0,0 +1,201 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.model.batch;
+
+import cascading.pattern.model.ModelSchema;
+import cascading.pattern.util.StringIndex;
+import cascading.tuple.Fields;
+import cascading.tuple.TupleEntry;
+
+/**
+ * Class ColumnBatch holds a block of rows for the input fields of a {@link ModelSchema} as one primitive
+ * array per field, so a {@link BatchScorer} can score many rows at once in tight loops.
+ * <p/>
+ * Categorical string fields, those with a category index in the ModelSchema, are held as {@code int} category
+ * ordinals, where {@link #MISSING} marks a missing value and {@link #UNKNOWN} a value that is not a declared
+ * category. All other fields are held as {@code double} values, where {@link Double#NaN} marks a missing value.
+ * <p/>
+ * Rows may be appended with {@link #add(cascading.tuple.TupleEntry)}, or the column arrays may be filled directly
+ * followed by a call to {@link #setSize(int)}.
+ * <p/>
+ * A ColumnBatch is not thread safe.
+ */
+public class ColumnBatch
+  {
+  public static final int MISSING = -1;
+  public static final int UNKNOWN = -2;
+
+  private final Fields fields;
+  private final StringIndex[] indexes;
+  private final double[][] doubles;
+  private final int[][] ordinals;
+  private final int capacity;
+  private int size = 0;
+
+  public ColumnBatch( ModelSchema modelSchema, int capacity )
+    {
+    if( capacity < 1 )
+      throw new IllegalArgumentException( "capacity must be greater than zero, got: " + capacity );
+
+    this.fields = modelSchema.getInputFields();
+    this.capacity = capacity;
+    this.indexes = new StringIndex[ fields.size() ];
+    this.doubles = new double[ fields.size() ][];
+    this.ordinals = new int[ fields.size() ][];
+
+    for( int i = 0; i < fields.size(); i++ )
+      {
+      indexes[ i ] = modelSchema.getCategoryIndex( fields.get( i ).toString() );
+
+      if( indexes[ i ] != null )
+        ordinals[ i ] = new int[ capacity ];
+      else
+        doubles[ i ] = new double[ capacity ];
+      }
+    }
+
+  public Fields getFields()
+    {
+    return fields;
+    }
+
+  public int getCapacity()
+    {
+    return capacity;
+    }
+
+  public int size()
+    {
+    return size;
+    }
+
+  public void setSize( int size )
+    {
+    if( size < 0 || size > capacity )
+      throw new IllegalArgumentException( "size must be between 0 and " + capacity + ", got: " + size );
+
+    this.size = size;
+    }
+
+  public boolean isFull()
+    {
+    return size == capacity;
+    }
+
+  public void clear()
+    {
+    size = 0;
+    }
+
+  public boolean isCategorical( int pos )
+    {
+    return ordinals[ pos ] != null;
+    }
+
+  /**
+   * Returns the backing array of the given numeric column.
+   *
+   * @param pos the field position
+   * @return the column values
+   */
+  public double[] getDoubles( int pos )
+    {
+    if( doubles[ pos ] == null )
+      throw new IllegalArgumentException( "field is categorical: " + fields.get( pos ) );
+
+    return doubles[ pos ];
+    }
+
+  /**
+   * Returns the backing array of the given categorical column.
+   *
+   * @param pos the field position
+   * @return the column ordinals
+   */
+  public int[] getOrdinals( int pos )
+    {
+    if( ordinals[ pos ] == null )
+      throw new IllegalArgumentException( "field is not categorical: " + fields.get( pos ) );
+
+    return ordinals[ pos ];
+    }
+
+  public boolean isMissing( int pos, int row )
+    {
+    if( ordinals[ pos ] != null )
+      return ordinals[ pos ][ row ] == MISSING;
+
+    double value = doubles[ pos ][ row ];
+
+    return value != value;
+    }
+
+  /**
+   * Appends the values of the given tupleEntry, in the same order as the ModelSchema input fields, as a new row.
+   *
+   * @param tupleEntry the row values
+   */
+  public void add( TupleEntry tupleEntry )
+    {
+    if( size == capacity )
+      throw new IllegalStateException( "batch is full, capacity: " + capacity );
+
+    for( int i = 0; i < indexes.length; i++ )
+      {
+      Object value = tupleEntry.getObject( i );
+
+      if( ordinals[ i ] != null )
+        ordinals[ i ][ size ] = toOrdinal( indexes[ i ], value );
+      else if( value == null )
+        doubles[ i ][ size ] = Double.NaN;
+      else if( value instanceof Number )
+        doubles[ i ][ size ] = ( (Number) value ).doubleValue();
+      else
+        doubles[ i ][ size ] = tupleEntry.getDouble( i );
+      }
+
+    size++;
+    }
+
+  private static int toOrdinal( StringIndex index, Object value )
+    {
+    if( value == null )
+      return MISSING;
+
+    if( value instanceof Integer ) // already encoded
+      return (Integer) value;
+
+    int ordinal = index.indexOf( value.toString() );
+
+    return ordinal == -1 ? UNKNOWN : ordinal;
+    }
+
+  @Override
+  public String toString()
+    {
+    final StringBuilder sb = new StringBuilder( "ColumnBatch{" );
+    sb.append( "fields=" ).append( fields );
+    sb.append( ", size=" ).append( size );
+    sb.append( ", capacity=" ).append( capacity );
+    sb.append( '}' );
+    return sb.toString();
+    }
+  }
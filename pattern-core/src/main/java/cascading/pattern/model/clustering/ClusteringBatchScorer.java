@@ -0,0 +1,116 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.model.clustering;
+
+import java.util.List;
+
+import cascading.pattern.model.batch.BatchScorer;
+import cascading.pattern.model.batch.ColumnBatch;
+import cascading.pattern.model.clustering.measure.SquaredEuclideanMeasure;
+
+/**
+ * Class ClusteringBatchScorer assigns every row of a {@link ColumnBatch} to the nearest {@link Cluster} of a
+ * {@link ClusteringSpec}.
+ * <p/>
+ * Only the {@link SquaredEuclideanMeasure} and its subclasses are supported, distances are accumulated one
+ * column at a time. As with {@link ClusteringFunction}, a missing value is treated as zero.
+ */
+public class ClusteringBatchScorer implements BatchScorer
+  {
+  private final String[] categories;
+  private final double[][] points;
+
+  private double[] minimums;
+  private double[] distances;
+
+  public ClusteringBatchScorer( ClusteringSpec spec )
+    {
+    if( !( spec.getComparisonMeasure() instanceof SquaredEuclideanMeasure ) )
+      throw new UnsupportedOperationException( "batch scoring does not support comparison measure: " + spec.getComparisonMeasure() );
+
+    List<Cluster> clusters = spec.getOrderedClusters();
+
+    this.categories = new String[ clusters.size() ];
+    this.points = new double[ clusters.size() ][];
+
+    for( int i = 0; i < clusters.size(); i++ )
+      {
+      categories[ i ] = clusters.get( i ).getTargetCategory();
+      points[ i ] = clusters.get( i ).getPoints();
+      }
+    }
+
+  @Override
+  public String[] getCategories()
+    {
+    return categories;
+    }
+
+  @Override
+  public void score( ColumnBatch batch, double[] results )
+    {
+    throw new UnsupportedOperationException( "clustering is categorical, use score( ColumnBatch, int[] )" );
+    }
+
+  @Override
+  public void score( ColumnBatch batch, int[] results )
+    {
+    int size = batch.size();
+
+    if( distances == null || distances.length < batch.getCapacity() )
+      {
+      distances = new double[ batch.getCapacity() ];
+      minimums = new double[ batch.getCapacity() ];
+      }
+
+    for( int cluster = 0; cluster < points.length; cluster++ )
+      {
+      double[] clusterPoints = points[ cluster ];
+
+      for( int row = 0; row < size; row++ )
+        distances[ row ] = 0.0d;
+
+      for( int i = 0; i < clusterPoints.length; i++ )
+        {
+        double[] column = batch.getDoubles( i );
+        double point = clusterPoints[ i ];
+
+        for( int row = 0; row < size; row++ )
+          {
+          double value = column[ row ];
+          double difference = ( value != value ? 0.0d : value ) - point;
+
+          distances[ row ] += difference * difference;
+          }
+        }
+
+      // sqrt is monotonic, so the nearest cluster is the same for both measures
+      for( int row = 0; row < size; row++ )
+        {
+        if( cluster == 0 || distances[ row ] < minimums[ row ] )
+          {
+          minimums[ row ] = distances[ row ];
+          results[ row ] = cluster;
+          }
+        }
+      }
+    }
+  }
@@ -23,9 +23,11 @@ package cascading.pattern.model.clustering;
 import cascading.flow.FlowProcess;
 import cascading.operation.FunctionCall;
 import cascading.operation.OperationCall;
+import cascading.pattern.model.ModelCache;
 import cascading.pattern.model.ModelScoringFunction;
+import cascading.pattern.model.metrics.ScoringMetrics;
+import cascading.tuple.Fields;
 import cascading.tuple.Tuple;
-import com.google.common.primitives.Doubles;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,7 +45,7 @@ public class ClusteringFunction extends ModelScoringFunction<ClusteringSpec, Clu
 
   protected static class EvaluatorContext
     {
-    public ClusterEvaluator[] evaluators;
+    public CompiledClustering clustering;
     public double[] results;
     }
 
@@ -52,49 +54,72 @@ public class ClusteringFunction extends ModelScoringFunction<ClusteringSpec, Clu
     super( clusteringParam );
     }
 
+  /**
+   * Constructor ClusteringFunction creates a new instance that, if explain is true, also emits the distance to
+   * every cluster, see {@link ClusteringSpec#getExplanationFields()}.
+   *
+   * @param clusteringParam the clustering spec
+   * @param explain         true if the selected cluster should be explained
+   */
+  public ClusteringFunction( ClusteringSpec clusteringParam, boolean explain )
+    {
+    super( clusteringParam, SAFE_DEFAULT, explain );
+    }
+
   @Override
   public void prepare( FlowProcess flowProcess, OperationCall<Context<EvaluatorContext>> operationCall )
     {
     super.prepare( flowProcess, operationCall );
 
+    final Fields argumentFields = operationCall.getArgumentFields();
+    String key = ModelCache.createKey( "clustering", getSpec(), argumentFields );
+
     operationCall.getContext().payload = new EvaluatorContext();
 
-    operationCall.getContext().payload.evaluators = getSpec().getClusterEvaluator( operationCall.getArgumentFields() );
-    operationCall.getContext().payload.results = new double[ getSpec().getClusters().size() ];
+    operationCall.getContext().payload.clustering = ModelCache.get( key, new ModelCache.Loader<CompiledClustering>()
+    {
+    @Override
+    public CompiledClustering load()
+      {
+      return new CompiledClustering( getSpec(), argumentFields );
+      }
+    } );
+
+    // the compiled clustering is shared, the result array is per context
+    operationCall.getContext().payload.results = new double[ operationCall.getContext().payload.clustering.getSize() ];
     }
 
   @Override
   public void operate( FlowProcess flowProcess, FunctionCall<Context<EvaluatorContext>> functionCall )
     {
-    ClusterEvaluator[] evaluators = functionCall.getContext().payload.evaluators;
+    CompiledClustering clustering = functionCall.getContext().payload.clustering;
     double[] results = functionCall.getContext().payload.results;
+    ScoringMetrics metrics = functionCall.getContext().metrics;
+    long start = metrics == null ? 0 : metrics.start();
 
-    for( int i = 0; i < evaluators.length; i++ )
-      results[ i ] = evaluators[ i ].evaluate( functionCall.getArguments() );
-
-    LOG.debug( "results: {}", results );
+    int index = clustering.select( functionCall.getArguments(), results );
 
-    // calc min distance
-    double min = Doubles.min( results );
-    int index = Doubles.indexOf( results, min );
+    String category = clustering.getTargetCategory( index );
 
-    String category = evaluators[ index ].getTargetCategory();
+    if( metrics != null )
+      metrics.scored( functionCall.getArguments(), start, category );
 
     LOG.debug( "category: {}", category );
 
+    Tuple result = functionCall.getContext().result( category );
+
     // emit distance, and intermediate cluster category scores
-    if( !getSpec().getModelSchema().isIncludePredictedCategories() )
+    if( getSpec().getModelSchema().isIncludePredictedCategories() )
       {
-      functionCall.getOutputCollector().add( functionCall.getContext().result( category ) );
-      return;
+      for( int i = 0; i < results.length; i++ )
+        result.set( i + 1, results[ i ] );
       }
 
-    Tuple result = functionCall.getContext().tuple;
-
-    result.set( 0, category );
-
-    for( int i = 0; i < results.length; i++ )
-      result.set( i + 1, results[ i ] );
+    if( isExplain )
+      {
+      for( int i = 0; i < results.length; i++ )
+        result.set( explanationPos + i, results[ i ] );
+      }
 
     functionCall.getOutputCollector().add( result );
     }
@@ -20,6 +20,7 @@
 
 package cascading.pattern.model.clustering;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -28,8 +29,12 @@ import cascading.pattern.datafield.CategoricalDataField;
 import cascading.pattern.datafield.DataField;
 import cascading.pattern.model.ModelSchema;
 import cascading.pattern.model.Spec;
+import cascading.pattern.model.SpecInput;
+import cascading.pattern.model.SpecOutput;
+import cascading.pattern.model.batch.BatchScorer;
 import cascading.pattern.model.clustering.compare.CompareFunction;
 import cascading.pattern.model.clustering.measure.ComparisonMeasure;
+import cascading.pattern.model.clustering.measure.SquaredEuclideanMeasure;
 import cascading.tuple.Fields;
 import com.google.common.base.Function;
 import com.google.common.collect.Ordering;
@@ -59,6 +64,7 @@ public class ClusteringSpec extends Spec
   public void setDefaultCompareFunction( CompareFunction defaultCompareFunction )
     {
     this.defaultCompareFunction = defaultCompareFunction;
+    invalidateDigest();
     }
 
   public CompareFunction getDefaultCompareFunction()
@@ -69,6 +75,7 @@ public class ClusteringSpec extends Spec
   public void setComparisonMeasure( ComparisonMeasure comparisonMeasure )
     {
     this.comparisonMeasure = comparisonMeasure;
+    invalidateDigest();
     }
 
   public ComparisonMeasure getComparisonMeasure()
@@ -84,6 +91,7 @@ public class ClusteringSpec extends Spec
   public void setClusters( List<Cluster> clusters )
     {
     this.clusters.clear();
+    invalidateDigest();
 
     for( Cluster cluster : clusters )
       addCluster( cluster );
@@ -97,9 +105,56 @@ public class ClusteringSpec extends Spec
     cluster.setOrdinal( getClusters().size() + 1 );
 
     this.clusters.add( cluster );
+    invalidateDigest();
     }
 
   public ClusterEvaluator[] getClusterEvaluator( Fields argumentFields )
+    {
+    List<Cluster> sorted = getOrderedClusters();
+
+    ClusterEvaluator[] clusterEvaluators = new ClusterEvaluator[ sorted.size() ];
+
+    for( int i = 0; i < sorted.size(); i++ )
+      clusterEvaluators[ i ] = new ClusterEvaluator( argumentFields, sorted.get( i ), getComparisonMeasure(), getDefaultCompareFunction() );
+
+    return clusterEvaluators;
+    }
+
+  /**
+   * Returns a field for the distance to every cluster, in category order, named after the cluster category.
+   *
+   * @return the explanation fields
+   */
+  @Override
+  public Fields getExplanationFields()
+    {
+    Fields fields = Fields.NONE;
+
+    for( Cluster cluster : getOrderedClusters() )
+      fields = fields.append( new Fields( getExplanationFieldName( "distance", cluster.getTargetCategory() ), double.class ) );
+
+    return fields;
+    }
+
+  /**
+   * Returns true if the comparison measure is a {@link SquaredEuclideanMeasure}, the only measure
+   * {@link ClusteringBatchScorer} supports.
+   *
+   * @return true if batch scoring is supported
+   */
+  @Override
+  public boolean isBatchSupported()
+    {
+    return comparisonMeasure instanceof SquaredEuclideanMeasure;
+    }
+
+  @Override
+  public BatchScorer createBatchScorer()
+    {
+    return isBatchSupported() ? new ClusteringBatchScorer( this ) : null;
+    }
+
+  List<Cluster> getOrderedClusters()
     {
     List<Cluster> sorted = new ArrayList<Cluster>( clusters );
 
@@ -120,12 +175,48 @@ public class ClusteringSpec extends Spec
       Collections.sort( sorted, ordering );
       }
 
-    ClusterEvaluator[] clusterEvaluators = new ClusterEvaluator[ sorted.size() ];
+    return sorted;
+    }
 
-    for( int i = 0; i < sorted.size(); i++ )
-      clusterEvaluators[ i ] = new ClusterEvaluator( argumentFields, sorted.get( i ), getComparisonMeasure(), getDefaultCompareFunction() );
+  @Override
+  protected void writeFields( SpecOutput output ) throws IOException
+    {
+    output.writeObject( defaultCompareFunction );
+    output.writeObject( comparisonMeasure );
+    output.writeVarInt( clusters.size() );
 
-    return clusterEvaluators;
+    for( Cluster cluster : clusters )
+      {
+      boolean isSerialized = cluster.getClass() != Cluster.class;
+
+      output.writeBoolean( isSerialized );
+
+      if( isSerialized )
+        {
+        output.writeObject( cluster );
+        continue;
+        }
+
+      output.writeString( cluster.targetCategory );
+      output.writeDoubles( cluster.points );
+      }
+    }
+
+  @Override
+  protected void readFields( SpecInput input ) throws IOException
+    {
+    defaultCompareFunction = (CompareFunction) input.readObject();
+    comparisonMeasure = (ComparisonMeasure) input.readObject();
+
+    int size = input.readVarInt();
+
+    for( int i = 0; i < size; i++ )
+      {
+      if( input.readBoolean() )
+        addCluster( (Cluster) input.readObject() );
+      else
+        addCluster( new Cluster( input.readString(), input.readDoubles() ) );
+      }
     }
 
   @Override
@@ -0,0 +1,80 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.model.clustering;
+
+import cascading.tuple.Fields;
+import cascading.tuple.TupleEntry;
+
+/**
+ * Class CompiledClustering is the compiled form of a {@link ClusteringSpec} bound to the positions of a set of
+ * argument fields.
+ * <p/>
+ * A CompiledClustering is immutable, so a single instance may be shared by any number of threads, each passing its
+ * own scratch array to {@link #select(cascading.tuple.TupleEntry, double[])}.
+ */
+public class CompiledClustering
+  {
+  private final ClusterEvaluator[] evaluators;
+
+  public CompiledClustering( ClusteringSpec spec, Fields argumentFields )
+    {
+    this.evaluators = spec.getClusterEvaluator( argumentFields );
+    }
+
+  /**
+   * Returns the number of clusters, the size of the scratch array required by
+   * {@link #select(cascading.tuple.TupleEntry, double[])}.
+   *
+   * @return the cluster count
+   */
+  public int getSize()
+    {
+    return evaluators.length;
+    }
+
+  public String getTargetCategory( int index )
+    {
+    return evaluators[ index ].getTargetCategory();
+    }
+
+  /**
+   * Method select writes the distance to every cluster into the given scratch array and returns the index of
+   * the nearest.
+   *
+   * @param arguments the arguments
+   * @param distances the scratch array, of at least {@link #getSize()} elements
+   * @return the index of the nearest cluster
+   */
+  public int select( TupleEntry arguments, double[] distances )
+    {
+    int index = 0;
+
+    for( int i = 0; i < evaluators.length; i++ )
+      {
+      distances[ i ] = evaluators[ i ].evaluate( arguments );
+
+      if( distances[ i ] < distances[ index ] )
+        index = i;
+      }
+
+    return index;
+    }
+  }
@@ -38,7 +38,11 @@ public class SquaredEuclideanMeasure extends DistanceMeasure
     double sumOfSquares = 0.0;
 
     for( int i = 0; i < points.length; i++ )
-      sumOfSquares += Math.pow( values.getDouble( i ) - points[ i ], 2.0 );
+      {
+      double difference = values.getDouble( i ) - points[ i ];
+
+      sumOfSquares += difference * difference;
+      }
 
     return sumOfSquares;
     }
@@ -22,8 +22,8 @@ package cascading.pattern.model.generalregression;
 
 import cascading.flow.FlowProcess;
 import cascading.operation.OperationCall;
+import cascading.pattern.model.ModelCache;
 import cascading.pattern.model.ModelScoringFunction;
-import cascading.pattern.model.generalregression.expression.ExpressionEvaluator;
 import cascading.tuple.Fields;
 
 /**
@@ -33,8 +33,10 @@ abstract class BaseRegressionFunction extends ModelScoringFunction<GeneralRegres
   {
   protected static class ExpressionContext
     {
-    public ExpressionEvaluator[] expressions;
+    public CompiledRegression regression;
     public double[] results;
+    /** null unless explaining, the contribution of every parameter */
+    public double[] terms;
     }
 
   public BaseRegressionFunction( GeneralRegressionSpec spec )
@@ -42,14 +44,30 @@ abstract class BaseRegressionFunction extends ModelScoringFunction<GeneralRegres
     super( spec );
     }
 
+  public BaseRegressionFunction( GeneralRegressionSpec spec, boolean explain )
+    {
+    super( spec, SAFE_DEFAULT, explain );
+    }
+
   @Override
   public void prepare( FlowProcess flowProcess, OperationCall<Context<ExpressionContext>> operationCall )
     {
     super.prepare( flowProcess, operationCall );
 
-    Fields argumentFields = operationCall.getArgumentFields();
+    final Fields argumentFields = operationCall.getArgumentFields();
+    String key = ModelCache.createKey( "regression", getSpec(), argumentFields );
 
     operationCall.getContext().payload = new ExpressionContext();
-    operationCall.getContext().payload.expressions = getSpec().getRegressionTableEvaluators( argumentFields );
+    operationCall.getContext().payload.regression = ModelCache.get( key, new ModelCache.Loader<CompiledRegression>()
+    {
+    @Override
+    public CompiledRegression load()
+      {
+      return new CompiledRegression( getSpec(), argumentFields );
+      }
+    } );
+
+    if( isExplain )
+      operationCall.getContext().payload.terms = new double[ operationCall.getContext().payload.regression.getTermCount() ];
     }
   }
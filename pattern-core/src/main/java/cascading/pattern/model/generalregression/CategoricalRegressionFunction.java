@@ -26,10 +26,9 @@ import cascading.operation.OperationCall;
 import cascading.pattern.datafield.CategoricalDataField;
 import cascading.pattern.datafield.DataField;
 import cascading.pattern.model.ModelSchema;
-import cascading.pattern.model.generalregression.expression.ExpressionEvaluator;
+import cascading.pattern.model.metrics.ScoringMetrics;
 import cascading.tuple.Tuple;
 import cascading.tuple.TupleEntry;
-import com.google.common.primitives.Doubles;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -43,7 +42,19 @@ public class CategoricalRegressionFunction extends BaseRegressionFunction
 
   public CategoricalRegressionFunction( GeneralRegressionSpec regressionSpec )
     {
-    super( regressionSpec );
+    this( regressionSpec, false );
+    }
+
+  /**
+   * Constructor CategoricalRegressionFunction creates a new instance that, if explain is true, also emits the
+   * contribution of every parameter of every table, see {@link GeneralRegressionSpec#getExplanationFields()}.
+   *
+   * @param regressionSpec the regression spec
+   * @param explain        true if the classification should be explained
+   */
+  public CategoricalRegressionFunction( GeneralRegressionSpec regressionSpec, boolean explain )
+    {
+    super( regressionSpec, explain );
 
     if( regressionSpec.getNormalization() == null )
       throw new IllegalArgumentException( "normalization may not be null" );
@@ -64,50 +75,42 @@ public class CategoricalRegressionFunction extends BaseRegressionFunction
     {
     super.prepare( flowProcess, operationCall );
 
-    // cache the result array
-    operationCall.getContext().payload.results = new double[ operationCall.getContext().payload.expressions.length ];
+    // the compiled regression is shared, the result array is per context
+    operationCall.getContext().payload.results = new double[ operationCall.getContext().payload.regression.getSize() ];
     }
 
   @Override
   public void operate( FlowProcess flowProcess, FunctionCall<Context<BaseRegressionFunction.ExpressionContext>> functionCall )
     {
     TupleEntry arguments = functionCall.getArguments();
-    ExpressionEvaluator[] expressions = functionCall.getContext().payload.expressions;
+    CompiledRegression regression = functionCall.getContext().payload.regression;
     double[] results = functionCall.getContext().payload.results;
+    double[] terms = functionCall.getContext().payload.terms;
+    ScoringMetrics metrics = functionCall.getContext().metrics;
+    long start = metrics == null ? 0 : metrics.start();
 
-    for( int i = 0; i < expressions.length; i++ )
-      results[ i ] = expressions[ i ].calculate( arguments );
-
-    LOG.debug( "raw regression: {}", results );
-
-    for( int i = 0; i < expressions.length; i++ )
-      results[ i ] = getSpec().getLinkFunction().calculate( results[ i ] );
-
-    LOG.debug( "link regression: {}", results );
-
-    results = getSpec().getNormalization().normalize( results );
+    int index = regression.classify( arguments, results, terms );
 
-    LOG.debug( "probabilities: {}", results );
+    String category = regression.getTargetCategory( index );
 
-    double max = Doubles.max( results );
-    int index = Doubles.indexOf( results, max );
-
-    String category = expressions[ index ].getTargetCategory();
+    if( metrics != null )
+      metrics.scored( arguments, start, category );
 
     LOG.debug( "category: {}", category );
 
-    if( !getSpec().getModelSchema().isIncludePredictedCategories() )
+    Tuple result = functionCall.getContext().result( category );
+
+    if( getSpec().getModelSchema().isIncludePredictedCategories() )
       {
-      functionCall.getOutputCollector().add( functionCall.getContext().result( category ) );
-      return;
+      for( int i = 0; i < results.length; i++ )
+        result.set( i + 1, results[ i ] );
       }
 
-    Tuple result = functionCall.getContext().tuple;
-
-    result.set( 0, category );
-
-    for( int i = 0; i < results.length; i++ )
-      result.set( i + 1, results[ i ] );
+    if( isExplain )
+      {
+      for( int i = 0; i < terms.length; i++ )
+        result.set( explanationPos + i, terms[ i ] );
+      }
 
     functionCall.getOutputCollector().add( result );
     }
@@ -0,0 +1,183 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.model.generalregression;
+
+import java.util.Arrays;
+import java.util.List;
+
+import cascading.pattern.model.generalregression.expression.CoefficientMatrix;
+import cascading.pattern.model.generalregression.expression.ExpressionEvaluator;
+import cascading.pattern.model.generalregression.normalization.Normalization;
+import cascading.tuple.Fields;
+import cascading.tuple.TupleEntry;
+
+/**
+ * Class CompiledRegression is the compiled form of a {@link GeneralRegressionSpec} bound to the positions of a set of
+ * argument fields.
+ * <p/>
+ * A CompiledRegression is immutable and holds no per call state, so a single instance may be shared by any number of
+ * threads, each passing its own scratch array to {@link #classify(cascading.tuple.TupleEntry, double[])}.
+ * <p/>
+ * If there is more than one table, all tables are also compiled into a single {@link CoefficientMatrix}, used by
+ * classify when no term array is requested.
+ */
+public class CompiledRegression
+  {
+  private final ExpressionEvaluator[] evaluators;
+  private final CoefficientMatrix matrix;
+  private final LinkFunction linkFunction;
+  private final Normalization normalization;
+  private final NumericMode numericMode;
+  private final int[] termOffsets;
+
+  public CompiledRegression( GeneralRegressionSpec spec, Fields argumentFields )
+    {
+    this.evaluators = spec.getRegressionTableEvaluators( argumentFields );
+    this.matrix = evaluators.length > 1 ? spec.getCoefficientMatrix( argumentFields ) : null;
+    this.linkFunction = spec.getLinkFunction();
+    this.normalization = spec.getNormalization();
+    this.numericMode = spec.getNumericMode();
+
+    List<RegressionTable> tables = spec.getOrderedRegressionTables();
+
+    this.termOffsets = new int[ tables.size() + 1 ];
+
+    for( int i = 0; i < tables.size(); i++ )
+      termOffsets[ i + 1 ] = termOffsets[ i ] + tables.get( i ).getParameterNames().size();
+    }
+
+  /**
+   * Returns the number of regression tables, the size of the scratch array required by
+   * {@link #classify(cascading.tuple.TupleEntry, double[])}.
+   *
+   * @return the table count
+   */
+  public int getSize()
+    {
+    return evaluators.length;
+    }
+
+  public String getTargetCategory( int index )
+    {
+    return evaluators[ index ].getTargetCategory();
+    }
+
+  /**
+   * Returns the number of parameters of all regression tables, the size of the term array required by
+   * {@link #classify(cascading.tuple.TupleEntry, double[], double[])}, ordered as
+   * {@link GeneralRegressionSpec#getExplanationFields()}.
+   *
+   * @return the term count
+   */
+  public int getTermCount()
+    {
+    return termOffsets[ evaluators.length ];
+    }
+
+  /**
+   * Method predict returns the prediction of the first regression table for the given arguments.
+   *
+   * @param arguments the arguments
+   * @return the prediction
+   */
+  public double predict( TupleEntry arguments )
+    {
+    return predict( arguments, null );
+    }
+
+  /**
+   * Method predict returns the prediction of the first regression table for the given arguments, and writes the
+   * contribution of every parameter into the given term array, if not null.
+   *
+   * @param arguments the arguments
+   * @param terms     the term array, of at least {@link #getTermCount()} elements, may be null
+   * @return the prediction
+   */
+  public double predict( TupleEntry arguments, double[] terms )
+    {
+    return linkFunction.calculate( calculate( 0, arguments, terms ), numericMode );
+    }
+
+  /**
+   * Method classify writes the normalized probability of every table into the given scratch array and returns the
+   * index of the most probable.
+   *
+   * @param arguments     the arguments
+   * @param probabilities the scratch array, of at least {@link #getSize()} elements
+   * @return the index of the most probable table
+   */
+  public int classify( TupleEntry arguments, double[] probabilities )
+    {
+    return classify( arguments, probabilities, null );
+    }
+
+  /**
+   * Method classify writes the normalized probability of every table into the given scratch array, and the
+   * contribution of every parameter of every table into the given term array, if not null, and returns the index
+   * of the most probable table.
+   *
+   * @param arguments     the arguments
+   * @param probabilities the scratch array, of at least {@link #getSize()} elements
+   * @param terms         the term array, of at least {@link #getTermCount()} elements, may be null
+   * @return the index of the most probable table
+   */
+  public int classify( TupleEntry arguments, double[] probabilities, double[] terms )
+    {
+    if( matrix != null && terms == null )
+      {
+      matrix.calculate( arguments, probabilities );
+
+      for( int i = 0; i < evaluators.length; i++ )
+        probabilities[ i ] = linkFunction.calculate( probabilities[ i ], numericMode );
+      }
+    else
+      {
+      for( int i = 0; i < evaluators.length; i++ )
+        probabilities[ i ] = linkFunction.calculate( calculate( i, arguments, terms ), numericMode );
+      }
+
+    double[] normalized = normalization.normalize( probabilities, numericMode );
+
+    if( normalized != probabilities )
+      System.arraycopy( normalized, 0, probabilities, 0, evaluators.length );
+
+    int index = 0;
+
+    for( int i = 1; i < evaluators.length; i++ )
+      {
+      if( probabilities[ i ] > probabilities[ index ] )
+        index = i;
+      }
+
+    return index;
+    }
+
+  private double calculate( int table, TupleEntry arguments, double[] terms )
+    {
+    if( terms == null )
+      return evaluators[ table ].calculate( arguments );
+
+    // tables of no-op parameters have no expressions
+    Arrays.fill( terms, termOffsets[ table ], termOffsets[ table + 1 ], 0.0d );
+
+    return evaluators[ table ].calculate( arguments, terms, termOffsets[ table ] );
+    }
+  }
@@ -20,6 +20,7 @@
 
 package cascading.pattern.model.generalregression;
 
+import java.io.IOException;
 import java.util.ArrayList;
 import java.util.Collections;
 import java.util.List;
@@ -28,8 +29,13 @@ import cascading.pattern.datafield.CategoricalDataField;
 import cascading.pattern.datafield.DataField;
 import cascading.pattern.model.ModelSchema;
 import cascading.pattern.model.Spec;
+import cascading.pattern.model.SpecInput;
+import cascading.pattern.model.SpecOutput;
+import cascading.pattern.model.batch.BatchScorer;
+import cascading.pattern.model.generalregression.expression.CoefficientMatrix;
 import cascading.pattern.model.generalregression.expression.ExpressionEvaluator;
 import cascading.pattern.model.generalregression.normalization.Normalization;
+import cascading.pattern.model.generalregression.predictor.FactorPredictor;
 import cascading.tuple.Fields;
 import com.google.common.base.Function;
 import com.google.common.collect.Ordering;
@@ -50,6 +56,11 @@ public class GeneralRegressionSpec extends Spec
   List<RegressionTable> regressionTables = new ArrayList<RegressionTable>();
   LinkFunction linkFunction = LinkFunction.NONE;
   Normalization normalization = Normalization.NONE;
+  NumericMode numericMode = NumericMode.EXACT;
+
+  protected GeneralRegressionSpec()
+    {
+    }
 
   public GeneralRegressionSpec( ModelSchema modelSchema, RegressionTable regressionTable, LinkFunction linkFunction )
     {
@@ -67,6 +78,7 @@ public class GeneralRegressionSpec extends Spec
   public void addRegressionTable( RegressionTable regressionTable )
     {
     regressionTables.add( regressionTable );
+    invalidateDigest();
     }
 
   public List<RegressionTable> getRegressionTables()
@@ -77,6 +89,7 @@ public class GeneralRegressionSpec extends Spec
   public void setNormalization( Normalization normalization )
     {
     this.normalization = normalization;
+    invalidateDigest();
     }
 
   public Normalization getNormalization()
@@ -92,9 +105,59 @@ public class GeneralRegressionSpec extends Spec
   public void setLinkFunction( LinkFunction linkFunction )
     {
     this.linkFunction = linkFunction;
+    invalidateDigest();
+    }
+
+  public NumericMode getNumericMode()
+    {
+    return numericMode;
+    }
+
+  /**
+   * Method setNumericMode sets how the link function and normalization are evaluated, either exactly or by a
+   * faster approximation, see {@link NumericMode}. {@link NumericMode#EXACT} by default.
+   *
+   * @param numericMode the numeric mode
+   */
+  public void setNumericMode( NumericMode numericMode )
+    {
+    if( numericMode == null )
+      throw new IllegalArgumentException( "numericMode may not be null" );
+
+    this.numericMode = numericMode;
+    invalidateDigest();
     }
 
   public ExpressionEvaluator[] getRegressionTableEvaluators( Fields argumentFields )
+    {
+    List<RegressionTable> tables = getOrderedRegressionTables();
+
+    ExpressionEvaluator[] evaluators = new ExpressionEvaluator[ tables.size() ];
+
+    for( int i = 0; i < tables.size(); i++ )
+      evaluators[ i ] = tables.get( i ).bind( argumentFields );
+
+    return evaluators;
+    }
+
+  /**
+   * Method getCoefficientMatrix returns every regression table, in category order, compiled into a single
+   * {@link CoefficientMatrix} for the given argument fields.
+   *
+   * @param argumentFields the argument fields
+   * @return a CoefficientMatrix
+   */
+  public CoefficientMatrix getCoefficientMatrix( Fields argumentFields )
+    {
+    List<List<Parameter>> parameters = new ArrayList<List<Parameter>>();
+
+    for( RegressionTable table : getOrderedRegressionTables() )
+      parameters.add( new ArrayList<Parameter>( table.parameters.values() ) );
+
+    return new CoefficientMatrix( argumentFields, parameters );
+    }
+
+  List<RegressionTable> getOrderedRegressionTables()
     {
     List<RegressionTable> tables = new ArrayList<RegressionTable>( regressionTables );
 
@@ -117,12 +180,100 @@ public class GeneralRegressionSpec extends Spec
       Collections.sort( tables, ordering );
       }
 
-    ExpressionEvaluator[] evaluators = new ExpressionEvaluator[ tables.size() ];
+    return tables;
+    }
 
-    for( int i = 0; i < tables.size(); i++ )
-      evaluators[ i ] = tables.get( i ).bind( argumentFields );
+  /**
+   * Returns a field for the contribution of every parameter of every regression table, in category order, named
+   * after the target category, if any, and the parameter.
+   *
+   * @return the explanation fields
+   */
+  @Override
+  public Fields getExplanationFields()
+    {
+    Fields fields = Fields.NONE;
 
-    return evaluators;
+    for( RegressionTable table : getOrderedRegressionTables() )
+      {
+      for( String parameterName : table.getParameterNames() )
+        {
+        String name;
+
+        if( table.getTargetCategory() == null )
+          name = getExplanationFieldName( parameterName );
+        else
+          name = getExplanationFieldName( table.getTargetCategory(), parameterName );
+
+        fields = fields.append( new Fields( name, double.class ) );
+        }
+      }
+
+    return fields;
+    }
+
+  /**
+   * Returns true if every factor is a category of its field, so may be tested by ordinal, and a prediction has a
+   * single table, see {@link RegressionBatchScorer}.
+   *
+   * @return true if batch scoring is supported
+   */
+  @Override
+  public boolean isBatchSupported()
+    {
+    if( !isPredictedCategorical() && regressionTables.size() != 1 )
+      return false;
+
+    for( RegressionTable table : regressionTables )
+      {
+      for( Parameter parameter : table.parameters.values() )
+        {
+        if( parameter.isNoOp() )
+          continue;
+
+        for( FactorPredictor predictor : parameter.getFactors() )
+          {
+          if( predictor.getOrdinal() == -1 )
+            return false;
+          }
+        }
+      }
+
+    return true;
+    }
+
+  @Override
+  public BatchScorer createBatchScorer()
+    {
+    return isBatchSupported() ? new RegressionBatchScorer( this ) : null;
+    }
+
+  @Override
+  protected void writeFields( SpecOutput output ) throws IOException
+    {
+    output.writeString( linkFunction.name() );
+    output.writeString( numericMode.name() );
+    output.writeObject( normalization == Normalization.NONE ? null : normalization );
+    output.writeVarInt( regressionTables.size() );
+
+    for( RegressionTable regressionTable : regressionTables )
+      regressionTable.writeTo( output );
+    }
+
+  @Override
+  protected void readFields( SpecInput input ) throws IOException
+    {
+    linkFunction = LinkFunction.valueOf( input.readString() );
+    numericMode = NumericMode.valueOf( input.readString() );
+
+    Normalization normalization = (Normalization) input.readObject();
+
+    this.normalization = normalization == null ? Normalization.NONE : normalization;
+
+    int size = input.readVarInt();
+
+    for( int i = 0; i < size; i++ )
+      addRegressionTable( RegressionTable.readFrom( input, getModelSchema() ) );
     }
 
   @Override
@@ -132,6 +283,7 @@ public class GeneralRegressionSpec extends Spec
     sb.append( "generalRegressionTables=" ).append( regressionTables );
     sb.append( ", linkFunction=" ).append( linkFunction );
     sb.append( ", normalization=" ).append( normalization );
+    sb.append( ", numericMode=" ).append( numericMode );
     sb.append( '}' );
     return sb.toString();
     }
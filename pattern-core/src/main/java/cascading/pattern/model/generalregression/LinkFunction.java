@@ -20,7 +20,14 @@
 
 package cascading.pattern.model.generalregression;
 
-/** Enum for the LinkFunction in GLM */
+import cascading.pattern.util.FastMath;
+
+/**
+ * Enum for the LinkFunction in GLM
+ * <p/>
+ * {@link #calculateFast(double)} returns the result using the approximations of {@link FastMath}, see
+ * {@link NumericMode}.
+ */
 public enum LinkFunction
   {
     NONE( "none" )
@@ -29,6 +36,11 @@ public enum LinkFunction
         {
         return value;
         }
+
+      public double calculateFast( double value )
+        {
+        return value;
+        }
       },
 
     LOGIT( "logit" )
@@ -37,6 +49,11 @@ public enum LinkFunction
         {
         return 1.0 / ( 1.0 + Math.exp( -value ) );
         }
+
+      public double calculateFast( double value )
+        {
+        return 1.0 / ( 1.0 + FastMath.exp( -value ) );
+        }
       },
 
     CLOGLOG( "cloglog" )
@@ -45,6 +62,11 @@ public enum LinkFunction
         {
         return 1.0 - Math.exp( -Math.exp( value ) );
         }
+
+      public double calculateFast( double value )
+        {
+        return 1.0 - FastMath.exp( -FastMath.exp( value ) );
+        }
       },
 
     LOGLOG( "loglog" )
@@ -53,6 +75,11 @@ public enum LinkFunction
         {
         return Math.exp( -Math.exp( -value ) );
         }
+
+      public double calculateFast( double value )
+        {
+        return FastMath.exp( -FastMath.exp( -value ) );
+        }
       },
 
     CAUCHIT( "cauchit" )
@@ -61,6 +88,11 @@ public enum LinkFunction
         {
         return 0.5 + 1.0 / Math.PI * Math.atan( value );
         }
+
+      public double calculateFast( double value )
+        {
+        return 0.5 + 1.0 / Math.PI * FastMath.atan( value );
+        }
       };
 
   public String function;
@@ -87,4 +119,11 @@ public enum LinkFunction
     }
 
   public abstract double calculate( double value );
+
+  public abstract double calculateFast( double value );
+
+  public double calculate( double value, NumericMode numericMode )
+    {
+    return numericMode == NumericMode.FAST ? calculateFast( value ) : calculate( value );
+    }
   }
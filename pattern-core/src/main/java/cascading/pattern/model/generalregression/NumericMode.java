@@ -0,0 +1,36 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.model.generalregression;
+
+/**
+ * Enum NumericMode selects how a {@link LinkFunction} and a
+ * {@link cascading.pattern.model.generalregression.normalization.Normalization} evaluate {@code exp} and
+ * {@code atan}.
+ * <p/>
+ * {@link #EXACT} uses {@link Math}, {@link #FAST} uses the approximations of {@link cascading.pattern.util.FastMath},
+ * with a relative error below {@code 1e-12} for {@code exp} and an absolute error below {@code 1e-11} for
+ * {@code atan}.
+ */
+public enum NumericMode
+  {
+    EXACT,
+    FAST
+  }
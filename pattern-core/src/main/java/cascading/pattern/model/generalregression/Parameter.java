@@ -20,15 +20,20 @@
 
 package cascading.pattern.model.generalregression;
 
+import java.io.IOException;
 import java.io.Serializable;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.List;
 
+import cascading.pattern.model.ModelSchema;
+import cascading.pattern.model.SpecInput;
+import cascading.pattern.model.SpecOutput;
 import cascading.pattern.model.generalregression.expression.ParameterExpression;
 import cascading.pattern.model.generalregression.predictor.CovariantPredictor;
 import cascading.pattern.model.generalregression.predictor.FactorPredictor;
 import cascading.pattern.model.generalregression.predictor.Predictor;
+import cascading.pattern.util.StringIndex;
 import cascading.tuple.Fields;
 
 /**
@@ -36,6 +41,10 @@ import cascading.tuple.Fields;
  */
 public class Parameter implements Serializable
   {
+  private static final int COVARIANT = 0;
+  private static final int FACTOR = 1;
+  private static final int SERIALIZED = 2;
+
   String name;
   double beta;
   int df;
@@ -114,6 +123,77 @@ public class Parameter implements Serializable
       factors.add( (FactorPredictor) predictor );
     }
 
+  void writeTo( SpecOutput output ) throws IOException
+    {
+    output.writeString( name );
+    output.writeDouble( beta );
+    output.writeVarInt( df );
+    output.writeVarInt( covariants.size() + factors.size() );
+
+    for( CovariantPredictor covariant : covariants )
+      {
+      if( covariant.getClass() != CovariantPredictor.class )
+        {
+        writeSerialized( output, covariant );
+        continue;
+        }
+
+      output.writeVarInt( COVARIANT );
+      output.writeString( covariant.getFieldName() );
+      output.writeVarLong( covariant.getExponent() );
+      }
+
+    for( FactorPredictor factor : factors )
+      {
+      if( factor.getClass() != FactorPredictor.class )
+        {
+        writeSerialized( output, factor );
+        continue;
+        }
+
+      output.writeVarInt( FACTOR );
+      output.writeString( factor.getFieldName() );
+      output.writeString( factor.getFactor() );
+      output.writeBoolean( factor.isEncoded() );
+      }
+    }
+
+  private static void writeSerialized( SpecOutput output, Predictor predictor ) throws IOException
+    {
+    output.writeVarInt( SERIALIZED );
+    output.writeObject( predictor );
+    }
+
+  static Parameter readFrom( SpecInput input, ModelSchema modelSchema ) throws IOException
+    {
+    Parameter parameter = new Parameter( input.readString(), input.readDouble(), input.readVarInt() );
+    int size = input.readVarInt();
+
+    for( int i = 0; i < size; i++ )
+      {
+      int tag = input.readVarInt();
+
+      if( tag == COVARIANT )
+        {
+        parameter.addPredictor( new CovariantPredictor( input.readString(), input.readVarLong() ) );
+        }
+      else if( tag == FACTOR )
+        {
+        String fieldName = input.readString();
+        String factor = input.readString();
+        StringIndex categoryIndex = input.readBoolean() ? modelSchema.getCategoryIndex( fieldName ) : null;
+
+        parameter.addPredictor( new FactorPredictor( fieldName, factor, categoryIndex ) );
+        }
+      else
+        {
+        parameter.addPredictor( (Predictor) input.readObject() );
+        }
+      }
+
+    return parameter;
+    }
+
   public ParameterExpression createExpression( Fields argumentsFields )
     {
     return new ParameterExpression( argumentsFields, this );
@@ -22,7 +22,8 @@ package cascading.pattern.model.generalregression;
 
 import cascading.flow.FlowProcess;
 import cascading.operation.FunctionCall;
-import cascading.pattern.model.generalregression.expression.ExpressionEvaluator;
+import cascading.pattern.model.metrics.ScoringMetrics;
+import cascading.tuple.Tuple;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
@@ -36,7 +37,19 @@ public class PredictionRegressionFunction extends BaseRegressionFunction
 
   public PredictionRegressionFunction( GeneralRegressionSpec param )
     {
-    super( param );
+    this( param, false );
+    }
+
+  /**
+   * Constructor PredictionRegressionFunction creates a new instance that, if explain is true, also emits the
+   * contribution of every parameter, see {@link GeneralRegressionSpec#getExplanationFields()}.
+   *
+   * @param param   the regression spec
+   * @param explain true if the prediction should be explained
+   */
+  public PredictionRegressionFunction( GeneralRegressionSpec param, boolean explain )
+    {
+    super( param, explain );
 
     if( getSpec().getRegressionTables().size() != 1 )
       throw new IllegalArgumentException( "regression function only supports a single table, got: " + getSpec().getRegressionTables().size() );
@@ -45,14 +58,25 @@ public class PredictionRegressionFunction extends BaseRegressionFunction
   @Override
   public void operate( FlowProcess flowProcess, FunctionCall<Context<BaseRegressionFunction.ExpressionContext>> functionCall )
     {
-    ExpressionEvaluator evaluator = functionCall.getContext().payload.expressions[ 0 ];
-    LinkFunction linkFunction = getSpec().linkFunction;
+    ScoringMetrics metrics = functionCall.getContext().metrics;
+    long start = metrics == null ? 0 : metrics.start();
 
-    double result = evaluator.calculate( functionCall.getArguments() );
-    double linkResult = linkFunction.calculate( result );
+    double[] terms = functionCall.getContext().payload.terms;
+    double linkResult = functionCall.getContext().payload.regression.predict( functionCall.getArguments(), terms );
+
+    if( metrics != null )
+      metrics.scored( functionCall.getArguments(), start );
 
     LOG.debug( "result: {}", linkResult );
 
-    functionCall.getOutputCollector().add( functionCall.getContext().result( linkResult ) );
+    Tuple result = functionCall.getContext().result( linkResult );
+
+    if( isExplain )
+      {
+      for( int i = 0; i < terms.length; i++ )
+        result.set( explanationPos + i, terms[ i ] );
+      }
+
+    functionCall.getOutputCollector().add( result );
     }
   }
@@ -0,0 +1,291 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.model.generalregression;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import cascading.pattern.datafield.CategoricalDataField;
+import cascading.pattern.datafield.DataField;
+import cascading.pattern.model.ModelSchema;
+import cascading.pattern.model.batch.BatchScorer;
+import cascading.pattern.model.batch.ColumnBatch;
+import cascading.pattern.model.generalregression.predictor.CovariantPredictor;
+import cascading.pattern.model.generalregression.predictor.FactorPredictor;
+import cascading.pattern.util.FastMath;
+import cascading.tuple.Fields;
+
+/**
+ * Class RegressionBatchScorer scores a {@link ColumnBatch} against the {@link RegressionTable}s of a
+ * {@link GeneralRegressionSpec}.
+ * <p/>
+ * Each parameter of each table is applied to the whole batch one column at a time. A spec with a single table
+ * returns predictions via {@link #score(ColumnBatch, double[])}, a spec with a categorical predicted field returns
+ * category indexes via {@link #score(ColumnBatch, int[])}.
+ * <p/>
+ * Every factor must be a category of an encodable field, see {@link ModelSchema#getCategoryIndex(String)}. As with
+ * {@link PredictionRegressionFunction}, a missing covariant value is treated as zero.
+ */
+public class RegressionBatchScorer implements BatchScorer
+  {
+  private final GeneralRegressionSpec spec;
+  private final String[] categories;
+  private final int[] tableCategories;
+  private final TableEvaluator[] evaluators;
+
+  private double[][] tableResults;
+  private double[] terms;
+  private double[] values;
+
+  private static class ParameterEvaluator
+    {
+    double beta;
+    int[] factorPositions;
+    int[] factorOrdinals;
+    int[] covariantPositions;
+    long[] exponents;
+    }
+
+  private static class TableEvaluator
+    {
+    ParameterEvaluator[] parameters;
+    }
+
+  public RegressionBatchScorer( GeneralRegressionSpec spec )
+    {
+    this.spec = spec;
+
+    ModelSchema modelSchema = spec.getModelSchema();
+    DataField predictedField = modelSchema.getPredictedField( modelSchema.getPredictedFieldNames().get( 0 ) );
+    List<RegressionTable> tables = spec.getOrderedRegressionTables();
+
+    if( predictedField instanceof CategoricalDataField )
+      {
+      if( spec.getNormalization() == null )
+        throw new IllegalArgumentException( "normalization may not be null" );
+
+      List<String> categoryList = ( (CategoricalDataField) predictedField ).getCategories();
+
+      this.categories = categoryList.toArray( new String[ categoryList.size() ] );
+      this.tableCategories = new int[ tables.size() ];
+
+      for( int i = 0; i < tables.size(); i++ )
+        tableCategories[ i ] = categoryList.indexOf( tables.get( i ).getTargetCategory() );
+      }
+    else
+      {
+      if( tables.size() != 1 )
+        throw new IllegalArgumentException( "regression prediction only supports a single table, got: " + tables.size() );
+
+      this.categories = new String[ 0 ];
+      this.tableCategories = null;
+      }
+
+    Fields inputFields = modelSchema.getInputFields();
+
+    this.evaluators = new TableEvaluator[ tables.size() ];
+
+    for( int i = 0; i < tables.size(); i++ )
+      evaluators[ i ] = createEvaluator( inputFields, tables.get( i ) );
+    }
+
+  private static TableEvaluator createEvaluator( Fields inputFields, RegressionTable table )
+    {
+    List<ParameterEvaluator> parameters = new ArrayList<ParameterEvaluator>();
+
+    for( Parameter parameter : table.parameters.values() )
+      {
+      if( parameter.isNoOp() )
+        continue;
+
+      ParameterEvaluator evaluator = new ParameterEvaluator();
+
+      evaluator.beta = parameter.getBeta();
+      evaluator.factorPositions = new int[ parameter.getFactors().size() ];
+      evaluator.factorOrdinals = new int[ parameter.getFactors().size() ];
+      evaluator.covariantPositions = new int[ parameter.getCovariants().size() ];
+      evaluator.exponents = new long[ parameter.getCovariants().size() ];
+
+      for( int i = 0; i < parameter.getFactors().size(); i++ )
+        {
+        FactorPredictor predictor = parameter.getFactors().get( i );
+
+        if( predictor.getOrdinal() == -1 )
+          throw new UnsupportedOperationException( "factor is not an encodable category: " + predictor.getFieldName() + "=" + predictor.getFactor() );
+
+        evaluator.factorPositions[ i ] = inputFields.getPos( predictor.getFieldName() );
+        evaluator.factorOrdinals[ i ] = predictor.getOrdinal();
+        }
+
+      for( int i = 0; i < parameter.getCovariants().size(); i++ )
+        {
+        CovariantPredictor predictor = parameter.getCovariants().get( i );
+
+        evaluator.covariantPositions[ i ] = inputFields.getPos( predictor.getFieldName() );
+        evaluator.exponents[ i ] = predictor.getExponent();
+        }
+
+      parameters.add( evaluator );
+      }
+
+    TableEvaluator evaluator = new TableEvaluator();
+
+    evaluator.parameters = parameters.toArray( new ParameterEvaluator[ parameters.size() ] );
+
+    return evaluator;
+    }
+
+  @Override
+  public String[] getCategories()
+    {
+    return categories;
+    }
+
+  @Override
+  public void score( ColumnBatch batch, double[] results )
+    {
+    if( tableCategories != null )
+      throw new UnsupportedOperationException( "regression is categorical, use score( ColumnBatch, int[] )" );
+
+    ensureCapacity( batch.getCapacity() );
+
+    calculate( evaluators[ 0 ], batch, results );
+
+    LinkFunction linkFunction = spec.getLinkFunction();
+    NumericMode numericMode = spec.getNumericMode();
+    int size = batch.size();
+
+    for( int row = 0; row < size; row++ )
+      results[ row ] = linkFunction.calculate( results[ row ], numericMode );
+    }
+
+  @Override
+  public void score( ColumnBatch batch, int[] results )
+    {
+    if( tableCategories == null )
+      throw new UnsupportedOperationException( "regression is not categorical, use score( ColumnBatch, double[] )" );
+
+    ensureCapacity( batch.getCapacity() );
+
+    for( int i = 0; i < evaluators.length; i++ )
+      calculate( evaluators[ i ], batch, tableResults[ i ] );
+
+    LinkFunction linkFunction = spec.getLinkFunction();
+    NumericMode numericMode = spec.getNumericMode();
+    int size = batch.size();
+
+    for( int row = 0; row < size; row++ )
+      {
+      for( int i = 0; i < evaluators.length; i++ )
+        values[ i ] = linkFunction.calculate( tableResults[ i ][ row ], numericMode );
+
+      double[] probabilities = spec.getNormalization().normalize( values, numericMode );
+
+      int index = 0;
+
+      for( int i = 1; i < probabilities.length; i++ )
+        {
+        if( probabilities[ i ] > probabilities[ index ] )
+          index = i;
+        }
+
+      results[ row ] = tableCategories[ index ];
+      }
+    }
+
+  private void ensureCapacity( int capacity )
+    {
+    if( terms != null && terms.length >= capacity )
+      return;
+
+    terms = new double[ capacity ];
+    tableResults = new double[ evaluators.length ][ capacity ];
+    values = new double[ evaluators.length ];
+    }
+
+  private void calculate( TableEvaluator evaluator, ColumnBatch batch, double[] results )
+    {
+    int size = batch.size();
+
+    for( int row = 0; row < size; row++ )
+      results[ row ] = 0.0d;
+
+    for( ParameterEvaluator parameter : evaluator.parameters )
+      {
+      for( int row = 0; row < size; row++ )
+        terms[ row ] = parameter.beta;
+
+      for( int i = 0; i < parameter.covariantPositions.length; i++ )
+        {
+        double[] column = batch.getDoubles( parameter.covariantPositions[ i ] );
+        long exponent = parameter.exponents[ i ];
+
+        // choose the loop once per column, not once per row
+        if( exponent == 1 )
+          {
+          for( int row = 0; row < size; row++ )
+            {
+            double value = column[ row ];
+
+            terms[ row ] *= value != value ? 0.0d : value;
+            }
+          }
+        else if( exponent == 2 )
+          {
+          for( int row = 0; row < size; row++ )
+            {
+            double value = column[ row ];
+
+            terms[ row ] *= value != value ? 0.0d : value * value;
+            }
+          }
+        else
+          {
+          for( int row = 0; row < size; row++ )
+            {
+            double value = column[ row ];
+
+            terms[ row ] *= FastMath.pow( value != value ? 0.0d : value, exponent );
+            }
+          }
+        }
+
+      if( parameter.factorPositions.length == 0 )
+        {
+        for( int row = 0; row < size; row++ )
+          results[ row ] += terms[ row ];
+
+        continue;
+        }
+
+      for( int row = 0; row < size; row++ )
+        {
+        boolean applies = true;
+
+        for( int i = 0; i < parameter.factorPositions.length; i++ )
+          applies &= batch.getOrdinals( parameter.factorPositions[ i ] )[ row ] == parameter.factorOrdinals[ i ];
+
+        if( applies )
+          results[ row ] += terms[ row ];
+        }
+      }
+    }
+  }
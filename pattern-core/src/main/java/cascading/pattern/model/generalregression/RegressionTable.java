@@ -20,12 +20,18 @@
 
 package cascading.pattern.model.generalregression;
 
+import java.io.IOException;
 import java.io.Serializable;
+import java.util.ArrayList;
 import java.util.LinkedHashMap;
 import java.util.Map;
 import java.util.Set;
 
+import cascading.pattern.model.ModelSchema;
+import cascading.pattern.model.SpecInput;
+import cascading.pattern.model.SpecOutput;
 import cascading.pattern.model.generalregression.expression.ExpressionEvaluator;
+import cascading.pattern.model.generalregression.expression.LinearExpressionEvaluator;
 import cascading.pattern.model.generalregression.expression.ParameterExpression;
 import cascading.tuple.Fields;
 
@@ -84,19 +90,40 @@ public class RegressionTable implements Serializable
     return true;
     }
 
+  /**
+   * Method bind returns an evaluator of this table for the given argument fields. Tables are compiled into a
+   * {@link LinearExpressionEvaluator}, scoring plain linear and single factor parameters as a dot product and
+   * only the remaining parameters one {@link ParameterExpression} at a time.
+   *
+   * @param argumentFields the argument fields
+   * @return an ExpressionEvaluator
+   */
   ExpressionEvaluator bind( Fields argumentFields )
     {
     if( isNoOp() )
       return new ExpressionEvaluator( targetCategory );
 
-    ParameterExpression[] expressions = new ParameterExpression[ parameters.size() ];
+    return new LinearExpressionEvaluator( targetCategory, argumentFields, new ArrayList<Parameter>( parameters.values() ) );
+    }
 
-    int count = 0;
+  void writeTo( SpecOutput output ) throws IOException
+    {
+    output.writeString( targetCategory );
+    output.writeVarInt( parameters.size() );
 
     for( Parameter parameter : parameters.values() )
-      expressions[ count++ ] = parameter.createExpression( argumentFields );
+      parameter.writeTo( output );
+    }
+
+  static RegressionTable readFrom( SpecInput input, ModelSchema modelSchema ) throws IOException
+    {
+    RegressionTable regressionTable = new RegressionTable( input.readString() );
+    int size = input.readVarInt();
+
+    for( int i = 0; i < size; i++ )
+      regressionTable.addParameter( Parameter.readFrom( input, modelSchema ) );
 
-    return new ExpressionEvaluator( targetCategory, expressions );
+    return regressionTable;
     }
 
   public Set<String> getParameterNames()
@@ -0,0 +1,298 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.model.generalregression.expression;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import cascading.pattern.model.generalregression.Parameter;
+import cascading.pattern.model.generalregression.predictor.FactorPredictor;
+import cascading.pattern.util.StringIndex;
+import cascading.tuple.Fields;
+import cascading.tuple.TupleEntry;
+
+/**
+ * Class CoefficientMatrix compiles the parameters of every regression table of a multinomial model into a single
+ * matrix of betas, one row per table and one column per feature, so that all tables are scored by one
+ * matrix-vector product.
+ * <p/>
+ * The features are the intercept, every covariant field with an exponent of 1, and every factor of every factor
+ * field, see {@link LinearExpressionEvaluator#isLinear(Parameter)}. The feature vector is filled once per tuple:
+ * every covariant field is read once, and every factor field is looked up once to find the single factor column
+ * that applies, if any.
+ * <p/>
+ * The matrix is stored column major, so adding a feature to every row is a single pass over a contiguous range.
+ * <p/>
+ * All other parameters, higher order covariants and interactions, are evaluated per row as
+ * {@link ParameterExpression}s.
+ */
+public class CoefficientMatrix
+  {
+  private final int rows;
+  private final int[] covariantPositions;
+  private final FactorColumns[] factorColumns;
+  private final double[] coefficients;
+  private final ParameterExpression[][] fallbacks;
+
+  /** Class FactorColumns maps every factor of a single argument field to its feature column. */
+  private static class FactorColumns
+    {
+    final int pos;
+    final boolean isEncoded;
+    final Map<String, Integer> indexes = new HashMap<String, Integer>();
+    final List<String> factorList = new ArrayList<String>();
+    final List<Integer> ordinalList = new ArrayList<Integer>();
+
+    StringIndex factors;
+    int[] features;
+    int[] ordinalFeatures;
+
+    FactorColumns( int pos, boolean isEncoded )
+      {
+      this.pos = pos;
+      this.isEncoded = isEncoded;
+      }
+
+    void add( FactorPredictor predictor )
+      {
+      if( indexes.containsKey( predictor.getFactor() ) )
+        return;
+
+      indexes.put( predictor.getFactor(), factorList.size() );
+      factorList.add( predictor.getFactor() );
+      ordinalList.add( predictor.getOrdinal() );
+      }
+
+    int compile( int firstFeature )
+      {
+      factors = new StringIndex( factorList );
+      features = new int[ factorList.size() ];
+
+      int maxOrdinal = -1;
+
+      for( int i = 0; i < features.length; i++ )
+        {
+        features[ i ] = firstFeature + i;
+        maxOrdinal = Math.max( maxOrdinal, ordinalList.get( i ) );
+        }
+
+      ordinalFeatures = new int[ maxOrdinal + 1 ];
+
+      Arrays.fill( ordinalFeatures, -1 );
+
+      for( int i = 0; i < features.length; i++ )
+        {
+        if( ordinalList.get( i ) != -1 )
+          ordinalFeatures[ ordinalList.get( i ) ] = features[ i ];
+        }
+
+      return firstFeature + features.length;
+      }
+
+    int getFeature( String factor )
+      {
+      return features[ indexes.get( factor ) ];
+      }
+
+    int getFeature( TupleEntry tupleEntry )
+      {
+      Object value = tupleEntry.getObject( pos );
+
+      if( value == null )
+        return -1;
+
+      if( isEncoded && value instanceof Integer )
+        {
+        int ordinal = (Integer) value;
+
+        return ordinal >= 0 && ordinal < ordinalFeatures.length ? ordinalFeatures[ ordinal ] : -1;
+        }
+
+      int index = factors.indexOf( value.toString() );
+
+      return index == -1 ? -1 : features[ index ];
+      }
+    }
+
+  /**
+   * Constructor CoefficientMatrix creates a new instance with one row per given list of parameters.
+   *
+   * @param argumentFields the argument fields
+   * @param parameters     the parameters of every row
+   */
+  public CoefficientMatrix( Fields argumentFields, List<List<Parameter>> parameters )
+    {
+    this.rows = parameters.size();
+
+    Map<Integer, Integer> covariantFeatures = new LinkedHashMap<Integer, Integer>();
+    Map<Integer, FactorColumns> columns = new LinkedHashMap<Integer, FactorColumns>();
+
+    // first pass assigns every linear parameter a feature column
+    for( List<Parameter> row : parameters )
+      {
+      for( Parameter parameter : row )
+        {
+        if( parameter.isNoOp() || !LinearExpressionEvaluator.isLinear( parameter ) )
+          continue;
+
+        if( !parameter.getCovariants().isEmpty() )
+          {
+          int pos = argumentFields.getPos( parameter.getCovariants().get( 0 ).getFieldName() );
+
+          if( !covariantFeatures.containsKey( pos ) )
+            covariantFeatures.put( pos, covariantFeatures.size() + 1 );
+          }
+        else if( !parameter.getFactors().isEmpty() )
+          {
+          FactorPredictor predictor = parameter.getFactors().get( 0 );
+          int pos = argumentFields.getPos( predictor.getFieldName() );
+          FactorColumns column = columns.get( pos );
+
+          if( column == null )
+            columns.put( pos, column = new FactorColumns( pos, predictor.isEncoded() ) );
+
+          column.add( predictor );
+          }
+        }
+      }
+
+    this.covariantPositions = new int[ covariantFeatures.size() ];
+
+    for( Map.Entry<Integer, Integer> entry : covariantFeatures.entrySet() )
+      covariantPositions[ entry.getValue() - 1 ] = entry.getKey();
+
+    int features = covariantPositions.length + 1;
+
+    for( FactorColumns column : columns.values() )
+      features = column.compile( features );
+
+    this.factorColumns = columns.values().toArray( new FactorColumns[ columns.size() ] );
+    this.coefficients = new double[ features * rows ];
+    this.fallbacks = new ParameterExpression[ rows ][];
+
+    // second pass sums the betas into the matrix, feature 0 is the intercept
+    for( int i = 0; i < rows; i++ )
+      {
+      List<ParameterExpression> expressions = new ArrayList<ParameterExpression>();
+
+      for( Parameter parameter : parameters.get( i ) )
+        {
+        if( parameter.isNoOp() )
+          continue;
+
+        if( !LinearExpressionEvaluator.isLinear( parameter ) )
+          {
+          expressions.add( parameter.createExpression( argumentFields ) );
+          continue;
+          }
+
+        int feature = 0;
+
+        if( !parameter.getCovariants().isEmpty() )
+          {
+          feature = covariantFeatures.get( argumentFields.getPos( parameter.getCovariants().get( 0 ).getFieldName() ) );
+          }
+        else if( !parameter.getFactors().isEmpty() )
+          {
+          FactorPredictor predictor = parameter.getFactors().get( 0 );
+
+          feature = columns.get( argumentFields.getPos( predictor.getFieldName() ) ).getFeature( predictor.getFactor() );
+          }
+
+        coefficients[ feature * rows + i ] += parameter.getBeta();
+        }
+
+      fallbacks[ i ] = expressions.toArray( new ParameterExpression[ expressions.size() ] );
+      }
+    }
+
+  /**
+   * Returns the number of rows, one per regression table.
+   *
+   * @return the row count
+   */
+  public int getRows()
+    {
+    return rows;
+    }
+
+  /**
+   * Returns the number of feature columns, including the intercept.
+   *
+   * @return the column count
+   */
+  public int getColumns()
+    {
+    return rows == 0 ? 0 : coefficients.length / rows;
+    }
+
+  /**
+   * Method calculate writes the sum of the contributions of every row into the given results array. Every row
+   * equals {@link ExpressionEvaluator#calculate(cascading.tuple.TupleEntry)} of the corresponding table, up to
+   * rounding from the order of summation.
+   *
+   * @param tupleEntry the arguments
+   * @param results    the results array, of at least {@link #getRows()} elements
+   */
+  public void calculate( TupleEntry tupleEntry, double[] results )
+    {
+    System.arraycopy( coefficients, 0, results, 0, rows );
+
+    for( int i = 0; i < covariantPositions.length; i++ )
+      {
+      double value = tupleEntry.getDouble( covariantPositions[ i ] );
+
+      if( value == 0.0d )
+        continue;
+
+      int offset = ( i + 1 ) * rows;
+
+      for( int row = 0; row < rows; row++ )
+        results[ row ] += coefficients[ offset + row ] * value;
+      }
+
+    for( FactorColumns column : factorColumns )
+      {
+      int feature = column.getFeature( tupleEntry );
+
+      if( feature == -1 )
+        continue;
+
+      int offset = feature * rows;
+
+      for( int row = 0; row < rows; row++ )
+        results[ row ] += coefficients[ offset + row ];
+      }
+
+    for( int row = 0; row < rows; row++ )
+      {
+      for( ParameterExpression expression : fallbacks[ row ] )
+        {
+        if( expression.applies( tupleEntry ) )
+          results[ row ] += expression.calculate( tupleEntry );
+        }
+      }
+    }
+  }
@@ -59,4 +59,28 @@ public class ExpressionEvaluator
 
     return result;
     }
+
+  /**
+   * Method calculate returns the same result as {@link #calculate(cascading.tuple.TupleEntry)}, and writes the
+   * contribution of every parameter, zero if the parameter does not apply, into the given array.
+   *
+   * @param tupleEntry the arguments
+   * @param terms      the array the contributions are written to
+   * @param offset     the position of the contribution of the first parameter
+   * @return the sum of all contributions
+   */
+  public double calculate( TupleEntry tupleEntry, double[] terms, int offset )
+    {
+    double result = 0.0d;
+
+    for( int i = 0; i < expressions.length; i++ )
+      {
+      double term = expressions[ i ].applies( tupleEntry ) ? expressions[ i ].calculate( tupleEntry ) : 0.0d;
+
+      terms[ offset + i ] = term;
+      result += term;
+      }
+
+    return result;
+    }
   }
@@ -0,0 +1,267 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.model.generalregression.expression;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+import cascading.pattern.model.generalregression.Parameter;
+import cascading.pattern.model.generalregression.predictor.CovariantPredictor;
+import cascading.pattern.model.generalregression.predictor.FactorPredictor;
+import cascading.pattern.util.StringIndex;
+import cascading.tuple.Fields;
+import cascading.tuple.TupleEntry;
+
+/**
+ * Class LinearExpressionEvaluator is an {@link ExpressionEvaluator} compiled into primitive arrays, so that scoring
+ * a table of plain linear terms is a single dot product.
+ * <p/>
+ * Intercepts are summed into a constant. Parameters of a single covariant with an exponent of 1 become a dense
+ * array of betas and a parallel array of argument positions. Parameters of a single factor become, per argument
+ * field, a lookup table of summed betas keyed on the factor value, or on the category ordinal if the field is
+ * encoded, see {@link FactorPredictor#isEncoded()}.
+ * <p/>
+ * All other parameters, higher order covariants and interactions, are evaluated as {@link ParameterExpression}s.
+ * The per parameter contributions of
+ * {@link #calculate(cascading.tuple.TupleEntry, double[], int)} are always calculated by ParameterExpressions.
+ */
+public class LinearExpressionEvaluator extends ExpressionEvaluator
+  {
+  private final double intercept;
+  private final int[] covariantPositions;
+  private final double[] covariantBetas;
+  private final FactorTable[] factorTables;
+  private final ParameterExpression[] fallbacks;
+
+  /** Class FactorTable holds the summed betas of every factor of a single argument field. */
+  private static class FactorTable
+    {
+    final int pos;
+    final boolean isEncoded;
+    final Map<String, Integer> indexes = new HashMap<String, Integer>();
+    final List<String> factorList = new ArrayList<String>();
+    final List<Integer> ordinalList = new ArrayList<Integer>();
+    final List<Double> betaList = new ArrayList<Double>();
+
+    StringIndex factors;
+    int[] ordinalFactors;
+    double[] betas;
+
+    FactorTable( int pos, boolean isEncoded )
+      {
+      this.pos = pos;
+      this.isEncoded = isEncoded;
+      }
+
+    void add( FactorPredictor predictor, double beta )
+      {
+      Integer index = indexes.get( predictor.getFactor() );
+
+      if( index != null )
+        {
+        betaList.set( index, betaList.get( index ) + beta );
+        return;
+        }
+
+      indexes.put( predictor.getFactor(), factorList.size() );
+      factorList.add( predictor.getFactor() );
+      ordinalList.add( predictor.getOrdinal() );
+      betaList.add( beta );
+      }
+
+    void compile()
+      {
+      factors = new StringIndex( factorList );
+      betas = new double[ betaList.size() ];
+
+      int maxOrdinal = -1;
+
+      for( int i = 0; i < betas.length; i++ )
+        {
+        betas[ i ] = betaList.get( i );
+        maxOrdinal = Math.max( maxOrdinal, ordinalList.get( i ) );
+        }
+
+      ordinalFactors = new int[ maxOrdinal + 1 ];
+
+      Arrays.fill( ordinalFactors, -1 );
+
+      for( int i = 0; i < betas.length; i++ )
+        {
+        if( ordinalList.get( i ) != -1 )
+          ordinalFactors[ ordinalList.get( i ) ] = i;
+        }
+      }
+
+    double calculate( TupleEntry tupleEntry )
+      {
+      Object value = tupleEntry.getObject( pos );
+
+      if( value == null )
+        return 0.0d;
+
+      int index;
+
+      if( isEncoded && value instanceof Integer )
+        {
+        int ordinal = (Integer) value;
+
+        index = ordinal >= 0 && ordinal < ordinalFactors.length ? ordinalFactors[ ordinal ] : -1;
+        }
+      else
+        {
+        index = factors.indexOf( value.toString() );
+        }
+
+      return index == -1 ? 0.0d : betas[ index ];
+      }
+    }
+
+  /**
+   * Method isLinear returns true if the given parameter is compiled into the dense arrays of a
+   * LinearExpressionEvaluator, instead of evaluated as a {@link ParameterExpression}.
+   *
+   * @param parameter the parameter
+   * @return true if linear
+   */
+  public static boolean isLinear( Parameter parameter )
+    {
+    int covariants = parameter.getCovariants().size();
+    int factors = parameter.getFactors().size();
+
+    if( covariants == 0 && factors == 0 )
+      return true;
+
+    if( covariants == 1 && factors == 0 )
+      {
+      CovariantPredictor predictor = parameter.getCovariants().get( 0 );
+
+      return predictor.getClass() == CovariantPredictor.class && predictor.getExponent() == 1;
+      }
+
+    if( covariants == 0 && factors == 1 )
+      return parameter.getFactors().get( 0 ).getClass() == FactorPredictor.class;
+
+    return false;
+    }
+
+  public LinearExpressionEvaluator( String targetCategory, Fields argumentFields, List<Parameter> parameters )
+    {
+    super( targetCategory, createExpressions( argumentFields, parameters ) );
+
+    double intercept = 0.0d;
+    List<Integer> positions = new ArrayList<Integer>();
+    List<Double> betas = new ArrayList<Double>();
+    Map<Integer, FactorTable> tables = new LinkedHashMap<Integer, FactorTable>();
+    List<ParameterExpression> fallbacks = new ArrayList<ParameterExpression>();
+
+    for( Parameter parameter : parameters )
+      {
+      if( parameter.isNoOp() )
+        continue;
+
+      if( !isLinear( parameter ) )
+        {
+        fallbacks.add( parameter.createExpression( argumentFields ) );
+        }
+      else if( !parameter.getCovariants().isEmpty() )
+        {
+        positions.add( argumentFields.getPos( parameter.getCovariants().get( 0 ).getFieldName() ) );
+        betas.add( parameter.getBeta() );
+        }
+      else if( !parameter.getFactors().isEmpty() )
+        {
+        FactorPredictor predictor = parameter.getFactors().get( 0 );
+        int pos = argumentFields.getPos( predictor.getFieldName() );
+        FactorTable table = tables.get( pos );
+
+        if( table == null )
+          tables.put( pos, table = new FactorTable( pos, predictor.isEncoded() ) );
+
+        table.add( predictor, parameter.getBeta() );
+        }
+      else
+        {
+        intercept += parameter.getBeta();
+        }
+      }
+
+    this.intercept = intercept;
+    this.covariantPositions = new int[ positions.size() ];
+    this.covariantBetas = new double[ betas.size() ];
+
+    for( int i = 0; i < covariantPositions.length; i++ )
+      {
+      covariantPositions[ i ] = positions.get( i );
+      covariantBetas[ i ] = betas.get( i );
+      }
+
+    for( FactorTable table : tables.values() )
+      table.compile();
+
+    this.factorTables = tables.values().toArray( new FactorTable[ tables.size() ] );
+    this.fallbacks = fallbacks.toArray( new ParameterExpression[ fallbacks.size() ] );
+    }
+
+  private static ParameterExpression[] createExpressions( Fields argumentFields, List<Parameter> parameters )
+    {
+    ParameterExpression[] expressions = new ParameterExpression[ parameters.size() ];
+
+    for( int i = 0; i < parameters.size(); i++ )
+      expressions[ i ] = parameters.get( i ).createExpression( argumentFields );
+
+    return expressions;
+    }
+
+  /**
+   * Returns the number of parameters evaluated as {@link ParameterExpression}s.
+   *
+   * @return the fallback count
+   */
+  public int getFallbackCount()
+    {
+    return fallbacks.length;
+    }
+
+  @Override
+  public double calculate( TupleEntry tupleEntry )
+    {
+    double result = intercept;
+
+    for( int i = 0; i < covariantPositions.length; i++ )
+      result += covariantBetas[ i ] * tupleEntry.getDouble( covariantPositions[ i ] );
+
+    for( FactorTable table : factorTables )
+      result += table.calculate( tupleEntry );
+
+    for( ParameterExpression expression : fallbacks )
+      {
+      if( expression.applies( tupleEntry ) )
+        result += expression.calculate( tupleEntry );
+      }
+
+    return result;
+    }
+  }
@@ -54,7 +54,7 @@ public class ParameterExpression
 
     public boolean applies( TupleEntry tupleEntry )
       {
-      return predictor.matches( tupleEntry.getString( index ) );
+      return predictor.matches( tupleEntry.getObject( index ) );
       }
     }
 
@@ -22,6 +22,8 @@ package cascading.pattern.model.generalregression.normalization;
 
 import java.io.Serializable;
 
+import cascading.pattern.model.generalregression.NumericMode;
+
 /**
  *
  */
@@ -37,4 +39,17 @@ public abstract class Normalization implements Serializable
   };
 
   public abstract double[] normalize( double[] values );
+
+  /**
+   * Method normalize normalizes the given values with the given {@link NumericMode}. By default the mode is
+   * ignored and {@link #normalize(double[])} is called.
+   *
+   * @param values      the values
+   * @param numericMode the numeric mode
+   * @return the normalized values
+   */
+  public double[] normalize( double[] values, NumericMode numericMode )
+    {
+    return normalize( values );
+    }
   }
@@ -20,19 +20,41 @@
 
 package cascading.pattern.model.generalregression.normalization;
 
+import cascading.pattern.model.generalregression.NumericMode;
+import cascading.pattern.util.FastMath;
+
 /**
- *
+ * Class SoftMaxNormalization replaces every value by its exponent divided by the sum of the exponents of all values.
+ * <p/>
+ * The largest value is subtracted from every value before taking the exponent, which leaves the result unchanged
+ * but keeps large values from overflowing to infinity.
  */
 public class SoftMaxNormalization extends Normalization
   {
   @Override
   public double[] normalize( double[] values )
     {
+    return normalize( values, NumericMode.EXACT );
+    }
+
+  @Override
+  public double[] normalize( double[] values, NumericMode numericMode )
+    {
+    double max = Double.NEGATIVE_INFINITY;
+
+    for( double value : values )
+      max = Math.max( max, value );
+
+    // all values infinite, or NaN, the result is undefined either way
+    if( Double.isInfinite( max ) || max != max )
+      max = 0.0d;
+
+    boolean isFast = numericMode == NumericMode.FAST;
     double sum = 0.0d;
 
     for( int i = 0; i < values.length; i++ )
       {
-      values[ i ] = Math.exp( values[ i ] );
+      values[ i ] = isFast ? FastMath.exp( values[ i ] - max ) : Math.exp( values[ i ] - max );
       sum += values[ i ];
       }
 
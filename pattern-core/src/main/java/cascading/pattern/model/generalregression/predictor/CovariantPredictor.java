@@ -20,6 +20,8 @@
 
 package cascading.pattern.model.generalregression.predictor;
 
+import cascading.pattern.util.FastMath;
+
 /**
  *
  */
@@ -41,8 +43,20 @@ public class CovariantPredictor extends Predictor
     this.exponent = exponent;
     }
 
+  public long getExponent()
+    {
+    return exponent;
+    }
+
+  /**
+   * Method calculate returns the value raised to the exponent, by multiplication for small exponents, see
+   * {@link FastMath#pow(double, long)}.
+   *
+   * @param value the argument value
+   * @return value^exponent
+   */
   public double calculate( double value )
     {
-    return Math.pow( value, exponent );
+    return FastMath.pow( value, exponent );
     }
   }
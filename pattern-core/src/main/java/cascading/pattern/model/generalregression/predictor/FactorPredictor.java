@@ -20,22 +20,70 @@
 
 package cascading.pattern.model.generalregression.predictor;
 
+import cascading.pattern.util.StringIndex;
+
 /**
- *
+ * Class FactorPredictor matches a categorical argument against a single factor value.
+ * <p/>
+ * If created with the category index of the field, the argument may also be the {@link Integer} ordinal of
+ * a category, as created by a {@link cascading.pattern.datafield.CategoricalEncoder}.
  */
 public class FactorPredictor extends Predictor
   {
   private final String factor;
+  private final boolean isEncoded;
+  private final int ordinal;
 
   public FactorPredictor( String fieldName, String factor )
+    {
+    this( fieldName, factor, null );
+    }
+
+  public FactorPredictor( String fieldName, String factor, StringIndex categoryIndex )
     {
     super( fieldName );
 
     this.factor = factor;
+    this.isEncoded = categoryIndex != null;
+    this.ordinal = categoryIndex != null ? categoryIndex.indexOf( factor ) : -1;
+    }
+
+  public String getFactor()
+    {
+    return factor;
+    }
+
+  public boolean isEncoded()
+    {
+    return isEncoded;
+    }
+
+  /**
+   * Returns the ordinal of the factor within the category index, or -1 if not encoded or the factor is not
+   * a category.
+   *
+   * @return the factor ordinal
+   */
+  public int getOrdinal()
+    {
+    return ordinal;
     }
 
   public boolean matches( String value )
     {
     return factor.equals( value );
     }
+
+  public boolean matches( int ordinal )
+    {
+    return this.ordinal != -1 && this.ordinal == ordinal;
+    }
+
+  public boolean matches( Object value )
+    {
+    if( isEncoded && value instanceof Integer )
+      return matches( ( (Integer) value ).intValue() );
+
+    return value != null && factor.equals( value.toString() );
+    }
   }
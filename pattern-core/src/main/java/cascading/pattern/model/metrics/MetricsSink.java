@@ -0,0 +1,35 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.model.metrics;
+
+import cascading.flow.FlowProcess;
+
+/**
+ * Interface MetricsSink receives the counters accumulated by {@link ScoringMetrics}.
+ * <p/>
+ * By default counters are reported through {@link FlowProcess#increment(String, String, long)}. An alternative sink
+ * may be set by class name with the {@link ScoringMetrics#METRICS_SINK} property, and must have a public no-arg
+ * constructor. Sinks are called from every scoring thread, so must be thread-safe.
+ */
+public interface MetricsSink
+  {
+  void increment( FlowProcess flowProcess, String group, String counter, long amount );
+  }
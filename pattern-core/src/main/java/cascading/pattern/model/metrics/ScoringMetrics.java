@@ -0,0 +1,360 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.model.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import cascading.flow.FlowProcess;
+import cascading.pattern.PatternException;
+import cascading.tuple.TupleEntry;
+
+/**
+ * Class ScoringMetrics accumulates the counters of a single scoring function instance and periodically reports
+ * them to a {@link MetricsSink}, by default as Cascading counters in the group {@code "Pattern: <name>"}.
+ * <p/>
+ * Counted are the tuples scored, the tuples with missing argument values, the tuples no decision could be made
+ * for, and the tuples predicted for each category. One in every {@link #METRICS_SAMPLE_RATE} tuples is timed and
+ * added to a latency histogram, with buckets in powers of two nanoseconds.
+ * <p/>
+ * Metrics are disabled unless the {@link #METRICS_ENABLED} property is {@code true}. When disabled,
+ * {@link #create(cascading.flow.FlowProcess, String)} returns null and scoring functions skip every call.
+ * <p/>
+ * If the {@link #METRICS_NODES} property is also {@code true}, tree models count how often each node is entered,
+ * reported in the group {@code "Pattern: <name> nodes"} with the node id as the counter name, see
+ * {@link cascading.pattern.model.tree.TreeProfile}. As every node becomes a counter, this is meant for profiling
+ * runs only, Hadoop limits the number of counters a job may create.
+ */
+public class ScoringMetrics
+  {
+  public static final String METRICS_ENABLED = "pattern.metrics.enabled";
+  public static final String METRICS_SAMPLE_RATE = "pattern.metrics.sample.rate";
+  public static final String METRICS_SINK = "pattern.metrics.sink";
+  public static final String METRICS_NODES = "pattern.metrics.nodes";
+
+  public static final int DEFAULT_SAMPLE_RATE = 1000;
+  public static final String GROUP_PREFIX = "Pattern: ";
+  public static final String NODES_GROUP_SUFFIX = " nodes";
+
+  public static final String TUPLES = "tuples scored";
+  public static final String MISSING = "tuples with missing values";
+  public static final String NO_DECISION = "tuples without decision";
+  public static final String SAMPLED = "tuples timed";
+  public static final String SAMPLED_NANOS = "timed nanos";
+  public static final String CATEGORY_PREFIX = "predicted ";
+  public static final String LATENCY_PREFIX = "latency ns <= ";
+
+  /** Returned by {@link #start()} if the current tuple is not timed. */
+  public static final long NOT_SAMPLED = Long.MIN_VALUE;
+
+  static final int FLUSH_INTERVAL = 64 * 1024;
+
+  private static final MetricsSink COUNTER_SINK = new MetricsSink()
+  {
+  @Override
+  public void increment( FlowProcess flowProcess, String group, String counter, long amount )
+    {
+    flowProcess.increment( group, counter, amount );
+    }
+  };
+
+  private final FlowProcess flowProcess;
+  private final MetricsSink sink;
+  private final String group;
+  private final int sampleRate;
+  private boolean countNodes;
+
+  private final Map<String, long[]> categories = new HashMap<String, long[]>();
+  private final long[] latencies = new long[ 64 ];
+  private String[] categoryNames;
+  private long[] categoryCounts;
+  private String[] nodeIDs;
+  private long[] nodeHits;
+
+  private long tuples;
+  private long missing;
+  private long noDecision;
+  private long sampled;
+  private long sampledNanos;
+  private int untilSample;
+  private int untilFlush = FLUSH_INTERVAL;
+
+  /**
+   * Method create returns a new ScoringMetrics instance if metrics are enabled for the given flowProcess,
+   * otherwise null.
+   *
+   * @param flowProcess the current flow process
+   * @param name        the model name, see {@link cascading.pattern.model.ModelScoringFunction#getMetricsName()}
+   * @return a new ScoringMetrics, or null if disabled
+   */
+  public static ScoringMetrics create( FlowProcess flowProcess, String name )
+    {
+    if( !Boolean.parseBoolean( getProperty( flowProcess, METRICS_ENABLED, "false" ) ) )
+      return null;
+
+    int sampleRate = Integer.parseInt( getProperty( flowProcess, METRICS_SAMPLE_RATE, Integer.toString( DEFAULT_SAMPLE_RATE ) ) );
+    String sinkName = getProperty( flowProcess, METRICS_SINK, null );
+
+    ScoringMetrics metrics = new ScoringMetrics( flowProcess, GROUP_PREFIX + name, sampleRate, sinkName == null ? COUNTER_SINK : createSink( sinkName ) );
+
+    metrics.setCountNodes( Boolean.parseBoolean( getProperty( flowProcess, METRICS_NODES, "false" ) ) );
+
+    return metrics;
+    }
+
+  private static String getProperty( FlowProcess flowProcess, String key, String defaultValue )
+    {
+    Object value = flowProcess == null ? null : flowProcess.getProperty( key );
+
+    return value == null ? defaultValue : value.toString();
+    }
+
+  private static MetricsSink createSink( String className )
+    {
+    try
+      {
+      return (MetricsSink) Class.forName( className, true, Thread.currentThread().getContextClassLoader() ).newInstance();
+      }
+    catch( Exception exception )
+      {
+      throw new PatternException( "unable to create metrics sink: " + className, exception );
+      }
+    }
+
+  public ScoringMetrics( FlowProcess flowProcess, String group, int sampleRate, MetricsSink sink )
+    {
+    if( sampleRate < 1 )
+      throw new IllegalArgumentException( "sample rate must be positive, got: " + sampleRate );
+
+    this.flowProcess = flowProcess;
+    this.group = group;
+    this.sampleRate = sampleRate;
+    this.sink = sink;
+    this.untilSample = 1; // time the first tuple
+    }
+
+  public String getGroup()
+    {
+    return group;
+    }
+
+  public boolean isCountNodes()
+    {
+    return countNodes;
+    }
+
+  public void setCountNodes( boolean countNodes )
+    {
+    this.countNodes = countNodes;
+    }
+
+  /**
+   * Method countNodes registers the node ids of a tree model, if node counting is enabled, and returns the array
+   * the hit count of each node is to be incremented in, indexed as the given ids. The counts are reported and
+   * reset with every flush.
+   *
+   * @param ids the node ids
+   * @return the node hit counts, or null if node counting is disabled
+   */
+  public long[] countNodes( String[] ids )
+    {
+    if( !countNodes )
+      return null;
+
+    nodeIDs = ids;
+    nodeHits = new long[ ids.length ];
+
+    return nodeHits;
+    }
+
+  /**
+   * Returns the node hit counts registered by {@link #countNodes(String[])}, or null.
+   *
+   * @return the node hit counts, or null
+   */
+  public long[] getNodeHits()
+    {
+    return nodeHits;
+    }
+
+  /**
+   * Method countCategories registers the declared categories of a model that knows the index of its predicted
+   * category, so {@link #scored(cascading.tuple.TupleEntry, long, int)} may count it without a lookup by name.
+   *
+   * @param categories the declared categories, in index order
+   */
+  public void countCategories( String[] categories )
+    {
+    categoryNames = categories;
+    categoryCounts = new long[ categories.length ];
+    }
+
+  /**
+   * Method start is called before scoring a tuple, and returns the current time if the tuple is to be timed,
+   * otherwise {@link #NOT_SAMPLED}.
+   *
+   * @return the start time, or NOT_SAMPLED
+   */
+  public long start()
+    {
+    if( --untilSample != 0 )
+      return NOT_SAMPLED;
+
+    untilSample = sampleRate;
+
+    return System.nanoTime();
+    }
+
+  /**
+   * Method scored is called after scoring a tuple with a prediction.
+   *
+   * @param arguments the scored arguments
+   * @param start     the value returned by {@link #start()}
+   */
+  public void scored( TupleEntry arguments, long start )
+    {
+    if( start != NOT_SAMPLED )
+      time( System.nanoTime() - start );
+
+    for( int i = 0; i < arguments.size(); i++ )
+      {
+      if( arguments.getObject( i ) == null )
+        {
+        missing++;
+        break;
+        }
+      }
+
+    tuples++;
+
+    if( --untilFlush == 0 )
+      flush();
+    }
+
+  /**
+   * Method scored is called after scoring a tuple with a category, or null if no decision could be made.
+   *
+   * @param arguments the scored arguments
+   * @param start     the value returned by {@link #start()}
+   * @param category  the predicted category, or null
+   */
+  public void scored( TupleEntry arguments, long start, String category )
+    {
+    if( category == null )
+      {
+      noDecision++;
+      }
+    else
+      {
+      long[] count = categories.get( category );
+
+      if( count == null )
+        categories.put( category, count = new long[ 1 ] );
+
+      count[ 0 ]++;
+      }
+
+    scored( arguments, start );
+    }
+
+  /**
+   * Method scored is called after scoring a tuple with the index of a category registered by
+   * {@link #countCategories(String[])}, or -1 if no decision could be made.
+   *
+   * @param arguments the scored arguments
+   * @param start     the value returned by {@link #start()}
+   * @param category  the index of the predicted category, or -1
+   */
+  public void scored( TupleEntry arguments, long start, int category )
+    {
+    if( category == -1 )
+      noDecision++;
+    else
+      categoryCounts[ category ]++;
+
+    scored( arguments, start );
+    }
+
+  void time( long nanos )
+    {
+    sampled++;
+    sampledNanos += nanos;
+
+    // bucket k holds durations up to 2^k nanos
+    latencies[ nanos <= 1 ? 0 : 64 - Long.numberOfLeadingZeros( nanos - 1 ) ]++;
+    }
+
+  /** Method flush reports and resets all accumulated counters. */
+  public void flush()
+    {
+    untilFlush = FLUSH_INTERVAL;
+
+    report( TUPLES, tuples );
+    report( MISSING, missing );
+    report( NO_DECISION, noDecision );
+    report( SAMPLED, sampled );
+    report( SAMPLED_NANOS, sampledNanos );
+
+    tuples = missing = noDecision = sampled = sampledNanos = 0;
+
+    for( Map.Entry<String, long[]> entry : categories.entrySet() )
+      {
+      report( CATEGORY_PREFIX + entry.getKey(), entry.getValue()[ 0 ] );
+      entry.getValue()[ 0 ] = 0;
+      }
+
+    if( categoryCounts != null )
+      {
+      for( int i = 0; i < categoryCounts.length; i++ )
+        {
+        report( CATEGORY_PREFIX + categoryNames[ i ], categoryCounts[ i ] );
+        categoryCounts[ i ] = 0;
+        }
+      }
+
+    for( int i = 0; i < latencies.length; i++ )
+      {
+      if( latencies[ i ] == 0 )
+        continue;
+
+      report( LATENCY_PREFIX + ( 1L << i ), latencies[ i ] );
+      latencies[ i ] = 0;
+      }
+
+    if( nodeHits == null )
+      return;
+
+    for( int i = 0; i < nodeHits.length; i++ )
+      {
+      if( nodeHits[ i ] == 0 )
+        continue;
+
+      sink.increment( flowProcess, group + NODES_GROUP_SUFFIX, nodeIDs[ i ], nodeHits[ i ] );
+      nodeHits[ i ] = 0;
+      }
+    }
+
+  private void report( String counter, long amount )
+    {
+    if( amount != 0 )
+      sink.increment( flowProcess, group, counter, amount );
+    }
+  }
@@ -29,6 +29,7 @@ public class Node implements Serializable
   String id;
   Predicate predicate = null;
   Object score = null;
+  Tree tree = null;
 
   public Node( String id, Predicate predicate )
     {
@@ -65,6 +66,10 @@ public class Node implements Serializable
   public void setScore( String score )
     {
     this.score = score;
+
+    // the score is part of the digest of the owning tree
+    if( tree != null )
+      tree.invalidateDigest();
     }
 
   public Object getScore()
@@ -0,0 +1,257 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.model.tree;
+
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import cascading.pattern.PatternException;
+import cascading.pattern.model.ModelSchema;
+import cascading.pattern.model.SpecInput;
+import cascading.pattern.model.SpecOutput;
+import cascading.pattern.model.tree.predicate.ComparablePredicate;
+import cascading.pattern.model.tree.predicate.EqualsToPredicate;
+import cascading.pattern.model.tree.predicate.FalsePredicate;
+import cascading.pattern.model.tree.predicate.GreaterOrEqualThanPredicate;
+import cascading.pattern.model.tree.predicate.GreaterThanPredicate;
+import cascading.pattern.model.tree.predicate.IsInSetPredicate;
+import cascading.pattern.model.tree.predicate.IsMissingPredicate;
+import cascading.pattern.model.tree.predicate.IsNotInSetPredicate;
+import cascading.pattern.model.tree.predicate.IsNotMissingPredicate;
+import cascading.pattern.model.tree.predicate.LessOrEqualThanPredicate;
+import cascading.pattern.model.tree.predicate.LessThanPredicate;
+import cascading.pattern.model.tree.predicate.NotEqualsToPredicate;
+import cascading.pattern.model.tree.predicate.Predicate;
+import cascading.pattern.model.tree.predicate.SimplePredicate;
+import cascading.pattern.model.tree.predicate.SimpleSetPredicate;
+import cascading.pattern.model.tree.predicate.TruePredicate;
+import cascading.pattern.model.tree.predicate.compound.AndPredicate;
+import cascading.pattern.model.tree.predicate.compound.CompoundPredicate;
+import cascading.pattern.model.tree.predicate.compound.OrPredicate;
+import cascading.pattern.model.tree.predicate.compound.SurrogatePredicate;
+import cascading.pattern.model.tree.predicate.compound.XorPredicate;
+import cascading.pattern.util.StringIndex;
+
+/**
+ * Class PredicateCodec writes and reads {@link Predicate} instances in the binary model format. Every predicate
+ * type shipped with Pattern is written as a tag and its arguments, any sub-class or other type is serialized.
+ * <p/>
+ * Category indexes are not written, a predicate created with a category index is given the index of its field
+ * in the {@link ModelSchema} when read.
+ */
+final class PredicateCodec
+  {
+  private static final int NULL = 0;
+  private static final int TRUE = 1;
+  private static final int FALSE = 2;
+  private static final int IS_MISSING = 3;
+  private static final int IS_NOT_MISSING = 4;
+  private static final int LESS_THAN = 5;
+  private static final int LESS_OR_EQUAL = 6;
+  private static final int GREATER_THAN = 7;
+  private static final int GREATER_OR_EQUAL = 8;
+  private static final int EQUALS = 9;
+  private static final int NOT_EQUALS = 10;
+  private static final int IS_IN = 11;
+  private static final int IS_NOT_IN = 12;
+  private static final int AND = 13;
+  private static final int OR = 14;
+  private static final int XOR = 15;
+  private static final int SURROGATE = 16;
+  private static final int SERIALIZED = 99;
+
+  private PredicateCodec()
+    {
+    }
+
+  static void write( SpecOutput output, Predicate predicate ) throws IOException
+    {
+    Class<?> type = predicate == null ? null : predicate.getClass();
+
+    if( type == null )
+      output.writeVarInt( NULL );
+    else if( type == TruePredicate.class )
+      output.writeVarInt( TRUE );
+    else if( type == FalsePredicate.class )
+      output.writeVarInt( FALSE );
+    else if( type == IsMissingPredicate.class )
+      writeSimple( output, IS_MISSING, (SimplePredicate) predicate );
+    else if( type == IsNotMissingPredicate.class )
+      writeSimple( output, IS_NOT_MISSING, (SimplePredicate) predicate );
+    else if( type == LessThanPredicate.class )
+      writeComparable( output, LESS_THAN, (ComparablePredicate) predicate );
+    else if( type == LessOrEqualThanPredicate.class )
+      writeComparable( output, LESS_OR_EQUAL, (ComparablePredicate) predicate );
+    else if( type == GreaterThanPredicate.class )
+      writeComparable( output, GREATER_THAN, (ComparablePredicate) predicate );
+    else if( type == GreaterOrEqualThanPredicate.class )
+      writeComparable( output, GREATER_OR_EQUAL, (ComparablePredicate) predicate );
+    else if( type == EqualsToPredicate.class )
+      writeComparable( output, EQUALS, (ComparablePredicate) predicate );
+    else if( type == NotEqualsToPredicate.class )
+      writeComparable( output, NOT_EQUALS, (ComparablePredicate) predicate );
+    else if( type == IsInSetPredicate.class )
+      writeSet( output, IS_IN, (SimpleSetPredicate) predicate );
+    else if( type == IsNotInSetPredicate.class )
+      writeSet( output, IS_NOT_IN, (SimpleSetPredicate) predicate );
+    else if( type == AndPredicate.class )
+      writeCompound( output, AND, (CompoundPredicate) predicate );
+    else if( type == OrPredicate.class )
+      writeCompound( output, OR, (CompoundPredicate) predicate );
+    else if( type == XorPredicate.class )
+      writeCompound( output, XOR, (CompoundPredicate) predicate );
+    else if( type == SurrogatePredicate.class )
+      writeCompound( output, SURROGATE, (CompoundPredicate) predicate );
+    else
+      {
+      output.writeVarInt( SERIALIZED );
+      output.writeObject( predicate );
+      }
+    }
+
+  private static void writeSimple( SpecOutput output, int tag, SimplePredicate predicate ) throws IOException
+    {
+    output.writeVarInt( tag );
+    output.writeString( predicate.getArgumentField() );
+    }
+
+  private static void writeComparable( SpecOutput output, int tag, ComparablePredicate predicate ) throws IOException
+    {
+    writeSimple( output, tag, predicate );
+    output.writeObject( predicate.getValue() );
+    output.writeBoolean( predicate.getCategoryIndex() != null );
+    }
+
+  private static void writeSet( SpecOutput output, int tag, SimpleSetPredicate predicate ) throws IOException
+    {
+    writeSimple( output, tag, predicate );
+
+    Collection values = predicate.getValues();
+
+    output.writeVarInt( values.size() );
+
+    for( Object value : values )
+      output.writeObject( value );
+
+    output.writeBoolean( predicate.getCategoryIndex() != null );
+    }
+
+  private static void writeCompound( SpecOutput output, int tag, CompoundPredicate predicate ) throws IOException
+    {
+    output.writeVarInt( tag );
+
+    Predicate[] children = predicate.getChildren();
+
+    output.writeVarInt( children.length );
+
+    for( Predicate child : children )
+      write( output, child );
+    }
+
+  static Predicate read( SpecInput input, ModelSchema modelSchema ) throws IOException
+    {
+    int tag = input.readVarInt();
+
+    switch( tag )
+      {
+      case NULL:
+        return null;
+      case TRUE:
+        return new TruePredicate();
+      case FALSE:
+        return new FalsePredicate();
+      case IS_MISSING:
+        return new IsMissingPredicate( input.readString() );
+      case IS_NOT_MISSING:
+        return new IsNotMissingPredicate( input.readString() );
+      case SERIALIZED:
+        return (Predicate) input.readObject();
+      }
+
+    if( tag >= AND && tag <= SURROGATE )
+      return readCompound( input, modelSchema, tag );
+
+    String field = input.readString();
+
+    if( tag == IS_IN || tag == IS_NOT_IN )
+      return readSet( input, modelSchema, tag, field );
+
+    Object value = input.readObject();
+    StringIndex categoryIndex = input.readBoolean() ? modelSchema.getCategoryIndex( field ) : null;
+
+    switch( tag )
+      {
+      case LESS_THAN:
+        return new LessThanPredicate( field, (Comparable) value, categoryIndex );
+      case LESS_OR_EQUAL:
+        return new LessOrEqualThanPredicate( field, (Comparable) value, categoryIndex );
+      case GREATER_THAN:
+        return new GreaterThanPredicate( field, (Comparable) value, categoryIndex );
+      case GREATER_OR_EQUAL:
+        return new GreaterOrEqualThanPredicate( field, (Comparable) value, categoryIndex );
+      case EQUALS:
+        return new EqualsToPredicate( field, value, categoryIndex );
+      case NOT_EQUALS:
+        return new NotEqualsToPredicate( field, value, categoryIndex );
+      default:
+        throw new PatternException( "unknown predicate tag: " + tag );
+      }
+    }
+
+  private static Predicate readSet( SpecInput input, ModelSchema modelSchema, int tag, String field ) throws IOException
+    {
+    int size = input.readVarInt();
+    List<Object> values = new ArrayList<Object>( size );
+
+    for( int i = 0; i < size; i++ )
+      values.add( input.readObject() );
+
+    StringIndex categoryIndex = input.readBoolean() ? modelSchema.getCategoryIndex( field ) : null;
+
+    if( tag == IS_IN )
+      return new IsInSetPredicate( field, values, categoryIndex );
+
+    return new IsNotInSetPredicate( field, values, categoryIndex );
+    }
+
+  private static Predicate readCompound( SpecInput input, ModelSchema modelSchema, int tag ) throws IOException
+    {
+    int size = input.readVarInt();
+    List<Predicate> children = new ArrayList<Predicate>( size );
+
+    for( int i = 0; i < size; i++ )
+      children.add( read( input, modelSchema ) );
+
+    switch( tag )
+      {
+      case AND:
+        return new AndPredicate( children );
+      case OR:
+        return new OrPredicate( children );
+      case XOR:
+        return new XorPredicate( children );
+      default:
+        return new SurrogatePredicate( children );
+      }
+    }
+  }
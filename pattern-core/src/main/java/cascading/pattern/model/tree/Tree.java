@@ -20,16 +20,31 @@
 
 package cascading.pattern.model.tree;
 
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
 import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashMap;
 import java.util.LinkedHashSet;
+import java.util.List;
 import java.util.Map;
 import java.util.Set;
 
+import cascading.pattern.PatternException;
+import cascading.pattern.model.ModelCache;
+import cascading.pattern.model.ModelSchema;
+import cascading.pattern.model.SpecInput;
+import cascading.pattern.model.SpecOutput;
+import cascading.pattern.model.tree.decision.CompiledDecisionTree;
 import cascading.pattern.model.tree.decision.DecisionTree;
+import cascading.pattern.model.tree.decision.DecisionTreeGenerator;
 import cascading.pattern.model.tree.predicate.Predicate;
 import cascading.tuple.Fields;
+import com.google.common.hash.Hashing;
 import org.jgrapht.DirectedGraph;
+import org.jgrapht.Graphs;
 import org.jgrapht.graph.SimpleDirectedGraph;
 
 /**
@@ -51,9 +66,12 @@ public class Tree implements Serializable
 
   private int count = 0;
 
+  private String digest;
+
   public Tree( String rootID )
     {
     root = new Node( rootID );
+    root.tree = this;
     nodes.put( root.getID(), root );
     graph.addVertex( root );
     }
@@ -93,6 +111,9 @@ public class Tree implements Serializable
 
     Node toNode = new Node( toID, predicate, score );
 
+    toNode.tree = this;
+    invalidateDigest();
+
     nodes.put( toID, toNode );
     graph.addVertex( toNode );
     graph.addEdge( nodes.get( fromID ), toNode, count++ );
@@ -103,9 +124,246 @@ public class Tree implements Serializable
     return createDecisionTree( null, argumentFields );
     }
 
-  public DecisionTree createDecisionTree( String[] categories, Fields argumentFields )
+  public DecisionTree createDecisionTree( final String[] categories, final Fields argumentFields )
+    {
+    return ModelCache.get( createCacheKey( "decisionTree", categories, argumentFields ), new ModelCache.Loader<DecisionTree>()
+    {
+    @Override
+    public DecisionTree load()
+      {
+      return new DecisionTree( categories, argumentFields, Tree.this, getRoot() );
+      }
+    } );
+    }
+
+  public CompiledDecisionTree createCompiledDecisionTree( Fields argumentFields )
+    {
+    return createCompiledDecisionTree( null, argumentFields );
+    }
+
+  /**
+   * Creates a {@link CompiledDecisionTree}, a flattened array based form of this tree that returns the same
+   * results as {@link #createDecisionTree(String[], cascading.tuple.Fields)} but is cheaper to evaluate.
+   * <p/>
+   * Compiled trees are immutable, so are held by the {@link ModelCache} and shared within the JVM. Trees scored as
+   * part of a larger model, as the members of an ensemble, should be compiled by
+   * {@link #compileDecisionTree(String[], cascading.tuple.Fields, boolean)} so they do not crowd other models out
+   * of the cache.
+   *
+   * @param categories     the declared categories, if any
+   * @param argumentFields the argument fields
+   * @return a CompiledDecisionTree
+   */
+  public CompiledDecisionTree createCompiledDecisionTree( final String[] categories, final Fields argumentFields )
+    {
+    return ModelCache.get( createCacheKey( "compiledTree", categories, argumentFields ), new ModelCache.Loader<CompiledDecisionTree>()
+    {
+    @Override
+    public CompiledDecisionTree load()
+      {
+      return new CompiledDecisionTree( categories, argumentFields, Tree.this );
+      }
+    } );
+    }
+
+  /**
+   * Creates a {@link CompiledDecisionTree} that is not held by the {@link ModelCache}, for trees whose containing
+   * model is cached instead.
+   *
+   * @param categories     the declared categories, if any
+   * @param argumentFields the argument fields
+   * @param generateCode   true if the decide method should be generated, see {@link DecisionTreeGenerator}
+   * @return a CompiledDecisionTree
+   */
+  public CompiledDecisionTree compileDecisionTree( String[] categories, Fields argumentFields, boolean generateCode )
+    {
+    CompiledDecisionTree compiledTree = new CompiledDecisionTree( categories, argumentFields, this );
+
+    if( !generateCode )
+      return compiledTree;
+
+    return DecisionTreeGenerator.generate( compiledTree, argumentFields );
+    }
+
+  private String createCacheKey( String kind, String[] categories, Fields argumentFields )
     {
-    return new DecisionTree( categories, argumentFields, this, this.getRoot() );
+    return ModelCache.createKey( kind, getDigest() + Arrays.toString( categories ), argumentFields );
+    }
+
+  /**
+   * Returns a digest of the binary form of this tree. Trees with equal digests contain the same nodes,
+   * predicates and scores.
+   * <p/>
+   * The digest is written along with the tree, so it is only calculated once on the client and not again by
+   * every task that deserializes the tree.
+   *
+   * @return the digest as a hex string
+   */
+  public String getDigest()
+    {
+    if( digest != null )
+      return digest;
+
+    try
+      {
+      ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+      SpecOutput output = new SpecOutput( bytes );
+
+      writeNodes( output );
+      output.flush();
+
+      digest = Hashing.md5().hashBytes( bytes.toByteArray() ).toString();
+      }
+    catch( IOException exception )
+      {
+      throw new PatternException( "unable to write tree", exception );
+      }
+
+    return digest;
+    }
+
+  void invalidateDigest()
+    {
+    digest = null;
+    }
+
+  /**
+   * Method writeTo writes this tree in the binary format of {@link cascading.pattern.model.Spec#writeTo(java.io.OutputStream)}.
+   * Nodes are written breadth first, each as the index of its parent, its id, predicate and score.
+   *
+   * @param output the output
+   * @throws IOException
+   */
+  public void writeTo( SpecOutput output ) throws IOException
+    {
+    output.writeString( getDigest() );
+
+    writeNodes( output );
+    }
+
+  private void writeNodes( SpecOutput output ) throws IOException
+    {
+    List<Node> ordered = new ArrayList<Node>();
+    Map<Node, Integer> indexes = new HashMap<Node, Integer>();
+
+    ordered.add( root );
+
+    for( int i = 0; i < ordered.size(); i++ )
+      {
+      indexes.put( ordered.get( i ), i );
+      ordered.addAll( Graphs.successorListOf( graph, ordered.get( i ) ) );
+      }
+
+    output.writeVarInt( ordered.size() );
+    output.writeString( root.id );
+    output.writeObject( root.score );
+
+    for( int i = 1; i < ordered.size(); i++ )
+      {
+      Node node = ordered.get( i );
+
+      output.writeVarInt( indexes.get( Graphs.predecessorListOf( graph, node ).get( 0 ) ) );
+      output.writeString( node.id );
+      PredicateCodec.write( output, node.predicate );
+      output.writeObject( node.score );
+      }
+    }
+
+  /**
+   * Method readFrom reads a tree written by {@link #writeTo(cascading.pattern.model.SpecOutput)}.
+   *
+   * @param input       the input
+   * @param modelSchema the schema of the enclosing spec, used to resolve category indexes
+   * @return the tree
+   * @throws IOException
+   */
+  public static Tree readFrom( SpecInput input, ModelSchema modelSchema ) throws IOException
+    {
+    String digest = input.readString();
+    String[] ids = new String[ input.readVarInt() ];
+
+    ids[ 0 ] = input.readString();
+
+    Tree tree = new Tree( ids[ 0 ] );
+
+    tree.root.score = input.readObject();
+
+    for( int i = 1; i < ids.length; i++ )
+      {
+      String parentID = ids[ input.readVarInt() ];
+
+      ids[ i ] = input.readString();
+
+      Predicate predicate = PredicateCodec.read( input, modelSchema );
+
+      tree.addPredicate( parentID, ids[ i ], predicate, input.readObject() );
+      }
+
+    tree.digest = digest;
+
+    return tree;
+    }
+
+  private void writeObject( ObjectOutputStream output ) throws IOException
+    {
+    getDigest();
+
+    output.defaultWriteObject();
+    }
+
+  /**
+   * Method reorder returns a copy of this tree where the children of every node are ordered by how often they
+   * were taken in the given profile, most frequent first, so the hot path is tested first by every form of
+   * decision tree and is laid out first by {@link CompiledDecisionTree}.
+   * <p/>
+   * The children of a node are only reordered if their predicates are mutually exclusive, see
+   * {@link TreeProfile}, so the reordered tree always makes the same decisions as this tree.
+   *
+   * @param profile the node profile
+   * @return a new Tree
+   */
+  public Tree reorder( TreeProfile profile )
+    {
+    Tree tree = new Tree( root.id );
+
+    tree.root.score = root.score;
+
+    List<Node> parents = new ArrayList<Node>();
+
+    parents.add( root );
+
+    for( int i = 0; i < parents.size(); i++ )
+      {
+      Node parent = parents.get( i );
+
+      for( Node child : profile.order( Graphs.successorListOf( graph, parent ) ) )
+        {
+        tree.addPredicate( parent.id, child.id, child.predicate, child.score );
+        parents.add( child );
+        }
+      }
+
+    return tree;
+    }
+
+  /**
+   * Creates a {@link CompiledDecisionTree} whose decide method is generated Java source compiled at runtime, see
+   * {@link DecisionTreeGenerator}. Trees too large to be generated are returned as a plain CompiledDecisionTree.
+   *
+   * @param categories     the declared categories, if any
+   * @param argumentFields the argument fields
+   * @return a CompiledDecisionTree
+   */
+  public CompiledDecisionTree createGeneratedDecisionTree( final String[] categories, final Fields argumentFields )
+    {
+    return ModelCache.get( createCacheKey( "generatedTree", categories, argumentFields ), new ModelCache.Loader<CompiledDecisionTree>()
+    {
+    @Override
+    public CompiledDecisionTree load()
+      {
+      return DecisionTreeGenerator.generate( createCompiledDecisionTree( categories, argumentFields ), argumentFields );
+      }
+    } );
     }
 
   @Override
@@ -0,0 +1,76 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.model.tree;
+
+import cascading.pattern.model.batch.BatchScorer;
+import cascading.pattern.model.batch.ColumnBatch;
+import cascading.pattern.model.tree.decision.CompiledDecisionTree;
+import cascading.pattern.model.tree.decision.FinalDecision;
+
+/**
+ * Class TreeBatchScorer scores a {@link ColumnBatch} against a {@link CompiledDecisionTree}.
+ */
+public class TreeBatchScorer implements BatchScorer
+  {
+  private final String[] categories;
+  private final CompiledDecisionTree decisionTree;
+
+  public TreeBatchScorer( TreeSpec treeSpec )
+    {
+    this.categories = treeSpec.getCategoriesArray();
+    this.decisionTree = treeSpec.getTree().createCompiledDecisionTree( categories, treeSpec.getModelSchema().getInputFields() );
+
+    if( !decisionTree.isBatchSupported() )
+      throw new UnsupportedOperationException( "tree contains predicates that cannot be evaluated against a batch" );
+    }
+
+  @Override
+  public String[] getCategories()
+    {
+    return categories;
+    }
+
+  @Override
+  public void score( ColumnBatch batch, int[] results )
+    {
+    int size = batch.size();
+
+    for( int row = 0; row < size; row++ )
+      {
+      FinalDecision decision = decisionTree.decide( batch, row );
+
+      results[ row ] = decision == null ? -1 : decision.getIndex();
+      }
+    }
+
+  @Override
+  public void score( ColumnBatch batch, double[] results )
+    {
+    int size = batch.size();
+
+    for( int row = 0; row < size; row++ )
+      {
+      FinalDecision decision = decisionTree.decide( batch, row );
+
+      results[ row ] = decision == null ? Double.NaN : decision.getNumericScore();
+      }
+    }
+  }
@@ -24,17 +24,21 @@ import cascading.flow.FlowProcess;
 import cascading.operation.FunctionCall;
 import cascading.operation.OperationCall;
 import cascading.pattern.model.ModelScoringFunction;
-import cascading.pattern.model.tree.decision.DecisionTree;
+import cascading.pattern.model.metrics.ScoringMetrics;
+import cascading.pattern.model.tree.decision.CompiledDecisionTree;
 import cascading.pattern.model.tree.decision.FinalDecision;
+import cascading.tuple.Tuple;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 
 /** Class TreeFunction will return the result or score from the given decision tree defined by the {@link TreeSpec}. */
-public class TreeFunction extends ModelScoringFunction<TreeSpec, DecisionTree>
+public class TreeFunction extends ModelScoringFunction<TreeSpec, CompiledDecisionTree>
   {
   private static final Logger LOG = LoggerFactory.getLogger( TreeFunction.class );
 
   Result<FinalDecision, ?> result;
+  private final boolean returnIndex;
+  private final boolean isCategorical;
 
   public TreeFunction( TreeSpec treeSpec )
     {
@@ -43,7 +47,24 @@ public class TreeFunction extends ModelScoringFunction<TreeSpec, DecisionTree>
 
   public TreeFunction( TreeSpec spec, boolean returnIndex, boolean safe )
     {
-    super( spec, safe );
+    this( spec, returnIndex, safe, false );
+    }
+
+  /**
+   * Constructor TreeFunction creates a new instance that, if explain is true, also emits the leaf node id and
+   * the decision path, see {@link TreeSpec#getExplanationFields()}.
+   *
+   * @param spec        the tree spec
+   * @param returnIndex true if the category index should be returned instead of the score
+   * @param safe        true if the function is safe
+   * @param explain     true if the decision should be explained
+   */
+  public TreeFunction( TreeSpec spec, boolean returnIndex, boolean safe, boolean explain )
+    {
+    super( spec, safe, explain );
+
+    this.returnIndex = returnIndex;
+    this.isCategorical = spec.isPredictedCategorical();
 
     if( returnIndex )
       result = new Result<FinalDecision, Integer>()
@@ -65,25 +86,70 @@ public class TreeFunction extends ModelScoringFunction<TreeSpec, DecisionTree>
       };
     }
 
+  public boolean isReturnIndex()
+    {
+    return returnIndex;
+    }
+
   @Override
-  public void prepare( FlowProcess flowProcess, OperationCall<Context<DecisionTree>> operationCall )
+  public void prepare( FlowProcess flowProcess, OperationCall<Context<CompiledDecisionTree>> operationCall )
     {
     super.prepare( flowProcess, operationCall );
 
-    operationCall.getContext().payload = getSpec().getTree().createDecisionTree( getSpec().getCategoriesArray(), operationCall.getArgumentFields() );
+    CompiledDecisionTree decisionTree = getSpec().createCompiledDecisionTree( getSpec().getCategoriesArray(), operationCall.getArgumentFields() );
+    ScoringMetrics metrics = operationCall.getContext().metrics;
+
+    operationCall.getContext().payload = decisionTree;
+
+    if( metrics != null )
+      {
+      metrics.countNodes( decisionTree.getNodeIDs() );
+
+      if( isCategorical )
+        metrics.countCategories( getSpec().getCategoriesArray() );
+      }
     }
 
   @Override
-  public void operate( FlowProcess flowProcess, FunctionCall<Context<DecisionTree>> functionCall )
+  public void operate( FlowProcess flowProcess, FunctionCall<Context<CompiledDecisionTree>> functionCall )
     {
-    DecisionTree decisionTree = functionCall.getContext().payload;
+    CompiledDecisionTree decisionTree = functionCall.getContext().payload;
+    ScoringMetrics metrics = functionCall.getContext().metrics;
+    long start = metrics == null ? 0 : metrics.start();
+    long[] nodeHits = metrics == null ? null : metrics.getNodeHits();
 
-    FinalDecision finalDecision = decisionTree.decide( functionCall.getArguments() );
+    FinalDecision finalDecision;
+
+    if( nodeHits == null )
+      finalDecision = decisionTree.decide( functionCall.getArguments() );
+    else
+      finalDecision = decisionTree.decide( functionCall.getArguments(), nodeHits );
 
     LOG.debug( "decision: {}", finalDecision );
 
-    Object result = this.result.transform( finalDecision );
+    // no predicate matched a missing value
+    Object result = finalDecision == null ? null : this.result.transform( finalDecision );
+
+    if( metrics != null )
+      {
+      if( finalDecision == null )
+        metrics.scored( functionCall.getArguments(), start, -1 );
+      else if( !isCategorical )
+        metrics.scored( functionCall.getArguments(), start );
+      else if( finalDecision.getIndex() != -1 )
+        metrics.scored( functionCall.getArguments(), start, finalDecision.getIndex() );
+      else
+        metrics.scored( functionCall.getArguments(), start, finalDecision.getScore().toString() ); // not a declared category
+      }
+
+    Tuple tuple = functionCall.getContext().result( result );
+
+    if( isExplain )
+      {
+      tuple.set( explanationPos, finalDecision == null ? null : finalDecision.getNodeID() );
+      tuple.set( explanationPos + 1, finalDecision == null ? null : finalDecision.getName() );
+      }
 
-    functionCall.getOutputCollector().add( functionCall.getContext().result( result ) );
+    functionCall.getOutputCollector().add( tuple );
     }
   }
@@ -0,0 +1,268 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.model.tree;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.Serializable;
+import java.io.Writer;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+
+import cascading.pattern.PatternException;
+import cascading.pattern.model.tree.predicate.ComparablePredicate;
+import cascading.pattern.model.tree.predicate.EqualsToPredicate;
+import cascading.pattern.model.tree.predicate.FalsePredicate;
+import cascading.pattern.model.tree.predicate.GreaterOrEqualThanPredicate;
+import cascading.pattern.model.tree.predicate.GreaterThanPredicate;
+import cascading.pattern.model.tree.predicate.IsInSetPredicate;
+import cascading.pattern.model.tree.predicate.IsMissingPredicate;
+import cascading.pattern.model.tree.predicate.IsNotInSetPredicate;
+import cascading.pattern.model.tree.predicate.IsNotMissingPredicate;
+import cascading.pattern.model.tree.predicate.LessOrEqualThanPredicate;
+import cascading.pattern.model.tree.predicate.LessThanPredicate;
+import cascading.pattern.model.tree.predicate.NotEqualsToPredicate;
+import cascading.pattern.model.tree.predicate.Predicate;
+import cascading.pattern.model.tree.predicate.SimplePredicate;
+import cascading.pattern.model.tree.predicate.SimpleSetPredicate;
+
+/**
+ * Class TreeProfile holds how often each {@link Node} of a {@link Tree} was entered, keyed on the node id, as
+ * counted when the {@link cascading.pattern.model.metrics.ScoringMetrics#METRICS_NODES} property is enabled.
+ * <p/>
+ * A profile may be filled from the counters of a profiling run via {@link #add(String, long)}, or read from and
+ * written to a side file of tab delimited node id and count lines.
+ * <p/>
+ * {@link Tree#reorder(TreeProfile)} uses a profile to test the most frequently taken children of a node first.
+ * Children are only reordered if no two of their predicates can be true for the same tuple, for example the two
+ * sides of a binary split, as only then the order of the children cannot change the decision.
+ */
+public class TreeProfile implements Serializable
+  {
+  private final Map<String, Long> counts = new HashMap<String, Long>();
+
+  public TreeProfile()
+    {
+    }
+
+  /**
+   * Method add adds the given count to the count of the given node.
+   *
+   * @param id    the node id
+   * @param count the count to add
+   * @return this profile
+   */
+  public TreeProfile add( String id, long count )
+    {
+    counts.put( id, getCount( id ) + count );
+
+    return this;
+    }
+
+  public long getCount( String id )
+    {
+    Long count = counts.get( id );
+
+    return count == null ? 0 : count;
+    }
+
+  public int size()
+    {
+    return counts.size();
+    }
+
+  /**
+   * Method read adds every tab delimited node id and count line of the given reader to this profile.
+   *
+   * @param reader the reader
+   * @return this profile
+   * @throws IOException
+   */
+  public TreeProfile read( Reader reader ) throws IOException
+    {
+    BufferedReader lines = new BufferedReader( reader );
+    String line;
+
+    while( ( line = lines.readLine() ) != null )
+      {
+      if( line.trim().isEmpty() )
+        continue;
+
+      int tab = line.lastIndexOf( '\t' );
+
+      if( tab == -1 )
+        throw new PatternException( "invalid profile line, expected node id and count: " + line );
+
+      try
+        {
+        add( line.substring( 0, tab ), Long.parseLong( line.substring( tab + 1 ).trim() ) );
+        }
+      catch( NumberFormatException exception )
+        {
+        throw new PatternException( "invalid profile count: " + line, exception );
+        }
+      }
+
+    return this;
+    }
+
+  /**
+   * Method write writes this profile as tab delimited node id and count lines, most frequent first.
+   *
+   * @param writer the writer
+   * @throws IOException
+   */
+  public void write( Writer writer ) throws IOException
+    {
+    List<Map.Entry<String, Long>> entries = new ArrayList<Map.Entry<String, Long>>( counts.entrySet() );
+
+    Collections.sort( entries, new Comparator<Map.Entry<String, Long>>()
+    {
+    @Override
+    public int compare( Map.Entry<String, Long> lhs, Map.Entry<String, Long> rhs )
+      {
+      return rhs.getValue().compareTo( lhs.getValue() );
+      }
+    } );
+
+    for( Map.Entry<String, Long> entry : entries )
+      writer.write( entry.getKey() + "\t" + entry.getValue() + "\n" );
+
+    writer.flush();
+    }
+
+  /**
+   * Method order returns the given children ordered by descending count, if their predicates are mutually
+   * exclusive, otherwise the children unchanged. Children with equal counts retain their order.
+   *
+   * @param children the children of a node
+   * @return the ordered children
+   */
+  List<Node> order( List<Node> children )
+    {
+    if( children.size() < 2 || !isExclusive( children ) )
+      return children;
+
+    List<Node> ordered = new ArrayList<Node>( children );
+
+    Collections.sort( ordered, new Comparator<Node>()
+    {
+    @Override
+    public int compare( Node lhs, Node rhs )
+      {
+      long lhsCount = getCount( lhs.getID() );
+      long rhsCount = getCount( rhs.getID() );
+
+      return lhsCount < rhsCount ? 1 : lhsCount == rhsCount ? 0 : -1;
+      }
+    } );
+
+    return ordered;
+    }
+
+  private static boolean isExclusive( List<Node> children )
+    {
+    for( int i = 0; i < children.size(); i++ )
+      {
+      for( int j = i + 1; j < children.size(); j++ )
+        {
+        if( !isExclusive( children.get( i ).getPredicate(), children.get( j ).getPredicate() ) )
+          return false;
+        }
+      }
+
+    return true;
+    }
+
+  /**
+   * Returns true if the given predicates are known to never both be true for the same tuple. Only complementary
+   * tests of the same field against the same value, and equality tests of the same field against distinct values
+   * of the same type are recognized.
+   */
+  static boolean isExclusive( Predicate lhs, Predicate rhs )
+    {
+    if( lhs instanceof FalsePredicate || rhs instanceof FalsePredicate )
+      return true;
+
+    if( !( lhs instanceof SimplePredicate ) || !( rhs instanceof SimplePredicate ) )
+      return false;
+
+    if( !( (SimplePredicate) lhs ).getArgumentField().equals( ( (SimplePredicate) rhs ).getArgumentField() ) )
+      return false;
+
+    if( isPair( lhs, rhs, IsMissingPredicate.class, IsNotMissingPredicate.class ) )
+      return true;
+
+    if( isPair( lhs, rhs, IsInSetPredicate.class, IsNotInSetPredicate.class ) )
+      return new HashSet<Object>( ( (SimpleSetPredicate) lhs ).getValues() ).equals( new HashSet<Object>( ( (SimpleSetPredicate) rhs ).getValues() ) );
+
+    if( !( lhs instanceof ComparablePredicate ) || !( rhs instanceof ComparablePredicate ) )
+      return false;
+
+    Object lhsValue = ( (ComparablePredicate) lhs ).getValue();
+    Object rhsValue = ( (ComparablePredicate) rhs ).getValue();
+
+    if( lhsValue == null || rhsValue == null || lhsValue.getClass() != rhsValue.getClass() )
+      return false;
+
+    if( lhs instanceof EqualsToPredicate && rhs instanceof EqualsToPredicate )
+      return isDistinct( lhsValue, rhsValue );
+
+    if( !lhsValue.equals( rhsValue ) )
+      return false;
+
+    return isPair( lhs, rhs, LessThanPredicate.class, GreaterOrEqualThanPredicate.class ) ||
+      isPair( lhs, rhs, LessOrEqualThanPredicate.class, GreaterThanPredicate.class ) ||
+      isPair( lhs, rhs, EqualsToPredicate.class, NotEqualsToPredicate.class );
+    }
+
+  private static boolean isDistinct( Object lhsValue, Object rhsValue )
+    {
+    if( !( lhsValue instanceof Number ) )
+      return !lhsValue.equals( rhsValue );
+
+    // numbers as doubles, as compiled trees compare them, where -0.0 and 0.0 may both match
+    double lhsDouble = ( (Number) lhsValue ).doubleValue();
+    double rhsDouble = ( (Number) rhsValue ).doubleValue();
+
+    return lhsDouble != rhsDouble && Double.compare( lhsDouble, rhsDouble ) != 0;
+    }
+
+  private static boolean isPair( Predicate lhs, Predicate rhs, Class<? extends Predicate> first, Class<? extends Predicate> second )
+    {
+    return first.isInstance( lhs ) && second.isInstance( rhs ) || first.isInstance( rhs ) && second.isInstance( lhs );
+    }
+
+  @Override
+  public String toString()
+    {
+    final StringBuilder sb = new StringBuilder( "TreeProfile{" );
+    sb.append( "nodes=" ).append( counts.size() );
+    sb.append( '}' );
+    return sb.toString();
+    }
+  }
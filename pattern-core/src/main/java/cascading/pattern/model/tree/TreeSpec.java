@@ -20,8 +20,15 @@
 
 package cascading.pattern.model.tree;
 
+import java.io.IOException;
+
 import cascading.pattern.model.ModelSchema;
 import cascading.pattern.model.Spec;
+import cascading.pattern.model.SpecInput;
+import cascading.pattern.model.SpecOutput;
+import cascading.pattern.model.batch.BatchScorer;
+import cascading.pattern.model.tree.decision.CompiledDecisionTree;
+import cascading.tuple.Fields;
 
 
 /**
@@ -31,6 +38,11 @@ import cascading.pattern.model.Spec;
 public class TreeSpec extends Spec
   {
   public Tree tree;
+  private boolean generateCode = false;
+
+  protected TreeSpec()
+    {
+    }
 
   public TreeSpec( ModelSchema modelSchema )
     {
@@ -51,6 +63,91 @@ public class TreeSpec extends Spec
   public void setTree( Tree tree )
     {
     this.tree = tree;
+    invalidateDigest();
+    }
+
+  public boolean isGenerateCode()
+    {
+    return generateCode;
+    }
+
+  /**
+   * Method setGenerateCode sets whether the tree should be compiled into Java bytecode when prepared, see
+   * {@link Tree#createGeneratedDecisionTree(String[], cascading.tuple.Fields)}. False by default.
+   *
+   * @param generateCode true if bytecode should be generated
+   */
+  public void setGenerateCode( boolean generateCode )
+    {
+    this.generateCode = generateCode;
+    invalidateDigest();
+    }
+
+  public CompiledDecisionTree createCompiledDecisionTree( String[] categories, Fields argumentFields )
+    {
+    if( generateCode )
+      return tree.createGeneratedDecisionTree( categories, argumentFields );
+
+    return tree.createCompiledDecisionTree( categories, argumentFields );
+    }
+
+  /**
+   * Method compileDecisionTree returns the tree compiled as by
+   * {@link #createCompiledDecisionTree(String[], cascading.tuple.Fields)}, but not held by the
+   * {@link cascading.pattern.model.ModelCache}, as when this spec is a member of a cached ensemble.
+   *
+   * @param categories     the declared categories, if any
+   * @param argumentFields the argument fields
+   * @return a CompiledDecisionTree
+   */
+  public CompiledDecisionTree compileDecisionTree( String[] categories, Fields argumentFields )
+    {
+    return tree.compileDecisionTree( categories, argumentFields, generateCode );
+    }
+
+  /**
+   * Returns true if every predicate of the tree can be evaluated against a batch, see
+   * {@link CompiledDecisionTree#isBatchSupported()}.
+   *
+   * @return true if batch scoring is supported
+   */
+  @Override
+  public boolean isBatchSupported()
+    {
+    return tree.createCompiledDecisionTree( getCategoriesArray(), getModelSchema().getInputFields() ).isBatchSupported();
+    }
+
+  @Override
+  public BatchScorer createBatchScorer()
+    {
+    return isBatchSupported() ? new TreeBatchScorer( this ) : null;
+    }
+
+  /**
+   * Returns the id of the leaf node and the path of node ids from the root to the leaf, see
+   * {@link cascading.pattern.model.tree.decision.Decision#getName()}.
+   *
+   * @return the explanation fields
+   */
+  @Override
+  public Fields getExplanationFields()
+    {
+    return new Fields( getExplanationFieldName( "leaf" ), String.class )
+      .append( new Fields( getExplanationFieldName( "path" ), String.class ) );
+    }
+
+  @Override
+  protected void writeFields( SpecOutput output ) throws IOException
+    {
+    output.writeBoolean( generateCode );
+    tree.writeTo( output );
+    }
+
+  @Override
+  protected void readFields( SpecInput input ) throws IOException
+    {
+    generateCode = input.readBoolean();
+    tree = Tree.readFrom( input, getModelSchema() );
     }
 
   @Override
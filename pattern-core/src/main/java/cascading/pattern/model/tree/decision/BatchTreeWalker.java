@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.model.tree.decision;
+
+import cascading.pattern.model.batch.ColumnBatch;
+
+/**
+ * Class BatchTreeWalker walks a tree laid out as by {@link CompiledDecisionTree} against a row of a
+ * {@link ColumnBatch}. Sub-classes provide access to the nodes, held in heap arrays by CompiledDecisionTree and
+ * in a memory-mapped file by {@link MappedTreeImage}, so both walk a tree the same way.
+ */
+abstract class BatchTreeWalker
+  {
+  abstract int getFirstChild( int node );
+
+  abstract int getChildCount( int node );
+
+  abstract int getParent( int node );
+
+  /** Returns the batch operator of the given node. */
+  abstract int getOperator( int node );
+
+  abstract int getField( int node );
+
+  abstract double getThreshold( int node );
+
+  /** Returns true if the ordinal set of the given node contains the given ordinal. */
+  abstract boolean containsOrdinal( int node, int ordinal );
+
+  /**
+   * Method walk returns the leaf node selected for the given row of the batch, continuing with the next sibling
+   * of a node when no child of that node can be selected.
+   *
+   * @param batch the batch
+   * @param row   the row within the batch
+   * @return the leaf node, or -1 if no decision could be made
+   */
+  final int walk( ColumnBatch batch, int row )
+    {
+    int node = 0;
+    int child = getFirstChild( 0 );
+
+    while( true )
+      {
+      int count = getChildCount( node );
+
+      if( count == 0 )
+        return node;
+
+      int end = getFirstChild( node ) + count;
+
+      while( child < end && !evaluate( child, batch, row ) )
+        child++;
+
+      if( child < end )
+        {
+        node = child;
+        child = getFirstChild( node );
+        continue;
+        }
+
+      // no child matched, resume with the next sibling of this node
+      if( node == 0 )
+        return -1;
+
+      child = node + 1;
+      node = getParent( node );
+      }
+    }
+
+  final boolean evaluate( int index, ColumnBatch batch, int row )
+    {
+    int operator = getOperator( index );
+
+    if( operator == CompiledDecisionTree.TRUE )
+      return true;
+
+    if( operator == CompiledDecisionTree.FALSE )
+      return false;
+
+    int pos = getField( index );
+
+    if( operator == CompiledDecisionTree.IS_MISSING )
+      return batch.isMissing( pos, row );
+
+    if( operator == CompiledDecisionTree.IS_NOT_MISSING )
+      return !batch.isMissing( pos, row );
+
+    if( operator >= CompiledDecisionTree.ORDINAL_EQUAL )
+      {
+      int ordinal = batch.getOrdinals( pos )[ row ];
+
+      switch( operator )
+        {
+        case CompiledDecisionTree.ORDINAL_EQUAL:
+          return ordinal == (int) getThreshold( index );
+        case CompiledDecisionTree.ORDINAL_NOT_EQUAL:
+          return ordinal != ColumnBatch.MISSING && ordinal != (int) getThreshold( index );
+        case CompiledDecisionTree.ORDINAL_IN:
+          return ordinal >= 0 && containsOrdinal( index, ordinal );
+        case CompiledDecisionTree.ORDINAL_NOT_IN:
+          return ordinal == ColumnBatch.UNKNOWN || ordinal >= 0 && !containsOrdinal( index, ordinal );
+        }
+      }
+
+    double argument = batch.getDoubles( pos )[ row ];
+
+    // comparisons against NaN, a missing value, are always false
+    if( argument != argument )
+      return false;
+
+    // otherwise ordered as Double#compareTo, as the boxed predicates compare
+    int compare = Double.compare( argument, getThreshold( index ) );
+
+    switch( operator )
+      {
+      case CompiledDecisionTree.LESS_THAN:
+        return compare < 0;
+      case CompiledDecisionTree.LESS_OR_EQUAL:
+        return compare <= 0;
+      case CompiledDecisionTree.GREATER_THAN:
+        return compare > 0;
+      case CompiledDecisionTree.GREATER_OR_EQUAL:
+        return compare >= 0;
+      case CompiledDecisionTree.EQUAL:
+        return compare == 0;
+      case CompiledDecisionTree.NOT_EQUAL:
+        return compare != 0;
+      }
+
+    throw new IllegalStateException( "unknown operator: " + operator );
+    }
+  }
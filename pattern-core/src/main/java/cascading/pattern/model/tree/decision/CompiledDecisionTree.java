@@ -0,0 +1,508 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.model.tree.decision;
+
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.List;
+
+import cascading.pattern.model.batch.ColumnBatch;
+import cascading.pattern.model.tree.Node;
+import cascading.pattern.model.tree.Tree;
+import cascading.pattern.model.tree.predicate.ComparablePredicate;
+import cascading.pattern.model.tree.predicate.EqualsToPredicate;
+import cascading.pattern.model.tree.predicate.FalsePredicate;
+import cascading.pattern.model.tree.predicate.GreaterOrEqualThanPredicate;
+import cascading.pattern.model.tree.predicate.GreaterThanPredicate;
+import cascading.pattern.model.tree.predicate.IsInSetPredicate;
+import cascading.pattern.model.tree.predicate.IsMissingPredicate;
+import cascading.pattern.model.tree.predicate.IsNotInSetPredicate;
+import cascading.pattern.model.tree.predicate.IsNotMissingPredicate;
+import cascading.pattern.model.tree.predicate.LessOrEqualThanPredicate;
+import cascading.pattern.model.tree.predicate.LessThanPredicate;
+import cascading.pattern.model.tree.predicate.NotEqualsToPredicate;
+import cascading.pattern.model.tree.predicate.Predicate;
+import cascading.pattern.model.tree.predicate.SimpleSetPredicate;
+import cascading.pattern.model.tree.predicate.TruePredicate;
+import cascading.tuple.Fields;
+import cascading.tuple.TupleEntry;
+import org.jgrapht.Graphs;
+
+/**
+ * Class CompiledDecisionTree is a flattened form of a {@link Tree} suitable for scoring large volumes of data.
+ * <p/>
+ * Every node of the tree is assigned a slot in a set of parallel primitive arrays, the argument field position,
+ * an operator code, a {@code double} threshold, the offset of the first child, and the number of children. Nodes
+ * are laid out breadth first so the children of any node are contiguous, and the tree is walked by a single
+ * loop without recursion or per node objects.
+ * <p/>
+ * Numeric comparisons against {@link Number} thresholds, missing value tests, and constant predicates are
+ * evaluated inline, all remaining predicates fall back to a {@link PredicateEvaluator}.
+ * <p/>
+ * The result of {@link #decide(cascading.tuple.TupleEntry)} is identical to {@link DecisionTree}, including
+ * continuing with the next sibling of a node when no child of that node can be selected.
+ * <p/>
+ * If {@link #isBatchSupported()} returns true, rows of a {@link ColumnBatch} may be scored via
+ * {@link #decide(ColumnBatch, int)}. This requires every predicate be evaluated inline, or be a numeric equality
+ * test, or a categorical equality or set test against the category index of the field.
+ */
+public class CompiledDecisionTree
+  {
+  static final int TRUE = 0;
+  static final int FALSE = 1;
+  static final int IS_MISSING = 2;
+  static final int IS_NOT_MISSING = 3;
+  static final int LESS_THAN = 4;
+  static final int LESS_OR_EQUAL = 5;
+  static final int GREATER_THAN = 6;
+  static final int GREATER_OR_EQUAL = 7;
+  static final int PREDICATE = 8;
+  static final int EQUAL = 9;
+  static final int NOT_EQUAL = 10;
+  static final int ORDINAL_EQUAL = 11;
+  static final int ORDINAL_NOT_EQUAL = 12;
+  static final int ORDINAL_IN = 13;
+  static final int ORDINAL_NOT_IN = 14;
+  static final int UNSUPPORTED = -1;
+
+  protected final int[] fields;
+  protected final int[] operators;
+  protected final double[] thresholds;
+  protected final int[] firstChild;
+  protected final int[] childCount;
+  protected final int[] parents;
+  protected final String[] ids;
+
+  protected final PredicateEvaluator[] evaluators;
+  protected final FinalDecision[] decisions;
+
+  protected final int[] batchOperators;
+  protected final BitSet[] ordinalSets;
+  protected final boolean isBatchSupported;
+
+  private final BatchTreeWalker batchWalker = new ArrayWalker();
+
+  private class ArrayWalker extends BatchTreeWalker
+    {
+    @Override
+    int getFirstChild( int node )
+      {
+      return firstChild[ node ];
+      }
+
+    @Override
+    int getChildCount( int node )
+      {
+      return childCount[ node ];
+      }
+
+    @Override
+    int getParent( int node )
+      {
+      return parents[ node ];
+      }
+
+    @Override
+    int getOperator( int node )
+      {
+      return batchOperators[ node ];
+      }
+
+    @Override
+    int getField( int node )
+      {
+      return fields[ node ];
+      }
+
+    @Override
+    double getThreshold( int node )
+      {
+      return thresholds[ node ];
+      }
+
+    @Override
+    boolean containsOrdinal( int node, int ordinal )
+      {
+      return ordinalSets[ node ].get( ordinal );
+      }
+    }
+
+  public CompiledDecisionTree( String[] categories, Fields expectedFields, Tree tree )
+    {
+    List<Node> nodes = layoutNodes( tree );
+    int size = nodes.size();
+
+    fields = new int[ size ];
+    operators = new int[ size ];
+    thresholds = new double[ size ];
+    firstChild = new int[ size ];
+    childCount = new int[ size ];
+    parents = new int[ size ];
+    ids = new String[ size ];
+    evaluators = new PredicateEvaluator[ size ];
+    decisions = new FinalDecision[ size ];
+    batchOperators = new int[ size ];
+    ordinalSets = new BitSet[ size ];
+
+    parents[ 0 ] = -1;
+    operators[ 0 ] = TRUE;
+
+    int next = 1;
+
+    for( int i = 0; i < size; i++ )
+      {
+      Node node = nodes.get( i );
+      int count = tree.getGraph().outDegreeOf( node );
+
+      ids[ i ] = node.getID();
+
+      if( i != 0 )
+        compilePredicate( i, expectedFields, node.getPredicate() );
+
+      childCount[ i ] = count;
+
+      if( count == 0 )
+        {
+        decisions[ i ] = new FinalDecision( categories, tree, node );
+        continue;
+        }
+
+      firstChild[ i ] = next;
+
+      for( int j = next; j < next + count; j++ )
+        parents[ j ] = i;
+
+      next += count;
+      }
+
+    boolean supported = true;
+
+    for( int i = 0; i < size; i++ )
+      {
+      batchOperators[ i ] = operators[ i ];
+
+      if( operators[ i ] == PREDICATE )
+        batchOperators[ i ] = compileBatchPredicate( i, expectedFields, nodes.get( i ).getPredicate() );
+
+      supported &= batchOperators[ i ] != UNSUPPORTED;
+      }
+
+    isBatchSupported = supported;
+    }
+
+  /**
+   * Constructor CompiledDecisionTree creates a new instance sharing the compiled state of the given tree, used by
+   * subclasses that replace how the tree is walked, see {@link DecisionTreeGenerator}.
+   *
+   * @param tree the compiled tree
+   */
+  protected CompiledDecisionTree( CompiledDecisionTree tree )
+    {
+    fields = tree.fields;
+    operators = tree.operators;
+    thresholds = tree.thresholds;
+    firstChild = tree.firstChild;
+    childCount = tree.childCount;
+    parents = tree.parents;
+    ids = tree.ids;
+    evaluators = tree.evaluators;
+    decisions = tree.decisions;
+    batchOperators = tree.batchOperators;
+    ordinalSets = tree.ordinalSets;
+    isBatchSupported = tree.isBatchSupported;
+    }
+
+  private static List<Node> layoutNodes( Tree tree )
+    {
+    List<Node> nodes = new ArrayList<Node>();
+
+    nodes.add( tree.getRoot() );
+
+    for( int i = 0; i < nodes.size(); i++ )
+      nodes.addAll( Graphs.successorListOf( tree.getGraph(), nodes.get( i ) ) );
+
+    return nodes;
+    }
+
+  private void compilePredicate( int index, Fields expectedFields, Predicate predicate )
+    {
+    if( predicate instanceof TruePredicate )
+      {
+      operators[ index ] = TRUE;
+      return;
+      }
+
+    if( predicate instanceof FalsePredicate )
+      {
+      operators[ index ] = FALSE;
+      return;
+      }
+
+    if( predicate instanceof IsMissingPredicate )
+      {
+      operators[ index ] = IS_MISSING;
+      fields[ index ] = expectedFields.getPos( ( (IsMissingPredicate) predicate ).getArgumentField() );
+      return;
+      }
+
+    if( predicate instanceof IsNotMissingPredicate )
+      {
+      operators[ index ] = IS_NOT_MISSING;
+      fields[ index ] = expectedFields.getPos( ( (IsNotMissingPredicate) predicate ).getArgumentField() );
+      return;
+      }
+
+    int operator = getComparisonOperator( predicate );
+
+    if( operator != PREDICATE && ( (ComparablePredicate) predicate ).isNumeric() )
+      {
+      ComparablePredicate comparablePredicate = (ComparablePredicate) predicate;
+
+      operators[ index ] = operator;
+      fields[ index ] = expectedFields.getPos( comparablePredicate.getArgumentField() );
+      thresholds[ index ] = comparablePredicate.getThreshold();
+      return;
+      }
+
+    operators[ index ] = PREDICATE;
+    evaluators[ index ] = new PredicateEvaluator( expectedFields, predicate );
+    }
+
+  private int compileBatchPredicate( int index, Fields expectedFields, Predicate predicate )
+    {
+    if( predicate instanceof EqualsToPredicate || predicate instanceof NotEqualsToPredicate )
+      {
+      ComparablePredicate comparablePredicate = (ComparablePredicate) predicate;
+      boolean isEqual = predicate instanceof EqualsToPredicate;
+
+      fields[ index ] = expectedFields.getPos( comparablePredicate.getArgumentField() );
+
+      if( comparablePredicate.isNumeric() && comparablePredicate.getCategoryIndex() == null )
+        {
+        thresholds[ index ] = comparablePredicate.getThreshold();
+        return isEqual ? EQUAL : NOT_EQUAL;
+        }
+
+      if( comparablePredicate.getOrdinal() == -1 )
+        return UNSUPPORTED;
+
+      thresholds[ index ] = comparablePredicate.getOrdinal();
+      return isEqual ? ORDINAL_EQUAL : ORDINAL_NOT_EQUAL;
+      }
+
+    if( predicate instanceof IsInSetPredicate || predicate instanceof IsNotInSetPredicate )
+      {
+      SimpleSetPredicate setPredicate = (SimpleSetPredicate) predicate;
+      BitSet ordinals = setPredicate.getOrdinals();
+
+      if( ordinals == null )
+        return UNSUPPORTED;
+
+      fields[ index ] = expectedFields.getPos( setPredicate.getArgumentField() );
+      ordinalSets[ index ] = ordinals;
+      return predicate instanceof IsInSetPredicate ? ORDINAL_IN : ORDINAL_NOT_IN;
+      }
+
+    return UNSUPPORTED;
+    }
+
+  private static int getComparisonOperator( Predicate predicate )
+    {
+    if( predicate instanceof LessThanPredicate )
+      return LESS_THAN;
+
+    if( predicate instanceof LessOrEqualThanPredicate )
+      return LESS_OR_EQUAL;
+
+    if( predicate instanceof GreaterThanPredicate )
+      return GREATER_THAN;
+
+    if( predicate instanceof GreaterOrEqualThanPredicate )
+      return GREATER_OR_EQUAL;
+
+    return PREDICATE;
+    }
+
+  /**
+   * Returns the number of nodes in this tree, including the root node.
+   *
+   * @return the node count
+   */
+  public int getNodeCount()
+    {
+    return operators.length;
+    }
+
+  /**
+   * Returns the {@link Node} ids of this tree in layout order, the root first, as indexed by the hit counts of
+   * {@link #decide(cascading.tuple.TupleEntry, long[])}.
+   *
+   * @return a copy of the node ids
+   */
+  public String[] getNodeIDs()
+    {
+    return ids.clone();
+    }
+
+  /**
+   * Returns true if rows of a {@link ColumnBatch} may be scored by this tree.
+   *
+   * @return true if batches are supported
+   */
+  public boolean isBatchSupported()
+    {
+    return isBatchSupported;
+    }
+
+  public FinalDecision decide( TupleEntry tupleEntry )
+    {
+    return walk( tupleEntry, null );
+    }
+
+  /**
+   * Method decide returns the same decision as {@link #decide(cascading.tuple.TupleEntry)}, and increments the
+   * hit count of every node entered on the way, indexed as {@link #getNodeIDs()}. A node whose subtree cannot
+   * make a decision is still counted.
+   * <p/>
+   * The array walk is always used, so this method is meant for profiling, not for scoring generated trees.
+   *
+   * @param tupleEntry the arguments
+   * @param hits       the hit counts, at least {@link #getNodeCount()} long
+   * @return the decision, or null if no decision could be made
+   */
+  public FinalDecision decide( TupleEntry tupleEntry, long[] hits )
+    {
+    return walk( tupleEntry, hits );
+    }
+
+  private FinalDecision walk( TupleEntry tupleEntry, long[] hits )
+    {
+    int node = 0;
+    int child = firstChild[ 0 ];
+
+    if( hits != null )
+      hits[ 0 ]++;
+
+    while( true )
+      {
+      if( childCount[ node ] == 0 )
+        return decisions[ node ];
+
+      int end = firstChild[ node ] + childCount[ node ];
+
+      while( child < end && !evaluate( child, tupleEntry ) )
+        child++;
+
+      if( child < end )
+        {
+        node = child;
+        child = firstChild[ node ];
+
+        if( hits != null )
+          hits[ node ]++;
+
+        continue;
+        }
+
+      // no child matched, resume with the next sibling of this node
+      if( node == 0 )
+        return null;
+
+      child = node + 1;
+      node = parents[ node ];
+      }
+    }
+
+  /**
+   * Method decide returns the decision for the given row of the batch. The batch must be created from the
+   * same ModelSchema, and therefore have the same field order, as the expected fields of this tree.
+   *
+   * @param batch the batch
+   * @param row   the row within the batch
+   * @return the decision, or null if no decision could be made
+   */
+  public FinalDecision decide( ColumnBatch batch, int row )
+    {
+    if( !isBatchSupported )
+      throw new UnsupportedOperationException( "tree contains predicates that cannot be evaluated against a batch" );
+
+    int node = batchWalker.walk( batch, row );
+
+    return node == -1 ? null : decisions[ node ];
+    }
+
+  protected boolean evaluate( int index, TupleEntry tupleEntry )
+    {
+    int operator = operators[ index ];
+
+    if( operator == PREDICATE )
+      return evaluators[ index ].evaluate( tupleEntry );
+
+    if( operator == TRUE )
+      return true;
+
+    if( operator == FALSE )
+      return false;
+
+    int pos = fields[ index ];
+    Object value = tupleEntry.getObject( pos );
+
+    if( operator == IS_MISSING )
+      return value == null;
+
+    if( operator == IS_NOT_MISSING )
+      return value != null;
+
+    if( value == null )
+      return false;
+
+    // ordered as Double#compareTo, as the boxed predicates compare
+    int compare = Double.compare( toDouble( tupleEntry, pos, value ), thresholds[ index ] );
+
+    switch( operator )
+      {
+      case LESS_THAN:
+        return compare < 0;
+      case LESS_OR_EQUAL:
+        return compare <= 0;
+      case GREATER_THAN:
+        return compare > 0;
+      case GREATER_OR_EQUAL:
+        return compare >= 0;
+      }
+
+    throw new IllegalStateException( "unknown operator: " + operator );
+    }
+
+  protected static double toDouble( TupleEntry tupleEntry, int pos, Object value )
+    {
+    return value instanceof Number ? ( (Number) value ).doubleValue() : tupleEntry.getDouble( pos );
+    }
+
+  @Override
+  public String toString()
+    {
+    final StringBuilder sb = new StringBuilder( "CompiledDecisionTree{" );
+    sb.append( "nodes=" ).append( getNodeCount() );
+    sb.append( '}' );
+    return sb.toString();
+    }
+  }
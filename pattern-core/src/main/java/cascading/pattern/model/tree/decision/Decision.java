@@ -20,51 +20,84 @@
 
 package cascading.pattern.model.tree.decision;
 
-import java.util.List;
+import java.util.LinkedList;
 
 import cascading.pattern.model.tree.Node;
 import cascading.pattern.model.tree.Tree;
 import cascading.tuple.TupleEntry;
-import org.jgrapht.GraphPath;
 import org.jgrapht.Graphs;
-import org.jgrapht.alg.KShortestPaths;
 
 /**
  *
  */
 public abstract class Decision
   {
+  /** The name of this decision, or null if created with a lazy name, see {@link #getName()}. */
   protected final String name;
+  private final Tree tree;
+  private final Node node;
+  private String lazyName;
 
   public Decision( Tree tree, Node node )
     {
-    this.name = createName( tree, node );
+    this( tree, node, false );
     }
 
-  public String getName()
+  /**
+   * Constructor Decision creates a new decision for the given node. If lazyName is true the name is not created
+   * until {@link #getName()} is first called, as it is only needed for logging and debugging.
+   *
+   * @param tree     the tree
+   * @param node     the node of this decision
+   * @param lazyName true if the name should be created on first use
+   */
+  protected Decision( Tree tree, Node node, boolean lazyName )
     {
-    return name;
+    this.tree = tree;
+    this.node = node;
+    this.name = lazyName ? null : createName( tree, node );
     }
 
-  protected String createName( Tree tree, Node node )
+  /**
+   * Returns the ID of the node of this decision.
+   *
+   * @return the node ID
+   */
+  public String getNodeID()
     {
-    if( tree.getRoot() == node )
-      return node.getID();
+    return node.getID();
+    }
 
-    List<GraphPath<Node, Integer>> paths = new KShortestPaths<Node, Integer>( tree.getGraph(), tree.getRoot(), 1 ).getPaths( node );
+  /**
+   * Returns the IDs of every node from the root to this decision, separated by a dot.
+   *
+   * @return the name
+   */
+  public String getName()
+    {
+    if( name != null )
+      return name;
 
-    List<Node> predecessors = Graphs.getPathVertexList( paths.get( 0 ) );
+    if( lazyName == null )
+      lazyName = createName( tree, node );
 
-    predecessors.remove( node );
+    return lazyName;
+    }
+
+  protected String createName( Tree tree, Node node )
+    {
+    LinkedList<String> ids = new LinkedList<String>();
 
-    String name = "";
+    // every node but the root has a single parent, walk up to the root
+    for( Node current = node; current != tree.getRoot(); current = Graphs.predecessorListOf( tree.getGraph(), current ).get( 0 ) )
+      ids.addFirst( current.getID() );
 
-    for( Node predecessor : predecessors )
-      name += predecessor.getID() + ".";
+    StringBuilder name = new StringBuilder( tree.getRoot().getID() );
 
-    name += node.getID();
+    for( String id : ids )
+      name.append( '.' ).append( id );
 
-    return name;
+    return name.toString();
     }
 
   protected abstract FinalDecision decide( TupleEntry tupleEntry );
@@ -80,6 +113,6 @@ public abstract class Decision
 
   protected StringBuilder toString( StringBuilder sb )
     {
-    return sb.append( "name='" ).append( name ).append( '\'' );
+    return sb.append( "name='" ).append( getName() ).append( '\'' );
     }
   }
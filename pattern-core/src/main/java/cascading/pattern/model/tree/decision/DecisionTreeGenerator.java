@@ -0,0 +1,455 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.model.tree.decision;
+
+import java.io.ByteArrayInputStream;
+import java.io.DataInputStream;
+import java.io.IOException;
+import java.io.StringReader;
+import java.lang.ref.SoftReference;
+import java.lang.reflect.Constructor;
+import java.lang.reflect.Type;
+import java.nio.charset.Charset;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+
+import cascading.tuple.Fields;
+import com.google.common.hash.Hashing;
+import org.codehaus.janino.ByteArrayClassLoader;
+import org.codehaus.janino.ClassLoaderIClassLoader;
+import org.codehaus.janino.Parser;
+import org.codehaus.janino.Scanner;
+import org.codehaus.janino.UnitCompiler;
+import org.codehaus.janino.util.ClassFile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Class DecisionTreeGenerator turns a {@link CompiledDecisionTree} into Java source, nested {@code if} statements
+ * on local variables with every threshold inlined as a constant, and compiles it with Janino into a subclass of
+ * CompiledDecisionTree.
+ * <p/>
+ * The generated {@link CompiledDecisionTree#decide(cascading.tuple.TupleEntry)} method returns the same result as
+ * the array walk, including continuing with the next sibling of a node when no child of that node can be selected,
+ * and can be inlined by the JIT as a single method.
+ * <p/>
+ * Generated classes are cached keyed on a digest of the generated source, so identical trees bound to identical
+ * argument positions are compiled once no matter how many tasks or functions prepare them. The cache holds at most
+ * {@link #CACHE_SIZE} classes, set by the system property of the same name, evicting the least recently used, and
+ * softly references them so they and their class loaders may be reclaimed under memory pressure.
+ * <p/>
+ * Trees with more than {@link #MAX_NODES} nodes, trees whose generated {@code decide} method has more than
+ * {@link #HUGE_METHOD_LIMIT} bytes of bytecode, and trees that fail to compile, are returned as is. HotSpot does not
+ * JIT compile methods over that limit, so such a method would run interpreted and be slower than the array walk.
+ */
+public class DecisionTreeGenerator
+  {
+  private static final Logger LOG = LoggerFactory.getLogger( DecisionTreeGenerator.class );
+
+  /** Bounds the source compiled, a comparison emits about 40 bytes, so a tree of this size fits the limit below. */
+  public static final int MAX_NODES = 128;
+
+  /** The default HugeMethodLimit of HotSpot, the largest method in bytes the JIT compiles. */
+  public static final int HUGE_METHOD_LIMIT = 8000;
+
+  public static final String CACHE_SIZE = "pattern.tree.generator.cache.size";
+
+  private static final int maxSize = Integer.getInteger( CACHE_SIZE, 64 );
+
+  private static final Map<String, SoftReference<Constructor<? extends CompiledDecisionTree>>> cache = new LinkedHashMap<String, SoftReference<Constructor<? extends CompiledDecisionTree>>>( 16, 0.75f, true )
+  {
+  @Override
+  protected boolean removeEldestEntry( Map.Entry<String, SoftReference<Constructor<? extends CompiledDecisionTree>>> eldest )
+    {
+    return size() > maxSize;
+    }
+  };
+
+  private static int count = 0;
+
+  /**
+   * Method generate returns a generated subclass of the given tree, or the given tree if it cannot be generated.
+   *
+   * @param tree           the compiled tree
+   * @param expectedFields the argument fields the tree was compiled against
+   * @return a CompiledDecisionTree
+   */
+  public static CompiledDecisionTree generate( CompiledDecisionTree tree, Fields expectedFields )
+    {
+    if( tree.getNodeCount() > MAX_NODES )
+      {
+      LOG.debug( "tree too large for code generation, nodes: {}", tree.getNodeCount() );
+      return tree;
+      }
+
+    return generate( tree, generateBody( tree, expectedFields ) );
+    }
+
+  static CompiledDecisionTree generate( CompiledDecisionTree tree, String body )
+    {
+    Constructor<? extends CompiledDecisionTree> constructor = getConstructor( body );
+
+    if( constructor == null )
+      return tree;
+
+    try
+      {
+      return constructor.newInstance( tree );
+      }
+    catch( Exception exception )
+      {
+      throw new IllegalStateException( "unable to instantiate generated tree", exception );
+      }
+    }
+
+  private static synchronized Constructor<? extends CompiledDecisionTree> getConstructor( String body )
+    {
+    String key = Hashing.md5().hashBytes( body.getBytes( Charset.forName( "UTF-8" ) ) ).toString();
+    SoftReference<Constructor<? extends CompiledDecisionTree>> reference = cache.get( key );
+    Constructor<? extends CompiledDecisionTree> constructor = reference == null ? null : reference.get();
+
+    if( constructor != null )
+      return constructor;
+
+    String className = "GeneratedDecisionTree" + count++;
+
+    try
+      {
+      Map<String, byte[]> classes = compile( generateSource( className, body ) );
+      int codeLength = getCodeLength( classes.get( className ), "decide" );
+
+      if( codeLength > HUGE_METHOD_LIMIT )
+        {
+        LOG.debug( "generated method too large for the JIT, bytes: {}", codeLength );
+        return null;
+        }
+
+      ClassLoader classLoader = new ByteArrayClassLoader( classes, CompiledDecisionTree.class.getClassLoader() );
+      Class<? extends CompiledDecisionTree> type = classLoader.loadClass( className ).asSubclass( CompiledDecisionTree.class );
+
+      constructor = type.getConstructor( CompiledDecisionTree.class );
+      }
+    catch( Exception exception )
+      {
+      LOG.warn( "unable to generate decision tree, falling back to compiled tree", exception );
+      return null;
+      }
+
+    if( maxSize > 0 )
+      cache.put( key, new SoftReference<Constructor<? extends CompiledDecisionTree>>( constructor ) );
+
+    return constructor;
+    }
+
+  private static Map<String, byte[]> compile( String source ) throws Exception
+    {
+    Parser parser = new Parser( new Scanner( null, new StringReader( source ) ) );
+    UnitCompiler unitCompiler = new UnitCompiler( parser.parseCompilationUnit(), new ClassLoaderIClassLoader( CompiledDecisionTree.class.getClassLoader() ) );
+    Map<String, byte[]> classes = new HashMap<String, byte[]>();
+
+    for( ClassFile classFile : unitCompiler.compileUnit( false, false, false ) )
+      classes.put( classFile.getThisClassName(), classFile.toByteArray() );
+
+    return classes;
+    }
+
+  static int getCodeLength( CompiledDecisionTree tree, Fields expectedFields ) throws Exception
+    {
+    String className = "MeasuredDecisionTree";
+    Map<String, byte[]> classes = compile( generateSource( className, generateBody( tree, expectedFields ) ) );
+
+    return getCodeLength( classes.get( className ), "decide" );
+    }
+
+  /**
+   * Method getCodeLength returns the length in bytes of the Code attribute of the named method in the given class
+   * file, the largest if overloaded, or -1 if there is no such method.
+   *
+   * @param classFile  the class file bytes
+   * @param methodName the method name
+   * @return the code length
+   * @throws IOException if the class file is malformed
+   */
+  static int getCodeLength( byte[] classFile, String methodName ) throws IOException
+    {
+    DataInputStream input = new DataInputStream( new ByteArrayInputStream( classFile ) );
+
+    if( input.readInt() != 0xCAFEBABE )
+      throw new IOException( "not a class file" );
+
+    input.readUnsignedShort(); // minor version
+    input.readUnsignedShort(); // major version
+
+    int constantCount = input.readUnsignedShort();
+    String[] utf8 = new String[ constantCount ];
+
+    for( int i = 1; i < constantCount; i++ )
+      {
+      int tag = input.readUnsignedByte();
+
+      switch( tag )
+        {
+        case 1: // Utf8
+          utf8[ i ] = input.readUTF();
+          break;
+        case 5: // Long
+        case 6: // Double, both take two entries
+          input.readLong();
+          i++;
+          break;
+        case 3: // Integer
+        case 4: // Float
+        case 9: // Fieldref
+        case 10: // Methodref
+        case 11: // InterfaceMethodref
+        case 12: // NameAndType
+        case 18: // InvokeDynamic
+          input.readInt();
+          break;
+        case 7: // Class
+        case 8: // String
+        case 16: // MethodType
+          input.readUnsignedShort();
+          break;
+        case 15: // MethodHandle
+          input.readUnsignedByte();
+          input.readUnsignedShort();
+          break;
+        default:
+          throw new IOException( "unknown constant pool tag: " + tag );
+        }
+      }
+
+    input.readUnsignedShort(); // access flags
+    input.readUnsignedShort(); // this class
+    input.readUnsignedShort(); // super class
+
+    skipFully( input, input.readUnsignedShort() * 2 ); // interfaces
+
+    int fieldCount = input.readUnsignedShort();
+
+    for( int i = 0; i < fieldCount; i++ )
+      {
+      skipFully( input, 6 );
+      skipAttributes( input );
+      }
+
+    int methodCount = input.readUnsignedShort();
+    int codeLength = -1;
+
+    for( int i = 0; i < methodCount; i++ )
+      {
+      input.readUnsignedShort(); // access flags
+      String name = utf8[ input.readUnsignedShort() ];
+      input.readUnsignedShort(); // descriptor
+
+      int attributeCount = input.readUnsignedShort();
+
+      for( int j = 0; j < attributeCount; j++ )
+        {
+        String attributeName = utf8[ input.readUnsignedShort() ];
+        int length = input.readInt();
+
+        if( !methodName.equals( name ) || !"Code".equals( attributeName ) )
+          {
+          skipFully( input, length );
+          continue;
+          }
+
+        input.readUnsignedShort(); // max stack
+        input.readUnsignedShort(); // max locals
+
+        int code = input.readInt();
+
+        codeLength = Math.max( codeLength, code );
+        skipFully( input, length - 8 );
+        }
+      }
+
+    return codeLength;
+    }
+
+  private static void skipAttributes( DataInputStream input ) throws IOException
+    {
+    int attributeCount = input.readUnsignedShort();
+
+    for( int i = 0; i < attributeCount; i++ )
+      {
+      input.readUnsignedShort();
+      skipFully( input, input.readInt() );
+      }
+    }
+
+  private static void skipFully( DataInputStream input, int length ) throws IOException
+    {
+    if( input.skipBytes( length ) != length )
+      throw new IOException( "truncated class file" );
+    }
+
+  static synchronized int getCacheSize()
+    {
+    return cache.size();
+    }
+
+  private static String generateSource( String className, String body )
+    {
+    StringBuilder source = new StringBuilder();
+
+    source.append( "import cascading.pattern.model.tree.decision.CompiledDecisionTree;\n" );
+    source.append( "import cascading.pattern.model.tree.decision.FinalDecision;\n" );
+    source.append( "import cascading.tuple.TupleEntry;\n\n" );
+    source.append( "public final class " ).append( className ).append( " extends CompiledDecisionTree\n" );
+    source.append( "  {\n" );
+    source.append( "  public " ).append( className ).append( "( CompiledDecisionTree tree )\n" );
+    source.append( "    {\n" );
+    source.append( "    super( tree );\n" );
+    source.append( "    }\n\n" );
+    source.append( body );
+    source.append( "  }\n" );
+
+    return source.toString();
+    }
+
+  static String generateBody( CompiledDecisionTree tree, Fields expectedFields )
+    {
+    BitSet values = new BitSet();
+    BitSet doubles = new BitSet();
+
+    for( int i = 1; i < tree.getNodeCount(); i++ )
+      {
+      int operator = tree.operators[ i ];
+
+      if( operator == CompiledDecisionTree.TRUE || operator == CompiledDecisionTree.FALSE || operator == CompiledDecisionTree.PREDICATE )
+        continue;
+
+      values.set( tree.fields[ i ] );
+
+      if( operator != CompiledDecisionTree.IS_MISSING && operator != CompiledDecisionTree.IS_NOT_MISSING && isNumeric( expectedFields.getType( tree.fields[ i ] ) ) )
+        doubles.set( tree.fields[ i ] );
+      }
+
+    StringBuilder body = new StringBuilder();
+
+    body.append( "  public FinalDecision decide( TupleEntry tupleEntry )\n" );
+    body.append( "    {\n" );
+
+    for( int pos = values.nextSetBit( 0 ); pos >= 0; pos = values.nextSetBit( pos + 1 ) )
+      body.append( "    Object v" ).append( pos ).append( " = tupleEntry.getObject( " ).append( pos ).append( " );\n" );
+
+    // numeric fields are converted when first compared and the result kept, NaN marking not yet converted,
+    // so a value the walk never reaches is never converted
+    for( int pos = doubles.nextSetBit( 0 ); pos >= 0; pos = doubles.nextSetBit( pos + 1 ) )
+      body.append( "    double d" ).append( pos ).append( " = Double.NaN;\n" );
+
+    body.append( "\n" );
+
+    if( tree.childCount[ 0 ] == 0 )
+      body.append( "    return decisions[ 0 ];\n" );
+    else
+      generateChildren( tree, doubles, 0, "    ", body );
+
+    body.append( "\n    return null;\n" );
+    body.append( "    }\n" );
+
+    return body.toString();
+    }
+
+  private static void generateChildren( CompiledDecisionTree tree, BitSet doubles, int node, String indent, StringBuilder body )
+    {
+    int end = tree.firstChild[ node ] + tree.childCount[ node ];
+
+    for( int child = tree.firstChild[ node ]; child < end; child++ )
+      {
+      if( tree.operators[ child ] == CompiledDecisionTree.FALSE )
+        continue;
+
+      body.append( indent ).append( "if( " ).append( generateCondition( tree, doubles, child ) ).append( " )\n" );
+      body.append( indent ).append( "  {\n" );
+
+      if( tree.childCount[ child ] == 0 )
+        body.append( indent ).append( "  return decisions[ " ).append( child ).append( " ];\n" );
+      else
+        generateChildren( tree, doubles, child, indent + "  ", body );
+
+      body.append( indent ).append( "  }\n" );
+      }
+    }
+
+  private static String generateCondition( CompiledDecisionTree tree, BitSet doubles, int node )
+    {
+    int operator = tree.operators[ node ];
+    int pos = tree.fields[ node ];
+
+    switch( operator )
+      {
+      case CompiledDecisionTree.TRUE:
+        return "true";
+      case CompiledDecisionTree.PREDICATE:
+        return "evaluate( " + node + ", tupleEntry )";
+      case CompiledDecisionTree.IS_MISSING:
+        return "v" + pos + " == null";
+      case CompiledDecisionTree.IS_NOT_MISSING:
+        return "v" + pos + " != null";
+      }
+
+    String convert = "toDouble( tupleEntry, " + pos + ", v" + pos + " )";
+    String argument = doubles.get( pos ) ? "( d" + pos + " == d" + pos + " ? d" + pos + " : ( d" + pos + " = " + convert + " ) )" : convert;
+    String compare = "v" + pos + " != null && Double.compare( " + argument + ", " + toLiteral( tree.thresholds[ node ] ) + " )";
+
+    // ordered as Double#compareTo, as the array walk compares
+    switch( operator )
+      {
+      case CompiledDecisionTree.LESS_THAN:
+        return compare + " < 0";
+      case CompiledDecisionTree.LESS_OR_EQUAL:
+        return compare + " <= 0";
+      case CompiledDecisionTree.GREATER_THAN:
+        return compare + " > 0";
+      case CompiledDecisionTree.GREATER_OR_EQUAL:
+        return compare + " >= 0";
+      }
+
+    throw new IllegalStateException( "unknown operator: " + operator );
+    }
+
+  private static String toLiteral( double value )
+    {
+    if( Double.isNaN( value ) || Double.isInfinite( value ) )
+      return "Double.longBitsToDouble( 0x" + Long.toHexString( Double.doubleToRawLongBits( value ) ) + "L )";
+
+    return Double.toString( value ) + "d";
+    }
+
+  private static boolean isNumeric( Type type )
+    {
+    if( !( type instanceof Class ) )
+      return false;
+
+    Class typeClass = (Class) type;
+
+    if( typeClass.isPrimitive() )
+      return typeClass != boolean.class && typeClass != char.class;
+
+    return Number.class.isAssignableFrom( typeClass );
+    }
+  }
@@ -36,6 +36,7 @@ public class FinalDecision extends Decision
   private static final Logger LOG = LoggerFactory.getLogger( FinalDecision.class );
 
   private final Object score;
+  private final double numericScore;
   private final int index;
 
   public FinalDecision( Tree tree, Node node )
@@ -45,24 +46,51 @@ public class FinalDecision extends Decision
 
   public FinalDecision( String[] categories, Tree tree, Node node )
     {
-    super( tree, node );
+    super( tree, node, true );
 
     this.score = node.getScore();
 
     if( this.score == null )
       throw new IllegalStateException( "score may not be null, likely missing leaf node in tree at: " + getName() );
 
+    this.numericScore = toDouble( this.score );
+
     if( categories != null )
       this.index = Arrays.asList( categories ).indexOf( this.score );
     else
       this.index = -1;
     }
 
+  private static double toDouble( Object score )
+    {
+    if( score instanceof Number )
+      return ( (Number) score ).doubleValue();
+
+    try
+      {
+      return Double.parseDouble( score.toString() );
+      }
+    catch( NumberFormatException exception )
+      {
+      return Double.NaN;
+      }
+    }
+
   public Object getScore()
     {
     return score;
     }
 
+  /**
+   * Returns the score as a {@code double}, or {@link Double#NaN} if the score is not numeric.
+   *
+   * @return the numeric score
+   */
+  public double getNumericScore()
+    {
+    return numericScore;
+    }
+
   public int getIndex()
     {
     return index;
@@ -71,7 +99,8 @@ public class FinalDecision extends Decision
   @Override
   protected FinalDecision decide( TupleEntry tupleEntry )
     {
-    LOG.debug( "decision: {}", name );
+    if( LOG.isDebugEnabled() )
+      LOG.debug( "decision: {}", getName() );
 
     return this;
     }
@@ -0,0 +1,606 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.model.tree.decision;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.lang.ref.SoftReference;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.DoubleBuffer;
+import java.nio.IntBuffer;
+import java.nio.LongBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.BitSet;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import cascading.pattern.PatternException;
+import cascading.pattern.model.batch.ColumnBatch;
+import cascading.pattern.model.tree.Tree;
+import cascading.tuple.Fields;
+
+/**
+ * Class MappedTreeImage is a read-only, memory-mapped image of a set of {@link CompiledDecisionTree} instances.
+ * <p/>
+ * The image is written once by {@link #write(java.io.File, java.util.List, String[], cascading.tuple.Fields)}, and
+ * trees are walked directly against {@link DoubleBuffer}, {@link IntBuffer} and {@link LongBuffer} views of the
+ * mapped file, so no node data is copied onto the heap. Every JVM on a node mapping the same file shares the
+ * same pages of the OS page cache, and within a JVM a file is only mapped once, see {@link #open(java.io.File)}.
+ * <p/>
+ * Node data is written in the native byte order of the writing JVM, which is recorded in the header, so views
+ * need not swap bytes when read on a machine of the same order. The structure of every tree is validated when
+ * the image is opened, so a truncated or corrupted file fails to open rather than while scoring.
+ * <p/>
+ * Rows are read from a {@link ColumnBatch}, so only trees that support batches may be written,
+ * see {@link CompiledDecisionTree#isBatchSupported()}.
+ */
+public class MappedTreeImage
+  {
+  private static final int MAGIC = 0x50544D49; // PTMI
+  private static final int VERSION = 2;
+  private static final int BIG_ENDIAN = 0;
+  private static final int LITTLE_ENDIAN = 1;
+  private static final long MAX_SEGMENT = 1L << 30;
+
+  /** Mapped images are read only, so are shared by every function and task within the JVM. */
+  private static final Map<String, SoftReference<MappedTreeImage>> images = new HashMap<String, SoftReference<MappedTreeImage>>();
+
+  private final String[] fieldNames;
+  private final String[] categories;
+  private final MappedTree[] trees;
+
+  private static class MappedTree extends BatchTreeWalker
+    {
+    DoubleBuffer thresholds;
+    DoubleBuffer scores;
+    IntBuffer fields;
+    IntBuffer operators;
+    IntBuffer firstChild;
+    IntBuffer childCount;
+    IntBuffer parents;
+    IntBuffer categoryIndexes;
+    IntBuffer ordinalOffsets;
+    LongBuffer words;
+
+    @Override
+    int getFirstChild( int node )
+      {
+      return firstChild.get( node );
+      }
+
+    @Override
+    int getChildCount( int node )
+      {
+      return childCount.get( node );
+      }
+
+    @Override
+    int getParent( int node )
+      {
+      return parents.get( node );
+      }
+
+    @Override
+    int getOperator( int node )
+      {
+      return operators.get( node );
+      }
+
+    @Override
+    int getField( int node )
+      {
+      return fields.get( node );
+      }
+
+    @Override
+    double getThreshold( int node )
+      {
+      return thresholds.get( node );
+      }
+
+    @Override
+    boolean containsOrdinal( int node, int ordinal )
+      {
+      int offset = ordinalOffsets.get( node );
+      int word = ordinal >> 6;
+
+      if( word >= words.get( offset ) )
+        return false;
+
+      return ( words.get( offset + 1 + word ) & ( 1L << ordinal ) ) != 0;
+      }
+    }
+
+  /**
+   * Method write compiles the given trees and writes them as a new image to the given file.
+   *
+   * @param file           the file to write
+   * @param trees          the trees
+   * @param categories     the declared categories, if any
+   * @param expectedFields the expected fields, in the order of the {@link ColumnBatch} columns
+   * @throws IOException
+   */
+  public static void write( File file, List<Tree> trees, String[] categories, Fields expectedFields ) throws IOException
+    {
+    List<CompiledDecisionTree> compiledTrees = new ArrayList<CompiledDecisionTree>();
+
+    for( Tree tree : trees )
+      {
+      CompiledDecisionTree compiledTree = new CompiledDecisionTree( categories, expectedFields, tree );
+
+      if( !compiledTree.isBatchSupported() )
+        throw new IllegalArgumentException( "tree contains predicates that cannot be evaluated against a batch" );
+
+      compiledTrees.add( compiledTree );
+      }
+
+    if( categories == null )
+      categories = new String[ 0 ];
+
+    int[] wordCounts = new int[ compiledTrees.size() ];
+
+    for( int i = 0; i < compiledTrees.size(); i++ )
+      wordCounts[ i ] = countWords( compiledTrees.get( i ) );
+
+    ByteArrayOutputStream header = new ByteArrayOutputStream();
+    DataOutputStream headerOutput = new DataOutputStream( header );
+
+    ByteOrder order = ByteOrder.nativeOrder();
+
+    headerOutput.writeInt( MAGIC );
+    headerOutput.writeInt( VERSION );
+    headerOutput.writeByte( order == ByteOrder.LITTLE_ENDIAN ? LITTLE_ENDIAN : BIG_ENDIAN );
+    headerOutput.writeInt( expectedFields.size() );
+
+    for( int i = 0; i < expectedFields.size(); i++ )
+      headerOutput.writeUTF( expectedFields.get( i ).toString() );
+
+    headerOutput.writeInt( categories.length );
+
+    for( String category : categories )
+      headerOutput.writeUTF( category );
+
+    headerOutput.writeInt( compiledTrees.size() );
+
+    long offset = align( header.size() + compiledTrees.size() * 16L );
+
+    for( int i = 0; i < compiledTrees.size(); i++ )
+      {
+      int nodeCount = compiledTrees.get( i ).getNodeCount();
+
+      // fail before writing a section that open would reject
+      if( getSectionSize( nodeCount, wordCounts[ i ] ) > MAX_SEGMENT )
+        throw new PatternException( "corrupt mapped tree image, invalid tree section: " + i + ", in: " + file );
+
+      headerOutput.writeLong( offset );
+      headerOutput.writeInt( nodeCount );
+      headerOutput.writeInt( wordCounts[ i ] );
+
+      offset += getSectionSize( nodeCount, wordCounts[ i ] );
+      }
+
+    headerOutput.close();
+
+    DataOutputStream output = new DataOutputStream( new BufferedOutputStream( new FileOutputStream( file ), 64 * 1024 ) );
+
+    try
+      {
+      header.writeTo( output );
+      pad( output, header.size() );
+
+      for( int i = 0; i < compiledTrees.size(); i++ )
+        writeTree( output, compiledTrees.get( i ), wordCounts[ i ], order );
+      }
+    finally
+      {
+      output.close();
+      }
+    }
+
+  private static int countWords( CompiledDecisionTree tree )
+    {
+    int count = 0;
+
+    for( BitSet ordinals : tree.ordinalSets )
+      {
+      if( ordinals != null )
+        count += 1 + ( ordinals.length() + 63 ) / 64;
+      }
+
+    return count;
+    }
+
+  private static long getSectionSize( int nodeCount, int wordCount )
+    {
+    return 16L * nodeCount + align( 28L * nodeCount ) + 8L * wordCount;
+    }
+
+  private static long align( long size )
+    {
+    return ( size + 7 ) & ~7L;
+    }
+
+  private static void pad( DataOutputStream output, long size ) throws IOException
+    {
+    for( long i = size; i < align( size ); i++ )
+      output.writeByte( 0 );
+    }
+
+  private static void writeTree( DataOutputStream output, CompiledDecisionTree tree, int wordCount, ByteOrder order ) throws IOException
+    {
+    int size = tree.getNodeCount();
+    ByteBuffer buffer = ByteBuffer.allocate( (int) getSectionSize( size, wordCount ) ).order( order );
+
+    for( int i = 0; i < size; i++ )
+      buffer.putDouble( tree.thresholds[ i ] );
+
+    for( int i = 0; i < size; i++ )
+      buffer.putDouble( tree.decisions[ i ] == null ? Double.NaN : tree.decisions[ i ].getNumericScore() );
+
+    putInts( buffer, tree.fields );
+    putInts( buffer, tree.batchOperators );
+    putInts( buffer, tree.firstChild );
+    putInts( buffer, tree.childCount );
+    putInts( buffer, tree.parents );
+
+    for( int i = 0; i < size; i++ )
+      buffer.putInt( tree.decisions[ i ] == null ? -1 : tree.decisions[ i ].getIndex() );
+
+    int offset = 0;
+
+    for( int i = 0; i < size; i++ )
+      {
+      BitSet ordinals = tree.ordinalSets[ i ];
+
+      buffer.putInt( ordinals == null ? -1 : offset );
+
+      if( ordinals != null )
+        offset += 1 + ( ordinals.length() + 63 ) / 64;
+      }
+
+    buffer.position( (int) ( 16L * size + align( 28L * size ) ) );
+
+    for( BitSet ordinals : tree.ordinalSets )
+      {
+      if( ordinals == null )
+        continue;
+
+      long[] words = new long[ ( ordinals.length() + 63 ) / 64 ];
+
+      for( int i = ordinals.nextSetBit( 0 ); i >= 0; i = ordinals.nextSetBit( i + 1 ) )
+        words[ i >> 6 ] |= 1L << i;
+
+      buffer.putLong( words.length );
+
+      for( long word : words )
+        buffer.putLong( word );
+      }
+
+    output.write( buffer.array() );
+    }
+
+  private static void putInts( ByteBuffer buffer, int[] values )
+    {
+    for( int value : values )
+      buffer.putInt( value );
+    }
+
+  /**
+   * Method open returns the image held by the given file, mapping the file if it is not already mapped by
+   * this JVM.
+   *
+   * @param file the image file
+   * @return the image
+   * @throws IOException
+   */
+  public static MappedTreeImage open( File file ) throws IOException
+    {
+    String key = file.getCanonicalPath() + ':' + file.length() + ':' + file.lastModified();
+
+    synchronized( images )
+      {
+      SoftReference<MappedTreeImage> reference = images.get( key );
+      MappedTreeImage image = reference == null ? null : reference.get();
+
+      if( image == null )
+        {
+        image = new MappedTreeImage( file );
+        images.put( key, new SoftReference<MappedTreeImage>( image ) );
+        }
+
+      return image;
+      }
+    }
+
+  private MappedTreeImage( File file ) throws IOException
+    {
+    long[] offsets;
+    int[] nodeCounts;
+    int[] wordCounts;
+    ByteOrder order;
+
+    DataInputStream input = new DataInputStream( new BufferedInputStream( new FileInputStream( file ) ) );
+
+    try
+      {
+      if( input.readInt() != MAGIC )
+        throw new PatternException( "not a mapped tree image: " + file );
+
+      int version = input.readInt();
+
+      if( version != VERSION )
+        throw new PatternException( "unsupported mapped tree image version: " + version );
+
+      int orderCode = input.readByte();
+
+      if( orderCode != BIG_ENDIAN && orderCode != LITTLE_ENDIAN )
+        throw new PatternException( "corrupt mapped tree image, unknown byte order: " + orderCode + ", in: " + file );
+
+      order = orderCode == LITTLE_ENDIAN ? ByteOrder.LITTLE_ENDIAN : ByteOrder.BIG_ENDIAN;
+
+      fieldNames = new String[ readCount( input, file ) ];
+
+      for( int i = 0; i < fieldNames.length; i++ )
+        fieldNames[ i ] = input.readUTF();
+
+      categories = new String[ readCount( input, file ) ];
+
+      for( int i = 0; i < categories.length; i++ )
+        categories[ i ] = input.readUTF();
+
+      int count = readCount( input, file );
+
+      offsets = new long[ count ];
+      nodeCounts = new int[ count ];
+      wordCounts = new int[ count ];
+
+      long end = 0;
+
+      for( int i = 0; i < count; i++ )
+        {
+        offsets[ i ] = input.readLong();
+        nodeCounts[ i ] = readCount( input, file );
+        wordCounts[ i ] = readCount( input, file );
+
+        if( nodeCounts[ i ] == 0 || offsets[ i ] < end || offsets[ i ] != align( offsets[ i ] ) || getSectionSize( nodeCounts[ i ], wordCounts[ i ] ) > MAX_SEGMENT )
+          throw new PatternException( "corrupt mapped tree image, invalid tree section: " + i + ", in: " + file );
+
+        end = offsets[ i ] + getSectionSize( nodeCounts[ i ], wordCounts[ i ] );
+        }
+
+      if( end > file.length() )
+        throw new PatternException( "truncated mapped tree image, expected: " + end + " bytes, found: " + file.length() + ", in: " + file );
+      }
+    catch( EOFException exception )
+      {
+      throw new PatternException( "truncated mapped tree image: " + file, exception );
+      }
+    finally
+      {
+      input.close();
+      }
+
+    trees = new MappedTree[ offsets.length ];
+
+    RandomAccessFile randomAccessFile = new RandomAccessFile( file, "r" );
+
+    try
+      {
+      mapTrees( randomAccessFile.getChannel(), order, offsets, nodeCounts, wordCounts );
+      }
+    finally
+      {
+      randomAccessFile.close(); // mappings remain valid
+      }
+
+    for( int i = 0; i < trees.length; i++ )
+      {
+      if( !isValid( trees[ i ], nodeCounts[ i ], wordCounts[ i ] ) )
+        throw new PatternException( "corrupt mapped tree image, invalid nodes in tree: " + i + ", in: " + file );
+      }
+    }
+
+  private static int readCount( DataInputStream input, File file ) throws IOException
+    {
+    int count = input.readInt();
+
+    if( count < 0 )
+      throw new PatternException( "corrupt mapped tree image, negative count: " + count + ", in: " + file );
+
+    return count;
+    }
+
+  /** Checks every index a walk may follow is within the tree, so a corrupted file cannot fail while scoring. */
+  private boolean isValid( MappedTree tree, int size, int wordCount )
+    {
+    for( int node = 0; node < size; node++ )
+      {
+      int parent = tree.parents.get( node );
+      int count = tree.childCount.get( node );
+      int first = tree.firstChild.get( node );
+
+      if( node == 0 ? parent != -1 : parent < 0 || parent >= node )
+        return false;
+
+      if( count < 0 || count > 0 && ( first <= node || first + count > size ) )
+        return false;
+
+      for( int child = first; child < first + count; child++ )
+        {
+        if( tree.parents.get( child ) != node )
+          return false;
+        }
+
+      if( count == 0 && tree.categoryIndexes.get( node ) >= categories.length )
+        return false;
+
+      if( node == 0 )
+        continue;
+
+      int operator = tree.operators.get( node );
+
+      if( operator < CompiledDecisionTree.TRUE || operator > CompiledDecisionTree.ORDINAL_NOT_IN || operator == CompiledDecisionTree.PREDICATE )
+        return false;
+
+      if( operator >= CompiledDecisionTree.IS_MISSING && ( tree.fields.get( node ) < 0 || tree.fields.get( node ) >= fieldNames.length ) )
+        return false;
+
+      if( operator == CompiledDecisionTree.ORDINAL_IN || operator == CompiledDecisionTree.ORDINAL_NOT_IN )
+        {
+        int offset = tree.ordinalOffsets.get( node );
+
+        if( offset < 0 || offset >= wordCount || tree.words.get( offset ) < 0 || offset + 1 + tree.words.get( offset ) > wordCount )
+          return false;
+        }
+      }
+
+    return true;
+    }
+
+  private void mapTrees( FileChannel channel, ByteOrder order, long[] offsets, int[] nodeCounts, int[] wordCounts ) throws IOException
+    {
+    int first = 0;
+
+    // map consecutive trees together in segments, as a single mapping is limited to 2GB
+    while( first < trees.length )
+      {
+      long start = offsets[ first ];
+      long end = offsets[ first ] + getSectionSize( nodeCounts[ first ], wordCounts[ first ] );
+      int last = first;
+
+      while( last + 1 < trees.length && offsets[ last + 1 ] + getSectionSize( nodeCounts[ last + 1 ], wordCounts[ last + 1 ] ) - start <= MAX_SEGMENT )
+        {
+        last++;
+        end = offsets[ last ] + getSectionSize( nodeCounts[ last ], wordCounts[ last ] );
+        }
+
+      MappedByteBuffer segment = channel.map( FileChannel.MapMode.READ_ONLY, start, end - start );
+
+      for( int i = first; i <= last; i++ )
+        trees[ i ] = createTree( segment, order, (int) ( offsets[ i ] - start ), nodeCounts[ i ], wordCounts[ i ] );
+
+      first = last + 1;
+      }
+    }
+
+  private static MappedTree createTree( ByteBuffer segment, ByteOrder order, int position, int size, int wordCount )
+    {
+    MappedTree tree = new MappedTree();
+
+    tree.thresholds = view( segment, order, position, 8 * size ).asDoubleBuffer();
+    tree.scores = view( segment, order, position += 8 * size, 8 * size ).asDoubleBuffer();
+    tree.fields = view( segment, order, position += 8 * size, 4 * size ).asIntBuffer();
+    tree.operators = view( segment, order, position += 4 * size, 4 * size ).asIntBuffer();
+    tree.firstChild = view( segment, order, position += 4 * size, 4 * size ).asIntBuffer();
+    tree.childCount = view( segment, order, position += 4 * size, 4 * size ).asIntBuffer();
+    tree.parents = view( segment, order, position += 4 * size, 4 * size ).asIntBuffer();
+    tree.categoryIndexes = view( segment, order, position += 4 * size, 4 * size ).asIntBuffer();
+    tree.ordinalOffsets = view( segment, order, position += 4 * size, 4 * size ).asIntBuffer();
+    tree.words = view( segment, order, (int) align( position + 4 * size ), 8 * wordCount ).asLongBuffer();
+
+    return tree;
+    }
+
+  private static ByteBuffer view( ByteBuffer segment, ByteOrder order, int position, int length )
+    {
+    ByteBuffer buffer = segment.duplicate();
+
+    buffer.position( position );
+    buffer.limit( position + length );
+
+    // a slice is always big endian, so the order of the image is set on every view
+    return buffer.slice().order( order );
+    }
+
+  public String[] getFieldNames()
+    {
+    return fieldNames;
+    }
+
+  public String[] getCategories()
+    {
+    return categories;
+    }
+
+  public int getTreeCount()
+    {
+    return trees.length;
+    }
+
+  /**
+   * Method decide returns the leaf node selected by the given tree for the given row of the batch.
+   *
+   * @param tree  the tree index
+   * @param batch the batch, with the expected fields of the image
+   * @param row   the row within the batch
+   * @return the leaf node, or -1 if no decision could be made
+   */
+  public int decide( int tree, ColumnBatch batch, int row )
+    {
+    return trees[ tree ].walk( batch, row );
+    }
+
+  /**
+   * Returns the index of the category scored by the given leaf node, or -1 if the score is not a category.
+   *
+   * @param tree the tree index
+   * @param node the leaf node
+   * @return the category index
+   */
+  public int getCategoryIndex( int tree, int node )
+    {
+    return trees[ tree ].categoryIndexes.get( node );
+    }
+
+  /**
+   * Returns the score of the given leaf node as a {@code double}, or {@link Double#NaN} if the score is not numeric.
+   *
+   * @param tree the tree index
+   * @param node the leaf node
+   * @return the numeric score
+   */
+  public double getNumericScore( int tree, int node )
+    {
+    return trees[ tree ].scores.get( node );
+    }
+
+  @Override
+  public String toString()
+    {
+    final StringBuilder sb = new StringBuilder( "MappedTreeImage{" );
+    sb.append( "trees=" ).append( trees.length );
+    sb.append( '}' );
+    return sb.toString();
+    }
+  }
@@ -37,7 +37,7 @@ abstract class ParentDecision extends Decision
 
   public ParentDecision( String[] categories, Fields expectedFields, Tree tree, Node node )
     {
-    super( tree, node );
+    super( tree, node, true );
 
     this.successors = createSuccessors( categories, expectedFields, tree, node );
     }
@@ -20,25 +20,31 @@
 
 package cascading.pattern.model.tree.decision;
 
+import java.lang.reflect.Type;
+
+import cascading.pattern.model.tree.predicate.ComparablePredicate;
 import cascading.pattern.model.tree.predicate.Predicate;
 import cascading.pattern.model.tree.predicate.SimplePredicate;
 import cascading.pattern.model.tree.predicate.compound.CompoundPredicate;
 import cascading.tuple.Fields;
 import cascading.tuple.TupleEntry;
-import com.google.common.base.Function;
-import com.google.common.collect.ImmutableList;
-import com.google.common.collect.Lists;
 
 /**
- *
+ * Class PredicateEvaluator binds a {@link Predicate} to the positions of the expected argument fields.
+ * <p/>
+ * Evaluation returns a primitive tri-state result and does not allocate, compound predicates only evaluate
+ * as many child predicates as required to determine the result.
+ * <p/>
+ * A numeric {@link ComparablePredicate} bound to a {@code double} or {@link Double} field is tested against its
+ * primitive threshold, the argument is read as a primitive {@code double} and is never boxed or compared via
+ * {@link Comparable#compareTo(Object)}.
  */
 public class PredicateEvaluator
   {
   private final Invoker invoker;
 
-  protected interface Invoker
+  protected interface Invoker extends CompoundPredicate.Operand<TupleEntry>
     {
-    Boolean invoke( TupleEntry tupleEntry );
     }
 
   protected class PredicateInvoker implements Invoker
@@ -53,9 +59,30 @@ public class PredicateEvaluator
       }
 
     @Override
-    public Boolean invoke( TupleEntry tupleEntry )
+    public int test( TupleEntry tupleEntry )
+      {
+      return predicate.test( tupleEntry.getObject( pos ) );
+      }
+    }
+
+  protected class NumericPredicateInvoker implements Invoker
+    {
+    private final ComparablePredicate predicate;
+    private final int pos;
+
+    public NumericPredicateInvoker( ComparablePredicate predicate, int pos )
+      {
+      this.predicate = predicate;
+      this.pos = pos;
+      }
+
+    @Override
+    public int test( TupleEntry tupleEntry )
       {
-      return predicate.evaluate( tupleEntry.getObject( pos ) );
+      if( tupleEntry.getObject( pos ) == null )
+        return Predicate.UNKNOWN;
+
+      return predicate.test( tupleEntry.getDouble( pos ) );
       }
     }
 
@@ -69,36 +96,27 @@ public class PredicateEvaluator
       }
 
     @Override
-    public Boolean invoke( TupleEntry tupleEntry )
+    public int test( TupleEntry tupleEntry )
       {
-      return predicate.evaluate( null );
+      return predicate.test( null );
       }
     }
 
   protected class CompoundPredicateInvoker implements Invoker
     {
     private final CompoundPredicate predicate;
-    private final ImmutableList<Invoker> invokers;
+    private final Invoker[] invokers;
 
     public CompoundPredicateInvoker( CompoundPredicate predicate, Invoker[] invokers )
       {
       this.predicate = predicate;
-      this.invokers = ImmutableList.<Invoker>builder().add( invokers ).build();
+      this.invokers = invokers;
       }
 
     @Override
-    public Boolean invoke( final TupleEntry tupleEntry )
+    public int test( TupleEntry tupleEntry )
       {
-      Iterable<Boolean> iterable = Lists.transform( invokers, new Function<Invoker, Boolean>()
-      {
-      @Override
-      public Boolean apply( Invoker invoker )
-        {
-        return invoker.invoke( tupleEntry );
-        }
-      } );
-
-      return predicate.evaluate( iterable.iterator() );
+      return predicate.test( invokers, tupleEntry );
       }
     }
 
@@ -116,8 +134,13 @@ public class PredicateEvaluator
 
       if( argumentField == null )
         return new NoArgPredicateInvoker( simplePredicate );
-      else
-        return new PredicateInvoker( simplePredicate, expectedFields.getPos( argumentField ) );
+
+      int pos = expectedFields.getPos( argumentField );
+
+      if( isNumeric( expectedFields, pos, simplePredicate ) )
+        return new NumericPredicateInvoker( (ComparablePredicate) simplePredicate, pos );
+
+      return new PredicateInvoker( simplePredicate, pos );
       }
 
     CompoundPredicate compoundPredicate = (CompoundPredicate) predicate;
@@ -131,8 +154,37 @@ public class PredicateEvaluator
     return new CompoundPredicateInvoker( compoundPredicate, invokers );
     }
 
+  private static boolean isNumeric( Fields expectedFields, int pos, SimplePredicate predicate )
+    {
+    if( !( predicate instanceof ComparablePredicate ) || !( (ComparablePredicate) predicate ).isNumeric() )
+      return false;
+
+    Type type = expectedFields.getType( pos );
+
+    return type == Double.class || type == Double.TYPE;
+    }
+
+  /**
+   * Method test returns the tri-state result of the predicate against the given tupleEntry, either
+   * {@link Predicate#TRUE}, {@link Predicate#FALSE}, or {@link Predicate#UNKNOWN}.
+   *
+   * @param tupleEntry the arguments
+   * @return the tri-state result
+   */
+  public int test( TupleEntry tupleEntry )
+    {
+    return invoker.test( tupleEntry );
+    }
+
+  /**
+   * Method evaluate returns true only if the predicate is {@link Predicate#TRUE}, an UNKNOWN result
+   * is treated as false.
+   *
+   * @param tupleEntry the arguments
+   * @return true if the predicate holds
+   */
   public boolean evaluate( TupleEntry tupleEntry )
     {
-    return invoker.invoke( tupleEntry );
+    return invoker.test( tupleEntry ) == Predicate.TRUE;
     }
   }
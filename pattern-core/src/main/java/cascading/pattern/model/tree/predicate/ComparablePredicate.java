@@ -20,21 +20,124 @@
 
 package cascading.pattern.model.tree.predicate;
 
+import cascading.pattern.util.StringIndex;
+
 /**
- *
+ * Class ComparablePredicate is the base class for predicates comparing the argument to a single value.
+ * <p/>
+ * If the given value is a {@link Number}, it is also retained as a primitive {@code double} threshold so
+ * that primitive arguments may be tested via {@link #test(double)} without boxing or {@code compareTo} dispatch.
+ * The primitive test compares with {@link Double#compare(double, double)}, so NaN and negative zero are ordered as
+ * by {@link Double#compareTo(Double)}.
+ * <p/>
+ * If created with the category index of a categorical field, an {@link Integer} argument is taken to be the
+ * ordinal of a category, as created by a {@link cascading.pattern.datafield.CategoricalEncoder}, so equality
+ * is tested by comparing ordinals.
  */
 public abstract class ComparablePredicate<T> extends SimplePredicate
   {
   T value;
+  double threshold = Double.NaN;
+  boolean isNumeric = false;
+  StringIndex categoryIndex;
+  int ordinal = -1;
 
   protected ComparablePredicate( String field, T value )
+    {
+    this( field, value, null );
+    }
+
+  protected ComparablePredicate( String field, T value, StringIndex categoryIndex )
     {
     super( field );
     this.value = value;
+    this.categoryIndex = categoryIndex;
+
+    if( categoryIndex != null && value instanceof String )
+      this.ordinal = categoryIndex.indexOf( (String) value );
+
+    if( value instanceof Number )
+      {
+      this.threshold = ( (Number) value ).doubleValue();
+      this.isNumeric = true;
+      }
     }
 
   public T getValue()
     {
     return value;
     }
+
+  public StringIndex getCategoryIndex()
+    {
+    return categoryIndex;
+    }
+
+  /**
+   * Returns the ordinal of the value within the category index, or -1 if there is no category index or the value
+   * is not a category.
+   *
+   * @return the value ordinal
+   */
+  public int getOrdinal()
+    {
+    return ordinal;
+    }
+
+  /**
+   * Method matches returns true if the given non-null argument is equal to the value, or is the ordinal of the value.
+   *
+   * @param argument the argument value
+   * @return true if equal
+   */
+  protected boolean matches( Object argument )
+    {
+    if( categoryIndex != null && argument instanceof Integer )
+      return ordinal != -1 && ordinal == (Integer) argument;
+
+    return argument.equals( value );
+    }
+
+  /**
+   * Method decode returns the category value if the given argument is an encoded ordinal, otherwise the argument.
+   *
+   * @param argument the argument value
+   * @return the decoded argument value
+   */
+  protected Object decode( Object argument )
+    {
+    if( categoryIndex != null && argument instanceof Integer )
+      return categoryIndex.get( (Integer) argument );
+
+    return argument;
+    }
+
+  /**
+   * Returns true if the value is a {@link Number}, and {@link #test(double)} may be called.
+   *
+   * @return true if numeric
+   */
+  public boolean isNumeric()
+    {
+    return isNumeric;
+    }
+
+  public double getThreshold()
+    {
+    return threshold;
+    }
+
+  /**
+   * Method test returns the tri-state result of this predicate against the primitive threshold.
+   * <p/>
+   * By default the argument is boxed and passed to {@link #test(Object)}, the built-in sub-classes override this
+   * method to compare against the threshold directly.
+   *
+   * @param argument the argument value
+   * @return the tri-state result
+   */
+  public int test( double argument )
+    {
+    return test( (Object) argument );
+    }
   }
@@ -20,6 +20,8 @@
 
 package cascading.pattern.model.tree.predicate;
 
+import cascading.pattern.util.StringIndex;
+
 /**
  *
  */
@@ -30,12 +32,32 @@ public class EqualsToPredicate extends ComparablePredicate<Object>
     super( field, value );
     }
 
+  public EqualsToPredicate( String field, Object value, StringIndex categoryIndex )
+    {
+    super( field, value, categoryIndex );
+    }
+
   @Override
   public Boolean evaluate( Object argument )
     {
     if( argument == null )
       return null;
 
-    return argument.equals( value );
+    return matches( argument );
+    }
+
+  @Override
+  public int test( Object argument )
+    {
+    if( argument == null )
+      return UNKNOWN;
+
+    return toState( matches( argument ) );
+    }
+
+  @Override
+  public int test( double argument )
+    {
+    return toState( Double.compare( argument, threshold ) == 0 );
     }
   }
@@ -33,4 +33,10 @@ public class FalsePredicate extends SimplePredicate
     {
     return Boolean.FALSE;
     }
+
+  @Override
+  public int test( Object argument )
+    {
+    return FALSE;
+    }
   }
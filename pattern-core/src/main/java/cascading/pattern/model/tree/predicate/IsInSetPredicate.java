@@ -22,6 +22,8 @@ package cascading.pattern.model.tree.predicate;
 
 import java.util.Collection;
 
+import cascading.pattern.util.StringIndex;
+
 /** Class IsInSetPredicate returns true if the current value is in the given collection of values. */
 public class IsInSetPredicate extends SimpleSetPredicate
   {
@@ -30,12 +32,26 @@ public class IsInSetPredicate extends SimpleSetPredicate
     super( field, values );
     }
 
+  public IsInSetPredicate( String field, Collection values, StringIndex categoryIndex )
+    {
+    super( field, values, categoryIndex );
+    }
+
   @Override
   public Boolean evaluate( Object argument )
     {
     if( argument == null )
       return null;
 
-    return set.contains( argument );
+    return contains( argument );
+    }
+
+  @Override
+  public int test( Object argument )
+    {
+    if( argument == null )
+      return UNKNOWN;
+
+    return toState( contains( argument ) );
     }
   }
@@ -33,4 +33,10 @@ public class IsMissingPredicate extends SimplePredicate
     {
     return argument == null;
     }
+
+  @Override
+  public int test( Object argument )
+    {
+    return toState( argument == null );
+    }
   }
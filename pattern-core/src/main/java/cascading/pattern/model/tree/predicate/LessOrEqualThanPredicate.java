@@ -20,6 +20,8 @@
 
 package cascading.pattern.model.tree.predicate;
 
+import cascading.pattern.util.StringIndex;
+
 /**
  *
  */
@@ -30,12 +32,32 @@ public class LessOrEqualThanPredicate extends ComparablePredicate<Comparable>
     super( field, value );
     }
 
+  public LessOrEqualThanPredicate( String field, Comparable value, StringIndex categoryIndex )
+    {
+    super( field, value, categoryIndex );
+    }
+
   @Override
   public Boolean evaluate( Object argument )
     {
     if( argument == null )
       return null;
 
-    return ( (Comparable) argument ).compareTo( value ) <= 0;
+    return ( (Comparable) decode( argument ) ).compareTo( value ) <= 0;
+    }
+
+  @Override
+  public int test( Object argument )
+    {
+    if( argument == null )
+      return UNKNOWN;
+
+    return toState( ( (Comparable) decode( argument ) ).compareTo( value ) <= 0 );
+    }
+
+  @Override
+  public int test( double argument )
+    {
+    return toState( Double.compare( argument, threshold ) <= 0 );
     }
   }
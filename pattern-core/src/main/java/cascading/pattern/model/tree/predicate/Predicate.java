@@ -23,8 +23,36 @@ package cascading.pattern.model.tree.predicate;
 import java.io.Serializable;
 
 /**
- *
+ * Class Predicate is the base class of all tree predicates.
+ * <p/>
+ * Besides the boxed {@link Boolean} results returned by the {@code evaluate} methods, predicates may be tested
+ * for a primitive tri-state result, one of {@link #TRUE}, {@link #FALSE}, or {@link #UNKNOWN}, where UNKNOWN is
+ * returned when a result cannot be determined, typically because the argument value is missing.
  */
 public abstract class Predicate implements Serializable
   {
+  public static final int FALSE = 0;
+  public static final int TRUE = 1;
+  public static final int UNKNOWN = -1;
+
+  protected static int toState( Boolean result )
+    {
+    if( result == null )
+      return UNKNOWN;
+
+    return result ? TRUE : FALSE;
+    }
+
+  protected static int toState( boolean result )
+    {
+    return result ? TRUE : FALSE;
+    }
+
+  protected static Boolean toBoolean( int state )
+    {
+    if( state == UNKNOWN )
+      return null;
+
+    return state == TRUE;
+    }
   }
@@ -39,6 +39,20 @@ public abstract class SimplePredicate extends Predicate
 
   public abstract Boolean evaluate( Object argument );
 
+  /**
+   * Method test returns the tri-state result of this predicate for the given argument without boxing,
+   * either {@link #TRUE}, {@link #FALSE}, or {@link #UNKNOWN}.
+   * <p/>
+   * By default the result of {@link #evaluate(Object)} is converted, sub-classes should override this method.
+   *
+   * @param argument the argument value, may be null
+   * @return the tri-state result
+   */
+  public int test( Object argument )
+    {
+    return toState( evaluate( argument ) );
+    }
+
   @Override
   public String toString()
     {
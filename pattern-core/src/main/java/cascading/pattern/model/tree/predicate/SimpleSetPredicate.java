@@ -20,20 +20,183 @@
 
 package cascading.pattern.model.tree.predicate;
 
+import java.util.ArrayList;
+import java.util.BitSet;
 import java.util.Collection;
 import java.util.HashSet;
+import java.util.List;
 import java.util.Set;
 
+import cascading.pattern.util.IntHashSet;
+import cascading.pattern.util.StringIndex;
+
 /**
- *
+ * Class SimpleSetPredicate is the base class for predicates testing membership of the argument in a fixed
+ * set of values.
+ * <p/>
+ * The representation of the set is chosen when the predicate is created. If a category domain is given
+ * and every value is one of its categories, the set is a bitset of category ordinals. Otherwise a set of
+ * integer values is held as an {@link IntHashSet} and a set of strings as a {@link StringIndex}. Any other set
+ * falls back to a {@link HashSet}.
+ * <p/>
+ * Membership is type strict, as with {@link HashSet#contains(Object)}, so a set of Integer values never contains
+ * a Double argument, even one with an integral value.
+ * <p/>
+ * When a category domain is given, an {@link Integer} argument is taken to be the ordinal of a category and is
+ * tested against the bitset directly. A String argument must still be hashed to find its ordinal, so un-encoded
+ * input costs the same single lookup as the StringIndex representation.
  */
 public abstract class SimpleSetPredicate extends SimplePredicate
   {
-  Set set = new HashSet();
+  Set set;
+
+  StringIndex categoryIndex;
+  BitSet ordinals;
+  IntHashSet intSet;
+  StringIndex stringSet;
 
   public SimpleSetPredicate( String field, Collection values )
+    {
+    this( field, values, null );
+    }
+
+  /**
+   * Creates a set predicate whose values are drawn from the given category domain.
+   *
+   * @param field         the argument field name
+   * @param values        the set values
+   * @param categoryIndex the category domain of the field, may be null
+   */
+  public SimpleSetPredicate( String field, Collection values, StringIndex categoryIndex )
     {
     super( field );
-    this.set.addAll( values );
+
+    if( categoryIndex != null && isAll( values, String.class ) )
+      this.ordinals = createOrdinals( categoryIndex, values );
+
+    if( ordinals != null )
+      this.categoryIndex = categoryIndex;
+    else if( isAll( values, Integer.class ) )
+      this.intSet = new IntHashSet( (Collection<Integer>) values );
+    else if( isAll( values, String.class ) )
+      this.stringSet = new StringIndex( new ArrayList<String>( values ) );
+    else
+      this.set = new HashSet( values );
+    }
+
+  private static boolean isAll( Collection values, Class type )
+    {
+    if( values.isEmpty() )
+      return false;
+
+    for( Object value : values )
+      {
+      if( !type.isInstance( value ) )
+        return false;
+      }
+
+    return true;
+    }
+
+  private static BitSet createOrdinals( StringIndex categoryIndex, Collection values )
+    {
+    BitSet bitSet = new BitSet( categoryIndex.size() );
+
+    for( Object value : values )
+      {
+      int ordinal = categoryIndex.indexOf( (String) value );
+
+      if( ordinal == -1 )
+        return null;
+
+      bitSet.set( ordinal );
+      }
+
+    return bitSet;
+    }
+
+  public StringIndex getCategoryIndex()
+    {
+    return categoryIndex;
+    }
+
+  /**
+   * Returns a copy of the set of category ordinals, or null if this set is not represented by category ordinals.
+   *
+   * @return the ordinals or null
+   */
+  public BitSet getOrdinals()
+    {
+    return ordinals == null ? null : (BitSet) ordinals.clone();
+    }
+
+  /**
+   * Returns the members of this set, recovered from whichever representation was chosen.
+   *
+   * @return a new collection of the set values
+   */
+  public Collection getValues()
+    {
+    if( ordinals != null )
+      {
+      List<String> values = new ArrayList<String>();
+
+      for( int i = ordinals.nextSetBit( 0 ); i >= 0; i = ordinals.nextSetBit( i + 1 ) )
+        values.add( categoryIndex.get( i ) );
+
+      return values;
+      }
+
+    if( intSet != null )
+      {
+      List<Integer> values = new ArrayList<Integer>();
+
+      for( int value : intSet.toArray() )
+        values.add( value );
+
+      return values;
+      }
+
+    if( stringSet != null )
+      {
+      List<String> values = new ArrayList<String>();
+
+      for( int i = 0; i < stringSet.size(); i++ )
+        values.add( stringSet.get( i ) );
+
+      return values;
+      }
+
+    return new ArrayList( set );
+    }
+
+  /**
+   * Method contains returns true if the given non-null argument is a member of this set.
+   *
+   * @param argument the argument value
+   * @return true if a member
+   */
+  protected boolean contains( Object argument )
+    {
+    if( ordinals != null )
+      {
+      if( argument instanceof Integer ) // encoded by a CategoricalEncoder
+        return ordinals.get( (Integer) argument );
+
+      if( !( argument instanceof String ) )
+        return false;
+
+      int ordinal = categoryIndex.indexOf( (String) argument );
+
+      return ordinal != -1 && ordinals.get( ordinal );
+      }
+
+    if( intSet != null )
+      return argument instanceof Integer && intSet.contains( (Integer) argument );
+
+    if( stringSet != null )
+      return argument instanceof String && stringSet.contains( (String) argument );
+
+    return set.contains( argument );
     }
   }
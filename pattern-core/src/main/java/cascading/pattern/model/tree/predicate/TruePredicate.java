@@ -33,4 +33,10 @@ public class TruePredicate extends SimplePredicate
     {
     return Boolean.TRUE;
     }
+
+  @Override
+  public int test( Object argument )
+    {
+    return TRUE;
+    }
   }
@@ -54,4 +54,18 @@ public class AndPredicate extends CompoundPredicate
 
     return true;
     }
+
+  @Override
+  public <Input> int test( Operand<Input>[] operands, Input input )
+    {
+    for( Operand<Input> operand : operands )
+      {
+      int result = operand.test( input );
+
+      if( result != TRUE )
+        return result;
+      }
+
+    return TRUE;
+    }
   }
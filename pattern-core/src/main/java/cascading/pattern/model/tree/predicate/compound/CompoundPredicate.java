@@ -20,6 +20,7 @@
 
 package cascading.pattern.model.tree.predicate.compound;
 
+import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Iterator;
 import java.util.List;
@@ -33,6 +34,17 @@ public abstract class CompoundPredicate extends Predicate
   {
   protected Predicate[] children;
 
+  /**
+   * Interface Operand represents a child predicate bound to some input, it is only tested
+   * when its result is required by the parent CompoundPredicate.
+   *
+   * @param <Input> the input type, typically a {@link cascading.tuple.TupleEntry}
+   */
+  public interface Operand<Input>
+    {
+    int test( Input input );
+    }
+
   protected CompoundPredicate( List<Predicate> children )
     {
     this.children = children.toArray( new Predicate[ children.size() ] );
@@ -50,6 +62,27 @@ public abstract class CompoundPredicate extends Predicate
 
   public abstract Boolean evaluate( Iterator<Boolean> results );
 
+  /**
+   * Method test returns the tri-state result of this predicate, either {@link #TRUE}, {@link #FALSE},
+   * or {@link #UNKNOWN}, testing only as many of the given operands as necessary.
+   * <p/>
+   * By default every operand is tested and the results handed to {@link #evaluate(java.util.Iterator)},
+   * sub-classes should override this method.
+   *
+   * @param operands the operands, one for each child predicate
+   * @param input    the current input
+   * @return the tri-state result
+   */
+  public <Input> int test( Operand<Input>[] operands, Input input )
+    {
+    List<Boolean> results = new ArrayList<Boolean>( operands.length );
+
+    for( Operand<Input> operand : operands )
+      results.add( toBoolean( operand.test( input ) ) );
+
+    return toState( evaluate( results.iterator() ) );
+    }
+
   @Override
   public String toString()
     {
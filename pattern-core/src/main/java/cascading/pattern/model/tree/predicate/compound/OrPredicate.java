@@ -54,4 +54,18 @@ public class OrPredicate extends CompoundPredicate
 
     return false;
     }
+
+  @Override
+  public <Input> int test( Operand<Input>[] operands, Input input )
+    {
+    for( Operand<Input> operand : operands )
+      {
+      int result = operand.test( input );
+
+      if( result != FALSE )
+        return result;
+      }
+
+    return FALSE;
+    }
   }
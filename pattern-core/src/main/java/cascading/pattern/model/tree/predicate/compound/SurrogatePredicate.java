@@ -54,4 +54,18 @@ public class SurrogatePredicate extends CompoundPredicate
 
     return null;
     }
+
+  @Override
+  public <Input> int test( Operand<Input>[] operands, Input input )
+    {
+    for( Operand<Input> operand : operands )
+      {
+      int result = operand.test( input );
+
+      if( result != UNKNOWN )
+        return result;
+      }
+
+    return UNKNOWN;
+    }
   }
@@ -56,4 +56,23 @@ public class XorPredicate extends CompoundPredicate
 
     return ( count % 2 ) == 1; // is odd
     }
+
+  @Override
+  public <Input> int test( Operand<Input>[] operands, Input input )
+    {
+    int count = 0;
+
+    for( Operand<Input> operand : operands )
+      {
+      int result = operand.test( input );
+
+      if( result == UNKNOWN )
+        return UNKNOWN;
+
+      if( result == TRUE )
+        count++;
+      }
+
+    return toState( ( count % 2 ) == 1 ); // is odd
+    }
   }
@@ -0,0 +1,182 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.util;
+
+/**
+ * Class FastMath provides approximations of {@link Math#exp(double)} and {@link Math#atan(double)} that are
+ * cheaper to evaluate, for use when scoring where the last few digits of a probability do not matter.
+ * <p/>
+ * {@link #exp(double)} splits the argument into a power of two, a 1/256th fraction looked up from a table, and a
+ * remainder below {@code ln(2)/256} evaluated by a quartic polynomial. The relative error is below {@code 1e-12}
+ * for all finite results. Arguments whose result is subnormal, or above {@code 2^1023}, are passed to
+ * {@link Math#exp(double)}.
+ * <p/>
+ * {@link #atan(double)} reduces the argument to below {@code tan(pi/12)} in magnitude and evaluates the Taylor
+ * series to the 17th power. The absolute error is below {@code 1e-11}.
+ * <p/>
+ * {@link #pow(double, long)} raises a value to an integral exponent by multiplication.
+ */
+public final class FastMath
+  {
+  /** the largest exponent {@link #pow(double, long)} evaluates by repeated squaring */
+  public static final long MAX_SQUARING_EXPONENT = 64;
+
+  private static final int TABLE_BITS = 8;
+  private static final int TABLE_SIZE = 1 << TABLE_BITS;
+  private static final double LOG2_E = 1.0d / Math.log( 2.0d );
+  private static final double LN_2_SCALED = Math.log( 2.0d ) / TABLE_SIZE;
+
+  private static final double SQRT_3 = Math.sqrt( 3.0d );
+  private static final double TAN_PI_12 = 2.0d - SQRT_3;
+
+  /** 2^(j/256) for every table index j */
+  private static final double[] POWERS = new double[ TABLE_SIZE ];
+
+  static
+    {
+    for( int j = 0; j < TABLE_SIZE; j++ )
+      POWERS[ j ] = Math.pow( 2.0d, (double) j / TABLE_SIZE );
+    }
+
+  private FastMath()
+    {
+    }
+
+  /**
+   * Method exp returns an approximation of e raised to the given power, see {@link FastMath}.
+   *
+   * @param value the exponent
+   * @return e^value
+   */
+  public static double exp( double value )
+    {
+    double power = value * LOG2_E;
+
+    // subnormal results, results within a factor of two of overflowing, and NaN
+    if( !( power >= -1022.0d && power < 1023.0d ) )
+      return Math.exp( value );
+
+    double scaled = power * TABLE_SIZE;
+    long index = (long) scaled;
+
+    // round towards negative infinity
+    if( index > scaled )
+      index--;
+
+    double remainder = ( scaled - index ) * LN_2_SCALED;
+    double polynomial = 1.0d + remainder * ( 1.0d + remainder * ( 0.5d + remainder * ( 1.0d / 6.0d + remainder * ( 1.0d / 24.0d ) ) ) );
+    double twoToInteger = Double.longBitsToDouble( ( ( index >> TABLE_BITS ) + 1023 ) << 52 );
+
+    return POWERS[ (int) ( index & ( TABLE_SIZE - 1 ) ) ] * polynomial * twoToInteger;
+    }
+
+  /**
+   * Method pow returns the given value raised to the given integral exponent. Exponents 0 through 3 take at most
+   * two multiplies, larger exponents up to {@link #MAX_SQUARING_EXPONENT} use repeated squaring, and all other
+   * exponents {@link Math#pow(double, double)}.
+   * <p/>
+   * Every multiply is rounded, so for exponents above 2 the result may differ from Math.pow in the last bits.
+   *
+   * @param value    the base
+   * @param exponent the exponent
+   * @return value^exponent
+   */
+  public static double pow( double value, long exponent )
+    {
+    if( exponent == 1 )
+      return value;
+
+    if( exponent == 2 )
+      return value * value;
+
+    if( exponent == 3 )
+      return value * value * value;
+
+    if( exponent == 0 )
+      return 1.0d;
+
+    if( exponent < 0 || exponent > MAX_SQUARING_EXPONENT )
+      return Math.pow( value, exponent );
+
+    double result = 1.0d;
+    double square = value;
+
+    for( long remaining = exponent; remaining != 0; remaining >>= 1 )
+      {
+      if( ( remaining & 1 ) != 0 )
+        result *= square;
+
+      square *= square;
+      }
+
+    return result;
+    }
+
+  /**
+   * Method atan returns an approximation of the arc tangent of the given value, see {@link FastMath}.
+   *
+   * @param value the value
+   * @return the arc tangent, in the range -pi/2 through pi/2
+   */
+  public static double atan( double value )
+    {
+    // NaN, and zero keeping its sign
+    if( value != value || value == 0.0d )
+      return value;
+
+    boolean isNegative = value < 0;
+    double argument = isNegative ? -value : value;
+
+    // atan(x) = pi/2 - atan(1/x)
+    boolean isInverted = argument > 1.0d;
+
+    if( isInverted )
+      argument = 1.0d / argument;
+
+    double offset = 0.0d;
+
+    // atan(x) = pi/6 + atan((x * sqrt(3) - 1) / (x + sqrt(3)))
+    if( argument > TAN_PI_12 )
+      {
+      argument = ( argument * SQRT_3 - 1.0d ) / ( argument + SQRT_3 );
+      offset = Math.PI / 6.0d;
+      }
+
+    double square = argument * argument;
+    double series = 1.0d / 17.0d;
+
+    series = 1.0d / 15.0d - square * series;
+    series = 1.0d / 13.0d - square * series;
+    series = 1.0d / 11.0d - square * series;
+    series = 1.0d / 9.0d - square * series;
+    series = 1.0d / 7.0d - square * series;
+    series = 1.0d / 5.0d - square * series;
+    series = 1.0d / 3.0d - square * series;
+    series = 1.0d - square * series;
+
+    double result = offset + argument * series;
+
+    if( isInverted )
+      result = Math.PI / 2.0d - result;
+
+    return isNegative ? -result : result;
+    }
+  }
@@ -0,0 +1,151 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.Collection;
+
+/**
+ * Class IntHashSet is an immutable open addressing hash set of primitive {@code int} values.
+ * <p/>
+ * Membership tests do not box the argument, and the table is kept at most half full so that
+ * linear probing terminates quickly.
+ */
+public class IntHashSet implements Serializable
+  {
+  private final int[] table;
+  private final boolean[] used;
+  private final int mask;
+  private final int size;
+
+  public IntHashSet( int... values )
+    {
+    int capacity = 4;
+
+    while( capacity < values.length * 2 )
+      capacity <<= 1;
+
+    this.table = new int[ capacity ];
+    this.used = new boolean[ capacity ];
+    this.mask = capacity - 1;
+
+    int count = 0;
+
+    for( int value : values )
+      {
+      if( add( value ) )
+        count++;
+      }
+
+    this.size = count;
+    }
+
+  public IntHashSet( Collection<? extends Number> values )
+    {
+    this( toArray( values ) );
+    }
+
+  private static int[] toArray( Collection<? extends Number> values )
+    {
+    int[] result = new int[ values.size() ];
+    int count = 0;
+
+    for( Number value : values )
+      result[ count++ ] = value.intValue();
+
+    return result;
+    }
+
+  private static int hash( int value )
+    {
+    int hash = value * 0x9E3779B9;
+
+    return hash ^ ( hash >>> 16 );
+    }
+
+  private boolean add( int value )
+    {
+    int index = hash( value ) & mask;
+
+    while( used[ index ] )
+      {
+      if( table[ index ] == value )
+        return false;
+
+      index = ( index + 1 ) & mask;
+      }
+
+    used[ index ] = true;
+    table[ index ] = value;
+
+    return true;
+    }
+
+  public boolean contains( int value )
+    {
+    int index = hash( value ) & mask;
+
+    while( used[ index ] )
+      {
+      if( table[ index ] == value )
+        return true;
+
+      index = ( index + 1 ) & mask;
+      }
+
+    return false;
+    }
+
+  public int size()
+    {
+    return size;
+    }
+
+  /**
+   * Returns the members of this set in ascending order.
+   *
+   * @return the values
+   */
+  public int[] toArray()
+    {
+    int[] values = new int[ size ];
+    int count = 0;
+
+    for( int i = 0; i < table.length; i++ )
+      {
+      if( used[ i ] )
+        values[ count++ ] = table[ i ];
+      }
+
+    Arrays.sort( values );
+
+    return values;
+    }
+
+  @Override
+  public String toString()
+    {
+    int[] values = toArray();
+
+    return Arrays.toString( values );
+    }
+  }
@@ -0,0 +1,179 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.util;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Class StringIndex is an immutable mapping of a fixed list of strings to their ordinal positions in that list.
+ * <p/>
+ * The hash code of every string is computed once when the index is built. Where possible a table size is chosen
+ * so every string occupies a unique slot, so that a lookup costs a single hash code comparison and at most one
+ * {@link String#equals(Object)} call. Otherwise collisions are resolved by linear probing.
+ * <p/>
+ * A StringIndex may be used as a set of strings via {@link #contains(String)}.
+ */
+public class StringIndex implements Serializable
+  {
+  /** Upper bound on the table size as a multiple of the number of values when searching for a perfect table. */
+  private static final int MAX_PERFECT_FACTOR = 16;
+
+  private final String[] values;
+  private final String[] table;
+  private final int[] hashes;
+  private final int[] ordinals;
+  private final int mask;
+  private final boolean perfect;
+
+  public StringIndex( List<String> values )
+    {
+    this.values = values.toArray( new String[ values.size() ] );
+
+    int[] valueHashes = new int[ this.values.length ];
+
+    for( int i = 0; i < this.values.length; i++ )
+      {
+      if( this.values[ i ] == null )
+        throw new IllegalArgumentException( "values may not contain null" );
+
+      valueHashes[ i ] = hash( this.values[ i ] );
+      }
+
+    int minCapacity = 4;
+
+    while( minCapacity < this.values.length * 2 )
+      minCapacity <<= 1;
+
+    int capacity = minCapacity;
+
+    while( capacity <= minCapacity * MAX_PERFECT_FACTOR && !isPerfect( valueHashes, capacity - 1 ) )
+      capacity <<= 1;
+
+    this.perfect = capacity <= minCapacity * MAX_PERFECT_FACTOR;
+
+    if( !perfect )
+      capacity = minCapacity;
+
+    this.table = new String[ capacity ];
+    this.hashes = new int[ capacity ];
+    this.ordinals = new int[ capacity ];
+    this.mask = capacity - 1;
+
+    for( int i = 0; i < this.values.length; i++ )
+      {
+      int index = valueHashes[ i ] & mask;
+
+      while( table[ index ] != null && !table[ index ].equals( this.values[ i ] ) )
+        index = ( index + 1 ) & mask;
+
+      if( table[ index ] != null ) // duplicate, retain the first ordinal
+        continue;
+
+      table[ index ] = this.values[ i ];
+      hashes[ index ] = valueHashes[ i ];
+      ordinals[ index ] = i;
+      }
+    }
+
+  private static int hash( String value )
+    {
+    int hash = value.hashCode() * 0x9E3779B9;
+
+    return hash ^ ( hash >>> 16 );
+    }
+
+  private static boolean isPerfect( int[] valueHashes, int mask )
+    {
+    boolean[] seen = new boolean[ mask + 1 ];
+
+    for( int hash : valueHashes )
+      {
+      if( seen[ hash & mask ] )
+        return false;
+
+      seen[ hash & mask ] = true;
+      }
+
+    return true;
+    }
+
+  /**
+   * Method indexOf returns the ordinal of the given value, or -1 if the value is not in this index.
+   *
+   * @param value the value
+   * @return the ordinal or -1
+   */
+  public int indexOf( String value )
+    {
+    if( value == null )
+      return -1;
+
+    int hash = hash( value );
+    int index = hash & mask;
+
+    if( perfect )
+      {
+      if( table[ index ] != null && hashes[ index ] == hash && table[ index ].equals( value ) )
+        return ordinals[ index ];
+
+      return -1;
+      }
+
+    while( table[ index ] != null )
+      {
+      if( hashes[ index ] == hash && table[ index ].equals( value ) )
+        return ordinals[ index ];
+
+      index = ( index + 1 ) & mask;
+      }
+
+    return -1;
+    }
+
+  public boolean contains( String value )
+    {
+    return indexOf( value ) != -1;
+    }
+
+  /**
+   * Method get returns the value at the given ordinal.
+   *
+   * @param ordinal the ordinal
+   * @return the value
+   */
+  public String get( int ordinal )
+    {
+    return values[ ordinal ];
+    }
+
+  public int size()
+    {
+    return values.length;
+    }
+
+  @Override
+  public String toString()
+    {
+    return Arrays.toString( values );
+    }
+  }
@@ -21,11 +21,14 @@
 package cascading.pattern.ensemble;
 
 import java.io.IOException;
+import java.util.HashSet;
 import java.util.List;
+import java.util.Set;
 
 import cascading.flow.Flow;
 import cascading.flow.FlowDef;
 import cascading.pattern.PatternPlatformTestCase;
+import cascading.pattern.ensemble.function.InsertKey;
 import cascading.pattern.model.tree.TreeSpec;
 import cascading.pipe.Pipe;
 import cascading.pipe.assembly.Discard;
@@ -98,4 +101,43 @@ public class EnsemblePlatformTestCase extends PatternPlatformTestCase
 
     assertEquals( sourceTuples, sinkTuples, 0.000001d );
     }
+
+  /**
+   * Method performKeyedTest inserts a key with {@link InsertKey} and declares it as the key field of the ensemble,
+   * so the key is retained in the results.
+   */
+  protected void performKeyedTest( String inputData, Fields predictedFields, Fields expectedFields, EnsembleSpec<TreeSpec> ensembleSpec ) throws IOException
+    {
+    Fields keyFields = new Fields( "key", long.class );
+
+    ensembleSpec.getModelSchema().addKeyFields( keyFields );
+
+    Pipe pipe = new Pipe( "head" );
+    pipe = new Discard( pipe, predictedFields );
+    pipe = new InsertKey( pipe, keyFields );
+    pipe = new ParallelEnsembleAssembly( pipe, ensembleSpec );
+    pipe = new Pipe( "tail", pipe );
+
+    Tap source = getPlatform().getDelimitedFile( expectedFields.append( predictedFields ), true, ",", "\"", DATA_PATH + inputData, SinkMode.KEEP );
+    Tap sink = getPlatform().getDelimitedFile( Fields.ALL, true, ",", "\"", getResultPath(), SinkMode.REPLACE );
+
+    FlowDef flowDef = FlowDef.flowDef()
+      .addSource( "head", source )
+      .addSink( "tail", sink )
+      .addTail( pipe );
+
+    Flow flow = getPlatform().getFlowConnector().connect( flowDef );
+
+    flow.complete();
+
+    List<Tuple> sourceTuples = asList( flow, source, source.getSourceFields() );
+    List<Tuple> sinkTuples = asList( flow, sink, expectedFields.append( predictedFields ) );
+
+    // keys increase in input order within the single slice, so grouping retains the input order
+    assertEquals( sourceTuples, sinkTuples, 0.000001d );
+
+    Set<Tuple> keys = new HashSet<Tuple>( asList( flow, sink, keyFields ) );
+
+    assertEquals( sourceTuples.size(), keys.size() );
+    }
   }
@@ -47,6 +47,29 @@ public class SimpleEnsemblePlatformTest extends EnsemblePlatformTestCase
       .append( new Fields( "var1", double.class ) )
       .append( new Fields( "var2", double.class ) );
 
+    String inputData = "randomforest.tsv";
+
+    performTest( inputData, predictedFields, expectedFields, createRandomForest( predictedFields, expectedFields ) );
+    }
+
+  /** The generated keys must pass through every scoring function and the grouping unchanged. */
+  @Test
+  public void testRandomForestKeyed() throws IOException
+    {
+    Fields predictedFields = new Fields( "label", String.class );
+
+    Fields expectedFields = Fields.NONE
+      .append( new Fields( "var0", double.class ) )
+      .append( new Fields( "var1", double.class ) )
+      .append( new Fields( "var2", double.class ) );
+
+    String inputData = "randomforest.tsv";
+
+    performKeyedTest( inputData, predictedFields, expectedFields, createRandomForest( predictedFields, expectedFields ) );
+    }
+
+  private EnsembleSpec<TreeSpec> createRandomForest( Fields predictedFields, Fields expectedFields )
+    {
     ModelSchema modelSchema = new ModelSchema( expectedFields, predictedFields );
 
     modelSchema.setPredictedCategories( "label", "0", "1" );
@@ -98,9 +121,7 @@ public class SimpleEnsemblePlatformTest extends EnsemblePlatformTestCase
     ensembleSpec.addModelSpec( treeSpec );
     }
 
-    String inputData = "randomforest.tsv";
-
-    performTest( inputData, predictedFields, expectedFields, ensembleSpec );
+    return ensembleSpec;
     }
 
   @Test
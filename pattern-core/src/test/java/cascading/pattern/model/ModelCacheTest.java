@@ -0,0 +1,331 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.model;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cascading.CascadingTestCase;
+import cascading.pattern.PatternException;
+import cascading.pattern.ensemble.CompiledEnsemble;
+import cascading.pattern.ensemble.EnsembleSpec;
+import cascading.pattern.model.clustering.Cluster;
+import cascading.pattern.model.clustering.ClusteringSpec;
+import cascading.pattern.model.clustering.compare.AbsoluteDifferenceCompareFunction;
+import cascading.pattern.model.clustering.measure.EuclideanMeasure;
+import cascading.pattern.model.clustering.measure.SquaredEuclideanMeasure;
+import cascading.pattern.model.generalregression.GeneralRegressionSpec;
+import cascading.pattern.model.generalregression.LinkFunction;
+import cascading.pattern.model.generalregression.NumericMode;
+import cascading.pattern.model.generalregression.Parameter;
+import cascading.pattern.model.generalregression.RegressionTable;
+import cascading.pattern.model.generalregression.predictor.CovariantPredictor;
+import cascading.pattern.model.tree.Tree;
+import cascading.pattern.model.tree.TreeSpec;
+import cascading.pattern.model.tree.predicate.GreaterThanPredicate;
+import cascading.pattern.model.tree.predicate.LessOrEqualThanPredicate;
+import cascading.pattern.util.Logging;
+import cascading.tuple.Fields;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class ModelCacheTest extends CascadingTestCase
+  {
+  private Fields expectedFields;
+
+  public ModelCacheTest()
+    {
+    }
+
+  @Override
+  public void setUp() throws Exception
+    {
+    Logging.setLogLevel( this.getClass(), "cascading.pattern", "debug" );
+
+    super.setUp();
+
+    ModelCache.clear();
+
+    expectedFields = Fields.NONE
+      .append( new Fields( "var0", double.class ) )
+      .append( new Fields( "var1", double.class ) );
+    }
+
+  private static class CountingLoader implements ModelCache.Loader<Object>
+    {
+    final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Object load()
+      {
+      count.incrementAndGet();
+
+      return new Object();
+      }
+    }
+
+  @Test
+  public void testShared()
+    {
+    CountingLoader loader = new CountingLoader();
+
+    Object value = ModelCache.get( "key", loader );
+
+    assertSame( value, ModelCache.get( "key", loader ) );
+    assertEquals( 1, loader.count.get() );
+
+    Tree tree = createTree( "var0" );
+
+    assertSame( tree.createCompiledDecisionTree( expectedFields ), tree.createCompiledDecisionTree( expectedFields ) );
+    }
+
+  @Test
+  public void testEviction()
+    {
+    int maxSize = Integer.getInteger( ModelCache.CACHE_SIZE, 64 );
+    CountingLoader loader = new CountingLoader();
+
+    Object first = ModelCache.get( "key0", loader );
+
+    for( int i = 1; i <= maxSize; i++ )
+      ModelCache.get( "key" + i, loader );
+
+    assertEquals( maxSize, ModelCache.size() );
+    assertEquals( maxSize + 1, loader.count.get() );
+
+    // the least recently used entry was evicted, so is loaded again
+    assertNotSame( first, ModelCache.get( "key0", loader ) );
+    assertEquals( maxSize + 2, loader.count.get() );
+
+    // the most recently used entry is retained
+    ModelCache.get( "key" + maxSize, loader );
+    assertEquals( maxSize + 2, loader.count.get() );
+    }
+
+  @Test
+  public void testKeys()
+    {
+    TreeSpec treeSpec = new TreeSpec( new ModelSchema( expectedFields, new Fields( "label", double.class ) ), createTree( "var0" ) );
+
+    String key = ModelCache.createKey( "tree", treeSpec, expectedFields );
+
+    assertEquals( key, ModelCache.createKey( "tree", treeSpec, new Fields( "var0", double.class ).append( new Fields( "var1", double.class ) ) ) );
+    assertFalse( key.equals( ModelCache.createKey( "other", treeSpec, expectedFields ) ) );
+
+    // the same spec bound to different argument fields are compiled separately
+    Fields reordered = new Fields( "var1", double.class ).append( new Fields( "var0", double.class ) );
+    Fields renamed = new Fields( "var0", double.class ).append( new Fields( "var2", double.class ) );
+    Fields retyped = new Fields( "var0", double.class ).append( new Fields( "var1", String.class ) );
+
+    assertFalse( key.equals( ModelCache.createKey( "tree", treeSpec, reordered ) ) );
+    assertFalse( key.equals( ModelCache.createKey( "tree", treeSpec, renamed ) ) );
+    assertFalse( key.equals( ModelCache.createKey( "tree", treeSpec, retyped ) ) );
+
+    Tree tree = treeSpec.getTree();
+
+    assertNotSame( tree.createCompiledDecisionTree( expectedFields ), tree.createCompiledDecisionTree( reordered ) );
+    }
+
+  @Test
+  public void testConcurrentLoad() throws Exception
+    {
+    final CountDownLatch started = new CountDownLatch( 1 );
+    final CountDownLatch release = new CountDownLatch( 1 );
+    final AtomicInteger count = new AtomicInteger();
+
+    final ModelCache.Loader<Object> slowLoader = new ModelCache.Loader<Object>()
+    {
+    @Override
+    public Object load()
+      {
+      count.incrementAndGet();
+      started.countDown();
+
+      try
+        {
+        release.await();
+        }
+      catch( InterruptedException exception )
+        {
+        throw new RuntimeException( exception );
+        }
+
+      return new Object();
+      }
+    };
+
+    ExecutorService executor = Executors.newFixedThreadPool( 4 );
+
+    try
+      {
+      List<Future<Object>> futures = new ArrayList<Future<Object>>();
+
+      for( int i = 0; i < 4; i++ )
+        {
+        futures.add( executor.submit( new Callable<Object>()
+        {
+        @Override
+        public Object call() throws Exception
+          {
+          return ModelCache.get( "slow", slowLoader );
+          }
+        } ) );
+        }
+
+      assertTrue( started.await( 10, TimeUnit.SECONDS ) );
+
+      // other keys are not blocked by a load in progress
+      CountingLoader loader = new CountingLoader();
+
+      assertNotNull( ModelCache.get( "fast", loader ) );
+      assertEquals( 1, loader.count.get() );
+
+      release.countDown();
+
+      Object value = futures.get( 0 ).get( 10, TimeUnit.SECONDS );
+
+      for( Future<Object> future : futures )
+        assertSame( value, future.get( 10, TimeUnit.SECONDS ) );
+
+      assertEquals( 1, count.get() );
+      assertSame( value, ModelCache.get( "slow", slowLoader ) );
+      }
+    finally
+      {
+      executor.shutdownNow();
+      }
+    }
+
+  @Test
+  public void testFailedLoad()
+    {
+    try
+      {
+      ModelCache.get( "failed", new ModelCache.Loader<Object>()
+      {
+      @Override
+      public Object load()
+        {
+        throw new PatternException( "failed" );
+        }
+      } );
+
+      fail( "did not rethrow" );
+      }
+    catch( PatternException exception )
+      {
+      assertEquals( "failed", exception.getMessage() );
+      }
+
+    // failures are not cached
+    CountingLoader loader = new CountingLoader();
+
+    assertNotNull( ModelCache.get( "failed", loader ) );
+    assertEquals( 1, loader.count.get() );
+    }
+
+  @Test
+  public void testEnsembleMembersNotCached()
+    {
+    ModelSchema modelSchema = new ModelSchema( expectedFields, new Fields( "label", String.class ) );
+
+    modelSchema.setPredictedCategories( "label", "0", "1" );
+
+    List<TreeSpec> treeSpecs = new ArrayList<TreeSpec>();
+
+    for( int i = 0; i < 100; i++ )
+      treeSpecs.add( new TreeSpec( modelSchema, createTree( i % 2 == 0 ? "var0" : "var1" ) ) );
+
+    new CompiledEnsemble( new EnsembleSpec<TreeSpec>( modelSchema, treeSpecs ), expectedFields );
+
+    assertEquals( 0, ModelCache.size() );
+    }
+
+  @Test
+  public void testSpecDigestInvalidated()
+    {
+    ModelSchema modelSchema = new ModelSchema( expectedFields, new Fields( "label", double.class ) );
+
+    GeneralRegressionSpec regressionSpec = new GeneralRegressionSpec( modelSchema );
+    RegressionTable regressionTable = new RegressionTable();
+
+    regressionTable.addParameter( new Parameter( "intercept", 1d ) );
+    regressionTable.addParameter( new Parameter( "p0", 2d, new CovariantPredictor( "var0" ) ) );
+    regressionSpec.addRegressionTable( regressionTable );
+
+    String digest = assertDigestChanged( regressionSpec, null );
+
+    regressionSpec.setNumericMode( NumericMode.FAST );
+    digest = assertDigestChanged( regressionSpec, digest );
+
+    regressionSpec.setLinkFunction( LinkFunction.LOGIT );
+    assertDigestChanged( regressionSpec, digest );
+
+    ClusteringSpec clusteringSpec = new ClusteringSpec( new ModelSchema( expectedFields, new Fields( "cluster", String.class ) ) );
+
+    clusteringSpec.setDefaultCompareFunction( new AbsoluteDifferenceCompareFunction() );
+    clusteringSpec.setComparisonMeasure( new SquaredEuclideanMeasure() );
+    clusteringSpec.addCluster( new Cluster( "1", 0d, 0d ) );
+
+    digest = assertDigestChanged( clusteringSpec, null );
+
+    clusteringSpec.setComparisonMeasure( new EuclideanMeasure() );
+    digest = assertDigestChanged( clusteringSpec, digest );
+
+    clusteringSpec.addCluster( new Cluster( "2", 1d, 1d ) );
+    assertDigestChanged( clusteringSpec, digest );
+
+    TreeSpec treeSpec = new TreeSpec( new ModelSchema( expectedFields, new Fields( "label", double.class ) ), createTree( "var0" ) );
+
+    digest = assertDigestChanged( treeSpec, null );
+
+    treeSpec.setTree( createTree( "var1" ) );
+    assertDigestChanged( treeSpec, digest );
+    }
+
+  private String assertDigestChanged( Spec spec, String previous )
+    {
+    String digest = spec.getDigest();
+
+    assertFalse( digest.equals( previous ) );
+
+    return digest;
+    }
+
+  private static Tree createTree( String field )
+    {
+    Tree tree = new Tree( "1" );
+
+    tree.addPredicate( "1", "2", new LessOrEqualThanPredicate( field, 0.5d ), "1" );
+    tree.addPredicate( "1", "3", new GreaterThanPredicate( field, 0.5d ), "0" );
+
+    return tree;
+    }
+  }
@@ -20,11 +20,30 @@
 
 package cascading.pattern.model;
 
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
 import cascading.CascadingTestCase;
+import cascading.pattern.ensemble.EnsembleFunction;
+import cascading.pattern.ensemble.EnsembleSpec;
+import cascading.pattern.ensemble.MappedEnsembleFunction;
+import cascading.pattern.ensemble.MappedEnsembleSpec;
+import cascading.pattern.ensemble.function.KeyFunction;
+import cascading.pattern.ensemble.selection.Average;
+import cascading.pattern.ensemble.selection.CategoricalSelectionBuffer;
+import cascading.pattern.model.batch.BatchScorer;
+import cascading.pattern.model.batch.ColumnBatch;
 import cascading.pattern.model.clustering.Cluster;
 import cascading.pattern.model.clustering.ClusteringFunction;
 import cascading.pattern.model.clustering.ClusteringSpec;
 import cascading.pattern.model.clustering.compare.AbsoluteDifferenceCompareFunction;
+import cascading.pattern.model.clustering.compare.CompareFunction;
+import cascading.pattern.model.clustering.measure.DistanceMeasure;
+import cascading.pattern.model.clustering.measure.EuclideanMeasure;
 import cascading.pattern.model.clustering.measure.SquaredEuclideanMeasure;
 import cascading.pattern.model.generalregression.CategoricalRegressionFunction;
 import cascading.pattern.model.generalregression.GeneralRegressionSpec;
@@ -32,12 +51,17 @@ import cascading.pattern.model.generalregression.LinkFunction;
 import cascading.pattern.model.generalregression.Parameter;
 import cascading.pattern.model.generalregression.PredictionRegressionFunction;
 import cascading.pattern.model.generalregression.RegressionTable;
-import cascading.pattern.model.generalregression.normalization.SoftMaxNormalization;
 import cascading.pattern.model.generalregression.predictor.CovariantPredictor;
 import cascading.pattern.model.generalregression.predictor.FactorPredictor;
+import cascading.pattern.model.tree.Node;
 import cascading.pattern.model.tree.Tree;
 import cascading.pattern.model.tree.TreeFunction;
+import cascading.pattern.model.tree.TreeProfile;
 import cascading.pattern.model.tree.TreeSpec;
+import cascading.pattern.model.tree.decision.CompiledDecisionTree;
+import cascading.pattern.model.tree.decision.Decision;
+import cascading.pattern.model.tree.decision.DecisionTree;
+import cascading.pattern.model.tree.decision.FinalDecision;
 import cascading.pattern.model.tree.predicate.GreaterThanPredicate;
 import cascading.pattern.model.tree.predicate.LessOrEqualThanPredicate;
 import cascading.pattern.util.Logging;
@@ -87,6 +111,62 @@ public class ModelTest extends CascadingTestCase
    */
   @Test
   public void testClusteringFunction() throws Exception
+    {
+    ClusteringSpec clusteringSpec = createClusteringSpec();
+    Fields predictedFields = clusteringSpec.getModelSchema().getPredictedFields();
+    Fields expectedFields = clusteringSpec.getModelSchema().getInputFields();
+
+    ClusteringFunction clusteringFunction = new ClusteringFunction( clusteringSpec );
+
+//    TupleEntry tupleArguments = new TupleEntry( expectedFields, new Tuple( 6.9d, 3.1d, 4.9d, 1.5d ) );
+    TupleEntry tupleArguments = new TupleEntry( expectedFields, new Tuple( 6.4d, 3.1d, 5.5d, 1.8d ) );
+
+    TupleListCollector collector = invokeFunction( clusteringFunction, tupleArguments, predictedFields );
+
+//    assertEquals( new Tuple( "2" ), collector.entryIterator().next().getTuple() );
+    assertEquals( new Tuple( "3" ), collector.entryIterator().next().getTuple() );
+    }
+
+  @Test
+  public void testClusteringBatch()
+    {
+    ClusteringSpec clusteringSpec = createClusteringSpec();
+    Fields expectedFields = clusteringSpec.getModelSchema().getInputFields();
+
+    assertTrue( clusteringSpec.isBatchSupported() );
+
+    BatchScorer batchScorer = clusteringSpec.createBatchScorer();
+    ColumnBatch batch = new ColumnBatch( clusteringSpec.getModelSchema(), 4 );
+
+    batch.add( new TupleEntry( expectedFields, new Tuple( 6.4d, 3.1d, 5.5d, 1.8d ) ) );
+    batch.add( new TupleEntry( expectedFields, new Tuple( 5.1d, 3.5d, 1.4d, 0.2d ) ) );
+
+    int[] results = new int[ batch.getCapacity() ];
+
+    batchScorer.score( batch, results );
+
+    assertEquals( "3", batchScorer.getCategories()[ results[ 0 ] ] );
+    assertEquals( "1", batchScorer.getCategories()[ results[ 1 ] ] );
+
+    // euclidean distance ranks clusters the same as squared euclidean
+    clusteringSpec.setComparisonMeasure( new EuclideanMeasure() );
+
+    assertTrue( clusteringSpec.isBatchSupported() );
+
+    clusteringSpec.setComparisonMeasure( new DistanceMeasure()
+    {
+    @Override
+    public double calculate( CompareFunction[] compareFunctions, Tuple values, double[] points )
+      {
+      return 0;
+      }
+    } );
+
+    assertFalse( clusteringSpec.isBatchSupported() );
+    assertNull( clusteringSpec.createBatchScorer() );
+    }
+
+  private static ClusteringSpec createClusteringSpec()
     {
     Fields predictedFields = new Fields( "predicted", String.class );
 
@@ -107,19 +187,133 @@ public class ModelTest extends CascadingTestCase
     clusteringSpec.addCluster( new Cluster( "2", 5.9296875d, 2.7578125d, 4.4109375d, 1.4390625d ) );
     clusteringSpec.addCluster( new Cluster( "3", 6.85277777777778d, 3.075d, 5.78611111111111d, 2.09722222222222d ) );
 
-    ClusteringFunction clusteringFunction = new ClusteringFunction( clusteringSpec );
+    return clusteringSpec;
+    }
 
-//    TupleEntry tupleArguments = new TupleEntry( expectedFields, new Tuple( 6.9d, 3.1d, 4.9d, 1.5d ) );
-    TupleEntry tupleArguments = new TupleEntry( expectedFields, new Tuple( 6.4d, 3.1d, 5.5d, 1.8d ) );
+  @Test
+  public void testTree()
+    {
+    TreeSpec treeSpec = createTreeSpec();
+    Fields predictedFields = treeSpec.getModelSchema().getPredictedFields();
+    Fields expectedFields = treeSpec.getModelSchema().getInputFields();
 
-    TupleListCollector collector = invokeFunction( clusteringFunction, tupleArguments, predictedFields );
+    TreeFunction treeFunction = new TreeFunction( treeSpec );
 
-//    assertEquals( new Tuple( "2" ), collector.entryIterator().next().getTuple() );
-    assertEquals( new Tuple( "3" ), collector.entryIterator().next().getTuple() );
+    TupleEntry tupleArguments = new TupleEntry( expectedFields, new Tuple( 0d, 1d, 0d ) );
+
+    TupleListCollector collector = invokeFunction( treeFunction, tupleArguments, predictedFields );
+
+    assertEquals( new Tuple( "1" ), collector.entryIterator().next().getTuple() );
     }
 
   @Test
-  public void testTree()
+  public void testTreeExplain()
+    {
+    TreeSpec treeSpec = createTreeSpec();
+    Fields expectedFields = treeSpec.getModelSchema().getInputFields();
+
+    TreeFunction explainFunction = new TreeFunction( treeSpec, false, ModelScoringFunction.SAFE_DEFAULT, true );
+
+    assertEquals( new Fields( "label.leaf", "label.path" ), treeSpec.getExplanationFields() );
+
+    TupleEntry tupleArguments = new TupleEntry( expectedFields, new Tuple( 0d, 1d, 0d ) );
+    TupleListCollector collector = invokeFunction( explainFunction, tupleArguments, explainFunction.getFieldDeclaration() );
+
+    assertEquals( new Tuple( "1", "4", "1.2.4" ), collector.entryIterator().next().getTuple() );
+
+    tupleArguments = new TupleEntry( expectedFields, new Tuple( 1d, 1d, 0d ) );
+    collector = invokeFunction( explainFunction, tupleArguments, explainFunction.getFieldDeclaration() );
+
+    assertEquals( new Tuple( "1", "7", "1.3.7" ), collector.entryIterator().next().getTuple() );
+
+    // without a decision there is nothing to explain
+    tupleArguments = new TupleEntry( expectedFields, new Tuple( null, 1d, 0d ) );
+    collector = invokeFunction( explainFunction, tupleArguments, explainFunction.getFieldDeclaration() );
+
+    assertEquals( new Tuple( null, null, null ), collector.entryIterator().next().getTuple() );
+    }
+
+  @Test
+  public void testTreeBatch()
+    {
+    TreeSpec treeSpec = createTreeSpec();
+    Fields expectedFields = treeSpec.getModelSchema().getInputFields();
+
+    assertTrue( treeSpec.isBatchSupported() );
+
+    ColumnBatch batch = new ColumnBatch( treeSpec.getModelSchema(), 2 );
+
+    batch.add( new TupleEntry( expectedFields, new Tuple( 0d, 1d, 0d ) ) );
+    batch.add( new TupleEntry( expectedFields, new Tuple( 1d, 0d, 0d ) ) );
+
+    double[] results = new double[ batch.getCapacity() ];
+
+    treeSpec.createBatchScorer().score( batch, results );
+
+    assertEquals( 1d, results[ 0 ] );
+    assertEquals( 0d, results[ 1 ] );
+    }
+
+  @Test
+  public void testTreeNoDecision()
+    {
+    TreeSpec treeSpec = createTreeSpec();
+    Fields predictedFields = treeSpec.getModelSchema().getPredictedFields();
+    Fields expectedFields = treeSpec.getModelSchema().getInputFields();
+
+    // a missing value fails every predicate, so the tree makes no decision
+    TupleEntry tupleArguments = new TupleEntry( expectedFields, new Tuple( null, 1d, 0d ) );
+
+    TupleListCollector collector = invokeFunction( new TreeFunction( treeSpec ), tupleArguments, predictedFields );
+
+    assertEquals( new Tuple( (Object) null ), collector.entryIterator().next().getTuple() );
+
+    collector = invokeFunction( new TreeFunction( treeSpec, true, ModelScoringFunction.SAFE_DEFAULT ), tupleArguments, predictedFields );
+
+    assertEquals( new Tuple( (Object) null ), collector.entryIterator().next().getTuple() );
+    }
+
+  @Test
+  public void testTreeDigest()
+    {
+    TreeSpec treeSpec = createTreeSpec();
+    Tree tree = treeSpec.getTree();
+    Fields expectedFields = treeSpec.getModelSchema().getInputFields();
+    TupleEntry tupleEntry = new TupleEntry( expectedFields, new Tuple( 0d, 1d, 0d ) );
+
+    String digest = tree.getDigest();
+    FinalDecision decision = tree.createCompiledDecisionTree( expectedFields ).decide( tupleEntry );
+
+    assertEquals( "1.2.4", decision.getName() );
+    assertEquals( "1", decision.getScore() );
+
+    Node leaf = null;
+
+    for( Node node : tree.getGraph().vertexSet() )
+      {
+      if( node.getID().equals( "4" ) )
+        leaf = node;
+      }
+
+    leaf.setScore( "0" );
+
+    assertFalse( digest.equals( tree.getDigest() ) );
+    assertEquals( "0", tree.createCompiledDecisionTree( expectedFields ).decide( tupleEntry ).getScore() );
+
+    // names are created eagerly by the public constructor, so subclasses may still read the field
+    Decision eager = new Decision( tree, leaf )
+    {
+    @Override
+    protected FinalDecision decide( TupleEntry tupleEntry )
+      {
+      return null;
+      }
+    };
+
+    assertEquals( "1.2.4", eager.getName() );
+    }
+
+  private static TreeSpec createTreeSpec()
     {
     Fields predictedFields = new Fields( "label", double.class );
 
@@ -143,15 +337,284 @@ public class ModelTest extends CascadingTestCase
 
     treeSpec.setTree( tree );
 
-    TreeFunction treeFunction = new TreeFunction( treeSpec );
+    return treeSpec;
+    }
 
-    TupleEntry tupleArguments = new TupleEntry( expectedFields, new Tuple( 0d, 1d, 0d ) );
+  private static EnsembleSpec<TreeSpec> createEnsembleSpec()
+    {
+    Fields predictedFields = new Fields( "label", String.class );
 
-    TupleListCollector collector = invokeFunction( treeFunction, tupleArguments, predictedFields );
+    Fields expectedFields = Fields.NONE
+      .append( new Fields( "var0", double.class ) )
+      .append( new Fields( "var1", double.class ) )
+      .append( new Fields( "var2", double.class ) );
+
+    ModelSchema modelSchema = new ModelSchema( expectedFields, predictedFields );
+
+    modelSchema.setPredictedCategories( "label", "0", "1" );
+
+    List<TreeSpec> treeSpecs = new ArrayList<TreeSpec>();
+
+    for( String field : new String[]{"var0", "var1", "var2"} )
+      {
+      Tree tree = new Tree( "1" );
+
+      tree.addPredicate( "1", "2", new LessOrEqualThanPredicate( field, 0.5d ), "1" );
+      tree.addPredicate( "1", "3", new GreaterThanPredicate( field, 0.5d ), "0" );
+
+      treeSpecs.add( new TreeSpec( modelSchema, tree ) );
+      }
+
+    return new EnsembleSpec<TreeSpec>( modelSchema, treeSpecs );
+    }
+
+  @Test
+  public void testEnsembleFunction() throws Exception
+    {
+    EnsembleSpec<TreeSpec> ensembleSpec = createEnsembleSpec();
+    ModelSchema modelSchema = ensembleSpec.getModelSchema();
+    EnsembleFunction ensembleFunction = new EnsembleFunction( ensembleSpec );
+
+    TupleEntry tupleArguments = new TupleEntry( modelSchema.getInputFields(), new Tuple( 0d, 1d, 0d ) );
+
+    TupleListCollector collector = invokeFunction( ensembleFunction, tupleArguments, modelSchema.getPredictedFields() );
 
     assertEquals( new Tuple( "1" ), collector.entryIterator().next().getTuple() );
     }
 
+  @Test
+  public void testMappedEnsembleFunction() throws Exception
+    {
+    EnsembleSpec<TreeSpec> ensembleSpec = createEnsembleSpec();
+    ModelSchema modelSchema = ensembleSpec.getModelSchema();
+
+    File imageFile = File.createTempFile( "ensemble", ".image" );
+
+    imageFile.deleteOnExit();
+
+    MappedEnsembleSpec mappedSpec = MappedEnsembleSpec.write( ensembleSpec, imageFile );
+    MappedEnsembleFunction mappedFunction = new MappedEnsembleFunction( mappedSpec );
+
+    Tuple[] tuples = new Tuple[]{
+      new Tuple( 0d, 1d, 0d ),
+      new Tuple( 1d, 1d, 0d ),
+      new Tuple( 1d, 1d, 1d ),
+      new Tuple( 0d, 0d, 0d )
+    };
+
+    for( Tuple tuple : tuples )
+      {
+      TupleEntry tupleArguments = new TupleEntry( modelSchema.getInputFields(), tuple );
+
+      TupleListCollector expected = invokeFunction( new EnsembleFunction( ensembleSpec ), tupleArguments, modelSchema.getPredictedFields() );
+      TupleListCollector result = invokeFunction( mappedFunction, tupleArguments, modelSchema.getPredictedFields() );
+
+      assertEquals( tuple.toString(), expected.entryIterator().next().getTuple(), result.entryIterator().next().getTuple() );
+      }
+    }
+
+  @Test
+  public void testEnsembleNoDecision() throws Exception
+    {
+    Fields expectedFields = Fields.NONE
+      .append( new Fields( "var0", double.class ) )
+      .append( new Fields( "var1", double.class ) );
+
+    // the second tree has no decision for var1 > 0.5
+    Tree first = new Tree( "1" );
+
+    first.addPredicate( "1", "2", new LessOrEqualThanPredicate( "var0", 0.5d ), "1" );
+    first.addPredicate( "1", "3", new GreaterThanPredicate( "var0", 0.5d ), "0" );
+
+    Tree second = new Tree( "1" );
+
+    second.addPredicate( "1", "2", new LessOrEqualThanPredicate( "var1", 0.5d ), "0" );
+
+    TupleEntry partial = new TupleEntry( expectedFields, new Tuple( 0d, 1d ) );
+    TupleEntry none = new TupleEntry( expectedFields, new Tuple( Double.NaN, 1d ) );
+
+    {
+    Fields predictedFields = new Fields( "label", String.class );
+    ModelSchema modelSchema = new ModelSchema( expectedFields, predictedFields );
+
+    modelSchema.setPredictedCategories( "label", "0", "1" );
+
+    EnsembleSpec<TreeSpec> ensembleSpec = new EnsembleSpec<TreeSpec>( modelSchema, Arrays.asList( new TreeSpec( modelSchema, first ), new TreeSpec( modelSchema, second ) ) );
+    EnsembleFunction ensembleFunction = new EnsembleFunction( ensembleSpec );
+
+    assertEquals( new Tuple( "1" ), invokeFunction( ensembleFunction, partial, predictedFields ).entryIterator().next().getTuple() );
+    assertEquals( new Tuple( (Object) null ), invokeFunction( ensembleFunction, none, predictedFields ).entryIterator().next().getTuple() );
+
+    // as scored by the parallel assembly, a tree without decision emits a null category index
+    CategoricalSelectionBuffer buffer = new CategoricalSelectionBuffer( ensembleSpec );
+    Fields indexFields = new Fields( "label", Integer.class );
+    TupleEntry[] partialVotes = new TupleEntry[]{new TupleEntry( indexFields, new Tuple( 1 ) ), new TupleEntry( indexFields, new Tuple( (Object) null ) )};
+    TupleEntry[] noVotes = new TupleEntry[]{new TupleEntry( indexFields, new Tuple( (Object) null ) ), new TupleEntry( indexFields, new Tuple( (Object) null ) )};
+
+    assertEquals( new Tuple( "1" ), invokeBuffer( buffer, partialVotes, predictedFields ).entryIterator().next().getTuple() );
+    assertEquals( new Tuple( (Object) null ), invokeBuffer( buffer, noVotes, predictedFields ).entryIterator().next().getTuple() );
+    }
+
+    {
+    Fields predictedFields = new Fields( "label", double.class );
+    ModelSchema modelSchema = new ModelSchema( expectedFields, predictedFields );
+
+    EnsembleSpec<TreeSpec> ensembleSpec = new EnsembleSpec<TreeSpec>( modelSchema, Arrays.asList( new TreeSpec( modelSchema, first ), new TreeSpec( modelSchema, second ) ) );
+
+    ensembleSpec.setSelectionStrategy( new Average() );
+
+    EnsembleFunction ensembleFunction = new EnsembleFunction( ensembleSpec );
+
+    // the abstaining tree is excluded from the average
+    assertEquals( 1d, invokeFunction( ensembleFunction, partial, predictedFields ).entryIterator().next().getTuple().getDouble( 0 ) );
+    assertEquals( new Tuple( (Object) null ), invokeFunction( ensembleFunction, none, predictedFields ).entryIterator().next().getTuple() );
+    }
+    }
+
+  @Test
+  public void testKeyFunction()
+    {
+    Fields keyFields = new Fields( "key", long.class );
+    Fields argumentFields = new Fields( "var0", double.class );
+
+    TupleEntry[] arguments = new TupleEntry[]{
+      new TupleEntry( argumentFields, new Tuple( 0d ) ),
+      new TupleEntry( argumentFields, new Tuple( 0d ) ),
+      new TupleEntry( argumentFields, new Tuple( 1d ) )
+    };
+
+    TupleListCollector collector = invokeFunction( new KeyFunction( keyFields ), arguments, keyFields );
+
+    List<Long> keys = new ArrayList<Long>();
+
+    for( Tuple tuple : collector )
+      keys.add( tuple.getLong( 0 ) );
+
+    // identical records get distinct keys, slice 0 leaves only the counter
+    assertEquals( Arrays.asList( 0L, 1L, 2L ), keys );
+    }
+
+  @Test
+  public void testCompiledTree()
+    {
+    Tree tree = createOverlappingTree();
+    Fields expectedFields = createOverlappingFields();
+
+    DecisionTree decisionTree = tree.createDecisionTree( expectedFields );
+    CompiledDecisionTree compiledTree = tree.createCompiledDecisionTree( expectedFields );
+
+    assertEquals( 6, compiledTree.getNodeCount() );
+
+    Tuple[] tuples = createOverlappingTuples();
+
+    for( Tuple tuple : tuples )
+      {
+      TupleEntry tupleEntry = new TupleEntry( expectedFields, tuple );
+
+      FinalDecision expected = decisionTree.decide( tupleEntry );
+      FinalDecision result = compiledTree.decide( tupleEntry );
+
+      if( expected == null )
+        assertNull( result );
+      else
+        assertEquals( expected.getName(), result.getName() );
+      }
+
+    assertEquals( "1.3.5", compiledTree.decide( new TupleEntry( expectedFields, tuples[ 1 ] ) ).getName() );
+    assertNull( compiledTree.decide( new TupleEntry( expectedFields, tuples[ 3 ] ) ) );
+    }
+
+  @Test
+  public void testCompiledTreeHits()
+    {
+    Fields expectedFields = createOverlappingFields();
+    CompiledDecisionTree compiledTree = createOverlappingTree().createCompiledDecisionTree( expectedFields );
+
+    long[] hits = new long[ compiledTree.getNodeCount() ];
+
+    for( Tuple tuple : createOverlappingTuples() )
+      compiledTree.decide( new TupleEntry( expectedFields, tuple ), hits );
+
+    // every tuple enters the root, the fall through tuple enters both 2 and 3
+    assertEquals( Arrays.asList( "1", "2", "3", "4", "5", "6" ), Arrays.asList( compiledTree.getNodeIDs() ) );
+    assertEquals( 4, hits[ 0 ] );
+    assertEquals( 2, hits[ 1 ] );
+    assertEquals( 2, hits[ 2 ] );
+    assertEquals( 1, hits[ 3 ] );
+
+    // decisions are the same with and without counting
+    FinalDecision decision = compiledTree.decide( new TupleEntry( expectedFields, createOverlappingTuples()[ 1 ] ), hits );
+
+    assertEquals( "1.3.5", decision.getName() );
+    }
+
+  @Test
+  public void testTreeReorder()
+    {
+    Tree tree = createOverlappingTree();
+    Fields expectedFields = createOverlappingFields();
+    CompiledDecisionTree compiledTree = tree.createCompiledDecisionTree( expectedFields );
+    Tuple[] tuples = createOverlappingTuples();
+
+    long[] hits = new long[ compiledTree.getNodeCount() ];
+
+    for( Tuple tuple : tuples )
+      compiledTree.decide( new TupleEntry( expectedFields, tuple ), hits );
+
+    TreeProfile profile = new TreeProfile();
+    String[] ids = compiledTree.getNodeIDs();
+
+    for( int i = 0; i < ids.length; i++ )
+      profile.add( ids[ i ], hits[ i ] );
+
+    profile.add( "6", 10 ).add( "3", 10 );
+
+    CompiledDecisionTree reorderedTree = tree.reorder( profile ).createCompiledDecisionTree( expectedFields );
+
+    // 2 and 3 overlap so retain their order, 5 and 6 are a binary split
+    assertEquals( Arrays.asList( "1", "2", "3", "4", "6", "5" ), Arrays.asList( reorderedTree.getNodeIDs() ) );
+
+    for( Tuple tuple : tuples )
+      {
+      FinalDecision expected = compiledTree.decide( new TupleEntry( expectedFields, tuple ) );
+      FinalDecision result = reorderedTree.decide( new TupleEntry( expectedFields, tuple ) );
+
+      assertEquals( expected == null ? null : expected.getName(), result == null ? null : result.getName() );
+      }
+    }
+
+  private static Fields createOverlappingFields()
+    {
+    return Fields.NONE
+      .append( new Fields( "var0", double.class ) )
+      .append( new Fields( "var1", double.class ) )
+      .append( new Fields( "var2", double.class ) );
+    }
+
+  /** Returns a tree whose nodes 2 and 3 overlap, so a tuple may fall through from 2 to 3. */
+  private static Tree createOverlappingTree()
+    {
+    Tree tree = new Tree( "1" );
+
+    tree.addPredicate( "1", "2", new LessOrEqualThanPredicate( "var0", 0.5d ) );
+    tree.addPredicate( "2", "4", new GreaterThanPredicate( "var2", 10d ), "1" );
+    tree.addPredicate( "1", "3", new LessOrEqualThanPredicate( "var0", 1.0d ) );
+    tree.addPredicate( "3", "5", new LessOrEqualThanPredicate( "var1", 0.5d ), "0" );
+    tree.addPredicate( "3", "6", new GreaterThanPredicate( "var1", 0.5d ), "1" );
+
+    return tree;
+    }
+
+  private static Tuple[] createOverlappingTuples()
+    {
+    return new Tuple[]{
+      new Tuple( 0d, 0d, 11d ),
+      new Tuple( 0d, 0d, 0d ), // node 2 matches without a matching child, falls through to node 3
+      new Tuple( 0.75d, 1d, 0d ),
+      new Tuple( 2d, 1d, 0d )
+    };
+    }
+
   /**
    * <MiningSchema>
    * <MiningField name="setosa" usageType="predicted"/>
@@ -192,6 +655,46 @@ public class ModelTest extends CascadingTestCase
    */
   @Test
   public void testGeneralRegressionFunction() throws Exception
+    {
+    GeneralRegressionSpec regressionSpec = createLogitRegressionSpec();
+    Fields predictedFields = regressionSpec.getModelSchema().getPredictedFields();
+    Fields expectedFields = regressionSpec.getModelSchema().getInputFields();
+
+    PredictionRegressionFunction regressionFunction = new PredictionRegressionFunction( regressionSpec );
+
+    TupleEntry tupleArguments = new TupleEntry( expectedFields, new Tuple( 5.1d, 3.8d, 1.6d, 0.2d ) );
+
+    TupleListCollector collector = invokeFunction( regressionFunction, tupleArguments, predictedFields );
+
+    assertEquals( 1.0d, collector.entryIterator().next().getTuple().getDouble( 0 ), 0.00001d );
+    }
+
+  @Test
+  public void testGeneralRegressionExplain()
+    {
+    GeneralRegressionSpec regressionSpec = createLogitRegressionSpec();
+    Fields expectedFields = regressionSpec.getModelSchema().getInputFields();
+
+    PredictionRegressionFunction explainFunction = new PredictionRegressionFunction( regressionSpec, true );
+
+    assertEquals( new Fields( "setosa.p0", "setosa.p1", "setosa.p2", "setosa.p3", "setosa.p4" ), regressionSpec.getExplanationFields() );
+
+    TupleEntry tupleArguments = new TupleEntry( expectedFields, new Tuple( 5.1d, 3.8d, 1.6d, 0.2d ) );
+    TupleListCollector collector = invokeFunction( explainFunction, tupleArguments, explainFunction.getFieldDeclaration() );
+
+    Tuple explained = collector.entryIterator().next().getTuple();
+
+    // the prediction followed by the contribution of each parameter
+    assertEquals( 6, explained.size() );
+    assertEquals( 1.0d, explained.getDouble( 0 ), 0.00001d );
+    assertEquals( -16.9456960387809d, explained.getDouble( 1 ), 0.00001d );
+    assertEquals( 11.7592159418536d * 5.1d, explained.getDouble( 2 ), 0.00001d );
+    assertEquals( 7.84157781514097d * 3.8d, explained.getDouble( 3 ), 0.00001d );
+    assertEquals( -20.0880078273996d * 1.6d, explained.getDouble( 4 ), 0.00001d );
+    assertEquals( -21.6076488529538d * 0.2d, explained.getDouble( 5 ), 0.00001d );
+    }
+
+  private static GeneralRegressionSpec createLogitRegressionSpec()
     {
     Fields predictedFields = new Fields( "setosa", String.class );
 
@@ -217,13 +720,7 @@ public class ModelTest extends CascadingTestCase
 
     regressionSpec.addRegressionTable( table );
 
-    PredictionRegressionFunction regressionFunction = new PredictionRegressionFunction( regressionSpec );
-
-    TupleEntry tupleArguments = new TupleEntry( expectedFields, new Tuple( 5.1d, 3.8d, 1.6d, 0.2d ) );
-
-    TupleListCollector collector = invokeFunction( regressionFunction, tupleArguments, predictedFields );
-
-    assertEquals( 1.0d, collector.entryIterator().next().getTuple().getDouble( 0 ), 0.00001d );
+    return regressionSpec;
     }
 
   /**
@@ -314,70 +811,81 @@ public class ModelTest extends CascadingTestCase
   @Test
   public void testClassifierRegressionFunction()
     {
-    Fields predictedFields = new Fields( "species", String.class );
-
-    Fields expectedFields = Fields.NONE
-      .append( new Fields( "sepal_length", double.class ) )
-      .append( new Fields( "sepal_width", double.class ) )
-      .append( new Fields( "petal_length", double.class ) )
-      .append( new Fields( "petal_width", double.class ) );
+    GeneralRegressionSpec regressionSpec = SpecFixtures.createClassifierSpec();
+    ModelSchema modelSchema = regressionSpec.getModelSchema();
+    Fields expectedFields = modelSchema.getInputFields();
 
-    ModelSchema modelSchema = new ModelSchema( expectedFields, predictedFields );
+    CategoricalRegressionFunction regressionFunction = new CategoricalRegressionFunction( regressionSpec );
 
-    modelSchema.setPredictedCategories( "species", "setosa", "versicolor", "virginica" );
+    {
+    TupleEntry tupleArguments = new TupleEntry( expectedFields, new Tuple( 7d, 3.2d, 4.7d, 1.4d ) );
 
-    GeneralRegressionSpec regressionSpec = new GeneralRegressionSpec( modelSchema );
+    TupleListCollector collector = invokeFunction( regressionFunction, tupleArguments, modelSchema.getDeclaredFields() );
 
-    regressionSpec.setNormalization( new SoftMaxNormalization() );
+    assertEquals( "versicolor", collector.entryIterator().next().getTuple().getObject( 0 ) );
+    }
 
     {
-    RegressionTable regressionTable = new RegressionTable( "versicolor" );
+    TupleEntry tupleArguments = new TupleEntry( expectedFields, new Tuple( 5.8d, 4d, 1.2d, 0.2d ) );
 
-    regressionTable.addParameter( new Parameter( "intercept", 86.7061379450354d ) );
-    regressionTable.addParameter( new Parameter( "p0", -11.3336819785783d, new CovariantPredictor( "sepal_length" ) ) );
-    regressionTable.addParameter( new Parameter( "p1", -40.8601511206805d, new CovariantPredictor( "sepal_width" ) ) );
-    regressionTable.addParameter( new Parameter( "p2", 38.439099544679d, new CovariantPredictor( "petal_length" ) ) );
-    regressionTable.addParameter( new Parameter( "p3", -12.2920287460217d, new CovariantPredictor( "petal_width" ) ) );
+    TupleListCollector collector = invokeFunction( regressionFunction, tupleArguments, modelSchema.getDeclaredFields() );
 
-    regressionSpec.addRegressionTable( regressionTable );
+    assertEquals( "setosa", collector.entryIterator().next().getTuple().getObject( 0 ) );
+    }
     }
 
+  @Test
+  public void testModelScorer()
     {
-    RegressionTable regressionTable = new RegressionTable( "virginica" );
+    ModelScorer scorer = new ModelScorer( new CategoricalRegressionFunction( SpecFixtures.createClassifierSpec() ) );
 
-    regressionTable.addParameter( new Parameter( "intercept", -111.666532867146d ) );
-    regressionTable.addParameter( new Parameter( "p0", -47.1170644419116d, new CovariantPredictor( "sepal_length" ) ) );
-    regressionTable.addParameter( new Parameter( "p1", -51.6805606658275d, new CovariantPredictor( "sepal_width" ) ) );
-    regressionTable.addParameter( new Parameter( "p2", 108.27736751831d, new CovariantPredictor( "petal_length" ) ) );
-    regressionTable.addParameter( new Parameter( "p3", 54.0277175236148d, new CovariantPredictor( "petal_width" ) ) );
+    assertEquals( "versicolor", scorer.score( new Object[]{7d, 3.2d, 4.7d, 1.4d} ) );
 
-    regressionSpec.addRegressionTable( regressionTable );
-    }
+    Map<String, Object> values = new HashMap<String, Object>();
 
-    {
-    RegressionTable regressionTable = new RegressionTable( "setosa" );
+    values.put( "sepal_length", 5.8d );
+    values.put( "sepal_width", 4d );
+    values.put( "petal_length", 1.2d );
+    values.put( "petal_width", 0.2d );
 
-    regressionTable.addParameter( new Parameter( "intercept", 0d ) );
+    assertEquals( "setosa", scorer.score( values ) );
 
-    regressionSpec.addRegressionTable( regressionTable );
+    // scorers of other model types return the same results as their functions
+    assertEquals( "1", new ModelScorer( createTreeSpec() ).score( new Object[]{0d, 1d, 0d} ) );
+    assertEquals( "3", new ModelScorer( createClusteringSpec() ).score( new Object[]{6.4d, 3.1d, 5.5d, 1.8d} ) );
     }
 
-    CategoricalRegressionFunction regressionFunction = new CategoricalRegressionFunction( regressionSpec );
+  @Test
+  public void testModelScorerNoDecision()
+    {
+    // a missing value fails every predicate, so the tree makes no decision
+    assertNull( new ModelScorer( createTreeSpec() ).score( new Object[]{null, 1d, 0d} ) );
+    }
 
+  @Test
+  public void testClassifierRegressionBatch()
     {
-    TupleEntry tupleArguments = new TupleEntry( expectedFields, new Tuple( 7d, 3.2d, 4.7d, 1.4d ) );
+    GeneralRegressionSpec regressionSpec = SpecFixtures.createClassifierSpec();
+    Fields expectedFields = regressionSpec.getModelSchema().getInputFields();
 
-    TupleListCollector collector = invokeFunction( regressionFunction, tupleArguments, modelSchema.getDeclaredFields() );
+    assertTrue( regressionSpec.isBatchSupported() );
 
-    assertEquals( "versicolor", collector.entryIterator().next().getTuple().getObject( 0 ) );
-    }
+    BatchScorer batchScorer = regressionSpec.createBatchScorer();
+    ColumnBatch batch = new ColumnBatch( regressionSpec.getModelSchema(), 2 );
 
-    {
-    TupleEntry tupleArguments = new TupleEntry( expectedFields, new Tuple( 5.8d, 4d, 1.2d, 0.2d ) );
+    batch.add( new TupleEntry( expectedFields, new Tuple( 7d, 3.2d, 4.7d, 1.4d ) ) );
+    batch.add( new TupleEntry( expectedFields, new Tuple( 5.8d, 4d, 1.2d, 0.2d ) ) );
 
-    TupleListCollector collector = invokeFunction( regressionFunction, tupleArguments, modelSchema.getDeclaredFields() );
+    int[] results = new int[ batch.getCapacity() ];
 
-    assertEquals( "setosa", collector.entryIterator().next().getTuple().getObject( 0 ) );
-    }
+    batchScorer.score( batch, results );
+
+    assertEquals( "versicolor", batchScorer.getCategories()[ results[ 0 ] ] );
+    assertEquals( "setosa", batchScorer.getCategories()[ results[ 1 ] ] );
+
+    // un-encodable factors cannot be batched
+    regressionSpec.getRegressionTables().get( 0 ).addParameter( new Parameter( "p4", 1d, new FactorPredictor( "sepal_length", "large" ) ) );
+
+    assertFalse( regressionSpec.isBatchSupported() );
     }
   }
@@ -0,0 +1,102 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.model;
+
+import cascading.pattern.model.generalregression.GeneralRegressionSpec;
+import cascading.pattern.model.generalregression.Parameter;
+import cascading.pattern.model.generalregression.RegressionTable;
+import cascading.pattern.model.generalregression.normalization.SoftMaxNormalization;
+import cascading.pattern.model.generalregression.predictor.CovariantPredictor;
+import cascading.pattern.model.tree.Tree;
+import cascading.pattern.model.tree.TreeSpec;
+import cascading.pattern.model.tree.predicate.GreaterThanPredicate;
+import cascading.pattern.model.tree.predicate.LessOrEqualThanPredicate;
+import cascading.tuple.Fields;
+
+/**
+ * Class SpecFixtures creates the model specs shared by the tests of pattern-core and of the modules that depend
+ * on its test artifacts.
+ */
+public class SpecFixtures
+  {
+  private static final String[] IRIS_FIELDS = new String[]{"sepal_length", "sepal_width", "petal_length", "petal_width"};
+
+  private SpecFixtures()
+    {
+    }
+
+  /**
+   * Returns a tree of a single split on var0, predicting the label "1" for values up to 0.5 and "0" above.
+   *
+   * @return a new TreeSpec
+   */
+  public static TreeSpec createSplitTreeSpec()
+    {
+    ModelSchema modelSchema = new ModelSchema( new Fields( "var0", double.class ), new Fields( "label", String.class ) );
+
+    Tree tree = new Tree( "1" );
+
+    tree.addPredicate( "1", "2", new LessOrEqualThanPredicate( "var0", 0.5d ), "1" );
+    tree.addPredicate( "1", "3", new GreaterThanPredicate( "var0", 0.5d ), "0" );
+
+    return new TreeSpec( modelSchema, tree );
+    }
+
+  /**
+   * Returns a multinomial logistic regression of the iris data set, predicting the species from the sepal and
+   * petal measurements.
+   *
+   * @return a new GeneralRegressionSpec
+   */
+  public static GeneralRegressionSpec createClassifierSpec()
+    {
+    Fields expectedFields = Fields.NONE;
+
+    for( String field : IRIS_FIELDS )
+      expectedFields = expectedFields.append( new Fields( field, double.class ) );
+
+    ModelSchema modelSchema = new ModelSchema( expectedFields, new Fields( "species", String.class ) );
+
+    modelSchema.setPredictedCategories( "species", "setosa", "versicolor", "virginica" );
+
+    GeneralRegressionSpec regressionSpec = new GeneralRegressionSpec( modelSchema );
+
+    regressionSpec.setNormalization( new SoftMaxNormalization() );
+
+    regressionSpec.addRegressionTable( createTable( "versicolor", 86.7061379450354d, -11.3336819785783d, -40.8601511206805d, 38.439099544679d, -12.2920287460217d ) );
+    regressionSpec.addRegressionTable( createTable( "virginica", -111.666532867146d, -47.1170644419116d, -51.6805606658275d, 108.27736751831d, 54.0277175236148d ) );
+    regressionSpec.addRegressionTable( createTable( "setosa", 0d ) );
+
+    return regressionSpec;
+    }
+
+  private static RegressionTable createTable( String category, double intercept, double... coefficients )
+    {
+    RegressionTable regressionTable = new RegressionTable( category );
+
+    regressionTable.addParameter( new Parameter( "intercept", intercept ) );
+
+    for( int i = 0; i < coefficients.length; i++ )
+      regressionTable.addParameter( new Parameter( "p" + i, coefficients[ i ], new CovariantPredictor( IRIS_FIELDS[ i ] ) ) );
+
+    return regressionTable;
+    }
+  }
@@ -0,0 +1,472 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.model;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.OutputStream;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import cascading.CascadingTestCase;
+import cascading.operation.Function;
+import cascading.pattern.ensemble.EnsembleFunction;
+import cascading.pattern.ensemble.EnsembleSpec;
+import cascading.pattern.model.clustering.Cluster;
+import cascading.pattern.model.clustering.ClusteringFunction;
+import cascading.pattern.model.clustering.ClusteringSpec;
+import cascading.pattern.model.clustering.compare.AbsoluteDifferenceCompareFunction;
+import cascading.pattern.model.clustering.measure.EuclideanMeasure;
+import cascading.pattern.model.generalregression.CategoricalRegressionFunction;
+import cascading.pattern.model.generalregression.GeneralRegressionSpec;
+import cascading.pattern.model.generalregression.LinkFunction;
+import cascading.pattern.model.generalregression.Parameter;
+import cascading.pattern.model.generalregression.PredictionRegressionFunction;
+import cascading.pattern.model.generalregression.RegressionTable;
+import cascading.pattern.model.generalregression.normalization.SoftMaxNormalization;
+import cascading.pattern.model.generalregression.predictor.CovariantPredictor;
+import cascading.pattern.model.generalregression.predictor.FactorPredictor;
+import cascading.pattern.model.tree.Node;
+import cascading.pattern.model.tree.Tree;
+import cascading.pattern.model.tree.TreeFunction;
+import cascading.pattern.model.tree.TreeSpec;
+import cascading.pattern.model.tree.predicate.ComparablePredicate;
+import cascading.pattern.model.tree.predicate.GreaterThanPredicate;
+import cascading.pattern.model.tree.predicate.IsInSetPredicate;
+import cascading.pattern.model.tree.predicate.LessOrEqualThanPredicate;
+import cascading.pattern.util.Logging;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import org.jgrapht.Graphs;
+import org.junit.Test;
+
+/**
+ * Round trips specs through the binary format of {@link Spec#writeTo(java.io.OutputStream)}.
+ */
+public class SpecTest extends CascadingTestCase
+  {
+  public SpecTest()
+    {
+    }
+
+  @Override
+  public void setUp() throws Exception
+    {
+    Logging.setLogLevel( this.getClass(), "cascading.pattern", "debug" );
+
+    super.setUp();
+    }
+
+  @Test
+  public void testEnsembleSpec() throws Exception
+    {
+    Fields predictedFields = new Fields( "label", String.class );
+
+    Fields expectedFields = Fields.NONE
+      .append( new Fields( "var0", double.class ) )
+      .append( new Fields( "var1", double.class ) )
+      .append( new Fields( "var2", String.class ) );
+
+    ModelSchema modelSchema = new ModelSchema( expectedFields, predictedFields );
+
+    modelSchema.setPredictedCategories( "label", "0", "1" );
+
+    List<TreeSpec> treeSpecs = new ArrayList<TreeSpec>();
+
+    for( String field : new String[]{"var0", "var1"} )
+      {
+      Tree tree = new Tree( "1" );
+
+      tree.addPredicate( "1", "2", new LessOrEqualThanPredicate( field, 0.5d ) );
+      tree.addPredicate( "2", "4", new IsInSetPredicate( "var2", Arrays.asList( "a", "b" ) ), "1" );
+      tree.addPredicate( "2", "5", new IsInSetPredicate( "var2", Arrays.asList( "c" ) ), "0" );
+      tree.addPredicate( "1", "3", new GreaterThanPredicate( field, 0.5d ), "0" );
+
+      treeSpecs.add( new TreeSpec( modelSchema, tree ) );
+      }
+
+    EnsembleSpec<TreeSpec> ensembleSpec = new EnsembleSpec<TreeSpec>( modelSchema, treeSpecs );
+    EnsembleSpec<TreeSpec> readSpec = roundTrip( ensembleSpec );
+
+    assertEquals( 2, readSpec.getModelSpecs().size() );
+    assertSame( readSpec.getModelSchema(), readSpec.getModelSpecs().get( 0 ).getModelSchema() );
+
+    for( int i = 0; i < treeSpecs.size(); i++ )
+      assertTreeEquals( treeSpecs.get( i ).getTree(), readSpec.getModelSpecs().get( i ).getTree() );
+
+    assertScores( new EnsembleFunction( ensembleSpec ), new EnsembleFunction( readSpec ), expectedFields, predictedFields,
+      new Tuple( 0d, 0d, "a" ),
+      new Tuple( 0d, 1d, "c" ),
+      new Tuple( 1d, 1d, "b" ),
+      new Tuple( 0d, 0d, "d" )
+    );
+    }
+
+  @Test
+  public void testRegressionSpec() throws Exception
+    {
+    Fields predictedFields = new Fields( "sepal_length", double.class );
+
+    Fields expectedFields = Fields.NONE
+      .append( new Fields( "sepal_width", double.class ) )
+      .append( new Fields( "petal_length", double.class ) )
+      .append( new Fields( "species", String.class ) );
+
+    ModelSchema modelSchema = new ModelSchema( expectedFields, predictedFields );
+
+    GeneralRegressionSpec regressionSpec = new GeneralRegressionSpec( modelSchema );
+
+    regressionSpec.setLinkFunction( LinkFunction.LOGIT );
+
+    RegressionTable regressionTable = new RegressionTable();
+
+    regressionTable.addParameter( new Parameter( "intercept", 0.2d ) );
+    regressionTable.addParameter( new Parameter( "p1", 0.05d, new CovariantPredictor( "sepal_width" ) ) );
+    regressionTable.addParameter( new Parameter( "p2", 0.03d, new CovariantPredictor( "petal_length", 2 ) ) );
+    regressionTable.addParameter( new Parameter( "p3", -0.4d, new FactorPredictor( "species", "versicolor" ) ) );
+    regressionTable.addParameter( new Parameter( "p4", -0.6d, new FactorPredictor( "species", "virginica" ) ) );
+
+    regressionSpec.addRegressionTable( regressionTable );
+
+    GeneralRegressionSpec readSpec = roundTrip( regressionSpec );
+
+    assertEquals( LinkFunction.LOGIT, readSpec.getLinkFunction() );
+    assertEquals( 5, readSpec.getRegressionTables().get( 0 ).getParameterNames().size() );
+
+    assertScores( new PredictionRegressionFunction( regressionSpec ), new PredictionRegressionFunction( readSpec ), expectedFields, predictedFields,
+      new Tuple( 3d, 1.3d, "setosa" ),
+      new Tuple( 2.5d, 4.1d, "versicolor" ),
+      new Tuple( 3.1d, 5.5d, "virginica" ),
+      new Tuple( null, 5.5d, "virginica" ),
+      new Tuple( 3.1d, 5.5d, null )
+    );
+    }
+
+  @Test
+  public void testClassifierRegressionSpec() throws Exception
+    {
+    Fields predictedFields = new Fields( "species", String.class );
+
+    Fields expectedFields = Fields.NONE
+      .append( new Fields( "petal_length", double.class ) )
+      .append( new Fields( "color", String.class ) );
+
+    ModelSchema modelSchema = new ModelSchema();
+
+    modelSchema.addExpectedFields( new Fields( "petal_length", double.class ) );
+    modelSchema.addExpectedFields( new Fields( "color", String.class ), new String[][]{{"red", "blue"}} );
+    modelSchema.setPredictedFields( predictedFields );
+    modelSchema.setPredictedCategories( "species", "small", "large" );
+
+    GeneralRegressionSpec regressionSpec = new GeneralRegressionSpec( modelSchema );
+
+    regressionSpec.setNormalization( new SoftMaxNormalization() );
+
+    RegressionTable first = new RegressionTable( "small" );
+
+    first.addParameter( new Parameter( "p0", 4d ) );
+    first.addParameter( new Parameter( "p1", -1d, new CovariantPredictor( "petal_length" ) ) );
+    first.addParameter( new Parameter( "p2", 0.5d, new FactorPredictor( "color", "red" ) ) );
+
+    RegressionTable second = new RegressionTable( "large" );
+
+    second.addParameter( new Parameter( "p0", 0d ) );
+
+    regressionSpec.addRegressionTable( first );
+    regressionSpec.addRegressionTable( second );
+
+    GeneralRegressionSpec readSpec = roundTrip( regressionSpec );
+
+    assertEquals( 1, readSpec.getModelSchema().getCategoryIndex( "color" ).indexOf( "blue" ) );
+
+    assertScores( new CategoricalRegressionFunction( regressionSpec ), new CategoricalRegressionFunction( readSpec ), expectedFields, predictedFields,
+      new Tuple( 1d, "red" ),
+      new Tuple( 5d, "blue" ),
+      new Tuple( 4.2d, "red" ),
+      new Tuple( 4.2d, "green" )
+    );
+    }
+
+  @Test
+  public void testClusteringSpec() throws Exception
+    {
+    Fields predictedFields = new Fields( "predicted", String.class );
+
+    Fields expectedFields = Fields.NONE
+      .append( new Fields( "var0", double.class ) )
+      .append( new Fields( "var1", double.class ) );
+
+    ModelSchema modelSchema = new ModelSchema( expectedFields, predictedFields );
+
+    ClusteringSpec clusteringSpec = new ClusteringSpec( modelSchema );
+
+    clusteringSpec.setDefaultCompareFunction( new AbsoluteDifferenceCompareFunction() );
+    clusteringSpec.setComparisonMeasure( new EuclideanMeasure() );
+
+    clusteringSpec.addCluster( new Cluster( "1", 0d, 0d ) );
+    clusteringSpec.addCluster( new Cluster( "2", 1d, 1d ) );
+    clusteringSpec.addCluster( new Cluster( "3", 5d, 0.5d ) );
+
+    ClusteringSpec readSpec = roundTrip( clusteringSpec );
+
+    assertEquals( 3, readSpec.getClusters().size() );
+    assertEquals( EuclideanMeasure.class, readSpec.getComparisonMeasure().getClass() );
+
+    assertScores( new ClusteringFunction( clusteringSpec ), new ClusteringFunction( readSpec ), expectedFields, predictedFields,
+      new Tuple( 0.1d, 0.2d ),
+      new Tuple( 0.9d, 1.2d ),
+      new Tuple( 4d, 0d )
+    );
+    }
+
+  @Test
+  public void testExternalPath() throws Exception
+    {
+    TreeSpec treeSpec = SpecFixtures.createSplitTreeSpec();
+    File specFile = File.createTempFile( "tree", ".spec" );
+
+    specFile.deleteOnExit();
+
+    OutputStream outputStream = new FileOutputStream( specFile );
+
+    try
+      {
+      treeSpec.writeTo( outputStream );
+      }
+    finally
+      {
+      outputStream.close();
+      }
+
+    TreeSpec pathSpec = SpecFixtures.createSplitTreeSpec();
+
+    pathSpec.setExternalPath( specFile.getAbsolutePath() );
+
+    byte[] pathBytes = serialize( pathSpec );
+
+    // only the path is serialized
+    assertTrue( pathBytes.length < specFile.length() );
+
+    TreeSpec readSpec = (TreeSpec) deserialize( pathBytes );
+
+    assertNull( readSpec.getExternalPath() );
+    assertTreeEquals( treeSpec.getTree(), readSpec.getTree() );
+
+    Fields expectedFields = treeSpec.getModelSchema().getInputFields();
+    Fields predictedFields = treeSpec.getModelSchema().getPredictedFields();
+
+    assertScores( new TreeFunction( treeSpec ), new TreeFunction( readSpec ), expectedFields, predictedFields,
+      new Tuple( 0d ),
+      new Tuple( 1d )
+    );
+
+    // the file is read again by every deserialization, so a missing file fails when read
+    specFile.delete();
+
+    try
+      {
+      deserialize( pathBytes );
+      fail( "did not fail on missing file" );
+      }
+    catch( Exception exception )
+      {
+      // ignore
+      }
+    }
+
+  @Test
+  public void testLongString() throws Exception
+    {
+    char[] chars = new char[ 70000 ];
+
+    Arrays.fill( chars, '\u00e9' );
+
+    String category = new String( chars );
+
+    ModelSchema modelSchema = new ModelSchema( new Fields( "var0", String.class ), new Fields( "label", String.class ) );
+
+    modelSchema.setPredictedCategories( "label", category, "other" );
+
+    TreeSpec readSpec = roundTrip( new TreeSpec( modelSchema, new Tree( "1" ) ) );
+
+    assertEquals( Arrays.asList( category, "other" ), readSpec.getCategories() );
+    }
+
+  @Test
+  public void testSubclassFallback() throws Exception
+    {
+    TreeSpec treeSpec = SpecFixtures.createSplitTreeSpec();
+
+    assertTrue( treeSpec.isBinarySupported() );
+
+    // inherits the hooks of TreeSpec, so must not be written by them
+    LabeledTreeSpec labeledSpec = new LabeledTreeSpec( treeSpec.getModelSchema(), treeSpec.getTree(), "label" );
+
+    assertFalse( labeledSpec.isBinarySupported() );
+    assertEquals( "label", roundTrip( labeledSpec ).label );
+    assertEquals( "label", ( (LabeledTreeSpec) deserialize( serialize( labeledSpec ) ) ).label );
+
+    // declares the hooks but cannot be created when read
+    ConstructedTreeSpec constructedSpec = new ConstructedTreeSpec( treeSpec.getModelSchema(), treeSpec.getTree() );
+
+    assertFalse( constructedSpec.isBinarySupported() );
+    assertTreeEquals( treeSpec.getTree(), roundTrip( constructedSpec ).getTree() );
+
+    // members that cannot be written in the binary format are serialized within the ensemble
+    EnsembleSpec<TreeSpec> ensembleSpec = new EnsembleSpec<TreeSpec>( treeSpec.getModelSchema(), Arrays.<TreeSpec>asList( treeSpec, labeledSpec ) );
+    EnsembleSpec<TreeSpec> readSpec = roundTrip( ensembleSpec );
+
+    assertEquals( TreeSpec.class, readSpec.getModelSpecs().get( 0 ).getClass() );
+    assertEquals( "label", ( (LabeledTreeSpec) readSpec.getModelSpecs().get( 1 ) ).label );
+    }
+
+  public static class LabeledTreeSpec extends TreeSpec
+    {
+    String label;
+
+    public LabeledTreeSpec( ModelSchema modelSchema, Tree tree, String label )
+      {
+      super( modelSchema, tree );
+      this.label = label;
+      }
+    }
+
+  public static class ConstructedTreeSpec extends TreeSpec
+    {
+    public ConstructedTreeSpec( ModelSchema modelSchema, Tree tree )
+      {
+      super( modelSchema, tree );
+      }
+
+    @Override
+    protected void writeFields( SpecOutput output ) throws IOException
+      {
+      super.writeFields( output );
+      }
+
+    @Override
+    protected void readFields( SpecInput input ) throws IOException
+      {
+      super.readFields( input );
+      }
+    }
+
+  private static <S extends Spec> S roundTrip( S spec ) throws IOException
+    {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+
+    spec.writeTo( bytes );
+
+    Spec readSpec = Spec.readFrom( new ByteArrayInputStream( bytes.toByteArray() ) );
+
+    assertNotSame( spec, readSpec );
+    assertEquals( spec.getClass(), readSpec.getClass() );
+    assertEquals( spec.getModelSchema().getInputFields(), readSpec.getModelSchema().getInputFields() );
+    assertEquals( spec.getModelSchema().getDeclaredFields(), readSpec.getModelSchema().getDeclaredFields() );
+
+    return (S) readSpec;
+    }
+
+  private static byte[] serialize( Object object ) throws IOException
+    {
+    ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+    ObjectOutputStream output = new ObjectOutputStream( bytes );
+
+    output.writeObject( object );
+    output.close();
+
+    return bytes.toByteArray();
+    }
+
+  private static Object deserialize( byte[] bytes ) throws Exception
+    {
+    ObjectInputStream input = new ObjectInputStream( new ByteArrayInputStream( bytes ) );
+
+    try
+      {
+      return input.readObject();
+      }
+    finally
+      {
+      input.close();
+      }
+    }
+
+  private static void assertTreeEquals( Tree expected, Tree result )
+    {
+    Map<String, Node> nodes = new HashMap<String, Node>();
+
+    for( Node node : result.getGraph().vertexSet() )
+      nodes.put( node.getID(), node );
+
+    assertEquals( expected.getGraph().vertexSet().size(), nodes.size() );
+    assertEquals( expected.getRoot().getID(), result.getRoot().getID() );
+
+    for( Node node : expected.getGraph().vertexSet() )
+      {
+      Node resultNode = nodes.get( node.getID() );
+
+      assertNotNull( "missing node: " + node.getID(), resultNode );
+      assertEquals( node.getScore(), resultNode.getScore() );
+      assertEquals( String.valueOf( node.getPredicate() ), String.valueOf( resultNode.getPredicate() ) );
+
+      if( node.getPredicate() != null )
+        assertEquals( node.getPredicate().getClass(), resultNode.getPredicate().getClass() );
+
+      if( node.getPredicate() instanceof ComparablePredicate )
+        assertEquals( ( (ComparablePredicate) node.getPredicate() ).getValue(), ( (ComparablePredicate) resultNode.getPredicate() ).getValue() );
+
+      assertEquals( getIDs( Graphs.successorListOf( expected.getGraph(), node ) ), getIDs( Graphs.successorListOf( result.getGraph(), resultNode ) ) );
+      }
+    }
+
+  private static List<String> getIDs( List<Node> nodes )
+    {
+    List<String> ids = new ArrayList<String>();
+
+    for( Node node : nodes )
+      ids.add( node.getID() );
+
+    return ids;
+    }
+
+  private void assertScores( Function expected, Function result, Fields expectedFields, Fields predictedFields, Tuple... tuples )
+    {
+    for( Tuple tuple : tuples )
+      {
+      TupleEntry tupleEntry = new TupleEntry( expectedFields, tuple );
+
+      Tuple expectedTuple = invokeFunction( expected, tupleEntry, predictedFields ).entryIterator().next().getTuple();
+      Tuple resultTuple = invokeFunction( result, tupleEntry, predictedFields ).entryIterator().next().getTuple();
+
+      assertEquals( tuple.toString(), expectedTuple, resultTuple );
+      }
+    }
+  }
@@ -0,0 +1,237 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.model.generalregression;
+
+import java.util.List;
+import java.util.Random;
+
+import cascading.CascadingTestCase;
+import cascading.pattern.datafield.CategoricalDataField;
+import cascading.pattern.model.ModelSchema;
+import cascading.pattern.model.generalregression.expression.CoefficientMatrix;
+import cascading.pattern.model.generalregression.expression.ExpressionEvaluator;
+import cascading.pattern.model.generalregression.normalization.SoftMaxNormalization;
+import cascading.pattern.model.generalregression.predictor.CovariantPredictor;
+import cascading.pattern.model.generalregression.predictor.FactorPredictor;
+import cascading.pattern.util.Logging;
+import cascading.pattern.util.StringIndex;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import cascading.tuple.TupleListCollector;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class CoefficientMatrixTest extends CascadingTestCase
+  {
+  private GeneralRegressionSpec regressionSpec;
+  private Fields fields;
+  private ExpressionEvaluator[] expected;
+
+  public CoefficientMatrixTest()
+    {
+    }
+
+  @Override
+  public void setUp() throws Exception
+    {
+    Logging.setLogLevel( this.getClass(), "cascading.pattern", "debug" );
+
+    super.setUp();
+
+    regressionSpec = createMultinomialSpec();
+    fields = regressionSpec.getModelSchema().getInputFields();
+
+    List<RegressionTable> tables = regressionSpec.getOrderedRegressionTables();
+
+    expected = new ExpressionEvaluator[ tables.size() ];
+
+    for( int i = 0; i < tables.size(); i++ )
+      expected[ i ] = RegressionTableTest.createExpressionEvaluator( tables.get( i ), fields );
+    }
+
+  @Test
+  public void testMatrixMatchesExpressions()
+    {
+    CoefficientMatrix matrix = regressionSpec.getCoefficientMatrix( fields );
+
+    assertEquals( 3, matrix.getRows() );
+
+    // the intercept, two covariants, color red, green, 7, blue, size medium, large, huge, enormous
+    assertEquals( 11, matrix.getColumns() );
+
+    for( Object color : RegressionTableTest.COLORS )
+      {
+      for( Object size : RegressionTableTest.SIZE_VALUES )
+        {
+        assertEquivalent( matrix, new Tuple( 1.5d, -2.25d, color, size ) );
+        assertEquivalent( matrix, new Tuple( null, 3d, color, size ) );
+        assertEquivalent( matrix, new Tuple( 0d, 0d, color, size ) );
+        }
+      }
+
+    Random random = new Random( 1 );
+
+    for( int i = 0; i < 10000; i++ )
+      {
+      Tuple tuple = new Tuple(
+        random.nextInt( 10 ) == 0 ? null : random.nextGaussian() * 100,
+        random.nextInt( 10 ) == 0 ? null : random.nextGaussian(),
+        RegressionTableTest.COLORS[ random.nextInt( RegressionTableTest.COLORS.length ) ],
+        RegressionTableTest.SIZE_VALUES[ random.nextInt( RegressionTableTest.SIZE_VALUES.length ) ]
+      );
+
+      assertEquivalent( matrix, tuple );
+      }
+    }
+
+  @Test
+  public void testMinusOneMatchesNoFactor()
+    {
+    CoefficientMatrix matrix = regressionSpec.getCoefficientMatrix( fields );
+    double[] rows = new double[ matrix.getRows() ];
+
+    // huge and enormous are not categories, so have the ordinal -1, but an argument of -1 matches neither
+    assertEquivalent( matrix, new Tuple( 0d, 0d, null, -1 ) );
+
+    matrix.calculate( new TupleEntry( fields, new Tuple( 0d, 0d, null, -1 ) ), rows );
+
+    assertEquals( 1d, rows[ 0 ], 1e-12d );
+    assertEquals( -1d, rows[ 1 ], 1e-12d );
+    assertEquals( 0d, rows[ 2 ] );
+
+    matrix.calculate( new TupleEntry( fields, new Tuple( 0d, 0d, null, "enormous" ) ), rows );
+
+    assertEquals( 1d, rows[ 0 ], 1e-12d );
+    assertEquals( -1d + 6d, rows[ 1 ], 1e-12d );
+    }
+
+  @Test
+  public void testFunctionMatchesExpressions()
+    {
+    CategoricalRegressionFunction regressionFunction = new CategoricalRegressionFunction( regressionSpec );
+    ModelSchema modelSchema = regressionSpec.getModelSchema();
+    Random random = new Random( 1 );
+
+    for( int i = 0; i < 100; i++ )
+      {
+      Tuple tuple = new Tuple(
+        random.nextGaussian(),
+        random.nextGaussian(),
+        RegressionTableTest.COLORS[ random.nextInt( RegressionTableTest.COLORS.length ) ],
+        RegressionTableTest.SIZE_VALUES[ random.nextInt( RegressionTableTest.SIZE_VALUES.length ) ]
+      );
+
+      TupleEntry tupleEntry = new TupleEntry( fields, tuple );
+
+      // the softmax preserves order, so the largest table wins
+      int max = 0;
+
+      for( int row = 1; row < expected.length; row++ )
+        {
+        if( expected[ row ].calculate( tupleEntry ) > expected[ max ].calculate( tupleEntry ) )
+          max = row;
+        }
+
+      TupleListCollector collector = invokeFunction( regressionFunction, tupleEntry, modelSchema.getDeclaredFields() );
+
+      assertEquals( tuple.toString(), expected[ max ].getTargetCategory(), collector.entryIterator().next().getTuple().getObject( 0 ) );
+      }
+    }
+
+  private void assertEquivalent( CoefficientMatrix matrix, Tuple tuple )
+    {
+    TupleEntry tupleEntry = new TupleEntry( fields, tuple );
+    double[] rows = new double[ matrix.getRows() ];
+
+    matrix.calculate( tupleEntry, rows );
+
+    for( int i = 0; i < rows.length; i++ )
+      {
+      double result = expected[ i ].calculate( tupleEntry );
+
+      assertEquals( tuple + ", row: " + i, result, rows[ i ], 1e-12d * Math.max( 1d, Math.abs( result ) ) );
+      }
+    }
+
+  /**
+   * Returns a multinomial model over a covariant, a squared covariant, an unencoded factor, an encoded factor with
+   * levels that are not categories, and an interaction, where the last category is the reference.
+   */
+  static GeneralRegressionSpec createMultinomialSpec()
+    {
+    Fields expectedFields = Fields.NONE
+      .append( new Fields( "x0", double.class ) )
+      .append( new Fields( "x1", double.class ) )
+      .append( new Fields( "color", String.class ) );
+
+    ModelSchema modelSchema = new ModelSchema( expectedFields, new Fields( "species", String.class ) );
+
+    modelSchema.addExpectedField( new CategoricalDataField( "size", String.class, "small", "medium", "large" ) );
+    modelSchema.setPredictedCategories( "species", "a", "b", "c" );
+
+    StringIndex sizes = modelSchema.getCategoryIndex( "size" );
+    GeneralRegressionSpec regressionSpec = new GeneralRegressionSpec( modelSchema );
+
+    regressionSpec.setNormalization( new SoftMaxNormalization() );
+
+    // added out of category order
+    {
+    RegressionTable table = new RegressionTable( "b" );
+
+    table.addParameter( new Parameter( "p0", -1d ) );
+    table.addParameter( new Parameter( "p1", 0.75d, new CovariantPredictor( "x0" ) ) );
+    table.addParameter( new Parameter( "p2", -1.25d, new CovariantPredictor( "x1" ) ) );
+    table.addParameter( new Parameter( "p3", 0.01d, new CovariantPredictor( "x0", 2 ) ) );
+    table.addParameter( new Parameter( "p4", 1.5d, new FactorPredictor( "color", "red" ) ) );
+    table.addParameter( new Parameter( "p5", -0.5d, new FactorPredictor( "color", "green" ) ) );
+    table.addParameter( new Parameter( "p6", 6d, new FactorPredictor( "color", "7" ) ) );
+    table.addParameter( new Parameter( "p7", 2d, new FactorPredictor( "size", "medium", sizes ) ) );
+    table.addParameter( new Parameter( "p8", 3d, new FactorPredictor( "size", "large", sizes ) ) );
+    table.addParameter( new Parameter( "p9", 5d, new FactorPredictor( "size", "huge", sizes ) ) );
+    table.addParameter( new Parameter( "p10", 6d, new FactorPredictor( "size", "enormous", sizes ) ) );
+    table.addParameter( new Parameter( "p11", 0.3d, new FactorPredictor( "color", "green" ), new CovariantPredictor( "x1" ) ) );
+
+    regressionSpec.addRegressionTable( table );
+    }
+
+    {
+    RegressionTable table = new RegressionTable( "a" );
+
+    table.addParameter( new Parameter( "p0", 1d ) );
+    table.addParameter( new Parameter( "p1", -0.5d, new CovariantPredictor( "x0" ) ) );
+    table.addParameter( new Parameter( "p2", 0.25d, new CovariantPredictor( "x1", 3 ) ) );
+    table.addParameter( new Parameter( "p3", 2.5d, new FactorPredictor( "color", "blue" ) ) );
+    table.addParameter( new Parameter( "p4", -1.5d, new FactorPredictor( "color", "red" ) ) );
+    table.addParameter( new Parameter( "p5", -2d, new FactorPredictor( "size", "large", sizes ) ) );
+    table.addParameter( new Parameter( "p6", 4d, new FactorPredictor( "size", "huge", sizes ) ) );
+    table.addParameter( new Parameter( "p7", 0.5d, new FactorPredictor( "size", "medium", sizes ), new FactorPredictor( "color", "red" ) ) );
+
+    regressionSpec.addRegressionTable( table );
+    }
+
+    regressionSpec.addRegressionTable( new RegressionTable( "c" ) );
+
+    return regressionSpec;
+    }
+  }
@@ -0,0 +1,118 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.model.generalregression;
+
+import cascading.CascadingTestCase;
+import cascading.pattern.model.generalregression.normalization.SoftMaxNormalization;
+import cascading.pattern.util.Logging;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class NumericModeTest extends CascadingTestCase
+  {
+  public NumericModeTest()
+    {
+    }
+
+  @Override
+  public void setUp() throws Exception
+    {
+    Logging.setLogLevel( this.getClass(), "cascading.pattern", "debug" );
+
+    super.setUp();
+    }
+
+  @Test
+  public void testLinkFunctions()
+    {
+    double[] limits = new double[]{Double.POSITIVE_INFINITY, Double.NEGATIVE_INFINITY, 1e300d, -1e300d, 0d, -0d};
+
+    for( LinkFunction linkFunction : LinkFunction.values() )
+      {
+      for( double value = -50d; value <= 50d; value += 0.0173d )
+        assertLink( linkFunction, value );
+
+      for( double value : limits )
+        assertLink( linkFunction, value );
+
+      assertTrue( linkFunction.name(), Double.isNaN( linkFunction.calculate( Double.NaN, NumericMode.FAST ) ) );
+      assertTrue( linkFunction.name(), Double.isNaN( linkFunction.calculate( Double.NaN, NumericMode.EXACT ) ) );
+      }
+    }
+
+  @Test
+  public void testSoftMaxExact()
+    {
+    assertSoftMax( NumericMode.EXACT );
+    }
+
+  @Test
+  public void testSoftMaxFast()
+    {
+    assertSoftMax( NumericMode.FAST );
+    }
+
+  private static void assertLink( LinkFunction linkFunction, double value )
+    {
+    double exact = linkFunction.calculate( value, NumericMode.EXACT );
+    double fast = linkFunction.calculate( value, NumericMode.FAST );
+
+    assertEquals( linkFunction.name() + ": " + value, linkFunction.calculate( value ), exact );
+    assertEquals( linkFunction.name() + ": " + value, linkFunction.calculateFast( value ), fast );
+
+    if( Double.isInfinite( exact ) )
+      assertEquals( linkFunction.name() + ": " + value, exact, fast );
+    else
+      assertEquals( linkFunction.name() + ": " + value, exact, fast, 1e-10d * Math.max( 1d, Math.abs( exact ) ) );
+    }
+
+  private static void assertSoftMax( NumericMode numericMode )
+    {
+    SoftMaxNormalization normalization = new SoftMaxNormalization();
+
+    // large values must not overflow
+    double[] probabilities = normalization.normalize( new double[]{1000d, 999d}, numericMode );
+
+    assertEquals( 1d / ( 1d + Math.exp( -1d ) ), probabilities[ 0 ], 0.000001d );
+    assertEquals( 1d / ( 1d + Math.exp( 1d ) ), probabilities[ 1 ], 0.000001d );
+
+    // nor large negative values underflow to a zero sum
+    probabilities = normalization.normalize( new double[]{-1000d, -1001d, -1002d}, numericMode );
+
+    double sum = 1d + Math.exp( -1d ) + Math.exp( -2d );
+
+    assertEquals( 1d / sum, probabilities[ 0 ], 0.000001d );
+    assertEquals( Math.exp( -2d ) / sum, probabilities[ 2 ], 0.000001d );
+
+    // a value far below the largest does not contribute
+    probabilities = normalization.normalize( new double[]{Double.MAX_VALUE, 0d}, numericMode );
+
+    assertEquals( 1d, probabilities[ 0 ] );
+    assertEquals( 0d, probabilities[ 1 ] );
+
+    probabilities = normalization.normalize( new double[]{1d, Double.NEGATIVE_INFINITY}, numericMode );
+
+    assertEquals( 1d, probabilities[ 0 ] );
+    assertEquals( 0d, probabilities[ 1 ] );
+    }
+  }
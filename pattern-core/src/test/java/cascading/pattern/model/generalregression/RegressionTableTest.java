@@ -0,0 +1,248 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.model.generalregression;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.Random;
+
+import cascading.CascadingTestCase;
+import cascading.pattern.model.generalregression.expression.ExpressionEvaluator;
+import cascading.pattern.model.generalregression.expression.LinearExpressionEvaluator;
+import cascading.pattern.model.generalregression.expression.ParameterExpression;
+import cascading.pattern.model.generalregression.predictor.CovariantPredictor;
+import cascading.pattern.model.generalregression.predictor.FactorPredictor;
+import cascading.pattern.util.Logging;
+import cascading.pattern.util.StringIndex;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class RegressionTableTest extends CascadingTestCase
+  {
+  static final StringIndex SIZES = new StringIndex( Arrays.asList( "small", "medium", "large" ) );
+
+  /** the values tried for the unencoded color field, an Integer is matched by its string value */
+  static final Object[] COLORS = new Object[]{"red", "green", "blue", "7", 7, null};
+
+  /** the values tried for the encoded size field, ordinals, names, and values no category or factor has */
+  static final Object[] SIZE_VALUES = new Object[]{0, 1, 2, 3, -1, -2, "small", "medium", "large", "huge", "tiny", null};
+
+  private Fields fields;
+
+  public RegressionTableTest()
+    {
+    }
+
+  @Override
+  public void setUp() throws Exception
+    {
+    Logging.setLogLevel( this.getClass(), "cascading.pattern", "debug" );
+
+    super.setUp();
+
+    fields = createFields();
+    }
+
+  @Test
+  public void testLinearMatchesExpressions()
+    {
+    RegressionTable table = createTable( "target" );
+    LinearExpressionEvaluator evaluator = (LinearExpressionEvaluator) table.bind( fields );
+
+    // the squared covariant and the interaction
+    assertEquals( 2, evaluator.getFallbackCount() );
+
+    ExpressionEvaluator expected = createExpressionEvaluator( table, fields );
+
+    assertEquals( "target", evaluator.getTargetCategory() );
+
+    for( Object color : COLORS )
+      {
+      for( Object size : SIZE_VALUES )
+        {
+        assertEquivalent( expected, evaluator, new Tuple( 1.5d, -2.25d, color, size ) );
+        assertEquivalent( expected, evaluator, new Tuple( null, 3d, color, size ) ); // null covariates
+        assertEquivalent( expected, evaluator, new Tuple( null, null, color, size ) );
+        }
+      }
+
+    Random random = new Random( 1 );
+
+    for( int i = 0; i < 10000; i++ )
+      {
+      Tuple tuple = new Tuple(
+        random.nextInt( 10 ) == 0 ? null : random.nextGaussian() * 100,
+        random.nextInt( 10 ) == 0 ? null : random.nextGaussian(),
+        COLORS[ random.nextInt( COLORS.length ) ],
+        SIZE_VALUES[ random.nextInt( SIZE_VALUES.length ) ]
+      );
+
+      assertEquivalent( expected, evaluator, tuple );
+      }
+    }
+
+  @Test
+  public void testMinusOneMatchesNoFactor()
+    {
+    RegressionTable table = createTable( null );
+    ExpressionEvaluator evaluator = table.bind( fields );
+    ExpressionEvaluator expected = createExpressionEvaluator( table, fields );
+
+    // the encoded factor "huge" is not a category, so has the ordinal -1, but no factor matches an argument of -1
+    for( String name : table.getParameterNames() )
+      {
+      for( FactorPredictor predictor : table.getParameter( name ).getFactors() )
+        {
+        assertFalse( predictor.matches( -1 ) );
+        assertFalse( predictor.matches( (Object) Integer.valueOf( -1 ) ) );
+        }
+      }
+
+    TupleEntry minusOne = new TupleEntry( fields, new Tuple( 0d, 0d, null, -1 ) );
+
+    assertEquals( expected.calculate( minusOne ), evaluator.calculate( minusOne ) );
+    assertEquals( 0.5d + 0.25d, evaluator.calculate( minusOne ), 1e-12d );
+
+    // as a string it only matches by name
+    TupleEntry named = new TupleEntry( fields, new Tuple( 0d, 0d, null, "huge" ) );
+
+    assertEquals( expected.calculate( named ), evaluator.calculate( named ) );
+    assertEquals( 0.5d + 0.25d + 4d, evaluator.calculate( named ), 1e-12d );
+    }
+
+  @Test
+  public void testEncodedOrdinals()
+    {
+    RegressionTable table = createTable( null );
+    ExpressionEvaluator evaluator = table.bind( fields );
+
+    // ordinals and names select the same factor
+    for( int ordinal = 0; ordinal < 3; ordinal++ )
+      {
+      TupleEntry encoded = new TupleEntry( fields, new Tuple( 0d, 0d, null, ordinal ) );
+      TupleEntry named = new TupleEntry( fields, new Tuple( 0d, 0d, null, SIZES.get( ordinal ) ) );
+
+      assertEquals( SIZES.get( ordinal ), evaluator.calculate( named ), evaluator.calculate( encoded ) );
+      }
+
+    // small has no parameter
+    assertEquals( 0.75d, evaluator.calculate( new TupleEntry( fields, new Tuple( 0d, 0d, null, 0 ) ) ), 1e-12d );
+    assertEquals( 0.75d + 2d - 1d, evaluator.calculate( new TupleEntry( fields, new Tuple( 0d, 0d, null, 1 ) ) ), 1e-12d );
+    assertEquals( 0.75d + 3d, evaluator.calculate( new TupleEntry( fields, new Tuple( 0d, 0d, null, 2 ) ) ), 1e-12d );
+    assertEquals( 0.75d, evaluator.calculate( new TupleEntry( fields, new Tuple( 0d, 0d, null, 3 ) ) ), 1e-12d );
+    }
+
+  @Test
+  public void testExplanationTerms()
+    {
+    RegressionTable table = createTable( null );
+    ExpressionEvaluator evaluator = table.bind( fields );
+    ExpressionEvaluator expected = createExpressionEvaluator( table, fields );
+
+    TupleEntry tupleEntry = new TupleEntry( fields, new Tuple( 1.5d, -2.25d, "red", 1 ) );
+    int size = table.getParameterNames().size();
+    double[] expectedTerms = new double[ size + 1 ];
+    double[] terms = new double[ size + 1 ];
+
+    double result = evaluator.calculate( tupleEntry, terms, 1 );
+
+    assertEquals( expected.calculate( tupleEntry, expectedTerms, 1 ), result, 1e-12d );
+    assertEquals( evaluator.calculate( tupleEntry ), result, 1e-12d );
+
+    for( int i = 0; i < terms.length; i++ )
+      assertEquals( expectedTerms[ i ], terms[ i ], 1e-12d );
+    }
+
+  @Test
+  public void testNoOp()
+    {
+    RegressionTable table = new RegressionTable( "target" );
+
+    ExpressionEvaluator evaluator = table.bind( fields );
+
+    assertFalse( evaluator instanceof LinearExpressionEvaluator );
+    assertEquals( 0d, evaluator.calculate( new TupleEntry( fields, new Tuple( 1d, 1d, "red", 0 ) ) ) );
+    }
+
+  private void assertEquivalent( ExpressionEvaluator expected, ExpressionEvaluator evaluator, Tuple tuple )
+    {
+    TupleEntry tupleEntry = new TupleEntry( fields, tuple );
+    double result = expected.calculate( tupleEntry );
+
+    assertEquals( tuple.toString(), result, evaluator.calculate( tupleEntry ), 1e-12d * Math.max( 1d, Math.abs( result ) ) );
+    }
+
+  /** Returns the evaluator tables were bound to before compiling, a sum over every {@link ParameterExpression}. */
+  static ExpressionEvaluator createExpressionEvaluator( RegressionTable table, Fields fields )
+    {
+    List<ParameterExpression> expressions = new ArrayList<ParameterExpression>();
+
+    for( String name : table.getParameterNames() )
+      expressions.add( table.getParameter( name ).createExpression( fields ) );
+
+    return new ExpressionEvaluator( table.getTargetCategory(), expressions.toArray( new ParameterExpression[ expressions.size() ] ) );
+    }
+
+  static Fields createFields()
+    {
+    return Fields.NONE
+      .append( new Fields( "x0", double.class ) )
+      .append( new Fields( "x1", double.class ) )
+      .append( new Fields( "color", String.class ) )
+      .append( new Fields( "size", String.class ) );
+    }
+
+  static RegressionTable createTable( String targetCategory )
+    {
+    RegressionTable table = new RegressionTable( targetCategory );
+
+    // intercepts are summed
+    table.addParameter( new Parameter( "p0", 0.5d ) );
+    table.addParameter( new Parameter( "p1", 0.25d ) );
+
+    table.addParameter( new Parameter( "p2", 1.75d, new CovariantPredictor( "x0" ) ) );
+    table.addParameter( new Parameter( "p3", -0.5d, new CovariantPredictor( "x1" ) ) );
+    table.addParameter( new Parameter( "p4", 0.125d, new CovariantPredictor( "x0", 2 ) ) );
+
+    // unencoded factors, the same factor twice is summed
+    table.addParameter( new Parameter( "p5", 1.5d, new FactorPredictor( "color", "red" ) ) );
+    table.addParameter( new Parameter( "p6", -2.5d, new FactorPredictor( "color", "green" ) ) );
+    table.addParameter( new Parameter( "p7", 0.75d, new FactorPredictor( "color", "red" ) ) );
+    table.addParameter( new Parameter( "p8", 6d, new FactorPredictor( "color", "7" ) ) );
+
+    // encoded factors, huge is not a category
+    table.addParameter( new Parameter( "p9", 2d, new FactorPredictor( "size", "medium", SIZES ) ) );
+    table.addParameter( new Parameter( "p10", 3d, new FactorPredictor( "size", "large", SIZES ) ) );
+    table.addParameter( new Parameter( "p11", 4d, new FactorPredictor( "size", "huge", SIZES ) ) );
+    table.addParameter( new Parameter( "p12", -1d, new FactorPredictor( "size", "medium", SIZES ) ) );
+
+    // an interaction
+    table.addParameter( new Parameter( "p13", 0.3d, new FactorPredictor( "color", "green" ), new CovariantPredictor( "x1" ) ) );
+
+    return table;
+    }
+  }
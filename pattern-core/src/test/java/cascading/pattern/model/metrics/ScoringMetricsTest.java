@@ -0,0 +1,285 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.model.metrics;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import cascading.CascadingTestCase;
+import cascading.flow.FlowProcess;
+import cascading.flow.FlowProcessWrapper;
+import cascading.pattern.PatternException;
+import cascading.pattern.util.Logging;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class ScoringMetricsTest extends CascadingTestCase
+  {
+  /** Records every increment as "group:counter", also when created by class name. */
+  public static class RecordingSink implements MetricsSink
+    {
+    static final Map<String, Long> counters = new HashMap<String, Long>();
+
+    @Override
+    public synchronized void increment( FlowProcess flowProcess, String group, String counter, long amount )
+      {
+      Long current = counters.get( group + ":" + counter );
+
+      counters.put( group + ":" + counter, current == null ? amount : current + amount );
+      }
+    }
+
+  private Fields fields;
+  private TupleEntry complete;
+  private TupleEntry missing;
+
+  public ScoringMetricsTest()
+    {
+    }
+
+  @Override
+  public void setUp() throws Exception
+    {
+    Logging.setLogLevel( this.getClass(), "cascading.pattern", "debug" );
+
+    super.setUp();
+
+    RecordingSink.counters.clear();
+
+    fields = new Fields( "var0", "var1" );
+    complete = new TupleEntry( fields, new Tuple( 1d, 2d ) );
+    missing = new TupleEntry( fields, new Tuple( 1d, null ) );
+    }
+
+  @Test
+  public void testSampleRate()
+    {
+    ScoringMetrics metrics = new ScoringMetrics( null, "test", 3, new RecordingSink() );
+
+    // the first tuple is timed, then every third
+    for( int i = 0; i < 10; i++ )
+      {
+      boolean sampled = metrics.start() != ScoringMetrics.NOT_SAMPLED;
+
+      assertEquals( "tuple: " + i, i % 3 == 0, sampled );
+      }
+
+    try
+      {
+      new ScoringMetrics( null, "test", 0, new RecordingSink() );
+      fail( "accepted sample rate of zero" );
+      }
+    catch( IllegalArgumentException exception )
+      {
+      // expected
+      }
+    }
+
+  @Test
+  public void testFlush()
+    {
+    ScoringMetrics metrics = new ScoringMetrics( null, "test", 2, new RecordingSink() );
+
+    for( int i = 0; i < 4; i++ )
+      metrics.scored( complete, metrics.start() );
+
+    // nothing is reported before a flush
+    assertTrue( RecordingSink.counters.isEmpty() );
+
+    metrics.flush();
+
+    assertEquals( 4L, counter( "test", ScoringMetrics.TUPLES ) );
+    assertEquals( 2L, counter( "test", ScoringMetrics.SAMPLED ) );
+    assertFalse( RecordingSink.counters.containsKey( "test:" + ScoringMetrics.MISSING ) );
+
+    // counters are reset, zero counts are not reported
+    RecordingSink.counters.clear();
+    metrics.flush();
+
+    assertTrue( RecordingSink.counters.isEmpty() );
+
+    // flushed every interval
+    for( int i = 0; i < ScoringMetrics.FLUSH_INTERVAL; i++ )
+      metrics.scored( complete, ScoringMetrics.NOT_SAMPLED );
+
+    assertEquals( (long) ScoringMetrics.FLUSH_INTERVAL, counter( "test", ScoringMetrics.TUPLES ) );
+    }
+
+  @Test
+  public void testLatencyBuckets()
+    {
+    ScoringMetrics metrics = new ScoringMetrics( null, "test", 1, new RecordingSink() );
+
+    // bucket k holds durations up to 2^k nanos
+    metrics.time( 0 );
+    metrics.time( 1 );
+    metrics.time( 2 );
+    metrics.time( 3 );
+    metrics.time( 4 );
+    metrics.time( 1000 );
+    metrics.time( 1024 );
+    metrics.time( 1025 );
+
+    metrics.flush();
+
+    assertEquals( 2L, counter( "test", ScoringMetrics.LATENCY_PREFIX + 1 ) );
+    assertEquals( 1L, counter( "test", ScoringMetrics.LATENCY_PREFIX + 2 ) );
+    assertEquals( 2L, counter( "test", ScoringMetrics.LATENCY_PREFIX + 4 ) );
+    assertEquals( 2L, counter( "test", ScoringMetrics.LATENCY_PREFIX + 1024 ) );
+    assertEquals( 1L, counter( "test", ScoringMetrics.LATENCY_PREFIX + 2048 ) );
+    assertEquals( 8L, counter( "test", ScoringMetrics.SAMPLED ) );
+    assertEquals( 3059L, counter( "test", ScoringMetrics.SAMPLED_NANOS ) );
+    }
+
+  @Test
+  public void testMissingValues()
+    {
+    ScoringMetrics metrics = new ScoringMetrics( null, "test", 1, new RecordingSink() );
+
+    metrics.scored( complete, ScoringMetrics.NOT_SAMPLED );
+    metrics.scored( missing, ScoringMetrics.NOT_SAMPLED );
+
+    // a tuple is counted once, however many values are missing
+    metrics.scored( new TupleEntry( fields, new Tuple( null, null ) ), ScoringMetrics.NOT_SAMPLED );
+
+    metrics.scored( complete, ScoringMetrics.NOT_SAMPLED, "a" );
+    metrics.scored( missing, ScoringMetrics.NOT_SAMPLED, "a" );
+    metrics.scored( missing, ScoringMetrics.NOT_SAMPLED, null );
+
+    metrics.flush();
+
+    assertEquals( 6L, counter( "test", ScoringMetrics.TUPLES ) );
+    assertEquals( 4L, counter( "test", ScoringMetrics.MISSING ) );
+    assertEquals( 1L, counter( "test", ScoringMetrics.NO_DECISION ) );
+    assertEquals( 2L, counter( "test", ScoringMetrics.CATEGORY_PREFIX + "a" ) );
+    }
+
+  @Test
+  public void testCategoryIndexes()
+    {
+    ScoringMetrics metrics = new ScoringMetrics( null, "test", 1, new RecordingSink() );
+
+    metrics.countCategories( new String[]{"a", "b"} );
+
+    metrics.scored( complete, ScoringMetrics.NOT_SAMPLED, 1 );
+    metrics.scored( complete, ScoringMetrics.NOT_SAMPLED, 1 );
+    metrics.scored( missing, ScoringMetrics.NOT_SAMPLED, -1 );
+    metrics.scored( complete, ScoringMetrics.NOT_SAMPLED, "b" );
+
+    metrics.flush();
+
+    assertEquals( 4L, counter( "test", ScoringMetrics.TUPLES ) );
+    assertEquals( 1L, counter( "test", ScoringMetrics.NO_DECISION ) );
+    assertEquals( 3L, counter( "test", ScoringMetrics.CATEGORY_PREFIX + "b" ) );
+    assertFalse( RecordingSink.counters.containsKey( "test:" + ScoringMetrics.CATEGORY_PREFIX + "a" ) );
+
+    // counts are reset with every flush
+    metrics.flush();
+
+    assertEquals( 3L, counter( "test", ScoringMetrics.CATEGORY_PREFIX + "b" ) );
+    }
+
+  @Test
+  public void testNodeHits()
+    {
+    ScoringMetrics metrics = new ScoringMetrics( null, "test", 1, new RecordingSink() );
+
+    assertNull( metrics.countNodes( new String[]{"1", "2"} ) );
+
+    metrics.setCountNodes( true );
+
+    long[] hits = metrics.countNodes( new String[]{"1", "2"} );
+
+    hits[ 1 ] += 3;
+
+    metrics.flush();
+
+    assertEquals( 3L, counter( "test" + ScoringMetrics.NODES_GROUP_SUFFIX, "2" ) );
+    assertFalse( RecordingSink.counters.containsKey( "test" + ScoringMetrics.NODES_GROUP_SUFFIX + ":1" ) );
+    assertEquals( 0L, hits[ 1 ] );
+    }
+
+  @Test
+  public void testCreate()
+    {
+    Map<String, String> properties = new HashMap<String, String>();
+
+    assertNull( ScoringMetrics.create( null, "model" ) );
+    assertNull( ScoringMetrics.create( createFlowProcess( properties ), "model" ) );
+
+    properties.put( ScoringMetrics.METRICS_ENABLED, "true" );
+    properties.put( ScoringMetrics.METRICS_SAMPLE_RATE, "5" );
+    properties.put( ScoringMetrics.METRICS_SINK, RecordingSink.class.getName() );
+    properties.put( ScoringMetrics.METRICS_NODES, "true" );
+
+    ScoringMetrics metrics = ScoringMetrics.create( createFlowProcess( properties ), "model" );
+
+    assertEquals( ScoringMetrics.GROUP_PREFIX + "model", metrics.getGroup() );
+    assertTrue( metrics.isCountNodes() );
+
+    for( int i = 0; i < 10; i++ )
+      metrics.scored( complete, metrics.start(), "a" );
+
+    metrics.flush();
+
+    assertEquals( 10L, counter( metrics.getGroup(), ScoringMetrics.TUPLES ) );
+    assertEquals( 2L, counter( metrics.getGroup(), ScoringMetrics.SAMPLED ) );
+    assertEquals( 10L, counter( metrics.getGroup(), ScoringMetrics.CATEGORY_PREFIX + "a" ) );
+
+    properties.put( ScoringMetrics.METRICS_SINK, "cascading.pattern.NoSuchSink" );
+
+    try
+      {
+      ScoringMetrics.create( createFlowProcess( properties ), "model" );
+      fail( "created unknown sink" );
+      }
+    catch( PatternException exception )
+      {
+      // expected
+      }
+    }
+
+  private static long counter( String group, String counter )
+    {
+    Long value = RecordingSink.counters.get( group + ":" + counter );
+
+    assertNotNull( "no counter: " + group + ":" + counter, value );
+
+    return value;
+    }
+
+  private static FlowProcess createFlowProcess( final Map<String, String> properties )
+    {
+    return new FlowProcessWrapper( FlowProcess.NULL )
+    {
+    @Override
+    public Object getProperty( String key )
+      {
+      return properties.get( key );
+      }
+    };
+    }
+  }
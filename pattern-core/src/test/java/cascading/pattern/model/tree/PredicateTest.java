@@ -20,17 +20,29 @@
 
 package cascading.pattern.model.tree;
 
+import java.util.Arrays;
+
 import cascading.CascadingTestCase;
 import cascading.pattern.model.tree.decision.PredicateEvaluator;
+import cascading.pattern.model.tree.predicate.ComparablePredicate;
 import cascading.pattern.model.tree.predicate.EqualsToPredicate;
+import cascading.pattern.model.tree.predicate.GreaterOrEqualThanPredicate;
+import cascading.pattern.model.tree.predicate.GreaterThanPredicate;
+import cascading.pattern.model.tree.predicate.IsInSetPredicate;
 import cascading.pattern.model.tree.predicate.IsMissingPredicate;
+import cascading.pattern.model.tree.predicate.IsNotInSetPredicate;
 import cascading.pattern.model.tree.predicate.IsNotMissingPredicate;
+import cascading.pattern.model.tree.predicate.LessThanPredicate;
+import cascading.pattern.model.tree.predicate.LessOrEqualThanPredicate;
+import cascading.pattern.model.tree.predicate.NotEqualsToPredicate;
 import cascading.pattern.model.tree.predicate.Predicate;
 import cascading.pattern.model.tree.predicate.TruePredicate;
 import cascading.pattern.model.tree.predicate.compound.AndPredicate;
 import cascading.pattern.model.tree.predicate.compound.OrPredicate;
 import cascading.pattern.model.tree.predicate.compound.SurrogatePredicate;
+import cascading.pattern.model.tree.predicate.compound.XorPredicate;
 import cascading.pattern.util.Logging;
+import cascading.pattern.util.StringIndex;
 import cascading.tuple.Fields;
 import cascading.tuple.Tuple;
 import cascading.tuple.TupleEntry;
@@ -101,4 +113,145 @@ public class PredicateTest extends CascadingTestCase
 
     assertTrue( new PredicateEvaluator( expectedFields, surrogatePredicate ).evaluate( tupleEntry ) );
     }
+
+  @Test
+  public void testUnknown()
+    {
+    Predicate andPredicate = new AndPredicate( new EqualsToPredicate( "var2", 0.0d ), new EqualsToPredicate( "var1", "value" ) );
+
+    assertEquals( Predicate.UNKNOWN, new PredicateEvaluator( expectedFields, andPredicate ).test( tupleEntry ) );
+    assertFalse( new PredicateEvaluator( expectedFields, andPredicate ).evaluate( tupleEntry ) );
+
+    Predicate shortPredicate = new AndPredicate( new EqualsToPredicate( "var1", "other" ), new EqualsToPredicate( "var2", 0.0d ) );
+
+    assertEquals( Predicate.FALSE, new PredicateEvaluator( expectedFields, shortPredicate ).test( tupleEntry ) );
+
+    Predicate xorPredicate = new XorPredicate( new IsMissingPredicate( "var2" ), new EqualsToPredicate( "var1", "value" ), new TruePredicate() );
+
+    assertEquals( Predicate.TRUE, new PredicateEvaluator( expectedFields, xorPredicate ).test( tupleEntry ) );
+
+    Predicate surrogatePredicate = new SurrogatePredicate( new EqualsToPredicate( "var2", 0.0d ), new EqualsToPredicate( "var1", "other" ) );
+
+    assertEquals( Predicate.FALSE, new PredicateEvaluator( expectedFields, surrogatePredicate ).test( tupleEntry ) );
+    }
+
+  @Test
+  public void testNumeric()
+    {
+    assertTrue( new PredicateEvaluator( expectedFields, new LessOrEqualThanPredicate( "var0", 0.0d ) ).evaluate( tupleEntry ) );
+    assertFalse( new PredicateEvaluator( expectedFields, new GreaterThanPredicate( "var0", 0.0d ) ).evaluate( tupleEntry ) );
+    assertEquals( Predicate.UNKNOWN, new PredicateEvaluator( expectedFields, new GreaterThanPredicate( "var2", 0.0d ) ).test( tupleEntry ) );
+    assertTrue( new PredicateEvaluator( expectedFields, new LessOrEqualThanPredicate( "var1", "zzz" ) ).evaluate( tupleEntry ) );
+    }
+
+  @Test
+  public void testNumericDefault()
+    {
+    // sub-classes not overriding test( double ) fall back to the boxed comparison
+    ComparablePredicate<Double> predicate = new ComparablePredicate<Double>( "var0", 1.0d )
+    {
+    @Override
+    public Boolean evaluate( Object argument )
+      {
+      return argument == null ? null : ( (Double) argument ).compareTo( getValue() ) < 0;
+      }
+    };
+
+    assertEquals( Predicate.TRUE, predicate.test( 0.0d ) );
+    assertEquals( Predicate.FALSE, predicate.test( 2.0d ) );
+    }
+
+  @Test
+  public void testNumericSignedZeroAndNaN()
+    {
+    // the primitive test orders -0.0 and NaN as the boxed compareTo does
+    double[] values = new double[]{-0.0d, 0.0d, Double.NaN, Double.POSITIVE_INFINITY};
+
+    for( double threshold : values )
+      {
+      ComparablePredicate[] predicates = new ComparablePredicate[]{
+        new LessThanPredicate( "var0", threshold ),
+        new LessOrEqualThanPredicate( "var0", threshold ),
+        new GreaterThanPredicate( "var0", threshold ),
+        new GreaterOrEqualThanPredicate( "var0", threshold ),
+        new EqualsToPredicate( "var0", threshold ),
+        new NotEqualsToPredicate( "var0", threshold )
+      };
+
+      for( ComparablePredicate predicate : predicates )
+        {
+        for( double argument : values )
+          {
+          String message = predicate.getClass().getSimpleName() + ": " + argument + " vs " + threshold;
+          assertEquals( message, predicate.test( (Object) argument ), predicate.test( argument ) );
+          }
+        }
+      }
+
+    assertEquals( Predicate.FALSE, new EqualsToPredicate( "var0", 0.0d ).test( -0.0d ) );
+    assertEquals( Predicate.TRUE, new LessThanPredicate( "var0", 0.0d ).test( -0.0d ) );
+    assertEquals( Predicate.TRUE, new EqualsToPredicate( "var0", Double.NaN ).test( Double.NaN ) );
+    }
+
+  @Test
+  public void testExclusive()
+    {
+    assertTrue( TreeProfile.isExclusive( new EqualsToPredicate( "var0", 1.0d ), new EqualsToPredicate( "var0", 2.0d ) ) );
+    assertTrue( TreeProfile.isExclusive( new EqualsToPredicate( "var1", "a" ), new EqualsToPredicate( "var1", "b" ) ) );
+    assertFalse( TreeProfile.isExclusive( new EqualsToPredicate( "var0", 1.0d ), new EqualsToPredicate( "var0", 1.0d ) ) );
+    assertFalse( TreeProfile.isExclusive( new EqualsToPredicate( "var0", 1.0d ), new EqualsToPredicate( "var2", 2.0d ) ) );
+
+    // -0.0 and 0.0 are not equals, but are not known to never both match
+    assertFalse( TreeProfile.isExclusive( new EqualsToPredicate( "var0", -0.0d ), new EqualsToPredicate( "var0", 0.0d ) ) );
+    assertFalse( TreeProfile.isExclusive( new EqualsToPredicate( "var0", Double.NaN ), new EqualsToPredicate( "var0", Double.NaN ) ) );
+
+    assertTrue( TreeProfile.isExclusive( new IsInSetPredicate( "var1", Arrays.asList( "a", "b" ) ), new IsNotInSetPredicate( "var1", Arrays.asList( "b", "a" ) ) ) );
+    }
+
+  @Test
+  public void testSet()
+    {
+    StringIndex categories = new StringIndex( Arrays.asList( "other", "value", "unused" ) );
+
+    assertTrue( new PredicateEvaluator( expectedFields, new IsInSetPredicate( "var1", Arrays.asList( "value", "other" ), categories ) ).evaluate( tupleEntry ) );
+    assertFalse( new PredicateEvaluator( expectedFields, new IsInSetPredicate( "var1", Arrays.asList( "unused" ), categories ) ).evaluate( tupleEntry ) );
+    assertTrue( new PredicateEvaluator( expectedFields, new IsInSetPredicate( "var1", Arrays.asList( "value", "missing" ), categories ) ).evaluate( tupleEntry ) );
+    assertTrue( new PredicateEvaluator( expectedFields, new IsNotInSetPredicate( "var1", Arrays.asList( "a", "b", "c" ) ) ).evaluate( tupleEntry ) );
+    assertEquals( Predicate.UNKNOWN, new PredicateEvaluator( expectedFields, new IsInSetPredicate( "var2", Arrays.asList( 0 ) ) ).test( tupleEntry ) );
+    }
+
+  @Test
+  public void testSetTypes()
+    {
+    // membership is type strict, as with HashSet, a Double never matches an Integer member
+    Predicate intPredicate = new IsInSetPredicate( "var0", Arrays.asList( 1, 0, 2 ) );
+
+    assertFalse( new PredicateEvaluator( expectedFields, intPredicate ).evaluate( tupleEntry ) );
+    assertTrue( new PredicateEvaluator( expectedFields, intPredicate ).evaluate( new TupleEntry( expectedFields, new Tuple( 2, "value", null ) ) ) );
+    assertFalse( new PredicateEvaluator( expectedFields, intPredicate ).evaluate( new TupleEntry( expectedFields, new Tuple( 2L, "value", null ) ) ) );
+    assertTrue( new PredicateEvaluator( expectedFields, new IsNotInSetPredicate( "var0", Arrays.asList( 1, 0, 2 ) ) ).evaluate( tupleEntry ) );
+
+    // un-encoded strings against the ordinal bitset give the same results as encoded ordinals
+    StringIndex categories = new StringIndex( Arrays.asList( "other", "value", "unused" ) );
+    Predicate ordinalPredicate = new IsInSetPredicate( "var1", Arrays.asList( "value", "unused" ), categories );
+
+    assertTrue( new PredicateEvaluator( expectedFields, ordinalPredicate ).evaluate( tupleEntry ) );
+    assertTrue( new PredicateEvaluator( expectedFields, ordinalPredicate ).evaluate( new TupleEntry( expectedFields, new Tuple( 0.d, 1, null ) ) ) );
+    assertFalse( new PredicateEvaluator( expectedFields, ordinalPredicate ).evaluate( new TupleEntry( expectedFields, new Tuple( 0.d, "other", null ) ) ) );
+    assertFalse( new PredicateEvaluator( expectedFields, ordinalPredicate ).evaluate( new TupleEntry( expectedFields, new Tuple( 0.d, "unknown", null ) ) ) );
+    assertFalse( new PredicateEvaluator( expectedFields, ordinalPredicate ).evaluate( new TupleEntry( expectedFields, new Tuple( 0.d, 0, null ) ) ) );
+    }
+
+  @Test
+  public void testEncoded()
+    {
+    StringIndex categories = new StringIndex( Arrays.asList( "other", "value", "unused" ) );
+    TupleEntry encodedEntry = new TupleEntry( expectedFields, new Tuple( 0.d, 1, null ) );
+
+    assertTrue( new PredicateEvaluator( expectedFields, new EqualsToPredicate( "var1", "value", categories ) ).evaluate( encodedEntry ) );
+    assertTrue( new PredicateEvaluator( expectedFields, new EqualsToPredicate( "var1", "value", categories ) ).evaluate( tupleEntry ) );
+    assertFalse( new PredicateEvaluator( expectedFields, new EqualsToPredicate( "var1", "missing", categories ) ).evaluate( encodedEntry ) );
+    assertTrue( new PredicateEvaluator( expectedFields, new LessThanPredicate( "var1", "zzz", categories ) ).evaluate( encodedEntry ) );
+    assertTrue( new PredicateEvaluator( expectedFields, new IsInSetPredicate( "var1", Arrays.asList( "value" ), categories ) ).evaluate( encodedEntry ) );
+    }
   }
@@ -0,0 +1,244 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.model.tree.decision;
+
+import cascading.CascadingTestCase;
+import cascading.pattern.model.tree.Tree;
+import cascading.pattern.model.tree.predicate.EqualsToPredicate;
+import cascading.pattern.model.tree.predicate.GreaterThanPredicate;
+import cascading.pattern.model.tree.predicate.IsMissingPredicate;
+import cascading.pattern.model.tree.predicate.LessOrEqualThanPredicate;
+import cascading.pattern.model.tree.predicate.LessThanPredicate;
+import cascading.pattern.model.tree.predicate.Predicate;
+import cascading.pattern.util.Logging;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class DecisionTreeGeneratorTest extends CascadingTestCase
+  {
+  private Fields expectedFields;
+
+  public DecisionTreeGeneratorTest()
+    {
+    }
+
+  @Override
+  public void setUp() throws Exception
+    {
+    Logging.setLogLevel( this.getClass(), "cascading.pattern", "debug" );
+
+    super.setUp();
+
+    expectedFields = Fields.NONE
+      .append( new Fields( "var0", double.class ) )
+      .append( new Fields( "var1", double.class ) )
+      .append( new Fields( "var2", double.class ) )
+      .append( new Fields( "var3", String.class ) );
+    }
+
+  @Test
+  public void testGenerated()
+    {
+    Tree tree = new Tree( "1" );
+
+    tree.addPredicate( "1", "2", new LessOrEqualThanPredicate( "var0", 0.5d ) );
+    tree.addPredicate( "2", "4", new GreaterThanPredicate( "var2", 10d ), "1" );
+    tree.addPredicate( "1", "3", new LessOrEqualThanPredicate( "var0", 1.0d ) );
+    tree.addPredicate( "3", "5", new LessOrEqualThanPredicate( "var1", 0.5d ), "0" );
+    tree.addPredicate( "3", "6", new GreaterThanPredicate( "var1", 0.5d ), "1" );
+    tree.addPredicate( "3", "7", new IsMissingPredicate( "var1" ), "2" );
+
+    assertGenerated( tree,
+      new Tuple( 0d, 0d, 11d, null ),
+      new Tuple( 0d, 0d, 0d, null ), // node 2 matches without a matching child, falls through to node 3
+      new Tuple( 0.75d, 1d, 0d, null ),
+      new Tuple( 2d, 1d, 0d, null ),
+      new Tuple( null, 0d, 0d, null ), // a missing value fails every comparison
+      new Tuple( 0d, null, null, null ),
+      new Tuple( "0.75", "1", 0d, null ), // converted once, compared twice
+      new Tuple( 2d, 1d, "x", null ) // never reached, so never converted
+    );
+    }
+
+  @Test
+  public void testSignedZeroAndNaN()
+    {
+    // -0.0 sorts below 0.0 and NaN above everything, as the boxed predicates compare
+    Tree tree = new Tree( "1" );
+
+    tree.addPredicate( "1", "2", new LessThanPredicate( "var0", 0.0d ), "0" );
+    tree.addPredicate( "1", "3", new GreaterThanPredicate( "var0", Double.POSITIVE_INFINITY ), "1" );
+    tree.addPredicate( "1", "4", new LessOrEqualThanPredicate( "var0", 0.0d ), "2" );
+
+    CompiledDecisionTree generatedTree = assertGenerated( tree,
+      new Tuple( -0.0d, 0d, 0d, null ),
+      new Tuple( 0.0d, 0d, 0d, null ),
+      new Tuple( Double.NaN, 0d, 0d, null )
+    );
+
+    assertEquals( "1.2", generatedTree.decide( new TupleEntry( expectedFields, new Tuple( -0.0d, 0d, 0d, null ) ) ).getName() );
+    assertEquals( "1.4", generatedTree.decide( new TupleEntry( expectedFields, new Tuple( 0.0d, 0d, 0d, null ) ) ).getName() );
+    assertEquals( "1.3", generatedTree.decide( new TupleEntry( expectedFields, new Tuple( Double.NaN, 0d, 0d, null ) ) ).getName() );
+    }
+
+  @Test
+  public void testPredicateFallback()
+    {
+    Tree tree = new Tree( "1" );
+
+    tree.addPredicate( "1", "2", new EqualsToPredicate( "var3", "a" ) );
+    tree.addPredicate( "2", "4", new LessOrEqualThanPredicate( "var0", 0.5d ), "1" );
+    tree.addPredicate( "2", "5", new GreaterThanPredicate( "var0", 0.5d ), "0" );
+    tree.addPredicate( "1", "3", new EqualsToPredicate( "var3", "b" ), "2" );
+
+    CompiledDecisionTree generatedTree = assertGenerated( tree,
+      new Tuple( 0d, 0d, 0d, "a" ),
+      new Tuple( 1d, 0d, 0d, "a" ),
+      new Tuple( 1d, 0d, 0d, "b" ),
+      new Tuple( 1d, 0d, 0d, "c" ),
+      new Tuple( 1d, 0d, 0d, null )
+    );
+
+    assertEquals( "1.3", generatedTree.decide( new TupleEntry( expectedFields, new Tuple( 1d, 0d, 0d, "b" ) ) ).getName() );
+    }
+
+  @Test
+  public void testMaxNodes()
+    {
+    Tree tree = new Tree( "1" );
+
+    for( int i = 0; i < DecisionTreeGenerator.MAX_NODES; i++ )
+      tree.addPredicate( "1", "c" + i, new LessOrEqualThanPredicate( "var0", (double) i ), Integer.toString( i ) );
+
+    CompiledDecisionTree compiledTree = new CompiledDecisionTree( null, expectedFields, tree );
+
+    assertEquals( DecisionTreeGenerator.MAX_NODES + 1, compiledTree.getNodeCount() );
+    assertSame( compiledTree, DecisionTreeGenerator.generate( compiledTree, expectedFields ) );
+    }
+
+  @Test
+  public void testMethodSizeAtMaxNodes() throws Exception
+    {
+    // a full binary tree of comparisons on numeric fields, the largest method emitted per node
+    Tree tree = new Tree( "1" );
+
+    for( int child = 2; child <= DecisionTreeGenerator.MAX_NODES; child++ )
+      {
+      int parent = child / 2;
+      String field = "var" + parent % 3;
+      double threshold = parent + 0.5d;
+      Predicate predicate = child % 2 == 0 ? new LessOrEqualThanPredicate( field, threshold ) : new GreaterThanPredicate( field, threshold );
+
+      if( child * 2 > DecisionTreeGenerator.MAX_NODES )
+        tree.addPredicate( Integer.toString( parent ), Integer.toString( child ), predicate, Integer.toString( child % 3 ) );
+      else
+        tree.addPredicate( Integer.toString( parent ), Integer.toString( child ), predicate );
+      }
+
+    CompiledDecisionTree compiledTree = new CompiledDecisionTree( null, expectedFields, tree );
+
+    assertEquals( DecisionTreeGenerator.MAX_NODES, compiledTree.getNodeCount() );
+
+    int codeLength = DecisionTreeGenerator.getCodeLength( compiledTree, expectedFields );
+
+    assertTrue( "decide bytes: " + codeLength, codeLength > 0 && codeLength <= DecisionTreeGenerator.HUGE_METHOD_LIMIT );
+    assertNotSame( CompiledDecisionTree.class, DecisionTreeGenerator.generate( compiledTree, expectedFields ).getClass() );
+    }
+
+  @Test
+  public void testMethodSizeLimit()
+    {
+    Tree tree = new Tree( "1" );
+
+    tree.addPredicate( "1", "2", new LessOrEqualThanPredicate( "var0", 0.5d ), "1" );
+
+    CompiledDecisionTree compiledTree = new CompiledDecisionTree( null, expectedFields, tree );
+
+    // about 6 bytes per statement, well over the limit
+    StringBuilder body = new StringBuilder( "  public FinalDecision decide( TupleEntry tupleEntry )\n    {\n" );
+
+    for( int i = 0; i < DecisionTreeGenerator.HUGE_METHOD_LIMIT / 4; i++ )
+      body.append( "    if( tupleEntry == null ) return null;\n" );
+
+    body.append( "    return decisions[ 1 ];\n    }\n" );
+
+    assertSame( compiledTree, DecisionTreeGenerator.generate( compiledTree, body.toString() ) );
+    }
+
+  @Test
+  public void testCompileFailure()
+    {
+    Tree tree = new Tree( "1" );
+
+    tree.addPredicate( "1", "2", new LessOrEqualThanPredicate( "var0", 0.5d ), "1" );
+
+    CompiledDecisionTree compiledTree = new CompiledDecisionTree( null, expectedFields, tree );
+
+    int size = DecisionTreeGenerator.getCacheSize();
+
+    assertSame( compiledTree, DecisionTreeGenerator.generate( compiledTree, "  not java\n" ) );
+
+    // failures are not cached
+    assertEquals( size, DecisionTreeGenerator.getCacheSize() );
+    }
+
+  @Test
+  public void testCacheBounded()
+    {
+    for( int i = 0; i < 80; i++ )
+      {
+      Tree tree = new Tree( "1" );
+
+      tree.addPredicate( "1", "2", new LessOrEqualThanPredicate( "var0", (double) i ), "1" );
+
+      CompiledDecisionTree compiledTree = new CompiledDecisionTree( null, expectedFields, tree );
+
+      assertNotSame( CompiledDecisionTree.class, DecisionTreeGenerator.generate( compiledTree, expectedFields ).getClass() );
+      }
+
+    assertTrue( DecisionTreeGenerator.getCacheSize() <= Integer.getInteger( DecisionTreeGenerator.CACHE_SIZE, 64 ) );
+    }
+
+  private CompiledDecisionTree assertGenerated( Tree tree, Tuple... tuples )
+    {
+    CompiledDecisionTree compiledTree = new CompiledDecisionTree( null, expectedFields, tree );
+    CompiledDecisionTree generatedTree = DecisionTreeGenerator.generate( compiledTree, expectedFields );
+
+    assertNotSame( CompiledDecisionTree.class, generatedTree.getClass() );
+
+    for( Tuple tuple : tuples )
+      {
+      TupleEntry tupleEntry = new TupleEntry( expectedFields, tuple );
+
+      FinalDecision expected = compiledTree.decide( tupleEntry );
+      FinalDecision result = generatedTree.decide( tupleEntry );
+
+      assertEquals( tuple.toString(), expected == null ? null : expected.getName(), result == null ? null : result.getName() );
+      }
+
+    return generatedTree;
+    }
+  }
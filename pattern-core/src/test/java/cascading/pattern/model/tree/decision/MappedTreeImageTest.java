@@ -0,0 +1,303 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.model.tree.decision;
+
+import java.io.DataInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.Arrays;
+import java.util.List;
+
+import cascading.CascadingTestCase;
+import cascading.pattern.PatternException;
+import cascading.pattern.model.ModelSchema;
+import cascading.pattern.model.batch.ColumnBatch;
+import cascading.pattern.model.tree.Tree;
+import cascading.pattern.model.tree.predicate.GreaterThanPredicate;
+import cascading.pattern.model.tree.predicate.IsInSetPredicate;
+import cascading.pattern.model.tree.predicate.IsMissingPredicate;
+import cascading.pattern.model.tree.predicate.LessOrEqualThanPredicate;
+import cascading.pattern.util.Logging;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class MappedTreeImageTest extends CascadingTestCase
+  {
+  private ModelSchema modelSchema;
+  private String[] categories = new String[]{"0", "1", "2"};
+
+  public MappedTreeImageTest()
+    {
+    }
+
+  @Override
+  public void setUp() throws Exception
+    {
+    Logging.setLogLevel( this.getClass(), "cascading.pattern", "debug" );
+
+    super.setUp();
+
+    modelSchema = new ModelSchema();
+
+    modelSchema.addExpectedFields( Fields.NONE
+      .append( new Fields( "var0", double.class ) )
+      .append( new Fields( "var1", double.class ) ) );
+    modelSchema.addExpectedFields( new Fields( "var2", String.class ), new String[][]{{"a", "b", "c"}} );
+    modelSchema.setPredictedFields( new Fields( "label", String.class ) );
+    }
+
+  private List<Tree> createTrees()
+    {
+    Tree first = new Tree( "1" );
+
+    first.addPredicate( "1", "2", new LessOrEqualThanPredicate( "var0", 0.5d ) );
+    first.addPredicate( "2", "4", new GreaterThanPredicate( "var1", 10d ), "1" );
+    first.addPredicate( "1", "3", new LessOrEqualThanPredicate( "var0", 1.0d ) );
+    first.addPredicate( "3", "5", new IsInSetPredicate( "var2", Arrays.asList( "a", "c" ), modelSchema.getCategoryIndex( "var2" ) ), "0" );
+    first.addPredicate( "3", "6", new IsMissingPredicate( "var2" ), "2" );
+
+    Tree second = new Tree( "1" );
+
+    second.addPredicate( "1", "2", new IsInSetPredicate( "var2", Arrays.asList( "b" ), modelSchema.getCategoryIndex( "var2" ) ), "2" );
+    second.addPredicate( "1", "3", new GreaterThanPredicate( "var1", 0.5d ), "1" );
+
+    return Arrays.asList( first, second );
+    }
+
+  private File writeImage() throws IOException
+    {
+    File file = File.createTempFile( "trees", ".image" );
+
+    file.deleteOnExit();
+
+    MappedTreeImage.write( file, createTrees(), categories, modelSchema.getInputFields() );
+
+    return file;
+    }
+
+  @Test
+  public void testRoundTrip() throws IOException
+    {
+    MappedTreeImage image = MappedTreeImage.open( writeImage() );
+
+    assertEquals( Arrays.asList( "var0", "var1", "var2" ), Arrays.asList( image.getFieldNames() ) );
+    assertEquals( Arrays.asList( categories ), Arrays.asList( image.getCategories() ) );
+    assertEquals( 2, image.getTreeCount() );
+
+    Tuple[] tuples = new Tuple[]{
+      new Tuple( 0d, 11d, "a" ),
+      new Tuple( 0d, 0d, "a" ),
+      new Tuple( 0.75d, 0d, "c" ),
+      new Tuple( 0.75d, 1d, "b" ),
+      new Tuple( 0.75d, 0d, null ),
+      new Tuple( 0.75d, 0d, "unknown" ),
+      new Tuple( 2d, 1d, "b" ),
+      new Tuple( null, null, null )
+    };
+
+    ColumnBatch batch = new ColumnBatch( modelSchema, tuples.length );
+
+    for( Tuple tuple : tuples )
+      batch.add( new TupleEntry( modelSchema.getInputFields(), tuple ) );
+
+    List<Tree> trees = createTrees();
+
+    for( int i = 0; i < trees.size(); i++ )
+      {
+      CompiledDecisionTree compiledTree = new CompiledDecisionTree( categories, modelSchema.getInputFields(), trees.get( i ) );
+
+      for( int row = 0; row < tuples.length; row++ )
+        {
+        FinalDecision expected = compiledTree.decide( batch, row );
+        int node = image.decide( i, batch, row );
+
+        if( expected == null )
+          {
+          assertEquals( tuples[ row ].toString(), -1, node );
+          continue;
+          }
+
+        assertTrue( tuples[ row ].toString(), node != -1 );
+        assertEquals( tuples[ row ].toString(), expected.getIndex(), image.getCategoryIndex( i, node ) );
+        }
+      }
+    }
+
+  @Test
+  public void testNativeOrder() throws IOException
+    {
+    DataInputStream input = new DataInputStream( new FileInputStream( writeImage() ) );
+
+    try
+      {
+      input.readInt();
+      input.readInt();
+
+      int order = input.readByte();
+
+      assertEquals( ByteOrder.nativeOrder() == ByteOrder.LITTLE_ENDIAN ? 1 : 0, order );
+      }
+    finally
+      {
+      input.close();
+      }
+    }
+
+  @Test
+  public void testTruncated() throws IOException
+    {
+    File file = writeImage();
+
+    truncate( file, file.length() - 8 );
+    assertCorrupt( file );
+
+    file = writeImage();
+
+    truncate( file, 10 );
+    assertCorrupt( file );
+    }
+
+  @Test
+  public void testCorruptHeader() throws IOException
+    {
+    File file = writeImage();
+
+    overwrite( file, 0, new byte[]{0, 0, 0, 0} ); // magic
+    assertCorrupt( file );
+
+    file = writeImage();
+
+    overwrite( file, 8, new byte[]{7} ); // byte order
+    assertCorrupt( file );
+
+    file = writeImage();
+
+    overwrite( file, 9, new byte[]{-1, -1, -1, -1} ); // field count
+    assertCorrupt( file );
+    }
+
+  @Test
+  public void testCorruptNodes() throws IOException
+    {
+    int size = new CompiledDecisionTree( categories, modelSchema.getInputFields(), createTrees().get( 0 ) ).getNodeCount();
+
+    // the root points to itself as its first child
+    File file = writeImage();
+    long offset = readFirstOffset( file );
+
+    overwrite( file, offset + 24L * size, toBytes( 0 ) );
+    assertCorrupt( file );
+
+    // an operator outside the batch operators
+    file = writeImage();
+
+    overwrite( file, offset + 20L * size + 4, toBytes( CompiledDecisionTree.PREDICATE ) );
+    assertCorrupt( file );
+
+    // a field beyond the expected fields
+    file = writeImage();
+
+    overwrite( file, offset + 16L * size + 4, toBytes( 3 ) );
+    assertCorrupt( file );
+    }
+
+  private void assertCorrupt( File file ) throws IOException
+    {
+    try
+      {
+      MappedTreeImage.open( file );
+      fail( "opened corrupt image" );
+      }
+    catch( PatternException exception )
+      {
+      // expected
+      }
+    }
+
+  private static long readFirstOffset( File file ) throws IOException
+    {
+    DataInputStream input = new DataInputStream( new FileInputStream( file ) );
+
+    try
+      {
+      input.readInt();
+      input.readInt();
+      input.readByte();
+
+      for( int i = input.readInt(); i > 0; i-- )
+        input.readUTF();
+
+      for( int i = input.readInt(); i > 0; i-- )
+        input.readUTF();
+
+      input.readInt();
+
+      return input.readLong();
+      }
+    finally
+      {
+      input.close();
+      }
+    }
+
+  private static byte[] toBytes( int value )
+    {
+    return ByteBuffer.allocate( 4 ).order( ByteOrder.nativeOrder() ).putInt( value ).array();
+    }
+
+  private static void truncate( File file, long length ) throws IOException
+    {
+    RandomAccessFile randomAccessFile = new RandomAccessFile( file, "rw" );
+
+    try
+      {
+      randomAccessFile.setLength( length );
+      }
+    finally
+      {
+      randomAccessFile.close();
+      }
+    }
+
+  private static void overwrite( File file, long position, byte[] bytes ) throws IOException
+    {
+    RandomAccessFile randomAccessFile = new RandomAccessFile( file, "rw" );
+
+    try
+      {
+      randomAccessFile.seek( position );
+      randomAccessFile.write( bytes );
+      }
+    finally
+      {
+      randomAccessFile.close();
+      }
+    }
+  }
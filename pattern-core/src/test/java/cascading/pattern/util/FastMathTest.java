@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.util;
+
+import java.util.Random;
+
+import cascading.CascadingTestCase;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class FastMathTest extends CascadingTestCase
+  {
+  private static final double EXP_RELATIVE_ERROR = 1e-12d;
+  private static final double ATAN_ABSOLUTE_ERROR = 1e-10d;
+
+  public FastMathTest()
+    {
+    }
+
+  @Override
+  public void setUp() throws Exception
+    {
+    Logging.setLogLevel( this.getClass(), "cascading.pattern", "debug" );
+
+    super.setUp();
+    }
+
+  @Test
+  public void testExp()
+    {
+    // every result from subnormal through overflow
+    for( double value = -750d; value <= 712d; value += 0.0137d )
+      assertExp( value );
+
+    Random random = new Random( 1 );
+
+    for( int i = 0; i < 100000; i++ )
+      {
+      assertExp( ( random.nextDouble() * 2 - 1 ) * 745d );
+      assertExp( ( random.nextDouble() * 2 - 1 ) * 2d );
+      }
+
+    // arguments close to zero, also subnormal
+    double[] values = new double[]{
+      0d, -0d, Double.MIN_VALUE, -Double.MIN_VALUE, 1e-310d, -1e-310d, Double.MIN_NORMAL, -Double.MIN_NORMAL, 1e-20d, -1e-20d
+    };
+
+    for( double value : values )
+      assertExp( value );
+
+    // results close to the limits
+    values = new double[]{
+      709.78d, 709.79d, 710d, -708d, -708.4d, -708.5d, -720d, -745d, -745.2d, -746d, Math.log( Double.MAX_VALUE )
+    };
+
+    for( double value : values )
+      assertExp( value );
+
+    assertEquals( Double.POSITIVE_INFINITY, FastMath.exp( Double.POSITIVE_INFINITY ) );
+    assertEquals( Double.POSITIVE_INFINITY, FastMath.exp( Double.MAX_VALUE ) );
+    assertEquals( 0d, FastMath.exp( Double.NEGATIVE_INFINITY ) );
+    assertEquals( 0d, FastMath.exp( -Double.MAX_VALUE ) );
+    assertTrue( Double.isNaN( FastMath.exp( Double.NaN ) ) );
+    }
+
+  @Test
+  public void testAtan()
+    {
+    for( double value = -20d; value <= 20d; value += 0.00137d )
+      assertAtan( value );
+
+    Random random = new Random( 1 );
+
+    for( int i = 0; i < 100000; i++ )
+      {
+      assertAtan( ( random.nextDouble() * 2 - 1 ) * 2d );
+      assertAtan( ( random.nextDouble() * 2 - 1 ) * 1e6d );
+      assertAtan( ( random.nextDouble() * 2 - 1 ) * 1e300d );
+      }
+
+    // either side of the range reductions
+    double[] values = new double[]{2d - Math.sqrt( 3d ), 1d, Math.nextUp( 1d ), Math.sqrt( 3d ), 1e15d, 1e300d, Double.MAX_VALUE};
+
+    for( double value : values )
+      {
+      assertAtan( value );
+      assertAtan( -value );
+      }
+
+    // small values are their own arc tangent, keeping their sign
+    values = new double[]{Double.MIN_VALUE, 1e-310d, Double.MIN_NORMAL, 1e-20d};
+
+    for( double value : values )
+      {
+      assertEquals( value, FastMath.atan( value ) );
+      assertEquals( -value, FastMath.atan( -value ) );
+      }
+
+    assertEquals( Double.doubleToLongBits( 0d ), Double.doubleToLongBits( FastMath.atan( 0d ) ) );
+    assertEquals( Double.doubleToLongBits( -0d ), Double.doubleToLongBits( FastMath.atan( -0d ) ) );
+
+    assertEquals( Math.PI / 2, FastMath.atan( Double.POSITIVE_INFINITY ) );
+    assertEquals( -Math.PI / 2, FastMath.atan( Double.NEGATIVE_INFINITY ) );
+    assertTrue( Double.isNaN( FastMath.atan( Double.NaN ) ) );
+    }
+
+  @Test
+  public void testPow()
+    {
+    double[] bases = new double[]{2d, 3d, 0.5d, 0.1d, 1.1d, 10d, 1.0000001d, 123.456d, -2d, -0.5d, -1.1d, -123.456d};
+
+    for( double base : bases )
+      {
+      assertEquals( 1d, FastMath.pow( base, 0 ) );
+      assertEquals( base, FastMath.pow( base, 1 ) );
+      assertEquals( base * base, FastMath.pow( base, 2 ) );
+
+      for( long exponent = -70; exponent <= 70; exponent++ )
+        assertPow( base, exponent );
+
+      assertPow( base, 1000 );
+      assertPow( base, Long.MAX_VALUE );
+      assertPow( base, Long.MIN_VALUE );
+      }
+
+    Random random = new Random( 1 );
+
+    for( int i = 0; i < 100000; i++ )
+      {
+      // results stay normal, so the relative error is bounded
+      double base = Math.exp( ( random.nextDouble() * 2 - 1 ) * Math.log( 100d ) ) * ( random.nextBoolean() ? 1 : -1 );
+
+      assertPow( base, random.nextInt( 141 ) - 70 );
+      }
+
+    // the sign of odd powers of negative bases
+    assertEquals( -8d, FastMath.pow( -2d, 3 ) );
+    assertEquals( 16d, FastMath.pow( -2d, 4 ) );
+    assertEquals( -32d, FastMath.pow( -2d, 5 ) );
+    assertEquals( -0.125d, FastMath.pow( -2d, -3 ) );
+
+    // zero, keeping the sign of odd powers
+    assertEquals( 1d, FastMath.pow( 0d, 0 ) );
+    assertEquals( 1d, FastMath.pow( -0d, 0 ) );
+
+    for( long exponent = 1; exponent <= 70; exponent++ )
+      {
+      assertEquals( Double.doubleToLongBits( Math.pow( 0d, exponent ) ), Double.doubleToLongBits( FastMath.pow( 0d, exponent ) ) );
+      assertEquals( "-0^" + exponent, Double.doubleToLongBits( Math.pow( -0d, exponent ) ), Double.doubleToLongBits( FastMath.pow( -0d, exponent ) ) );
+      }
+
+    assertEquals( Double.POSITIVE_INFINITY, FastMath.pow( 0d, -1 ) );
+    assertEquals( Double.NEGATIVE_INFINITY, FastMath.pow( -0d, -1 ) );
+    assertEquals( Double.POSITIVE_INFINITY, FastMath.pow( -0d, -2 ) );
+
+    // overflow and underflow
+    assertEquals( Double.POSITIVE_INFINITY, FastMath.pow( 1e200d, 5 ) );
+    assertEquals( Double.NEGATIVE_INFINITY, FastMath.pow( -1e200d, 5 ) );
+    assertEquals( 0d, FastMath.pow( 1e-200d, 5 ) );
+    assertEquals( Double.POSITIVE_INFINITY, FastMath.pow( Double.NEGATIVE_INFINITY, 2 ) );
+    assertEquals( Double.NEGATIVE_INFINITY, FastMath.pow( Double.NEGATIVE_INFINITY, 3 ) );
+    assertEquals( 0d, FastMath.pow( Double.POSITIVE_INFINITY, -2 ) );
+
+    // NaN, except for an exponent of 0
+    assertEquals( 1d, FastMath.pow( Double.NaN, 0 ) );
+
+    for( long exponent : new long[]{1, 2, 3, 4, 64, 65, -1} )
+      assertTrue( Double.isNaN( FastMath.pow( Double.NaN, exponent ) ) );
+    }
+
+  private static void assertPow( double base, long exponent )
+    {
+    double expected = Math.pow( base, exponent );
+    double result = FastMath.pow( base, exponent );
+    String message = base + "^" + exponent;
+
+    // negative and large exponents are computed by Math.pow
+    if( exponent < 0 || exponent > FastMath.MAX_SQUARING_EXPONENT || Double.isInfinite( expected ) || expected == 0d )
+      assertEquals( message, expected, result );
+    else if( Math.abs( expected ) < Double.MIN_NORMAL )
+      assertEquals( message, expected, result, 4 * Double.MIN_VALUE );
+    else // every multiply adds at most half an ulp, squaring doubles the error so far
+      assertEquals( message, 1d, result / expected, ( exponent + 1 ) * Math.ulp( 1d ) );
+    }
+
+  private static void assertExp( double value )
+    {
+    double expected = Math.exp( value );
+    double result = FastMath.exp( value );
+
+    // subnormal results are computed by Math.exp
+    if( expected < Double.MIN_NORMAL || Double.isInfinite( expected ) )
+      assertEquals( "exp: " + value, expected, result );
+    else
+      assertEquals( "exp: " + value, 1d, result / expected, EXP_RELATIVE_ERROR );
+    }
+
+  private static void assertAtan( double value )
+    {
+    assertEquals( "atan: " + value, Math.atan( value ), FastMath.atan( value ), ATAN_ABSOLUTE_ERROR );
+    }
+  }
@@ -28,7 +28,7 @@ import cascading.operation.FunctionCall;
 import cascading.operation.OperationCall;
 import cascading.pattern.model.ModelSchema;
 import cascading.pattern.model.ModelScoringFunction;
-import cascading.pattern.model.tree.decision.DecisionTree;
+import cascading.pattern.model.tree.decision.CompiledDecisionTree;
 import cascading.pattern.model.tree.decision.FinalDecision;
 import cascading.tuple.Fields;
 import cascading.tuple.Tuple;
@@ -48,7 +48,7 @@ public class RandomForestFunction extends ModelScoringFunction<RandomForestSpec,
   protected static class DecisionContext
     {
     public String[] categories;
-    public DecisionTree[] trees;
+    public CompiledDecisionTree[] trees;
     public int[] results;
     }
 
@@ -79,7 +79,7 @@ public class RandomForestFunction extends ModelScoringFunction<RandomForestSpec,
 
     Fields argumentFields = operationCall.getArgumentFields();
     String[] categories = spec.getCategoriesArray();
-    DecisionTree[] decisionTrees = getSpec().getDecisionTrees( categories, argumentFields );
+    CompiledDecisionTree[] decisionTrees = getSpec().getCompiledDecisionTrees( categories, argumentFields );
 
     operationCall.getContext().payload = new DecisionContext();
     operationCall.getContext().payload.categories = categories;
@@ -97,7 +97,7 @@ public class RandomForestFunction extends ModelScoringFunction<RandomForestSpec,
 
     Arrays.fill( results, 0 ); // clear before use
 
-    DecisionTree[] decisionTrees = functionCall.getContext().payload.trees;
+    CompiledDecisionTree[] decisionTrees = functionCall.getContext().payload.trees;
 
     for( int i = 0; i < decisionTrees.length; i++ )
       {
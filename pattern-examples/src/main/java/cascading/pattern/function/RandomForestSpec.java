@@ -27,6 +27,7 @@ import cascading.pattern.ensemble.EnsembleSpec;
 import cascading.pattern.model.ModelSchema;
 import cascading.pattern.model.tree.Tree;
 import cascading.pattern.model.tree.TreeSpec;
+import cascading.pattern.model.tree.decision.CompiledDecisionTree;
 import cascading.pattern.model.tree.decision.DecisionTree;
 import cascading.tuple.Fields;
 
@@ -35,6 +36,10 @@ import cascading.tuple.Fields;
  */
 public class RandomForestSpec extends EnsembleSpec<TreeSpec>
   {
+  protected RandomForestSpec()
+    {
+    }
+
   public RandomForestSpec( ModelSchema modelSchema )
     {
     super( modelSchema );
@@ -70,4 +75,15 @@ public class RandomForestSpec extends EnsembleSpec<TreeSpec>
 
     return decisionTrees;
     }
+
+  public CompiledDecisionTree[] getCompiledDecisionTrees( String[] categories, Fields argumentFields )
+    {
+    List<Tree> trees = getTrees();
+    CompiledDecisionTree[] decisionTrees = new CompiledDecisionTree[ trees.size() ];
+
+    for( int i = 0; i < trees.size(); i++ )
+      decisionTrees[ i ] = trees.get( i ).compileDecisionTree( categories, argumentFields, false );
+
+    return decisionTrees;
+    }
   }
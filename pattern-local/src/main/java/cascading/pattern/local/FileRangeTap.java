@@ -0,0 +1,79 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.local;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.util.Properties;
+
+import cascading.flow.FlowProcess;
+import cascading.scheme.Scheme;
+import cascading.tap.SinkMode;
+import cascading.tap.local.FileTap;
+import cascading.tuple.TupleEntryIterator;
+
+/**
+ * Class FileRangeTap is a {@link FileTap} that only sources the lines of a file beginning within a given byte range.
+ * <p/>
+ * Lines are split on the newline character, so records in the file must not contain quoted line breaks.
+ */
+public class FileRangeTap extends FileTap
+  {
+  private final long start;
+  private final long end;
+
+  public FileRangeTap( Scheme scheme, String path, long start, long end )
+    {
+    super( scheme, path, SinkMode.KEEP );
+
+    if( start < 0 || end < start )
+      throw new IllegalArgumentException( "invalid range, start: " + start + ", end: " + end );
+
+    this.start = start;
+    this.end = end;
+    }
+
+  public long getStart()
+    {
+    return start;
+    }
+
+  public long getEnd()
+    {
+    return end;
+    }
+
+  @Override
+  public TupleEntryIterator openForRead( FlowProcess<Properties> flowProcess, InputStream input ) throws IOException
+    {
+    if( input == null )
+      input = new RangeInputStream( new File( getIdentifier() ), start, end );
+
+    return super.openForRead( flowProcess, input );
+    }
+
+  @Override
+  public String toString()
+    {
+    return super.toString() + "[" + start + "," + end + "]";
+    }
+  }
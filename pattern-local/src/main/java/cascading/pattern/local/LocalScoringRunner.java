@@ -0,0 +1,475 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.local;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.nio.channels.FileChannel;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.regex.Pattern;
+
+import cascading.flow.AssemblyPlanner;
+import cascading.flow.Flow;
+import cascading.flow.FlowDef;
+import cascading.flow.local.LocalFlowConnector;
+import cascading.pattern.PatternException;
+import cascading.pattern.model.ModelScoringFunction;
+import cascading.pipe.Each;
+import cascading.pipe.Pipe;
+import cascading.scheme.local.TextDelimited;
+import cascading.tap.SinkMode;
+import cascading.tap.Tap;
+import cascading.tap.local.FileTap;
+import cascading.tuple.Fields;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Class LocalScoringRunner scores one or more delimited text files on all the cores of a single machine.
+ * <p/>
+ * Every input file is split into byte ranges, and each range is scored by its own local mode {@link Flow} on a fixed
+ * pool of threads. The model is either planned by an {@link AssemblyPlanner}, like the
+ * {@code cascading.pattern.pmml.PMMLPlanner}, or given as a {@link ModelScoringFunction} built from any
+ * {@link cascading.pattern.model.Spec}. Either way every flow shares the same compiled model through the
+ * {@link cascading.pattern.model.ModelCache}.
+ * <p/>
+ * Each range is written to its own {@code part-NNNNN} file in the output directory, numbered in input order. Only the
+ * first part receives a header. If a merged output file is set, the parts are concatenated into it in order and
+ * then removed.
+ * <p/>
+ * Since ranges are split on line boundaries, records must not contain quoted line breaks. Every input file is
+ * expected to have a header if {@link #isHasHeader()} is {@code true}.
+ */
+public class LocalScoringRunner
+  {
+  private static final Logger LOG = LoggerFactory.getLogger( LocalScoringRunner.class );
+
+  public static final long DEFAULT_PARTITION_SIZE = 64L * 1024 * 1024;
+  public static final long MIN_PARTITION_SIZE = 1024L * 1024;
+
+  static class Partition
+    {
+    final int ordinal;
+    final File file;
+    final long start;
+    final long end;
+
+    Partition( int ordinal, File file, long start, long end )
+      {
+      this.ordinal = ordinal;
+      this.file = file;
+      this.start = start;
+      this.end = end;
+      }
+    }
+
+  private final List<File> inputFiles;
+  private final File outputDirectory;
+
+  private Fields inputFields;
+  private String delimiter = "\t";
+  private String quote;
+  private boolean hasHeader = true;
+  private int numThreads = Runtime.getRuntime().availableProcessors();
+  private long partitionSize = DEFAULT_PARTITION_SIZE;
+  private File mergedOutput;
+  private Map<Object, Object> properties = new Properties();
+
+  public LocalScoringRunner( File inputFile, File outputDirectory )
+    {
+    this( Arrays.asList( inputFile ), outputDirectory );
+    }
+
+  public LocalScoringRunner( List<File> inputFiles, File outputDirectory )
+    {
+    if( inputFiles == null || inputFiles.isEmpty() )
+      throw new IllegalArgumentException( "at least one input file is required" );
+
+    if( outputDirectory == null )
+      throw new IllegalArgumentException( "output directory may not be null" );
+
+    this.inputFiles = new ArrayList<File>( inputFiles );
+    this.outputDirectory = outputDirectory;
+    }
+
+  public Fields getInputFields()
+    {
+    return inputFields;
+    }
+
+  /**
+   * Sets the fields of the input files. If not set, the fields are read from the header of the first input file.
+   *
+   * @param inputFields the input fields
+   * @return this runner
+   */
+  public LocalScoringRunner setInputFields( Fields inputFields )
+    {
+    this.inputFields = inputFields;
+
+    return this;
+    }
+
+  public String getDelimiter()
+    {
+    return delimiter;
+    }
+
+  public LocalScoringRunner setDelimiter( String delimiter )
+    {
+    this.delimiter = delimiter;
+
+    return this;
+    }
+
+  public String getQuote()
+    {
+    return quote;
+    }
+
+  public LocalScoringRunner setQuote( String quote )
+    {
+    this.quote = quote;
+
+    return this;
+    }
+
+  public boolean isHasHeader()
+    {
+    return hasHeader;
+    }
+
+  public LocalScoringRunner setHasHeader( boolean hasHeader )
+    {
+    this.hasHeader = hasHeader;
+
+    return this;
+    }
+
+  public int getNumThreads()
+    {
+    return numThreads;
+    }
+
+  public LocalScoringRunner setNumThreads( int numThreads )
+    {
+    if( numThreads < 1 )
+      throw new IllegalArgumentException( "number of threads must be positive, got: " + numThreads );
+
+    this.numThreads = numThreads;
+
+    return this;
+    }
+
+  public long getPartitionSize()
+    {
+    return partitionSize;
+    }
+
+  /**
+   * Sets the maximum number of bytes of input scored by a single flow. Smaller inputs are split so every thread
+   * receives work, but never into ranges smaller than {@link #MIN_PARTITION_SIZE}.
+   *
+   * @param partitionSize the partition size in bytes
+   * @return this runner
+   */
+  public LocalScoringRunner setPartitionSize( long partitionSize )
+    {
+    if( partitionSize < 1 )
+      throw new IllegalArgumentException( "partition size must be positive, got: " + partitionSize );
+
+    this.partitionSize = partitionSize;
+
+    return this;
+    }
+
+  public File getMergedOutput()
+    {
+    return mergedOutput;
+    }
+
+  public LocalScoringRunner setMergedOutput( File mergedOutput )
+    {
+    this.mergedOutput = mergedOutput;
+
+    return this;
+    }
+
+  public Map<Object, Object> getProperties()
+    {
+    return properties;
+    }
+
+  public LocalScoringRunner setProperties( Map<Object, Object> properties )
+    {
+    this.properties = properties;
+
+    return this;
+    }
+
+  /**
+   * Method run scores every input file with the assembly planned by the given planner.
+   *
+   * @param planner the assembly planner
+   * @return the output files, in input order
+   */
+  public List<File> run( final AssemblyPlanner planner )
+    {
+    return run( new FlowDefFactory()
+    {
+    @Override
+    public FlowDef create( Tap source, Tap sink )
+      {
+      return FlowDef.flowDef()
+        .addSource( "input", source )
+        .addSink( "output", sink )
+        .addAssemblyPlanner( planner );
+      }
+    } );
+    }
+
+  /**
+   * Method run scores every input file with the given function, retaining all the incoming fields.
+   *
+   * @param function the scoring function
+   * @return the output files, in input order
+   */
+  public List<File> run( final ModelScoringFunction function )
+    {
+    final Fields argumentFields = function.getSpec().getModelSchema().getInputFields();
+
+    return run( new FlowDefFactory()
+    {
+    @Override
+    public FlowDef create( Tap source, Tap sink )
+      {
+      Pipe head = new Pipe( "input" );
+      Pipe tail = new Each( head, argumentFields, function, Fields.ALL );
+
+      return FlowDef.flowDef()
+        .addSource( head, source )
+        .addTailSink( tail, sink );
+      }
+    } );
+    }
+
+  private interface FlowDefFactory
+    {
+    FlowDef create( Tap source, Tap sink );
+    }
+
+  private List<File> run( final FlowDefFactory factory )
+    {
+    final Fields fields = inputFields != null ? inputFields : readHeader( inputFiles.get( 0 ) );
+    List<Partition> partitions = createPartitions();
+
+    if( !outputDirectory.exists() && !outputDirectory.mkdirs() )
+      throw new PatternException( "unable to create output directory: " + outputDirectory );
+
+    LOG.info( "scoring {} partitions with {} threads", partitions.size(), numThreads );
+
+    ExecutorService executor = Executors.newFixedThreadPool( numThreads );
+    List<Future<File>> futures = new ArrayList<Future<File>>();
+
+    for( final Partition partition : partitions )
+      {
+      futures.add( executor.submit( new Callable<File>()
+      {
+      @Override
+      public File call() throws Exception
+        {
+        return score( factory, fields, partition );
+        }
+      } ) );
+      }
+
+    executor.shutdown();
+
+    List<File> outputs = new ArrayList<File>();
+
+    try
+      {
+      for( Future<File> future : futures )
+        outputs.add( future.get() );
+      }
+    catch( ExecutionException exception )
+      {
+      executor.shutdownNow();
+      throw new PatternException( "failed scoring partition", exception.getCause() );
+      }
+    catch( InterruptedException exception )
+      {
+      executor.shutdownNow();
+      Thread.currentThread().interrupt();
+      throw new PatternException( "interrupted while scoring", exception );
+      }
+
+    if( mergedOutput == null )
+      return outputs;
+
+    merge( outputs, mergedOutput );
+
+    return Collections.singletonList( mergedOutput );
+    }
+
+  private File score( FlowDefFactory factory, Fields fields, Partition partition )
+    {
+    boolean skipHeader = hasHeader && partition.start == 0;
+    boolean writeHeader = hasHeader && partition.ordinal == 0;
+
+    Tap source = new FileRangeTap( new TextDelimited( fields, skipHeader, false, delimiter, quote ), partition.file.getPath(), partition.start, partition.end );
+
+    File output = new File( outputDirectory, String.format( "part-%05d", partition.ordinal ) );
+    Tap sink = new FileTap( new TextDelimited( Fields.ALL, false, writeHeader, delimiter, quote ), output.getPath(), SinkMode.REPLACE );
+
+    FlowDef flowDef = factory.create( source, sink ).setName( "score " + output.getName() );
+
+    Flow flow;
+
+    // planners are not required to be thread-safe, so only the flows run concurrently
+    synchronized( this )
+      {
+      flow = new LocalFlowConnector( properties ).connect( flowDef );
+      }
+
+    flow.complete();
+
+    return output;
+    }
+
+  List<Partition> createPartitions()
+    {
+    long total = 0;
+
+    for( File file : inputFiles )
+      total += file.length();
+
+    long size = Math.min( partitionSize, Math.max( MIN_PARTITION_SIZE, ( total + numThreads - 1 ) / numThreads ) );
+
+    List<Partition> partitions = new ArrayList<Partition>();
+
+    for( File file : inputFiles )
+      {
+      if( !file.isFile() )
+        throw new PatternException( "input is not a file: " + file );
+
+      long length = file.length();
+
+      for( long start = 0; start < length; start += size )
+        partitions.add( new Partition( partitions.size(), file, start, Math.min( start + size, length ) ) );
+      }
+
+    return partitions;
+    }
+
+  private Fields readHeader( File file )
+    {
+    if( !hasHeader )
+      throw new IllegalStateException( "input fields must be set if the input has no header" );
+
+    String line;
+
+    try
+      {
+      BufferedReader reader = new BufferedReader( new InputStreamReader( new FileInputStream( file ), "UTF-8" ) );
+
+      try
+        {
+        line = reader.readLine();
+        }
+      finally
+        {
+        reader.close();
+        }
+      }
+    catch( IOException exception )
+      {
+      throw new PatternException( "unable to read header from: " + file, exception );
+      }
+
+    if( line == null )
+      throw new PatternException( "no header found in: " + file );
+
+    String[] names = line.split( Pattern.quote( delimiter ), -1 );
+
+    for( int i = 0; i < names.length; i++ )
+      {
+      if( quote != null && names[ i ].length() > 1 && names[ i ].startsWith( quote ) && names[ i ].endsWith( quote ) )
+        names[ i ] = names[ i ].substring( quote.length(), names[ i ].length() - quote.length() );
+      }
+
+    return new Fields( names );
+    }
+
+  private void merge( List<File> parts, File output )
+    {
+    try
+      {
+      FileChannel target = new FileOutputStream( output ).getChannel();
+
+      try
+        {
+        for( File part : parts )
+          {
+          FileChannel source = new FileInputStream( part ).getChannel();
+
+          try
+            {
+            long position = 0;
+            long size = source.size();
+
+            while( position < size )
+              position += source.transferTo( position, size - position, target );
+            }
+          finally
+            {
+            source.close();
+            }
+
+          if( !part.delete() )
+            LOG.warn( "unable to remove merged part: {}", part );
+          }
+        }
+      finally
+        {
+        target.close();
+        }
+      }
+    catch( IOException exception )
+      {
+      throw new PatternException( "unable to merge output into: " + output, exception );
+      }
+    }
+  }
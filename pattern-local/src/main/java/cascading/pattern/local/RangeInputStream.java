@@ -0,0 +1,146 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.local;
+
+import java.io.BufferedInputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Class RangeInputStream returns every line of a file that begins within the given byte range.
+ * <p/>
+ * A line beginning before the start of the range is skipped, and the line spanning the end of the range is read to
+ * its end, so a set of adjacent ranges covering a file returns every line exactly once.
+ */
+class RangeInputStream extends InputStream
+  {
+  private static final int BUFFER_SIZE = 64 * 1024;
+
+  private final InputStream input;
+  private final long end;
+  private final byte[] single = new byte[ 1 ];
+
+  private long position;
+  private boolean isLineStart = true;
+  private boolean isComplete;
+
+  RangeInputStream( File file, long start, long end ) throws IOException
+    {
+    FileInputStream stream = new FileInputStream( file );
+
+    this.end = end;
+
+    if( start == 0 )
+      {
+      this.input = new BufferedInputStream( stream, BUFFER_SIZE );
+      return;
+      }
+
+    // back up one byte so a line starting exactly at start is kept
+    stream.getChannel().position( start - 1 );
+
+    this.input = new BufferedInputStream( stream, BUFFER_SIZE );
+    this.position = start - 1;
+
+    int value;
+
+    while( ( value = input.read() ) != -1 )
+      {
+      position++;
+
+      if( value == '\n' )
+        break;
+      }
+
+    isComplete = value == -1;
+    }
+
+  @Override
+  public int read() throws IOException
+    {
+    int count = read( single, 0, 1 );
+
+    return count == -1 ? -1 : single[ 0 ] & 0xff;
+    }
+
+  @Override
+  public int read( byte[] bytes, int offset, int length ) throws IOException
+    {
+    if( isComplete )
+      return -1;
+
+    if( length == 0 )
+      return 0;
+
+    if( position < end )
+      {
+      int count = input.read( bytes, offset, (int) Math.min( length, end - position ) );
+
+      if( count == -1 )
+        {
+        isComplete = true;
+        return -1;
+        }
+
+      position += count;
+      isLineStart = bytes[ offset + count - 1 ] == '\n';
+
+      return count;
+      }
+
+    // the next line belongs to the following range
+    if( isLineStart )
+      {
+      isComplete = true;
+      return -1;
+      }
+
+    // finish the line spanning the end of the range
+    int count = 0;
+
+    while( count < length )
+      {
+      int value = input.read();
+
+      if( value == -1 || value == '\n' )
+        isComplete = true;
+
+      if( value == -1 )
+        break;
+
+      bytes[ offset + count++ ] = (byte) value;
+      position++;
+
+      if( isComplete )
+        break;
+      }
+
+    return count == 0 ? -1 : count;
+    }
+
+  @Override
+  public void close() throws IOException
+    {
+    input.close();
+    }
+  }
@@ -0,0 +1,105 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.local;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+import cascading.CascadingTestCase;
+import cascading.flow.local.LocalFlowProcess;
+import cascading.scheme.local.TextDelimited;
+import cascading.tuple.Fields;
+import cascading.tuple.TupleEntry;
+import cascading.tuple.TupleEntryIterator;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class FileRangeTapTest extends CascadingTestCase
+  {
+  private static final Fields FIELDS = new Fields( "id", "value" );
+
+  public FileRangeTapTest()
+    {
+    }
+
+  @Test
+  public void testInvalidRange()
+    {
+    try
+      {
+      new FileRangeTap( new TextDelimited( FIELDS, false, false, "\t", null ), "input", 10, 5 );
+      fail( "accepted invalid range" );
+      }
+    catch( IllegalArgumentException exception )
+      {
+      // expected
+      }
+    }
+
+  @Test
+  public void testRanges() throws IOException
+    {
+    StringBuilder builder = new StringBuilder( "id\tvalue\n" );
+    List<String> expected = new ArrayList<String>();
+
+    for( int i = 0; i < 50; i++ )
+      {
+      builder.append( i ).append( "\tv" ).append( i ).append( i % 2 == 0 ? "\r\n" : "\n" );
+      expected.add( Integer.toString( i ) );
+      }
+
+    File file = RangeInputStreamTest.writeFile( builder.toString() );
+
+    for( int size : new int[]{1, 7, 9, 10, 64, (int) file.length()} )
+      {
+      List<String> result = new ArrayList<String>();
+
+      for( long start = 0; start < file.length(); start += size )
+        {
+        FileRangeTap tap = new FileRangeTap( new TextDelimited( FIELDS, start == 0, false, "\t", null ), file.getPath(), start, Math.min( start + size, file.length() ) );
+        TupleEntryIterator iterator = tap.openForRead( new LocalFlowProcess() );
+
+        try
+          {
+          while( iterator.hasNext() )
+            {
+            TupleEntry entry = iterator.next();
+
+            // the line separator, including a carriage return, is not part of the last field
+            assertEquals( "v" + entry.getString( "id" ), entry.getString( "value" ) );
+
+            result.add( entry.getString( "id" ) );
+            }
+          }
+        finally
+          {
+          iterator.close();
+          }
+        }
+
+      assertEquals( "range size: " + size, expected, result );
+      }
+    }
+  }
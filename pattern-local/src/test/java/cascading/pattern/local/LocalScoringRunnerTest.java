@@ -0,0 +1,150 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.local;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import cascading.CascadingTestCase;
+import cascading.pattern.model.tree.TreeFunction;
+import cascading.pattern.util.Logging;
+import org.junit.Test;
+
+import static cascading.pattern.model.SpecFixtures.createSplitTreeSpec;
+
+/**
+ *
+ */
+public class LocalScoringRunnerTest extends CascadingTestCase
+  {
+  public LocalScoringRunnerTest()
+    {
+    }
+
+  @Override
+  public void setUp() throws Exception
+    {
+    Logging.setLogLevel( this.getClass(), "cascading.pattern", "debug" );
+
+    super.setUp();
+    }
+
+  @Test
+  public void testPartitions() throws IOException
+    {
+    File first = RangeInputStreamTest.writeFile( createInput( 0, 20, false ) );
+    File second = RangeInputStreamTest.writeFile( createInput( 20, 5, false ) );
+
+    LocalScoringRunner runner = new LocalScoringRunner( Arrays.asList( first, second ), new File( "output" ) )
+      .setPartitionSize( 16 );
+
+    List<LocalScoringRunner.Partition> partitions = runner.createPartitions();
+
+    long[] expected = new long[]{0, 0};
+
+    for( int i = 0; i < partitions.size(); i++ )
+      {
+      LocalScoringRunner.Partition partition = partitions.get( i );
+      int file = partition.file.equals( first ) ? 0 : 1;
+
+      assertEquals( i, partition.ordinal );
+      assertEquals( expected[ file ], partition.start ); // adjacent, so every byte is in one range
+      assertTrue( partition.end - partition.start <= 16 );
+
+      expected[ file ] = partition.end;
+      }
+
+    assertEquals( first.length(), expected[ 0 ] );
+    assertEquals( second.length(), expected[ 1 ] );
+    }
+
+  @Test
+  public void testScoreEveryLineOnce() throws IOException
+    {
+    File first = RangeInputStreamTest.writeFile( createInput( 0, 200, false ) );
+    File second = RangeInputStreamTest.writeFile( createInput( 200, 100, true ) );
+    File output = createDirectory();
+    File merged = new File( output, "merged.tsv" );
+
+    LocalScoringRunner runner = new LocalScoringRunner( Arrays.asList( first, second ), output )
+      .setPartitionSize( 100 ) // a range per few lines, most lines crossing a range boundary
+      .setNumThreads( 4 )
+      .setMergedOutput( merged );
+
+    assertEquals( Arrays.asList( merged ), runner.run( new TreeFunction( createSplitTreeSpec() ) ) );
+
+    BufferedReader reader = new BufferedReader( new InputStreamReader( new FileInputStream( merged ), "UTF-8" ) );
+    Map<String, String> labels = new HashMap<String, String>();
+
+    try
+      {
+      // a single header, though every input has one
+      assertEquals( "id\tvar0\tlabel", reader.readLine() );
+
+      String line;
+
+      while( ( line = reader.readLine() ) != null )
+        {
+        String[] values = line.split( "\t" );
+
+        assertNull( "scored twice: " + values[ 0 ], labels.put( values[ 0 ], values[ 2 ] ) );
+        }
+      }
+    finally
+      {
+      reader.close();
+      }
+
+    assertEquals( 300, labels.size() );
+
+    for( int i = 0; i < 300; i++ )
+      assertEquals( Integer.toString( i ), i % 4 < 2 ? "1" : "0", labels.get( Integer.toString( i ) ) );
+    }
+
+  private static File createDirectory() throws IOException
+    {
+    File directory = File.createTempFile( "scoring", "" );
+
+    if( !directory.delete() || !directory.mkdir() )
+      throw new IOException( "unable to create directory: " + directory );
+
+    directory.deleteOnExit();
+
+    return directory;
+    }
+
+  private static String createInput( int first, int count, boolean isCRLF )
+    {
+    StringBuilder builder = new StringBuilder( "id\tvar0" ).append( isCRLF ? "\r\n" : "\n" );
+
+    for( int i = first; i < first + count; i++ )
+      builder.append( i ).append( '\t' ).append( i % 4 < 2 ? "0.25" : "0.75" ).append( isCRLF ? "\r\n" : "\n" );
+
+    return builder.toString();
+    }
+  }
@@ -0,0 +1,177 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.local;
+
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+import cascading.CascadingTestCase;
+import org.junit.Test;
+
+/**
+ *
+ */
+public class RangeInputStreamTest extends CascadingTestCase
+  {
+  public RangeInputStreamTest()
+    {
+    }
+
+  @Test
+  public void testLineAtBoundary() throws IOException
+    {
+    File file = writeFile( "aa\nbb\ncc\n" );
+
+    assertEquals( "aa\n", read( file, 0, 3 ) );
+    assertEquals( "bb\n", read( file, 3, 6 ) );
+    assertEquals( "cc\n", read( file, 6, 9 ) );
+
+    // a line starting exactly at the end of a range belongs to the next range
+    assertEquals( "aa\n", read( file, 0, 2 ) );
+    assertEquals( "", read( file, 2, 3 ) );
+    assertEquals( "bb\n", read( file, 3, 4 ) );
+    assertEquals( "bb\ncc\n", read( file, 3, 9 ) );
+    }
+
+  @Test
+  public void testLongLine() throws IOException
+    {
+    StringBuilder builder = new StringBuilder( "a\n" );
+
+    for( int i = 0; i < 100; i++ )
+      builder.append( 'b' );
+
+    String longLine = builder.append( '\n' ).toString();
+    File file = writeFile( "a\n" + longLine + "c\n" );
+
+    // the range holding the start of the long line reads all of it
+    assertEquals( "a\n" + longLine, read( file, 0, 10 ) );
+
+    for( int start = 10; start < 100; start += 10 )
+      assertEquals( "", read( file, start, start + 10 ) );
+
+    assertEquals( "c\n", read( file, 100, file.length() ) );
+
+    assertEveryLineOnce( file );
+    }
+
+  @Test
+  public void testCRLF() throws IOException
+    {
+    File file = writeFile( "a\tb\r\nc\td\r\ne\tf\r\n" );
+
+    assertEquals( "a\tb\r\n", read( file, 0, 4 ) );
+    assertEquals( "c\td\r\n", read( file, 4, 6 ) );
+    assertEquals( "c\td\r\ne\tf\r\n", read( file, 5, file.length() ) );
+
+    assertEveryLineOnce( file );
+    }
+
+  @Test
+  public void testNoTrailingNewline() throws IOException
+    {
+    File file = writeFile( "aa\nbb\ncc" );
+
+    assertEquals( "cc", read( file, 6, file.length() ) );
+    assertEquals( "bb\ncc", read( file, 3, file.length() ) );
+    assertEquals( "cc", read( file, 4, file.length() ) );
+
+    assertEveryLineOnce( file );
+    }
+
+  @Test
+  public void testEveryLineOnce() throws IOException
+    {
+    StringBuilder builder = new StringBuilder();
+
+    for( int i = 0; i < 200; i++ )
+      {
+      builder.append( i ).append( '\t' );
+
+      for( int j = 0; j < i % 17; j++ )
+        builder.append( 'x' );
+
+      builder.append( i % 3 == 0 ? "\r\n" : "\n" );
+      }
+
+    assertEveryLineOnce( writeFile( builder.toString() ) );
+    }
+
+  /** Checks that adjacent ranges of every size return each line of the file exactly once, in order. */
+  private void assertEveryLineOnce( File file ) throws IOException
+    {
+    String expected = read( file, 0, file.length() );
+
+    for( int size = 1; size <= file.length(); size++ )
+      {
+      StringBuilder result = new StringBuilder();
+
+      for( long start = 0; start < file.length(); start += size )
+        result.append( read( file, start, Math.min( start + size, file.length() ) ) );
+
+      assertEquals( "range size: " + size, expected, result.toString() );
+      }
+    }
+
+  private static String read( File file, long start, long end ) throws IOException
+    {
+    InputStream input = new RangeInputStream( file, start, end );
+    ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+    try
+      {
+      byte[] bytes = new byte[ 7 ]; // smaller than most lines, so lines are read across calls
+      int count;
+
+      while( ( count = input.read( bytes, 0, bytes.length ) ) != -1 )
+        output.write( bytes, 0, count );
+      }
+    finally
+      {
+      input.close();
+      }
+
+    return output.toString( "UTF-8" );
+    }
+
+  static File writeFile( String content ) throws IOException
+    {
+    File file = File.createTempFile( "range", ".txt" );
+
+    file.deleteOnExit();
+
+    FileOutputStream output = new FileOutputStream( file );
+
+    try
+      {
+      output.write( content.getBytes( "UTF-8" ) );
+      }
+    finally
+      {
+      output.close();
+      }
+
+    return file;
+    }
+  }
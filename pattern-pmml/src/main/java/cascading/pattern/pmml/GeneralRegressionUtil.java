@@ -25,6 +25,7 @@ import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Set;
 
+import cascading.pattern.model.ModelSchema;
 import cascading.pattern.model.generalregression.RegressionTable;
 import cascading.pattern.model.generalregression.predictor.CovariantPredictor;
 import cascading.pattern.model.generalregression.predictor.FactorPredictor;
@@ -44,7 +45,7 @@ class GeneralRegressionUtil
   {
   private static final Logger LOG = LoggerFactory.getLogger( GeneralRegressionUtil.class );
 
-  public static RegressionTable createPPMatrix( GeneralRegressionModel model, Set<String> parameterList, Set<String> factorsList, Set<String> covariateList )
+  public static RegressionTable createPPMatrix( ModelSchema modelSchema, GeneralRegressionModel model, Set<String> parameterList, Set<String> factorsList, Set<String> covariateList, boolean encode )
     {
     RegressionTable regressionTable = new RegressionTable();
 
@@ -66,7 +67,7 @@ class GeneralRegressionUtil
       cascading.pattern.model.generalregression.predictor.Predictor predictor;
 
       if( factorsList.contains( predictorName ) )
-        predictor = new FactorPredictor( predictorName, value );
+        predictor = new FactorPredictor( predictorName, value, encode ? modelSchema.getCategoryIndex( predictorName ) : null );
       else if( covariateList.contains( predictorName ) )
         predictor = new CovariantPredictor( predictorName, Long.parseLong( value ) );
       else
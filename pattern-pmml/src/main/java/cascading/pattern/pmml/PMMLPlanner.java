@@ -27,18 +27,24 @@ import java.io.InputStream;
 import java.lang.reflect.Type;
 import java.util.ArrayList;
 import java.util.Arrays;
+import java.util.LinkedHashMap;
 import java.util.LinkedList;
 import java.util.List;
+import java.util.Map;
 import java.util.Set;
 
 import cascading.flow.AssemblyPlanner;
 import cascading.flow.planner.PlannerException;
 import cascading.pattern.PatternException;
+import cascading.pattern.datafield.CategoricalDataField;
+import cascading.pattern.datafield.CategoricalDecoder;
+import cascading.pattern.datafield.CategoricalEncoder;
 import cascading.pattern.datafield.ContinuousDataField;
+import cascading.pattern.ensemble.EnsembleFunction;
 import cascading.pattern.ensemble.EnsembleSpec;
-import cascading.pattern.ensemble.ParallelEnsembleAssembly;
 import cascading.pattern.ensemble.selection.SelectionStrategy;
 import cascading.pattern.model.ModelSchema;
+import cascading.pattern.model.ModelScorer;
 import cascading.pattern.model.ModelScoringFunction;
 import cascading.pattern.model.clustering.ClusteringFunction;
 import cascading.pattern.model.clustering.ClusteringSpec;
@@ -47,10 +53,12 @@ import cascading.pattern.model.clustering.measure.SquaredEuclideanMeasure;
 import cascading.pattern.model.generalregression.CategoricalRegressionFunction;
 import cascading.pattern.model.generalregression.GeneralRegressionSpec;
 import cascading.pattern.model.generalregression.LinkFunction;
+import cascading.pattern.model.generalregression.NumericMode;
 import cascading.pattern.model.generalregression.PredictionRegressionFunction;
 import cascading.pattern.model.generalregression.RegressionTable;
 import cascading.pattern.model.tree.Tree;
 import cascading.pattern.model.tree.TreeFunction;
+import cascading.pattern.model.tree.TreeProfile;
 import cascading.pattern.model.tree.TreeSpec;
 import cascading.pipe.Each;
 import cascading.pipe.Pipe;
@@ -124,6 +132,11 @@ public class PMMLPlanner implements AssemblyPlanner
   private PMMLModel pmmlModel;
   private Fields retainIncomingFields;
   private Fields defaultPredictedField;
+  private boolean encodeCategoricalFields = false;
+  private boolean generateTreeCode = false;
+  private TreeProfile treeProfile;
+  private boolean explain = false;
+  private NumericMode numericMode = NumericMode.EXACT;
 
   /**
    * Instantiates a new PMML planner.
@@ -288,6 +301,108 @@ public class PMMLPlanner implements AssemblyPlanner
     return this;
     }
 
+  public boolean isEncodeCategoricalFields()
+    {
+    return encodeCategoricalFields;
+    }
+
+  /**
+   * Sets whether the values of active categorical string fields should be replaced by the ordinal of the value
+   * within the declared categories before the models are applied, so each model compares ordinals instead
+   * of strings. The original values are restored after all models have been applied.
+   * <p/>
+   * Values that are not a declared category are passed to the models unchanged. By default this is {@code false}.
+   *
+   * @param encodeCategoricalFields true if categorical fields should be encoded
+   * @return the pMML planner
+   */
+  public PMMLPlanner setEncodeCategoricalFields( boolean encodeCategoricalFields )
+    {
+    this.encodeCategoricalFields = encodeCategoricalFields;
+
+    return this;
+    }
+
+  public boolean isGenerateTreeCode()
+    {
+    return generateTreeCode;
+    }
+
+  /**
+   * Sets whether tree and tree ensemble models should be compiled into Java bytecode when the scoring function
+   * is prepared, see {@link TreeSpec#setGenerateCode(boolean)}. By default this is {@code false}.
+   *
+   * @param generateTreeCode true if tree bytecode should be generated
+   * @return the pMML planner
+   */
+  public PMMLPlanner setGenerateTreeCode( boolean generateTreeCode )
+    {
+    this.generateTreeCode = generateTreeCode;
+
+    return this;
+    }
+
+  public TreeProfile getTreeProfile()
+    {
+    return treeProfile;
+    }
+
+  /**
+   * Sets the node profile of a tree model, gathered by a profiling run with the
+   * {@link cascading.pattern.model.metrics.ScoringMetrics#METRICS_NODES} property enabled. If set, the children
+   * of every tree node are reordered to test the most frequently taken child first, see
+   * {@link Tree#reorder(TreeProfile)}. Trees within ensembles are not reordered.
+   *
+   * @param treeProfile the tree profile
+   * @return the pMML planner
+   */
+  public PMMLPlanner setTreeProfile( TreeProfile treeProfile )
+    {
+    this.treeProfile = treeProfile;
+
+    return this;
+    }
+
+  public boolean isExplain()
+    {
+    return explain;
+    }
+
+  /**
+   * Sets whether tree, regression and clustering models should append the fields explaining each score to their
+   * results, the leaf and path of a tree, the contribution of every regression parameter, or the distance to every
+   * cluster, see {@link cascading.pattern.model.Spec#getExplanationFields()}. Ensemble models are not explained.
+   * By default this is {@code false}.
+   *
+   * @param explain true if scores should be explained
+   * @return the pMML planner
+   */
+  public PMMLPlanner setExplain( boolean explain )
+    {
+    this.explain = explain;
+
+    return this;
+    }
+
+  public NumericMode getNumericMode()
+    {
+    return numericMode;
+    }
+
+  /**
+   * Sets how regression models evaluate their link function and normalization, see {@link NumericMode}.
+   * By default this is {@link NumericMode#EXACT}.
+   *
+   * @param numericMode the numeric mode
+   * @return the pMML planner
+   */
+  public PMMLPlanner setNumericMode( NumericMode numericMode )
+    {
+    this.numericMode = numericMode;
+
+    return this;
+    }
+
   /**
    * Retain only active incoming fields as declared by the PMML. All other fields
    * in the incoming source Tap will be discarded.
@@ -505,6 +620,17 @@ public class PMMLPlanner implements AssemblyPlanner
     if( getRetainIncomingFields() != null )
       tail = new Retain( tail, getRetainIncomingFields() );
 
+    List<CategoricalDataField> encodedFields = getEncodedFields();
+
+    if( !encodedFields.isEmpty() )
+      {
+      CategoricalEncoder encoder = new CategoricalEncoder( encodedFields );
+
+      tail = new Each( tail, encoder.getFieldDeclaration(), encoder, Fields.REPLACE );
+      }
+
+    int count = 0;
+
     for( Model model : getPMMLModel().getModels() )
       {
       if( !model.isScorable() )
@@ -513,35 +639,117 @@ public class PMMLPlanner implements AssemblyPlanner
         continue;
         }
 
-      if( model instanceof MiningModel )
-        tail = handleMiningModel( tail, (MiningModel) model );
-      else if( model instanceof ClusteringModel )
-        tail = handleClusteringModel( tail, (ClusteringModel) model );
-      else if( model instanceof RegressionModel )
-        tail = handleRegressionModel( tail, (RegressionModel) model );
-      else if( model instanceof GeneralRegressionModel )
-        tail = handleGeneralRegressionModel( tail, (GeneralRegressionModel) model );
-      else if( model instanceof TreeModel )
-        tail = handleTreeModel( tail, (TreeModel) model );
-      else
-        throw new PatternException( "unsupported model type: " + model.getClass().getName() );
+      ModelScoringFunction function = createFunction( model );
+
+      // distinguishes the metrics of each model in a multi-model assembly
+      function.setMetricsName( createMetricsName( model, count++ ) );
+
+      tail = create( tail, function );
+      }
+
+    if( !encodedFields.isEmpty() )
+      {
+      CategoricalDecoder decoder = new CategoricalDecoder( encodedFields );
+
+      tail = new Each( tail, decoder.getFieldDeclaration(), decoder, Fields.REPLACE );
       }
 
     return tail;
     }
 
-  private Pipe handleTreeModel( Pipe tail, TreeModel model )
+  /**
+   * Method createModelScorer returns a {@link ModelScorer} for the single scorable model in the given PMML, for
+   * scoring records outside of a Cascading flow. The scorer returns the same results as the planned assembly.
+   * <p/>
+   * Categorical field encoding is not supported by the scorer, and explanations, see {@link #setExplain(boolean)},
+   * are not returned.
+   *
+   * @return the model scorer
+   */
+  public ModelScorer createModelScorer()
+    {
+    if( isEncodeCategoricalFields() )
+      throw new UnsupportedOperationException( "categorical field encoding is not supported when scoring outside of a flow" );
+
+    ModelScoringFunction function = null;
+
+    for( Model model : getPMMLModel().getModels() )
+      {
+      if( !model.isScorable() )
+        continue;
+
+      if( function != null )
+        throw new PatternException( "only a single scorable model is supported, use resolveAssembly for chained models" );
+
+      function = createFunction( model );
+      }
+
+    if( function == null )
+      throw new PatternException( "no scorable model found" );
+
+    return new ModelScorer( function );
+    }
+
+  private static String createMetricsName( Model model, int index )
+    {
+    if( model.getModelName() != null )
+      return model.getModelName();
+
+    return model.getClass().getSimpleName() + "-" + index;
+    }
+
+  private ModelScoringFunction createFunction( Model model )
+    {
+    if( model instanceof MiningModel )
+      return createMiningFunction( (MiningModel) model );
+    else if( model instanceof ClusteringModel )
+      return createClusteringFunction( (ClusteringModel) model );
+    else if( model instanceof RegressionModel )
+      return createRegressionFunction( (RegressionModel) model );
+    else if( model instanceof GeneralRegressionModel )
+      return createGeneralRegressionFunction( (GeneralRegressionModel) model );
+    else if( model instanceof TreeModel )
+      return createTreeFunction( (TreeModel) model );
+    else
+      throw new PatternException( "unsupported model type: " + model.getClass().getName() );
+    }
+
+  private List<CategoricalDataField> getEncodedFields()
+    {
+    Map<String, CategoricalDataField> dataFields = new LinkedHashMap<String, CategoricalDataField>();
+
+    if( !isEncodeCategoricalFields() )
+      return new ArrayList<CategoricalDataField>();
+
+    for( Model model : getPMMLModel().getModels() )
+      {
+      if( !model.isScorable() )
+        continue;
+
+      for( CategoricalDataField dataField : createModelSchema( model ).getEncodableFields() )
+        dataFields.put( dataField.getName(), dataField );
+      }
+
+    return new ArrayList<CategoricalDataField>( dataFields.values() );
+    }
+
+  private ModelScoringFunction createTreeFunction( TreeModel model )
     {
     ModelSchema modelSchema = createModelSchema( model );
 
-    Tree tree = createTree( model, modelSchema );
+    Tree tree = createTree( model, modelSchema, isEncodeCategoricalFields() );
+
+    if( treeProfile != null )
+      tree = tree.reorder( treeProfile );
 
     TreeSpec treeSpec = new TreeSpec( modelSchema, tree );
 
-    return create( tail, modelSchema, new TreeFunction( treeSpec ) );
+    treeSpec.setGenerateCode( generateTreeCode );
+
+    return new TreeFunction( treeSpec, false, ModelScoringFunction.SAFE_DEFAULT, explain );
     }
 
-  private Pipe handleGeneralRegressionModel( Pipe tail, GeneralRegressionModel model )
+  private ModelScoringFunction createGeneralRegressionFunction( GeneralRegressionModel model )
     {
     ModelSchema modelSchema = createModelSchema( model );
 
@@ -549,27 +757,29 @@ public class PMMLPlanner implements AssemblyPlanner
     Set<String> covariateList = GeneralRegressionUtil.createCovariates( model );
     Set<String> factorsList = GeneralRegressionUtil.createFactors( model );
 
-    RegressionTable regressionTable = GeneralRegressionUtil.createPPMatrix( model, parameterList, factorsList, covariateList );
+    RegressionTable regressionTable = GeneralRegressionUtil.createPPMatrix( modelSchema, model, parameterList, factorsList, covariateList, isEncodeCategoricalFields() );
 
     LinkFunction linkFunction = LinkFunction.getFunction( model.getLinkFunction().value() );
 
     GeneralRegressionSpec modelParam = new GeneralRegressionSpec( modelSchema, regressionTable, linkFunction );
 
-    return create( tail, modelSchema, new PredictionRegressionFunction( modelParam ) );
+    modelParam.setNumericMode( numericMode );
+
+    return new PredictionRegressionFunction( modelParam, explain );
     }
 
-  private Pipe handleRegressionModel( Pipe tail, RegressionModel model )
+  private ModelScoringFunction createRegressionFunction( RegressionModel model )
     {
     if( model.getFunctionName() == MiningFunctionType.REGRESSION )
-      return handlePredictionRegressionModel( tail, model );
+      return createPredictionRegressionFunction( model );
 
     if( model.getFunctionName() == MiningFunctionType.CLASSIFICATION )
-      return handleCategoricalRegressionModel( tail, model );
+      return createCategoricalRegressionFunction( model );
 
     throw new UnsupportedOperationException( "unsupported mining type, got: " + model.getFunctionName() );
     }
 
-  private Pipe handleCategoricalRegressionModel( Pipe tail, RegressionModel model )
+  private ModelScoringFunction createCategoricalRegressionFunction( RegressionModel model )
     {
     ModelSchema modelSchema = createModelSchema( model );
 
@@ -581,14 +791,15 @@ public class PMMLPlanner implements AssemblyPlanner
     GeneralRegressionSpec regressionSpec = new GeneralRegressionSpec( modelSchema );
 
     regressionSpec.setNormalization( RegressionUtil.getNormalizationMethod( model ) );
+    regressionSpec.setNumericMode( numericMode );
 
     for( org.dmg.pmml.RegressionTable regressionTable : model.getRegressionTables() )
-      regressionSpec.addRegressionTable( RegressionUtil.createTable( regressionTable ) );
+      regressionSpec.addRegressionTable( RegressionUtil.createTable( modelSchema, regressionTable, isEncodeCategoricalFields() ) );
 
-    return create( tail, modelSchema, new CategoricalRegressionFunction( regressionSpec ) );
+    return new CategoricalRegressionFunction( regressionSpec, explain );
     }
 
-  private Pipe handlePredictionRegressionModel( Pipe tail, RegressionModel model )
+  private ModelScoringFunction createPredictionRegressionFunction( RegressionModel model )
     {
     if( model.getRegressionTables().size() != 1 )
       throw new UnsupportedOperationException( "regression model only supports a single regression table, got: " + model.getRegressionTables().size() );
@@ -601,12 +812,12 @@ public class PMMLPlanner implements AssemblyPlanner
 
     regressionSpec.setLinkFunction( LinkFunction.NONE );
 
-    regressionSpec.addRegressionTable( RegressionUtil.createTable( regressionTable ) );
+    regressionSpec.addRegressionTable( RegressionUtil.createTable( modelSchema, regressionTable, isEncodeCategoricalFields() ) );
 
-    return create( tail, modelSchema, new PredictionRegressionFunction( regressionSpec ) );
+    return new PredictionRegressionFunction( regressionSpec, explain );
     }
 
-  private Pipe handleClusteringModel( Pipe tail, ClusteringModel model )
+  private ModelScoringFunction createClusteringFunction( ClusteringModel model )
     {
     ModelSchema modelSchema = createModelSchema( model );
 
@@ -644,10 +855,10 @@ public class PMMLPlanner implements AssemblyPlanner
       clusteringSpec.addCluster( new cascading.pattern.model.clustering.Cluster( cluster.getName(), exemplar ) );
       }
 
-    return create( tail, modelSchema, new ClusteringFunction( clusteringSpec ) );
+    return new ClusteringFunction( clusteringSpec, explain );
     }
 
-  private Pipe handleMiningModel( Pipe tail, MiningModel model )
+  private ModelScoringFunction createMiningFunction( MiningModel model )
     {
     ModelSchema modelSchema = createModelSchema( model );
     List<TreeSpec> models = new LinkedList<TreeSpec>();
@@ -660,29 +871,32 @@ public class PMMLPlanner implements AssemblyPlanner
       Model segmentModel = segment.getModel();
 
       if( segmentModel instanceof TreeModel )
-        models.add( new TreeSpec( modelSchema, createTree( (TreeModel) segmentModel, modelSchema ) ) );
+        {
+        TreeSpec treeSpec = new TreeSpec( modelSchema, createTree( (TreeModel) segmentModel, modelSchema, isEncodeCategoricalFields() ) );
+
+        treeSpec.setGenerateCode( generateTreeCode );
+
+        models.add( treeSpec );
+        }
       else
         throw new PatternException( "ensemble model currently not supported, got: " + segmentModel );
       }
 
     EnsembleSpec<TreeSpec> miningSpec = new EnsembleSpec<TreeSpec>( modelSchema, models );
 
-    LOG.debug( "creating: {}, input: {}, output: {}", new Object[]{miningSpec, modelSchema.getInputFields(),
-                                                                   modelSchema.getDeclaredFields()} );
-
     SelectionStrategy strategy = PMMLUtil.getSelectionStrategy( model );
 
     miningSpec.setSelectionStrategy( strategy );
 
-    tail = new ParallelEnsembleAssembly( tail, miningSpec );
-
-    return tail;
+    // score all segments in a single pass, avoids the shuffle required by ParallelEnsembleAssembly
+    return new EnsembleFunction( miningSpec );
     }
 
-  private Pipe create( Pipe tail, ModelSchema schemaParam, ModelScoringFunction function )
+  private Pipe create( Pipe tail, ModelScoringFunction function )
     {
+    ModelSchema schemaParam = function.getSpec().getModelSchema();
     Fields inputFields = schemaParam.getInputFields();
-    Fields declaredFields = schemaParam.getDeclaredFields();
+    Fields declaredFields = function.getFieldDeclaration();
 
     LOG.debug( "creating: {}, input: {}, output: {}", new Object[]{schemaParam, inputFields, declaredFields} );
 
@@ -22,6 +22,7 @@ package cascading.pattern.pmml;
 
 import java.math.BigInteger;
 
+import cascading.pattern.model.ModelSchema;
 import cascading.pattern.model.generalregression.Parameter;
 import cascading.pattern.model.generalregression.RegressionTable;
 import cascading.pattern.model.generalregression.normalization.Normalization;
@@ -37,7 +38,7 @@ import org.dmg.pmml.RegressionModel;
  */
 class RegressionUtil
   {
-  public static RegressionTable createTable( org.dmg.pmml.RegressionTable regressionTable )
+  public static RegressionTable createTable( ModelSchema modelSchema, org.dmg.pmml.RegressionTable regressionTable, boolean encode )
     {
     RegressionTable generalRegressionTable = new RegressionTable();
 
@@ -56,7 +57,7 @@ class RegressionUtil
       String value = predictor.getValue();
       double coefficient = predictor.getCoefficient();
 
-      generalRegressionTable.addParameter( new Parameter( "f" + count++, coefficient, new FactorPredictor( name, value ) ) );
+      generalRegressionTable.addParameter( new Parameter( "f" + count++, coefficient, new FactorPredictor( name, value, encode ? modelSchema.getCategoryIndex( name ) : null ) ) );
       }
 
     for( NumericPredictor predictor : regressionTable.getNumericPredictors() )
@@ -41,6 +41,7 @@ import cascading.pattern.model.tree.predicate.compound.AndPredicate;
 import cascading.pattern.model.tree.predicate.compound.OrPredicate;
 import cascading.pattern.model.tree.predicate.compound.SurrogatePredicate;
 import cascading.pattern.model.tree.predicate.compound.XorPredicate;
+import cascading.pattern.util.StringIndex;
 import cascading.tuple.coerce.Coercions;
 import org.dmg.pmml.ArrayType;
 import org.dmg.pmml.CompoundPredicate;
@@ -55,30 +56,30 @@ import org.dmg.pmml.TreeModel;
  */
 class TreeUtil
   {
-  public static Tree createTree( TreeModel model, ModelSchema modelSchema )
+  public static Tree createTree( TreeModel model, ModelSchema modelSchema, boolean encode )
     {
     Node parent = model.getNode();
 
     Tree tree = new Tree( parent.getId() );
 
-    buildTree( modelSchema, tree, parent );
+    buildTree( modelSchema, encode, tree, parent );
 
     return tree;
     }
 
-  private static void buildTree( ModelSchema modelSchema, Tree tree, Node parent )
+  private static void buildTree( ModelSchema modelSchema, boolean encode, Tree tree, Node parent )
     {
     for( Node child : parent.getNodes() )
       {
       Predicate predicate = child.getPredicate();
 
-      tree.addPredicate( parent.getId(), child.getId(), getPredicateFor( modelSchema, predicate ), child.getScore() );
+      tree.addPredicate( parent.getId(), child.getId(), getPredicateFor( modelSchema, encode, predicate ), child.getScore() );
 
-      buildTree( modelSchema, tree, child );
+      buildTree( modelSchema, encode, tree, child );
       }
     }
 
-  private static cascading.pattern.model.tree.predicate.Predicate getPredicateFor( ModelSchema modelSchema, Predicate predicate )
+  private static cascading.pattern.model.tree.predicate.Predicate getPredicateFor( ModelSchema modelSchema, boolean encode, Predicate predicate )
     {
     if( predicate instanceof SimplePredicate )
       {
@@ -91,21 +92,22 @@ class TreeUtil
         throw new IllegalStateException( "missing field declaration in dictionary for: " + fieldName );
 
       Type expectedFieldType = expectedField.getType();
+      StringIndex categoryIndex = encode ? modelSchema.getCategoryIndex( fieldName ) : null;
 
       switch( operator )
         {
         case EQUAL:
-          return new EqualsToPredicate( fieldName, Coercions.coerce( value, expectedFieldType ) );
+          return new EqualsToPredicate( fieldName, Coercions.coerce( value, expectedFieldType ), categoryIndex );
         case NOT_EQUAL:
-          return new NotEqualsToPredicate( fieldName, Coercions.coerce( value, expectedFieldType ) );
+          return new NotEqualsToPredicate( fieldName, Coercions.coerce( value, expectedFieldType ), categoryIndex );
         case LESS_THAN:
-          return new LessThanPredicate( fieldName, (Comparable) Coercions.coerce( value, expectedFieldType ) );
+          return new LessThanPredicate( fieldName, (Comparable) Coercions.coerce( value, expectedFieldType ), categoryIndex );
         case LESS_OR_EQUAL:
-          return new LessOrEqualThanPredicate( fieldName, (Comparable) Coercions.coerce( value, expectedFieldType ) );
+          return new LessOrEqualThanPredicate( fieldName, (Comparable) Coercions.coerce( value, expectedFieldType ), categoryIndex );
         case GREATER_THAN:
-          return new GreaterThanPredicate( fieldName, (Comparable) Coercions.coerce( value, expectedFieldType ) );
+          return new GreaterThanPredicate( fieldName, (Comparable) Coercions.coerce( value, expectedFieldType ), categoryIndex );
         case GREATER_OR_EQUAL:
-          return new GreaterOrEqualThanPredicate( fieldName, (Comparable) Coercions.coerce( value, expectedFieldType ) );
+          return new GreaterOrEqualThanPredicate( fieldName, (Comparable) Coercions.coerce( value, expectedFieldType ), categoryIndex );
         case IS_MISSING:
           return new IsMissingPredicate( fieldName );
         case IS_NOT_MISSING:
@@ -124,13 +126,14 @@ class TreeUtil
         throw new IllegalStateException( "missing field declaration in dictionary for: " + fieldName );
 
       List list = PMMLUtil.parseArray( valueArray ); // performs coercions
+      StringIndex categoryIndex = encode ? modelSchema.getCategoryIndex( fieldName ) : null;
 
       switch( operator )
         {
         case IS_IN:
-          return new IsInSetPredicate( fieldName, list );
+          return new IsInSetPredicate( fieldName, list, categoryIndex );
         case IS_NOT_IN:
-          return new IsNotInSetPredicate( fieldName, list );
+          return new IsNotInSetPredicate( fieldName, list, categoryIndex );
         }
       }
 
@@ -141,7 +144,7 @@ class TreeUtil
       List<cascading.pattern.model.tree.predicate.Predicate> predicates = new ArrayList<cascading.pattern.model.tree.predicate.Predicate>();
 
       for( Predicate child : compoundPredicate.getContent() )
-        predicates.add( getPredicateFor( modelSchema, child ) );
+        predicates.add( getPredicateFor( modelSchema, encode, child ) );
 
       CompoundPredicate.BooleanOperator operator = compoundPredicate.getBooleanOperator();
 
@@ -0,0 +1,322 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.serving;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import cascading.pattern.PatternException;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Class MicroBatcher queues scoring requests and scores them together in micro-batches on a bounded pool of
+ * workers.
+ * <p/>
+ * A batch is dispatched once it holds {@code maxBatchSize} rows, or {@code maxDelayMicros} after its first request
+ * was taken from the queue, whichever comes first. Requests are rejected once {@code maxPending} are waiting, or
+ * if every worker is busy and the worker queue is full.
+ * <p/>
+ * Every request is scored by the {@link ServingModel} it was parsed against, so a reload never changes the model
+ * of a request in flight. Requests of different model versions dispatched together are scored separately.
+ */
+class MicroBatcher
+  {
+  private static final Logger LOG = LoggerFactory.getLogger( MicroBatcher.class );
+
+  static class Pending
+    {
+    final ServingModel model;
+    final List<Object[]> rows;
+    final List<Object[]> results;
+    final CountDownLatch latch = new CountDownLatch( 1 );
+    volatile Throwable failure;
+    volatile boolean isCancelled;
+
+    Pending( ServingModel model, List<Object[]> rows )
+      {
+      this.model = model;
+      this.rows = rows;
+      this.results = new ArrayList<Object[]>( rows.size() );
+      }
+
+    void fail( Throwable throwable )
+      {
+      failure = throwable;
+      latch.countDown();
+      }
+    }
+
+  private final int maxBatchSize;
+  private final long maxDelayNanos;
+  private final BlockingQueue<Pending> queue;
+  private final ThreadPoolExecutor workers;
+  private final Thread dispatcher;
+
+  private volatile boolean isRunning = true;
+
+  MicroBatcher( int numWorkers, int maxBatchSize, long maxDelayMicros, int maxPending )
+    {
+    this.maxBatchSize = maxBatchSize;
+    this.maxDelayNanos = TimeUnit.MICROSECONDS.toNanos( maxDelayMicros );
+    this.queue = new ArrayBlockingQueue<Pending>( maxPending );
+    this.workers = new ThreadPoolExecutor( numWorkers, numWorkers, 0L, TimeUnit.MILLISECONDS, new ArrayBlockingQueue<Runnable>( numWorkers * 2 ), createThreadFactory( "pattern-scorer" ) );
+    this.dispatcher = createThreadFactory( "pattern-batcher" ).newThread( new Runnable()
+    {
+    @Override
+    public void run()
+      {
+      dispatch();
+      }
+    } );
+
+    dispatcher.start();
+    }
+
+  private static ThreadFactory createThreadFactory( final String name )
+    {
+    return new ThreadFactory()
+    {
+    private final AtomicInteger count = new AtomicInteger();
+
+    @Override
+    public Thread newThread( Runnable runnable )
+      {
+      Thread thread = new Thread( runnable, name + "-" + count.getAndIncrement() );
+
+      thread.setDaemon( true );
+
+      return thread;
+      }
+    };
+    }
+
+  /**
+   * Method score queues the given rows and blocks until they are scored by the given model.
+   *
+   * @param model         the model the rows were parsed against
+   * @param rows          the input values of each row
+   * @param timeoutMillis the maximum time to wait
+   * @return the declared results of each row
+   * @throws RejectedExecutionException if the queue is full
+   * @throws TimeoutException           if the rows were not scored in time
+   * @throws InterruptedException       if interrupted while waiting
+   */
+  List<Object[]> score( ServingModel model, List<Object[]> rows, long timeoutMillis ) throws TimeoutException, InterruptedException
+    {
+    Pending pending = new Pending( model, rows );
+
+    if( !isRunning || !queue.offer( pending ) )
+      throw new RejectedExecutionException( "scoring queue is full" );
+
+    if( !pending.latch.await( timeoutMillis, TimeUnit.MILLISECONDS ) )
+      {
+      // the caller has gone, so the rows need not be scored
+      pending.isCancelled = true;
+      queue.remove( pending );
+
+      throw new TimeoutException( "scoring did not complete within: " + timeoutMillis + "ms" );
+      }
+
+    if( pending.failure instanceof RuntimeException )
+      throw (RuntimeException) pending.failure;
+
+    if( pending.failure != null )
+      throw new PatternException( "failed scoring rows", pending.failure );
+
+    return pending.results;
+    }
+
+  private void dispatch()
+    {
+    while( isRunning )
+      {
+      List<Pending> batch = null;
+
+      try
+        {
+        Pending first = queue.poll( 100, TimeUnit.MILLISECONDS );
+
+        if( first == null )
+          continue;
+
+        batch = new ArrayList<Pending>();
+        int size = first.rows.size();
+        long deadline = System.nanoTime() + maxDelayNanos;
+
+        batch.add( first );
+
+        while( size < maxBatchSize )
+          {
+          long remaining = deadline - System.nanoTime();
+          Pending next = remaining > 0 ? queue.poll( remaining, TimeUnit.NANOSECONDS ) : queue.poll();
+
+          if( next == null )
+            break;
+
+          batch.add( next );
+          size += next.rows.size();
+          }
+
+        submit( batch );
+        }
+      catch( InterruptedException exception )
+        {
+        // requests already taken from the queue are not drained below
+        if( batch != null )
+          {
+          for( Pending pending : batch )
+            pending.fail( new RejectedExecutionException( "scoring server is stopping" ) );
+          }
+
+        Thread.currentThread().interrupt();
+        break;
+        }
+      }
+
+    // fail anything left behind on shutdown
+    Pending pending;
+
+    while( ( pending = queue.poll() ) != null )
+      pending.fail( new RejectedExecutionException( "scoring server is stopping" ) );
+    }
+
+  private void submit( final List<Pending> batch )
+    {
+    try
+      {
+      workers.execute( new Runnable()
+      {
+      @Override
+      public void run()
+        {
+        score( batch );
+        }
+      } );
+      }
+    catch( RejectedExecutionException exception )
+      {
+      LOG.warn( "all scoring workers busy, rejecting batch of {} requests", batch.size() );
+
+      for( Pending pending : batch )
+        pending.fail( exception );
+      }
+    }
+
+  private void score( List<Pending> batch )
+    {
+    Map<ServingModel, List<Pending>> models = new LinkedHashMap<ServingModel, List<Pending>>();
+
+    for( Pending pending : batch )
+      {
+      // timed out while waiting in the queue or for a worker
+      if( pending.isCancelled )
+        continue;
+
+      List<Pending> requests = models.get( pending.model );
+
+      if( requests == null )
+        {
+        requests = new ArrayList<Pending>();
+        models.put( pending.model, requests );
+        }
+
+      requests.add( pending );
+      }
+
+    // requests parsed before and after a reload are scored by their own model
+    for( Map.Entry<ServingModel, List<Pending>> entry : models.entrySet() )
+      score( entry.getValue(), entry.getKey() );
+    }
+
+  private void score( List<Pending> batch, ServingModel current )
+    {
+    int declared = current.getDeclaredNames().length;
+
+    List<Object[]> rows = new ArrayList<Object[]>();
+    List<Object[]> results = new ArrayList<Object[]>();
+
+    for( Pending pending : batch )
+      {
+      for( Object[] row : pending.rows )
+        {
+        Object[] result = new Object[ declared ];
+
+        rows.add( row );
+        results.add( result );
+        pending.results.add( result );
+        }
+      }
+
+    try
+      {
+      current.score( rows, results );
+      }
+    catch( RuntimeException exception )
+      {
+      // score each request alone so one bad request does not fail its batch
+      if( batch.size() > 1 )
+        {
+        for( Pending pending : batch )
+          score( pending, current );
+
+        return;
+        }
+
+      batch.get( 0 ).fail( exception );
+      return;
+      }
+
+    for( Pending pending : batch )
+      pending.latch.countDown();
+    }
+
+  private void score( Pending pending, ServingModel current )
+    {
+    try
+      {
+      current.score( pending.rows, pending.results );
+      pending.latch.countDown();
+      }
+    catch( RuntimeException exception )
+      {
+      pending.fail( exception );
+      }
+    }
+
+  void stop()
+    {
+    isRunning = false;
+    dispatcher.interrupt();
+    workers.shutdown();
+    }
+  }
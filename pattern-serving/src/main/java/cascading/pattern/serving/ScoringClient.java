@@ -0,0 +1,222 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.serving;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+
+/**
+ * Class ScoringClient posts delimited records to a {@link ScoringServer}.
+ * <p/>
+ * Run from the command line, it load tests a server by posting the records of a delimited file from a number of
+ * concurrent threads, and reports the throughput and request latencies.
+ */
+public class ScoringClient
+  {
+  private final URL url;
+
+  public static void main( String[] args ) throws Exception
+    {
+    if( args.length < 3 )
+      {
+      System.err.println( "usage: ScoringClient <host> <port> <data file, with header> [threads] [requests] [records per request]" );
+      System.exit( 1 );
+      }
+
+    ScoringClient client = new ScoringClient( args[ 0 ], Integer.parseInt( args[ 1 ] ) );
+    int numThreads = args.length > 3 ? Integer.parseInt( args[ 3 ] ) : 8;
+    int numRequests = args.length > 4 ? Integer.parseInt( args[ 4 ] ) : 10000;
+    int numRecords = args.length > 5 ? Integer.parseInt( args[ 5 ] ) : 1;
+
+    client.loadTest( readRecords( new File( args[ 2 ] ) ), numThreads, numRequests, numRecords );
+    }
+
+  public ScoringClient( String host, int port ) throws IOException
+    {
+    this.url = new URL( "http", host, port, "/score" );
+    }
+
+  /**
+   * Method score posts the given records and returns one result line per record.
+   *
+   * @param records the delimited records
+   * @return the delimited results
+   * @throws IOException if the request fails or is refused
+   */
+  public List<String> score( List<String> records ) throws IOException
+    {
+    StringBuilder builder = new StringBuilder();
+
+    for( String record : records )
+      builder.append( record ).append( '\n' );
+
+    byte[] bytes = builder.toString().getBytes( "UTF-8" );
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+
+    connection.setRequestMethod( "POST" );
+    connection.setDoOutput( true );
+    connection.setFixedLengthStreamingMode( bytes.length );
+    connection.setRequestProperty( "Content-Type", "text/plain; charset=utf-8" );
+
+    OutputStream output = connection.getOutputStream();
+
+    try
+      {
+      output.write( bytes );
+      }
+    finally
+      {
+      output.close();
+      }
+
+    int status = connection.getResponseCode();
+    InputStream input = status == 200 ? connection.getInputStream() : connection.getErrorStream();
+    List<String> lines = readLines( input );
+
+    if( status != 200 )
+      throw new IOException( "server returned: " + status + ", " + lines );
+
+    return lines;
+    }
+
+  /**
+   * Method loadTest posts numRequests requests of numRecords records each, cycling through the given records,
+   * from numThreads concurrent threads.
+   *
+   * @param records     the delimited records
+   * @param numThreads  the number of concurrent clients
+   * @param numRequests the total number of requests
+   * @param numRecords  the number of records per request
+   */
+  public void loadTest( final List<String> records, int numThreads, int numRequests, final int numRecords ) throws InterruptedException, ExecutionException
+    {
+    ExecutorService executor = Executors.newFixedThreadPool( numThreads );
+    List<Future<long[]>> futures = new ArrayList<Future<long[]>>();
+    final int perThread = numRequests / numThreads;
+
+    long start = System.nanoTime();
+
+    for( int i = 0; i < numThreads; i++ )
+      {
+      final int offset = i * perThread * numRecords;
+
+      futures.add( executor.submit( new Callable<long[]>()
+      {
+      @Override
+      public long[] call() throws Exception
+        {
+        long[] latencies = new long[ perThread ];
+        List<String> request = new ArrayList<String>( numRecords );
+
+        for( int j = 0; j < perThread; j++ )
+          {
+          request.clear();
+
+          for( int k = 0; k < numRecords; k++ )
+            request.add( records.get( ( offset + j * numRecords + k ) % records.size() ) );
+
+          long begin = System.nanoTime();
+
+          score( request );
+
+          latencies[ j ] = System.nanoTime() - begin;
+          }
+
+        return latencies;
+        }
+      } ) );
+      }
+
+    long[] latencies = new long[ perThread * numThreads ];
+
+    for( int i = 0; i < futures.size(); i++ )
+      System.arraycopy( futures.get( i ).get(), 0, latencies, i * perThread, perThread );
+
+    double seconds = ( System.nanoTime() - start ) / 1e9d;
+
+    executor.shutdown();
+
+    Arrays.sort( latencies );
+
+    System.out.printf( "requests: %d, records: %d, seconds: %.2f%n", latencies.length, latencies.length * numRecords, seconds );
+    System.out.printf( "throughput: %.0f requests/s, %.0f records/s%n", latencies.length / seconds, latencies.length * numRecords / seconds );
+    System.out.printf( "latency us, p50: %d, p99: %d, p99.9: %d, max: %d%n", percentile( latencies, 0.5d ), percentile( latencies, 0.99d ), percentile( latencies, 0.999d ), percentile( latencies, 1d ) );
+    }
+
+  private static long percentile( long[] sorted, double percentile )
+    {
+    if( sorted.length == 0 )
+      return 0;
+
+    int index = (int) Math.ceil( percentile * sorted.length ) - 1;
+
+    return sorted[ Math.max( 0, index ) ] / 1000;
+    }
+
+  private static List<String> readRecords( File file ) throws IOException
+    {
+    List<String> lines = readLines( new FileInputStream( file ) );
+
+    if( lines.size() < 2 )
+      throw new IllegalArgumentException( "no records found in: " + file );
+
+    return lines.subList( 1, lines.size() ); // skip the header
+    }
+
+  private static List<String> readLines( InputStream input ) throws IOException
+    {
+    List<String> lines = new ArrayList<String>();
+
+    if( input == null )
+      return lines;
+
+    BufferedReader reader = new BufferedReader( new InputStreamReader( input, "UTF-8" ) );
+
+    try
+      {
+      String line;
+
+      while( ( line = reader.readLine() ) != null )
+        lines.add( line );
+      }
+    finally
+      {
+      reader.close();
+      }
+
+    return lines;
+    }
+  }
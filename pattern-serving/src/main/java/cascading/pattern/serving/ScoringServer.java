@@ -0,0 +1,603 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.serving;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetSocketAddress;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.regex.Pattern;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+/**
+ * Class ScoringServer scores records over HTTP against a PMML model.
+ * <p/>
+ * Records are posted to {@code /score} as delimited text, one record per line, with values ordered by the model
+ * input fields. Empty values are treated as missing. The response holds one line per record, the declared result
+ * values of the model, in the same order. {@code GET /model} returns the input and declared field names.
+ * <p/>
+ * Requests from all connections are scored together in micro-batches, see {@link #setMaxBatchSize(int)} and
+ * {@link #setMaxBatchDelayMicros(long)}, on a bounded pool of workers. If the PMML file changes, it is reloaded
+ * in the background and swapped in once parsed; a file that fails to load leaves the current model in place.
+ * A request is always scored by the model it was parsed against.
+ * <p/>
+ * Requests larger than {@link #setMaxRequestBytes(long)} bytes or {@link #setMaxRequestRows(int)} records are
+ * refused with a 413.
+ * <p/>
+ * The server only supports TCP, as Unix domain sockets are not available in the JDK.
+ */
+public class ScoringServer
+  {
+  private static final Logger LOG = LoggerFactory.getLogger( ScoringServer.class );
+
+  public static final int DEFAULT_PORT = 8090;
+
+  private final File pmmlFile;
+  private final AtomicReference<ServingModel> model = new AtomicReference<ServingModel>();
+
+  private String host = "localhost";
+  private int port = DEFAULT_PORT;
+  private String delimiter = "\t";
+  private int numWorkers = Runtime.getRuntime().availableProcessors();
+  private int numConnectionThreads = 32;
+  private int maxBatchSize = 256;
+  private long maxBatchDelayMicros = 1000;
+  private int maxPending = 10000;
+  private long timeoutMillis = 5000;
+  private long reloadIntervalMillis = 5000;
+  private long maxRequestBytes = 16L * 1024 * 1024;
+  private int maxRequestRows = 100000;
+
+  private HttpServer server;
+  private ExecutorService connectionExecutor;
+  private MicroBatcher batcher;
+  private ScheduledExecutorService reloader;
+
+  public static void main( String[] args ) throws IOException
+    {
+    if( args.length < 1 )
+      {
+      System.err.println( "usage: ScoringServer <pmml file> [port]" );
+      System.exit( 1 );
+      }
+
+    ScoringServer server = new ScoringServer( new File( args[ 0 ] ) );
+
+    if( args.length > 1 )
+      server.setPort( Integer.parseInt( args[ 1 ] ) );
+
+    server.start();
+    }
+
+  public ScoringServer( File pmmlFile )
+    {
+    this.pmmlFile = pmmlFile;
+    }
+
+  public String getHost()
+    {
+    return host;
+    }
+
+  public ScoringServer setHost( String host )
+    {
+    this.host = host;
+
+    return this;
+    }
+
+  /**
+   * Returns the port the server is bound to once started, otherwise the configured port.
+   *
+   * @return the port
+   */
+  public int getPort()
+    {
+    if( server != null )
+      return server.getAddress().getPort();
+
+    return port;
+    }
+
+  /**
+   * Sets the port to listen on, 0 binds any free port.
+   *
+   * @param port the port
+   * @return this server
+   */
+  public ScoringServer setPort( int port )
+    {
+    this.port = port;
+
+    return this;
+    }
+
+  public String getDelimiter()
+    {
+    return delimiter;
+    }
+
+  public ScoringServer setDelimiter( String delimiter )
+    {
+    this.delimiter = delimiter;
+
+    return this;
+    }
+
+  public int getNumWorkers()
+    {
+    return numWorkers;
+    }
+
+  public ScoringServer setNumWorkers( int numWorkers )
+    {
+    this.numWorkers = numWorkers;
+
+    return this;
+    }
+
+  public int getNumConnectionThreads()
+    {
+    return numConnectionThreads;
+    }
+
+  /**
+   * Sets the number of threads reading requests and waiting on their results, bounding the number of requests
+   * in flight.
+   *
+   * @param numConnectionThreads the number of connection threads
+   * @return this server
+   */
+  public ScoringServer setNumConnectionThreads( int numConnectionThreads )
+    {
+    this.numConnectionThreads = numConnectionThreads;
+
+    return this;
+    }
+
+  public int getMaxBatchSize()
+    {
+    return maxBatchSize;
+    }
+
+  /**
+   * Sets the number of rows that triggers a batch to be scored without waiting any longer.
+   *
+   * @param maxBatchSize the number of rows
+   * @return this server
+   */
+  public ScoringServer setMaxBatchSize( int maxBatchSize )
+    {
+    this.maxBatchSize = maxBatchSize;
+
+    return this;
+    }
+
+  public long getMaxBatchDelayMicros()
+    {
+    return maxBatchDelayMicros;
+    }
+
+  /**
+   * Sets how long the first request of a batch may wait for further requests before the batch is scored.
+   *
+   * @param maxBatchDelayMicros the delay in microseconds
+   * @return this server
+   */
+  public ScoringServer setMaxBatchDelayMicros( long maxBatchDelayMicros )
+    {
+    this.maxBatchDelayMicros = maxBatchDelayMicros;
+
+    return this;
+    }
+
+  public int getMaxPending()
+    {
+    return maxPending;
+    }
+
+  public ScoringServer setMaxPending( int maxPending )
+    {
+    this.maxPending = maxPending;
+
+    return this;
+    }
+
+  public long getTimeoutMillis()
+    {
+    return timeoutMillis;
+    }
+
+  public ScoringServer setTimeoutMillis( long timeoutMillis )
+    {
+    this.timeoutMillis = timeoutMillis;
+
+    return this;
+    }
+
+  public long getReloadIntervalMillis()
+    {
+    return reloadIntervalMillis;
+    }
+
+  /**
+   * Sets how often the PMML file is checked for changes, 0 disables reloading.
+   *
+   * @param reloadIntervalMillis the interval in milliseconds
+   * @return this server
+   */
+  public ScoringServer setReloadIntervalMillis( long reloadIntervalMillis )
+    {
+    this.reloadIntervalMillis = reloadIntervalMillis;
+
+    return this;
+    }
+
+  public long getMaxRequestBytes()
+    {
+    return maxRequestBytes;
+    }
+
+  public ScoringServer setMaxRequestBytes( long maxRequestBytes )
+    {
+    this.maxRequestBytes = maxRequestBytes;
+
+    return this;
+    }
+
+  public int getMaxRequestRows()
+    {
+    return maxRequestRows;
+    }
+
+  public ScoringServer setMaxRequestRows( int maxRequestRows )
+    {
+    this.maxRequestRows = maxRequestRows;
+
+    return this;
+    }
+
+  public ServingModel getModel()
+    {
+    return model.get();
+    }
+
+  public ScoringServer start() throws IOException
+    {
+    if( server != null )
+      throw new IllegalStateException( "server already started" );
+
+    model.set( loadModel() );
+
+    batcher = new MicroBatcher( numWorkers, maxBatchSize, maxBatchDelayMicros, maxPending );
+    connectionExecutor = Executors.newFixedThreadPool( numConnectionThreads );
+
+    server = HttpServer.create( new InetSocketAddress( host, port ), 0 );
+
+    server.createContext( "/score", new ScoreHandler() );
+    server.createContext( "/model", new ModelHandler() );
+    server.setExecutor( connectionExecutor );
+    server.start();
+
+    if( reloadIntervalMillis > 0 )
+      {
+      reloader = Executors.newSingleThreadScheduledExecutor();
+
+      reloader.scheduleWithFixedDelay( new Runnable()
+      {
+      @Override
+      public void run()
+        {
+        reload();
+        }
+      }, reloadIntervalMillis, reloadIntervalMillis, TimeUnit.MILLISECONDS );
+      }
+
+    LOG.info( "scoring {} on {}:{}", new Object[]{pmmlFile, host, getPort()} );
+
+    return this;
+    }
+
+  public void stop()
+    {
+    if( server == null )
+      return;
+
+    if( reloader != null )
+      reloader.shutdownNow();
+
+    server.stop( 0 );
+    batcher.stop();
+    connectionExecutor.shutdownNow();
+
+    server = null;
+    reloader = null;
+    }
+
+  /**
+   * Method reload loads the PMML file if it changed since the current model was loaded.
+   *
+   * @return true if a new model was swapped in
+   */
+  public boolean reload()
+    {
+    ServingModel current = model.get();
+
+    if( pmmlFile.lastModified() == current.getLastModified() )
+      return false;
+
+    try
+      {
+      model.set( loadModel() );
+      }
+    catch( RuntimeException exception )
+      {
+      LOG.error( "unable to reload model, keeping current: " + pmmlFile, exception );
+      return false;
+      }
+
+    LOG.info( "reloaded model: {}", pmmlFile );
+
+    return true;
+    }
+
+  ServingModel loadModel()
+    {
+    return ServingModel.load( pmmlFile );
+    }
+
+  private class ScoreHandler implements HttpHandler
+    {
+    @Override
+    public void handle( HttpExchange exchange ) throws IOException
+      {
+      try
+        {
+        if( !"POST".equals( exchange.getRequestMethod() ) )
+          {
+          send( exchange, 405, "only POST is supported" );
+          return;
+          }
+
+        // pin the model, so the rows are scored by the model they were parsed against
+        ServingModel current = model.get();
+        List<Object[]> rows = parse( exchange, current.getInputNames().length );
+        List<Object[]> results = batcher.score( current, rows, timeoutMillis );
+
+        send( exchange, 200, format( results ) );
+        }
+      catch( RequestTooLargeException exception )
+        {
+        send( exchange, 413, exception.getMessage() );
+        }
+      catch( IllegalArgumentException exception )
+        {
+        send( exchange, 400, exception.getMessage() );
+        }
+      catch( RejectedExecutionException exception )
+        {
+        send( exchange, 503, exception.getMessage() );
+        }
+      catch( TimeoutException exception )
+        {
+        send( exchange, 504, exception.getMessage() );
+        }
+      catch( InterruptedException exception )
+        {
+        Thread.currentThread().interrupt();
+        send( exchange, 503, "interrupted" );
+        }
+      catch( RuntimeException exception )
+        {
+        LOG.error( "failed scoring request", exception );
+        send( exchange, 500, String.valueOf( exception.getMessage() ) );
+        }
+      }
+    }
+
+  private class ModelHandler implements HttpHandler
+    {
+    @Override
+    public void handle( HttpExchange exchange ) throws IOException
+      {
+      ServingModel current = model.get();
+      StringBuilder builder = new StringBuilder();
+
+      builder.append( "input" ).append( delimiter ).append( join( current.getInputNames() ) ).append( '\n' );
+      builder.append( "declared" ).append( delimiter ).append( join( current.getDeclaredNames() ) ).append( '\n' );
+      builder.append( "lastModified" ).append( delimiter ).append( current.getLastModified() ).append( '\n' );
+
+      send( exchange, 200, builder.toString() );
+      }
+    }
+
+  private static class RequestTooLargeException extends IOException
+    {
+    RequestTooLargeException( String message )
+      {
+      super( message );
+      }
+    }
+
+  /** Fails once more than the given number of bytes are read, so an oversized body is never held in memory. */
+  private static class LimitedInputStream extends FilterInputStream
+    {
+    private final long limit;
+    private long count;
+
+    LimitedInputStream( InputStream input, long limit )
+      {
+      super( input );
+      this.limit = limit;
+      }
+
+    @Override
+    public int read() throws IOException
+      {
+      int value = super.read();
+
+      if( value != -1 )
+        count( 1 );
+
+      return value;
+      }
+
+    @Override
+    public int read( byte[] bytes, int offset, int length ) throws IOException
+      {
+      int read = super.read( bytes, offset, length );
+
+      if( read != -1 )
+        count( read );
+
+      return read;
+      }
+
+    private void count( int read ) throws RequestTooLargeException
+      {
+      count += read;
+
+      if( count > limit )
+        throw new RequestTooLargeException( "request body exceeds: " + limit + " bytes" );
+      }
+    }
+
+  private List<Object[]> parse( HttpExchange exchange, int numFields ) throws IOException
+    {
+    String contentLength = exchange.getRequestHeaders().getFirst( "Content-Length" );
+
+    if( contentLength != null && Long.parseLong( contentLength.trim() ) > maxRequestBytes )
+      throw new RequestTooLargeException( "request body exceeds: " + maxRequestBytes + " bytes" );
+
+    InputStream input = new LimitedInputStream( exchange.getRequestBody(), maxRequestBytes );
+    BufferedReader reader = new BufferedReader( new InputStreamReader( input, "UTF-8" ) );
+    Pattern pattern = Pattern.compile( Pattern.quote( delimiter ) );
+    List<Object[]> rows = new ArrayList<Object[]>();
+
+    try
+      {
+      String line;
+
+      while( ( line = reader.readLine() ) != null )
+        {
+        if( line.isEmpty() )
+          continue;
+
+        if( rows.size() == maxRequestRows )
+          throw new RequestTooLargeException( "request exceeds: " + maxRequestRows + " records" );
+
+        String[] values = pattern.split( line, -1 );
+
+        if( values.length != numFields )
+          throw new IllegalArgumentException( "expected " + numFields + " values, got: " + values.length + ", on line: " + ( rows.size() + 1 ) );
+
+        Object[] row = new Object[ numFields ];
+
+        for( int i = 0; i < numFields; i++ )
+          row[ i ] = values[ i ].isEmpty() ? null : values[ i ];
+
+        rows.add( row );
+        }
+      }
+    finally
+      {
+      reader.close();
+      }
+
+    if( rows.isEmpty() )
+      throw new IllegalArgumentException( "no records given" );
+
+    return rows;
+    }
+
+  private String format( List<Object[]> results )
+    {
+    StringBuilder builder = new StringBuilder();
+
+    for( Object[] result : results )
+      {
+      for( int i = 0; i < result.length; i++ )
+        {
+        if( i != 0 )
+          builder.append( delimiter );
+
+        if( result[ i ] != null )
+          builder.append( result[ i ] );
+        }
+
+      builder.append( '\n' );
+      }
+
+    return builder.toString();
+    }
+
+  private String join( String[] values )
+    {
+    StringBuilder builder = new StringBuilder();
+
+    for( int i = 0; i < values.length; i++ )
+      {
+      if( i != 0 )
+        builder.append( delimiter );
+
+      builder.append( values[ i ] );
+      }
+
+    return builder.toString();
+    }
+
+  private static void send( HttpExchange exchange, int status, String body ) throws IOException
+    {
+    byte[] bytes = body.getBytes( "UTF-8" );
+
+    exchange.getResponseHeaders().set( "Content-Type", "text/plain; charset=utf-8" );
+    exchange.sendResponseHeaders( status, bytes.length );
+
+    OutputStream output = exchange.getResponseBody();
+
+    try
+      {
+      output.write( bytes );
+      }
+    finally
+      {
+      output.close();
+      }
+    }
+  }
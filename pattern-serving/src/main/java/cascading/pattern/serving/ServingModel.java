@@ -0,0 +1,207 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.serving;
+
+import java.io.File;
+import java.util.List;
+
+import cascading.pattern.model.ModelScorer;
+import cascading.pattern.model.ModelSchema;
+import cascading.pattern.model.Spec;
+import cascading.pattern.model.batch.BatchScorer;
+import cascading.pattern.model.batch.ColumnBatch;
+import cascading.pattern.pmml.PMMLPlanner;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+
+/**
+ * Class ServingModel holds a single loaded version of a PMML model.
+ * <p/>
+ * Batches of rows are scored through the {@link BatchScorer} of the model when its results match those of
+ * the equivalent scoring function, a single predicted category, otherwise each row is scored through a
+ * {@link ModelScorer}. A ServingModel is thread-safe.
+ */
+public class ServingModel
+  {
+  private final File file;
+  private final long lastModified;
+  private final ModelScorer scorer;
+  private final boolean isBatched;
+  private final String[] inputNames;
+  private final String[] declaredNames;
+
+  private final ThreadLocal<BatchContext> batchContext = new ThreadLocal<BatchContext>()
+  {
+  @Override
+  protected BatchContext initialValue()
+    {
+    return new BatchContext( scorer.getSpec(), scorer.getInputFields() );
+    }
+  };
+
+  static class BatchContext
+    {
+    static final int CAPACITY = 256;
+
+    final BatchScorer batchScorer;
+    final ColumnBatch batch;
+    final Tuple tuple;
+    final TupleEntry entry;
+    final int[] results = new int[ CAPACITY ];
+
+    BatchContext( Spec spec, Fields inputFields )
+      {
+      this.batchScorer = spec.createBatchScorer();
+      this.batch = new ColumnBatch( spec.getModelSchema(), CAPACITY );
+      this.tuple = Tuple.size( inputFields.size() );
+      this.entry = new TupleEntry( inputFields, tuple );
+      }
+    }
+
+  /**
+   * Method load parses the given PMML file, which must contain a single scorable model.
+   *
+   * @param file the PMML file
+   * @return the loaded model
+   */
+  public static ServingModel load( File file )
+    {
+    long lastModified = file.lastModified();
+
+    return new ServingModel( file, lastModified, new PMMLPlanner( file ).createModelScorer() );
+    }
+
+  ServingModel( File file, long lastModified, ModelScorer scorer )
+    {
+    this.file = file;
+    this.lastModified = lastModified;
+    this.scorer = scorer;
+    this.isBatched = isBatchSupported( scorer.getSpec() );
+    this.inputNames = toNames( scorer.getInputFields() );
+    this.declaredNames = toNames( scorer.getDeclaredFields() );
+    }
+
+  private static boolean isBatchSupported( Spec spec )
+    {
+    ModelSchema modelSchema = spec.getModelSchema();
+
+    if( !spec.isPredictedCategorical() || modelSchema.isIncludePredictedCategories() )
+      return false;
+
+    return spec.isBatchSupported();
+    }
+
+  private static String[] toNames( Fields fields )
+    {
+    String[] names = new String[ fields.size() ];
+
+    for( int i = 0; i < names.length; i++ )
+      names[ i ] = fields.get( i ).toString();
+
+    return names;
+    }
+
+  public File getFile()
+    {
+    return file;
+    }
+
+  public long getLastModified()
+    {
+    return lastModified;
+    }
+
+  public ModelScorer getScorer()
+    {
+    return scorer;
+    }
+
+  public boolean isBatched()
+    {
+    return isBatched;
+    }
+
+  public String[] getInputNames()
+    {
+    return inputNames;
+    }
+
+  public String[] getDeclaredNames()
+    {
+    return declaredNames;
+    }
+
+  /**
+   * Method score scores every row, in order, into the matching results array.
+   * <p/>
+   * Every row must hold a value for each input field of this model, else an {@link IllegalArgumentException} is
+   * thrown and no row is scored.
+   *
+   * @param rows    the input values of each row, ordered by {@link #getInputNames()}
+   * @param results the result arrays, each of {@link #getDeclaredNames()} length
+   */
+  public void score( List<Object[]> rows, List<Object[]> results )
+    {
+    for( Object[] row : rows )
+      {
+      if( row.length != inputNames.length )
+        throw new IllegalArgumentException( "expected " + inputNames.length + " values, got: " + row.length );
+      }
+
+    if( !isBatched )
+      {
+      for( int i = 0; i < rows.size(); i++ )
+        scorer.score( rows.get( i ), results.get( i ) );
+
+      return;
+      }
+
+    BatchContext context = batchContext.get();
+    String[] categories = context.batchScorer.getCategories();
+
+    for( int offset = 0; offset < rows.size(); offset += BatchContext.CAPACITY )
+      {
+      int end = Math.min( offset + BatchContext.CAPACITY, rows.size() );
+
+      context.batch.clear();
+
+      for( int i = offset; i < end; i++ )
+        {
+        Object[] row = rows.get( i );
+
+        for( int j = 0; j < row.length; j++ )
+          context.tuple.set( j, row[ j ] );
+
+        context.batch.add( context.entry );
+        }
+
+      context.batchScorer.score( context.batch, context.results );
+
+      for( int i = offset; i < end; i++ )
+        {
+        int index = context.results[ i - offset ];
+
+        results.get( i )[ 0 ] = index == -1 ? null : categories[ index ];
+        }
+      }
+    }
+  }
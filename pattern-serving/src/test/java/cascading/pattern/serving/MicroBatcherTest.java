@@ -0,0 +1,367 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.serving;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import cascading.CascadingTestCase;
+import cascading.pattern.model.ModelScorer;
+import cascading.pattern.util.Logging;
+import org.junit.Test;
+
+import static cascading.pattern.model.SpecFixtures.createClassifierSpec;
+import static cascading.pattern.model.SpecFixtures.createSplitTreeSpec;
+
+/**
+ *
+ */
+public class MicroBatcherTest extends CascadingTestCase
+  {
+  /** Scores the tree of {@link cascading.pattern.model.SpecFixtures#createSplitTreeSpec()}, recording batch sizes and failing on "bad" rows. */
+  static class TestModel extends ServingModel
+    {
+    final List<Integer> batchSizes = Collections.synchronizedList( new ArrayList<Integer>() );
+    final CountDownLatch gate;
+
+    TestModel( CountDownLatch gate )
+      {
+      super( null, 0, new ModelScorer( createSplitTreeSpec() ) );
+      this.gate = gate;
+      }
+
+    @Override
+    public void score( List<Object[]> rows, List<Object[]> results )
+      {
+      batchSizes.add( rows.size() );
+
+      try
+        {
+        gate.await();
+        }
+      catch( InterruptedException exception )
+        {
+        throw new IllegalStateException( exception );
+        }
+
+      for( Object[] row : rows )
+        {
+        if( "bad".equals( row[ 0 ] ) )
+          throw new IllegalArgumentException( "bad row" );
+        }
+
+      super.score( rows, results );
+      }
+    }
+
+  private MicroBatcher batcher;
+  private ExecutorService executor;
+
+  public MicroBatcherTest()
+    {
+    }
+
+  @Override
+  public void setUp() throws Exception
+    {
+    Logging.setLogLevel( this.getClass(), "cascading.pattern", "debug" );
+
+    super.setUp();
+
+    executor = Executors.newCachedThreadPool();
+    }
+
+  @Override
+  public void tearDown() throws Exception
+    {
+    if( batcher != null )
+      batcher.stop();
+
+    executor.shutdownNow();
+
+    super.tearDown();
+    }
+
+  @Test
+  public void testSizeTriggered() throws Exception
+    {
+    TestModel model = new TestModel( new CountDownLatch( 0 ) );
+
+    // the delay is longer than the timeout, so only reaching the batch size dispatches in time
+    batcher = new MicroBatcher( 1, 2, TimeUnit.SECONDS.toMicros( 60 ), 10 );
+
+    Future<List<Object[]>> first = submit( model, row( 0.25d ) );
+    Future<List<Object[]>> second = submit( model, row( 0.75d ) );
+
+    assertEquals( "1", first.get( 10, TimeUnit.SECONDS ).get( 0 )[ 0 ] );
+    assertEquals( "0", second.get( 10, TimeUnit.SECONDS ).get( 0 )[ 0 ] );
+    assertEquals( Arrays.asList( 2 ), model.batchSizes );
+
+    List<Object[]> results = batcher.score( model, rows( row( 0.25d ), row( 0.75d ) ), 10000 );
+
+    assertEquals( 2, results.size() );
+    assertEquals( Arrays.asList( 2, 2 ), model.batchSizes );
+    }
+
+  @Test
+  public void testDelayTriggered() throws Exception
+    {
+    TestModel model = new TestModel( new CountDownLatch( 0 ) );
+
+    batcher = new MicroBatcher( 1, 100, TimeUnit.MILLISECONDS.toMicros( 200 ), 10 );
+
+    long start = System.nanoTime();
+    List<Object[]> results = batcher.score( model, rows( row( 0.25d ) ), 10000 );
+    long elapsed = TimeUnit.NANOSECONDS.toMillis( System.nanoTime() - start );
+
+    assertEquals( "1", results.get( 0 )[ 0 ] );
+    assertTrue( "dispatched after: " + elapsed + "ms", elapsed >= 200 );
+    assertEquals( Arrays.asList( 1 ), model.batchSizes );
+    }
+
+  @Test
+  public void testRejected() throws Exception
+    {
+    CountDownLatch gate = new CountDownLatch( 1 );
+    TestModel model = new TestModel( gate );
+
+    // one busy worker and a worker queue of two batches
+    batcher = new MicroBatcher( 1, 1, 0, 10 );
+
+    List<Future<List<Object[]>>> futures = new ArrayList<Future<List<Object[]>>>();
+
+    for( int i = 0; i < 6; i++ )
+      futures.add( submit( model, row( 0.25d ) ) );
+
+    int rejected = 0;
+    long deadline = System.currentTimeMillis() + 10000;
+
+    while( rejected < 3 && System.currentTimeMillis() < deadline )
+      {
+      rejected = 0;
+
+      for( Future<List<Object[]>> future : futures )
+        {
+        if( future.isDone() && isRejected( future ) )
+          rejected++;
+        }
+
+      Thread.sleep( 10 );
+      }
+
+    assertTrue( "rejected: " + rejected, rejected >= 3 );
+
+    gate.countDown();
+
+    int scored = 0;
+
+    for( Future<List<Object[]>> future : futures )
+      {
+      if( !isRejected( future ) )
+        scored++;
+      }
+
+    assertEquals( 6, rejected + scored );
+
+    batcher.stop();
+
+    try
+      {
+      batcher.score( model, rows( row( 0.25d ) ), 10000 );
+      fail( "stopped batcher accepted rows" );
+      }
+    catch( RejectedExecutionException exception )
+      {
+      // expected
+      }
+    }
+
+  @Test
+  public void testTimeout() throws Exception
+    {
+    CountDownLatch gate = new CountDownLatch( 1 );
+
+    batcher = new MicroBatcher( 1, 1, 0, 10 );
+
+    try
+      {
+      batcher.score( new TestModel( gate ), rows( row( 0.25d ) ), 100 );
+      fail( "did not time out" );
+      }
+    catch( TimeoutException exception )
+      {
+      // expected
+      }
+    finally
+      {
+      gate.countDown();
+      }
+    }
+
+  @Test
+  public void testTimeoutCancelled() throws Exception
+    {
+    CountDownLatch gate = new CountDownLatch( 1 );
+    TestModel model = new TestModel( gate );
+
+    // one worker, so the second request waits behind the first
+    batcher = new MicroBatcher( 1, 1, 0, 10 );
+
+    Future<List<Object[]>> first = submit( model, row( 0.25d ) );
+    long deadline = System.currentTimeMillis() + 10000;
+
+    while( model.batchSizes.isEmpty() && System.currentTimeMillis() < deadline )
+      Thread.sleep( 10 );
+
+    try
+      {
+      batcher.score( model, rows( row( 0.75d ) ), 100 );
+      fail( "did not time out" );
+      }
+    catch( TimeoutException exception )
+      {
+      // expected
+      }
+    finally
+      {
+      gate.countDown();
+      }
+
+    assertEquals( "1", first.get( 10, TimeUnit.SECONDS ).get( 0 )[ 0 ] );
+
+    // batches run in order on the single worker, so the timed out request was skipped before this is scored
+    assertEquals( "1", batcher.score( model, rows( row( 0.25d ) ), 10000 ).get( 0 )[ 0 ] );
+    assertEquals( Arrays.asList( 1, 1 ), model.batchSizes );
+    }
+
+  @Test
+  public void testStopWhileCollecting() throws Exception
+    {
+    TestModel model = new TestModel( new CountDownLatch( 0 ) );
+
+    // the batch is never full, so the request is held by the dispatcher until the delay expires
+    batcher = new MicroBatcher( 1, 10, TimeUnit.SECONDS.toMicros( 60 ), 10 );
+
+    Future<List<Object[]>> future = submit( model, row( 0.25d ) );
+
+    Thread.sleep( 200 );
+
+    batcher.stop();
+
+    assertTrue( isRejected( future ) );
+    assertTrue( model.batchSizes.isEmpty() );
+    }
+
+  @Test
+  public void testFailureIsolated() throws Exception
+    {
+    TestModel model = new TestModel( new CountDownLatch( 0 ) );
+
+    // the three requests are dispatched as a single batch
+    batcher = new MicroBatcher( 1, 3, TimeUnit.SECONDS.toMicros( 60 ), 10 );
+
+    Future<List<Object[]>> first = submit( model, row( 0.25d ) );
+    Future<List<Object[]>> bad = submit( model, row( "bad" ) );
+    Future<List<Object[]>> last = submit( model, row( 0.75d ) );
+
+    assertEquals( "1", first.get( 10, TimeUnit.SECONDS ).get( 0 )[ 0 ] );
+    assertEquals( "0", last.get( 10, TimeUnit.SECONDS ).get( 0 )[ 0 ] );
+
+    try
+      {
+      bad.get( 10, TimeUnit.SECONDS );
+      fail( "bad request did not fail" );
+      }
+    catch( ExecutionException exception )
+      {
+      assertTrue( exception.getCause() instanceof IllegalArgumentException );
+      }
+
+    // the failed batch is scored again one request at a time
+    assertEquals( Arrays.asList( 3, 1, 1, 1 ), model.batchSizes );
+    }
+
+  @Test
+  public void testModelPinned() throws Exception
+    {
+    TestModel treeModel = new TestModel( new CountDownLatch( 0 ) );
+    ServingModel classifierModel = new ServingModel( null, 0, new ModelScorer( createClassifierSpec() ) );
+
+    // requests parsed against models of different widths, as before and after a reload, dispatched together
+    batcher = new MicroBatcher( 1, 2, TimeUnit.SECONDS.toMicros( 60 ), 10 );
+
+    Future<List<Object[]>> tree = submit( treeModel, row( 0.25d ) );
+    Future<List<Object[]>> classifier = submit( classifierModel, row( 7d, 3.2d, 4.7d, 1.4d ) );
+
+    assertEquals( "1", tree.get( 10, TimeUnit.SECONDS ).get( 0 )[ 0 ] );
+    assertEquals( "versicolor", classifier.get( 10, TimeUnit.SECONDS ).get( 0 )[ 0 ] );
+    assertEquals( Arrays.asList( 1 ), treeModel.batchSizes );
+    }
+
+  private boolean isRejected( Future<List<Object[]>> future ) throws Exception
+    {
+    try
+      {
+      future.get( 10, TimeUnit.SECONDS );
+      return false;
+      }
+    catch( ExecutionException exception )
+      {
+      if( exception.getCause() instanceof RejectedExecutionException )
+        return true;
+
+      throw exception;
+      }
+    }
+
+  private Future<List<Object[]>> submit( final ServingModel model, final Object[] row )
+    {
+    return executor.submit( new Callable<List<Object[]>>()
+    {
+    @Override
+    public List<Object[]> call() throws Exception
+      {
+      return batcher.score( model, rows( row ), 10000 );
+      }
+    } );
+    }
+
+  private static List<Object[]> rows( Object[]... rows )
+    {
+    return Arrays.asList( rows );
+    }
+
+  private static Object[] row( Object... values )
+    {
+    return values;
+    }
+  }
@@ -0,0 +1,320 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.serving;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import cascading.CascadingTestCase;
+import cascading.pattern.model.ModelScorer;
+import cascading.pattern.util.Logging;
+import org.junit.Test;
+
+import static cascading.pattern.model.SpecFixtures.createClassifierSpec;
+import static cascading.pattern.model.SpecFixtures.createSplitTreeSpec;
+
+/**
+ *
+ */
+public class ScoringServerTest extends CascadingTestCase
+  {
+  private File pmmlFile;
+  private ScoringServer server;
+  private ServingModel nextModel;
+  private RuntimeException loadFailure;
+
+  public ScoringServerTest()
+    {
+    }
+
+  @Override
+  public void setUp() throws Exception
+    {
+    Logging.setLogLevel( this.getClass(), "cascading.pattern", "debug" );
+
+    super.setUp();
+
+    pmmlFile = File.createTempFile( "model", ".pmml" );
+    pmmlFile.deleteOnExit();
+
+    nextModel = new ServingModel( pmmlFile, pmmlFile.lastModified(), new ModelScorer( createSplitTreeSpec() ) );
+
+    // models are handed out by the test, the PMML file is only used for its modification time
+    server = new ScoringServer( pmmlFile )
+    {
+    @Override
+    ServingModel loadModel()
+      {
+      if( loadFailure != null )
+        throw loadFailure;
+
+      return nextModel;
+      }
+    };
+
+    server.setPort( 0 ).setReloadIntervalMillis( 0 );
+    }
+
+  @Override
+  public void tearDown() throws Exception
+    {
+    server.stop();
+    pmmlFile.delete();
+
+    super.tearDown();
+    }
+
+  @Test
+  public void testScore() throws IOException
+    {
+    server.start();
+
+    List<String> results = new ScoringClient( "localhost", server.getPort() ).score( Arrays.asList( "0.25", "0.75", "1.0" ) );
+
+    assertEquals( Arrays.asList( "1", "0", "0" ), results );
+
+    Response response = request( "GET", "/model", null );
+
+    assertEquals( 200, response.status );
+    assertEquals( "input\tvar0", response.lines.get( 0 ) );
+    }
+
+  @Test
+  public void testBadRequest() throws IOException
+    {
+    server.start();
+
+    assertEquals( 400, request( "POST", "/score", "0.25\t1\n" ).status );
+    assertEquals( 400, request( "POST", "/score", "\n" ).status );
+    assertEquals( 405, request( "GET", "/score", null ).status );
+    }
+
+  @Test
+  public void testTooLarge() throws IOException
+    {
+    server.setMaxRequestBytes( 16 ).setMaxRequestRows( 2 ).start();
+
+    assertEquals( 200, request( "POST", "/score", "0.25\n0.75\n" ).status );
+    assertEquals( 413, request( "POST", "/score", "0.25\n0.75\n0.25\n" ).status );
+    assertEquals( 413, request( "POST", "/score", "0.25\n0.75\n0.25\n0.75\n0.25\n" ).status );
+    }
+
+  @Test
+  public void testWorkersBusy() throws Exception
+    {
+    CountDownLatch gate = new CountDownLatch( 1 );
+
+    nextModel = new MicroBatcherTest.TestModel( gate );
+
+    server.setNumWorkers( 1 ).setMaxBatchSize( 1 ).setMaxBatchDelayMicros( 0 ).setTimeoutMillis( 10000 ).start();
+
+    ExecutorService executor = Executors.newCachedThreadPool();
+
+    try
+      {
+      List<Future<Response>> futures = new ArrayList<Future<Response>>();
+
+      for( int i = 0; i < 6; i++ )
+        {
+        futures.add( executor.submit( new Callable<Response>()
+        {
+        @Override
+        public Response call() throws Exception
+          {
+          return request( "POST", "/score", "0.25\n" );
+          }
+        } ) );
+        }
+
+      // rejected requests return while the only worker is blocked
+      long deadline = System.currentTimeMillis() + 10000;
+
+      while( countDone( futures ) < 3 && System.currentTimeMillis() < deadline )
+        Thread.sleep( 10 );
+
+      gate.countDown();
+
+      int rejected = 0;
+      int scored = 0;
+
+      for( Future<Response> future : futures )
+        {
+        int status = future.get( 10, TimeUnit.SECONDS ).status;
+
+        if( status == 503 )
+          rejected++;
+        else if( status == 200 )
+          scored++;
+        }
+
+      assertTrue( "rejected: " + rejected, rejected >= 3 );
+      assertEquals( 6, rejected + scored );
+      }
+    finally
+      {
+      gate.countDown();
+      executor.shutdownNow();
+      }
+    }
+
+  @Test
+  public void testTimeout() throws IOException
+    {
+    CountDownLatch gate = new CountDownLatch( 1 );
+
+    nextModel = new MicroBatcherTest.TestModel( gate );
+
+    server.setTimeoutMillis( 100 ).start();
+
+    try
+      {
+      assertEquals( 504, request( "POST", "/score", "0.25\n" ).status );
+      }
+    finally
+      {
+      gate.countDown();
+      }
+    }
+
+  @Test
+  public void testReload() throws IOException
+    {
+    server.start();
+
+    ServingModel first = server.getModel();
+
+    // unchanged file
+    assertFalse( server.reload() );
+    assertSame( first, server.getModel() );
+
+    // a failed load keeps the current model
+    assertTrue( pmmlFile.setLastModified( first.getLastModified() - 10000 ) );
+    loadFailure = new IllegalArgumentException( "not a model" );
+
+    assertFalse( server.reload() );
+    assertSame( first, server.getModel() );
+    assertEquals( 200, request( "POST", "/score", "0.25\n" ).status );
+
+    // a changed file swaps in the new model, rows are parsed against its width
+    loadFailure = null;
+    nextModel = new ServingModel( pmmlFile, pmmlFile.lastModified(), new ModelScorer( createClassifierSpec() ) );
+
+    assertTrue( server.reload() );
+    assertSame( nextModel, server.getModel() );
+    assertFalse( server.reload() );
+
+    Response response = request( "POST", "/score", "7\t3.2\t4.7\t1.4\n" );
+
+    assertEquals( 200, response.status );
+    assertEquals( "versicolor", response.lines.get( 0 ) );
+    assertEquals( 400, request( "POST", "/score", "0.25\n" ).status );
+    }
+
+  private static int countDone( List<Future<Response>> futures )
+    {
+    int count = 0;
+
+    for( Future<Response> future : futures )
+      {
+      if( future.isDone() )
+        count++;
+      }
+
+    return count;
+    }
+
+  private static class Response
+    {
+    final int status;
+    final List<String> lines;
+
+    Response( int status, List<String> lines )
+      {
+      this.status = status;
+      this.lines = lines;
+      }
+    }
+
+  private Response request( String method, String path, String body ) throws IOException
+    {
+    URL url = new URL( "http", "localhost", server.getPort(), path );
+    HttpURLConnection connection = (HttpURLConnection) url.openConnection();
+
+    connection.setRequestMethod( method );
+
+    if( body != null )
+      {
+      byte[] bytes = body.getBytes( "UTF-8" );
+
+      connection.setDoOutput( true );
+      connection.setFixedLengthStreamingMode( bytes.length );
+
+      OutputStream output = connection.getOutputStream();
+
+      try
+        {
+        output.write( bytes );
+        }
+      finally
+        {
+        output.close();
+        }
+      }
+
+    int status = connection.getResponseCode();
+    InputStream input = status == 200 ? connection.getInputStream() : connection.getErrorStream();
+    List<String> lines = new ArrayList<String>();
+
+    if( input == null )
+      return new Response( status, lines );
+
+    BufferedReader reader = new BufferedReader( new InputStreamReader( input, "UTF-8" ) );
+
+    try
+      {
+      String line;
+
+      while( ( line = reader.readLine() ) != null )
+        lines.add( line );
+      }
+    finally
+      {
+      reader.close();
+      }
+
+    return new Response( status, lines );
+    }
+  }
@@ -0,0 +1,192 @@
+/*
+ * Copyright (c) 2007-2013 Concurrent, Inc. All Rights Reserved.
+ *
+ * Project and contact information: http://www.cascading.org/
+ *
+ * This file is part of the Cascading project.
+ *
+ * Licensed under the Apache License, Version 2.0 (the "License");
+ * you may not use this file except in compliance with the License.
+ * You may obtain a copy of the License at
+ *
+ *     http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing, software
+ * distributed under the License is distributed on an "AS IS" BASIS,
+ * WITHOUT WARRANTIES OR CONDITIONS OF ANY KIND, either express or implied.
+ * See the License for the specific language governing permissions and
+ * limitations under the License.
+ */
+
+package cascading.pattern.serving;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Iterator;
+import java.util.List;
+
+import cascading.CascadingTestCase;
+import cascading.operation.Function;
+import cascading.pattern.model.ModelScorer;
+import cascading.pattern.model.generalregression.CategoricalRegressionFunction;
+import cascading.pattern.model.generalregression.GeneralRegressionSpec;
+import cascading.pattern.model.tree.TreeFunction;
+import cascading.pattern.model.tree.TreeSpec;
+import cascading.pattern.util.Logging;
+import cascading.tuple.Fields;
+import cascading.tuple.Tuple;
+import cascading.tuple.TupleEntry;
+import cascading.tuple.TupleListCollector;
+import org.junit.Test;
+
+import static cascading.pattern.model.SpecFixtures.createClassifierSpec;
+import static cascading.pattern.model.SpecFixtures.createSplitTreeSpec;
+
+/**
+ *
+ */
+public class ServingModelTest extends CascadingTestCase
+  {
+  public static final String DATA_PATH = System.getProperty( "test.data.path", "../pattern-pmml/src/test/resources/pmml/" );
+
+  static final Object[][] ROWS = new Object[][]{
+    {7d, 3.2d, 4.7d, 1.4d},
+    {5.8d, 4d, 1.2d, 0.2d},
+    {6.3d, 3.3d, 6d, 2.5d},
+    {"5.1", "3.5", "1.4", "0.2"},
+    {null, 3.5d, 1.4d, 0.2d}
+  };
+
+  public ServingModelTest()
+    {
+    }
+
+  @Override
+  public void setUp() throws Exception
+    {
+    Logging.setLogLevel( this.getClass(), "cascading.pattern", "debug" );
+
+    super.setUp();
+    }
+
+  @Test
+  public void testBatchedMatchesFlow()
+    {
+    GeneralRegressionSpec regressionSpec = createClassifierSpec();
+    ServingModel servingModel = new ServingModel( null, 0, new ModelScorer( regressionSpec ) );
+
+    assertTrue( servingModel.isBatched() );
+
+    assertMatchesFlow( servingModel, new CategoricalRegressionFunction( regressionSpec ), ROWS );
+    }
+
+  @Test
+  public void testPerRowMatchesFlow()
+    {
+    TreeSpec treeSpec = createSplitTreeSpec();
+    ServingModel servingModel = new ServingModel( null, 0, new ModelScorer( treeSpec ) );
+
+    // a tree without declared categories is scored row by row
+    assertFalse( servingModel.isBatched() );
+
+    assertMatchesFlow( servingModel, new TreeFunction( treeSpec ), new Object[][]{{0.25d}, {0.75d}, {"0.25"}} );
+    }
+
+  @Test
+  public void testRowWidth()
+    {
+    ServingModel batched = new ServingModel( null, 0, new ModelScorer( createClassifierSpec() ) );
+    ServingModel perRow = new ServingModel( null, 0, new ModelScorer( createSplitTreeSpec() ) );
+
+    // the width is checked on both paths, so a request parsed against another model version fails
+    assertWidthChecked( batched, new Object[]{7d, 3.2d, 4.7d} );
+    assertWidthChecked( perRow, new Object[]{0.25d, 1d} );
+    }
+
+  @Test
+  public void testPMMLModel() throws IOException
+    {
+    ServingModel servingModel = ServingModel.load( new File( DATA_PATH + "iris.multinom.pmml" ) );
+
+    assertTrue( servingModel.isBatched() );
+
+    List<Object[]> rows = new ArrayList<Object[]>();
+    List<String> expected = new ArrayList<String>();
+
+    BufferedReader reader = new BufferedReader( new InputStreamReader( new FileInputStream( DATA_PATH + "iris.multinom.tsv" ), "UTF-8" ) );
+
+    try
+      {
+      reader.readLine(); // header
+
+      String line;
+
+      while( ( line = reader.readLine() ) != null )
+        {
+        String[] values = line.split( "\t" );
+
+        rows.add( Arrays.<Object>copyOf( values, 4 ) );
+        expected.add( values[ 5 ] );
+        }
+      }
+    finally
+      {
+      reader.close();
+      }
+
+    List<Object[]> results = score( servingModel, rows );
+
+    // batched results match the predictions of the flow, and the scorer used for rows that cannot be batched
+    for( int i = 0; i < rows.size(); i++ )
+      {
+      assertEquals( "row: " + i, expected.get( i ), results.get( i )[ 0 ] );
+      assertEquals( "row: " + i, servingModel.getScorer().score( rows.get( i ) ), results.get( i )[ 0 ] );
+      }
+    }
+
+  private void assertWidthChecked( ServingModel servingModel, Object[] row )
+    {
+    try
+      {
+      score( servingModel, Arrays.<Object[]>asList( row ) );
+      fail( "accepted row of wrong width" );
+      }
+    catch( IllegalArgumentException exception )
+      {
+      // expected
+      }
+    }
+
+  private void assertMatchesFlow( ServingModel servingModel, Function function, Object[][] rows )
+    {
+    Fields inputFields = servingModel.getScorer().getInputFields();
+    TupleEntry[] entries = new TupleEntry[ rows.length ];
+
+    for( int i = 0; i < rows.length; i++ )
+      entries[ i ] = new TupleEntry( inputFields, new Tuple( rows[ i ] ) );
+
+    TupleListCollector collector = invokeFunction( function, entries, servingModel.getScorer().getDeclaredFields() );
+    List<Object[]> results = score( servingModel, Arrays.asList( rows ) );
+    Iterator<Tuple> iterator = collector.iterator();
+
+    for( int i = 0; i < rows.length; i++ )
+      assertEquals( "row: " + i, iterator.next().getObject( 0 ), results.get( i )[ 0 ] );
+    }
+
+  static List<Object[]> score( ServingModel servingModel, List<Object[]> rows )
+    {
+    List<Object[]> results = new ArrayList<Object[]>();
+
+    for( int i = 0; i < rows.size(); i++ )
+      results.add( new Object[ servingModel.getDeclaredNames().length ] );
+
+    servingModel.score( rows, results );
+
+    return results;
+    }
+  }